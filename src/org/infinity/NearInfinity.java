@@ -73,6 +73,7 @@
 import org.infinity.resource.Viewable;
 import org.infinity.resource.ViewableContainer;
 import org.infinity.resource.bcs.Compiler;
+import org.infinity.resource.graphics.PvrDecoder;
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.key.ResourceTreeModel;
@@ -813,6 +814,7 @@ private static void clearCache()
     SearchFrame.clearCache();
     StringResource.close();
     ProRef.clearCache();
+    PvrDecoder.flushCache();
   }
 
   private static void showProgress(String msg, int max)
@@ -19,7 +19,6 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -43,12 +42,13 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Decompiler;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class BCSIDSChecker implements Runnable, ActionListener, ListSelectionListener
 {
@@ -144,7 +144,6 @@ public void run()
     WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
     blocker.setBlocked(true);
     try {
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       bcsFiles = ResourceFactory.getResources("BCS");
       bcsFiles.addAll(ResourceFactory.getResources("BS"));
       progressIndex = 0;
@@ -160,29 +159,17 @@ public void run()
 
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < bcsFiles.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(bcsFiles.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(bcsFiles.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -341,7 +328,10 @@ public void run()
     {
       if (entry != null) {
         try {
-          checkScript(new BcsResource(entry));
+          Resource resource = ResourceCache.get(entry);
+          if (resource instanceof BcsResource) {
+            checkScript((BcsResource)resource);
+          }
         } catch (Exception e) {
           synchronized (System.err) {
             e.printStackTrace();
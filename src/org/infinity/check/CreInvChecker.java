@@ -18,7 +18,6 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -45,13 +44,14 @@
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.cre.Item;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class CreInvChecker implements Runnable, ActionListener, ListSelectionListener
 {
@@ -144,7 +144,6 @@ public void run()
     WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
     blocker.setBlocked(true);
     try {
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       creFiles = ResourceFactory.getResources("CRE");
       creFiles.addAll(ResourceFactory.getResources("CHR"));
       progressIndex = 0;
@@ -160,29 +159,17 @@ public void run()
 
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < creFiles.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(creFiles.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(creFiles.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -351,7 +338,10 @@ public void run()
     {
       if (entry != null) {
         try {
-          checkCreature(new CreResource(entry));
+          Resource resource = ResourceCache.get(entry);
+          if (resource instanceof CreResource) {
+            checkCreature((CreResource)resource);
+          }
         } catch (Exception e) {
           synchronized (System.err) {
             e.printStackTrace();
@@ -21,7 +21,6 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedMap;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -48,6 +47,7 @@
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.bcs.Compiler;
@@ -56,7 +56,7 @@
 import org.infinity.resource.dlg.DlgResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class DialogChecker implements Runnable, ActionListener, ListSelectionListener, ChangeListener
 {
@@ -179,7 +179,6 @@ public void run()
     WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
     blocker.setBlocked(true);
     try {
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       dlgFiles = ResourceFactory.getResources("DLG");
       if (checkOnlyOverride) {
         for (Iterator<ResourceEntry> i = dlgFiles.iterator(); i.hasNext();) {
@@ -206,29 +205,17 @@ public void run()
 
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < dlgFiles.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(dlgFiles.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(dlgFiles.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -383,27 +370,30 @@ public void run()
     {
       if (entry != null) {
         try {
-          DlgResource dialog = new DlgResource(entry);
-          for (int j = 0; j < dialog.getFieldCount(); j++) {
-            StructEntry o = dialog.getField(j);
-            if (o instanceof AbstractCode) {
-              AbstractCode dialogCode = (AbstractCode)o;
-              Compiler compiler = new Compiler(dialogCode.toString(),
-                                               (dialogCode instanceof Action) ? Compiler.ScriptType.ACTION :
-                                                                                Compiler.ScriptType.TRIGGER);
-              compiler.getCode();
-              SortedMap<Integer, String> errorMap = compiler.getErrors();
-              for (final Integer lineNr : errorMap.keySet()) {
-                String error = errorMap.get(lineNr);
-                synchronized (errorTable) {
-                  errorTable.addTableItem(new ActionErrorsTableLine(entry, dialogCode, lineNr, error));
+          Resource resource = ResourceCache.get(entry);
+          if (resource instanceof DlgResource) {
+            DlgResource dialog = (DlgResource)resource;
+            for (int j = 0; j < dialog.getFieldCount(); j++) {
+              StructEntry o = dialog.getField(j);
+              if (o instanceof AbstractCode) {
+                AbstractCode dialogCode = (AbstractCode)o;
+                Compiler compiler = new Compiler(dialogCode.toString(),
+                                                 (dialogCode instanceof Action) ? Compiler.ScriptType.ACTION :
+                                                                                  Compiler.ScriptType.TRIGGER);
+                compiler.getCode();
+                SortedMap<Integer, String> errorMap = compiler.getErrors();
+                for (final Integer lineNr : errorMap.keySet()) {
+                  String error = errorMap.get(lineNr);
+                  synchronized (errorTable) {
+                    errorTable.addTableItem(new ActionErrorsTableLine(entry, dialogCode, lineNr, error));
+                  }
                 }
-              }
-              SortedMap<Integer, String> warningMap = compiler.getWarnings();
-              for (final Integer lineNr : warningMap.keySet()) {
-                String warning = warningMap.get(lineNr);
-                synchronized (warningTable) {
-                  warningTable.addTableItem(new ActionErrorsTableLine(entry, dialogCode, lineNr, warning));
+                SortedMap<Integer, String> warningMap = compiler.getWarnings();
+                for (final Integer lineNr : warningMap.keySet()) {
+                  String warning = warningMap.get(lineNr);
+                  synchronized (warningTable) {
+                    warningTable.addTableItem(new ActionErrorsTableLine(entry, dialogCode, lineNr, warning));
+                  }
                 }
               }
             }
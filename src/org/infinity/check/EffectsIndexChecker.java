@@ -11,7 +11,6 @@
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -29,13 +28,14 @@
 import org.infinity.resource.AbstractAbility;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.spl.SplResource;
 import org.infinity.search.ReferenceHitFrame;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public class EffectsIndexChecker extends ChildFrame implements ActionListener, Runnable
 {
@@ -134,9 +134,9 @@ public void run()
                                      String.format(FMT_PROGRESS, type),
                                      0, files.size());
       progress.setMillisToDecideToPopup(100);
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
         ResourceEntry entry = files.get(i);
         if (i % 10 == 0) {
@@ -146,28 +146,15 @@ public void run()
             progress.setNote(String.format(FMT_PROGRESS, type));
           }
         }
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(entry));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(entry))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -232,7 +219,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        Resource resource = ResourceFactory.getResource(entry);
+        Resource resource = ResourceCache.get(entry);
         if (resource != null) {
           search(entry, (AbstractStruct)resource);
         }
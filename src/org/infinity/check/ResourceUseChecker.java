@@ -22,7 +22,6 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,6 +52,7 @@
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.bcs.BcsResource;
@@ -66,8 +66,8 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.text.PlainTextResource;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
 import org.infinity.util.StringResource;
+import org.infinity.util.TaskEngine;
 
 public final class ResourceUseChecker implements Runnable, ListSelectionListener, ActionListener
 {
@@ -215,7 +215,6 @@ public void run()
       for (final String fileType : FILETYPES) {
         files.addAll(ResourceFactory.getResources(fileType));
       }
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       progressIndex = 0;
       progress = new ProgressMonitor(NearInfinity.getInstance(), "Searching...",
                                      String.format(FMT_PROGRESS, files.size(), files.size()),
@@ -230,29 +229,17 @@ public void run()
       checkList.addAll(ResourceFactory.getResources(checkType));
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(files.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(files.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -519,7 +506,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        Resource resource = ResourceFactory.getResource(entry);
+        Resource resource = ResourceCache.get(entry);
         if (resource instanceof DlgResource) {
           checkDialog((DlgResource)resource);
         } else if (resource instanceof BcsResource) {
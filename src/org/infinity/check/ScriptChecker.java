@@ -20,7 +20,6 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -46,13 +45,14 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
 import org.infinity.resource.bcs.Decompiler;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class ScriptChecker implements Runnable, ActionListener, ListSelectionListener, ChangeListener
 {
@@ -172,7 +172,6 @@ public void run()
     WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
     blocker.setBlocked(true);
     try {
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       scriptFiles = ResourceFactory.getResources("BCS");
       scriptFiles.addAll(ResourceFactory.getResources("BS"));
       progressIndex = 0;
@@ -190,29 +189,17 @@ public void run()
 
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < scriptFiles.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(scriptFiles.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(scriptFiles.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -362,23 +349,26 @@ public void run()
     {
       if (entry != null) {
         try {
-          BcsResource script = new BcsResource(entry);
-          Decompiler decompiler = new Decompiler(script.getCode(), true);
-          String decompiled = decompiler.getSource();
-          Compiler compiler = new Compiler(decompiled);
-          compiler.compile();
-          SortedMap<Integer, String> errorMap = compiler.getErrors();
-          for (final Integer lineNr : errorMap.keySet()) {
-            String error = errorMap.get(lineNr);
-            synchronized (errorTable) {
-              errorTable.addTableItem(new ScriptErrorsTableLine(entry, lineNr, error));
+          Resource resource = ResourceCache.get(entry);
+          if (resource instanceof BcsResource) {
+            BcsResource script = (BcsResource)resource;
+            Decompiler decompiler = new Decompiler(script.getCode(), true);
+            String decompiled = decompiler.getSource();
+            Compiler compiler = new Compiler(decompiled);
+            compiler.compile();
+            SortedMap<Integer, String> errorMap = compiler.getErrors();
+            for (final Integer lineNr : errorMap.keySet()) {
+              String error = errorMap.get(lineNr);
+              synchronized (errorTable) {
+                errorTable.addTableItem(new ScriptErrorsTableLine(entry, lineNr, error));
+              }
             }
-          }
-          SortedMap<Integer, String> warningMap = compiler.getWarnings();
-          for (final Integer lineNr : warningMap.keySet()) {
-            String warning = warningMap.get(lineNr);
-            synchronized (warningTable) {
-              warningTable.addTableItem(new ScriptErrorsTableLine(entry, lineNr, warning));
+            SortedMap<Integer, String> warningMap = compiler.getWarnings();
+            for (final Integer lineNr : warningMap.keySet()) {
+              String warning = warningMap.get(lineNr);
+              synchronized (warningTable) {
+                warningTable.addTableItem(new ScriptErrorsTableLine(entry, lineNr, warning));
+              }
             }
           }
         } catch (Exception e) {
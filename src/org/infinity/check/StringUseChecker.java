@@ -15,7 +15,6 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,6 +44,7 @@
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.bcs.BcsResource;
@@ -55,13 +55,15 @@
 import org.infinity.resource.dlg.DlgResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.text.PlainTextResource;
-import org.infinity.search.SearchClient;
+import org.infinity.search.IndexedSearchClient;
 import org.infinity.search.SearchMaster;
 import org.infinity.util.Debugging;
 import org.infinity.util.Misc;
+import org.infinity.util.StringIndex;
 import org.infinity.util.StringResource;
+import org.infinity.util.TaskEngine;
 
-public final class StringUseChecker implements Runnable, ListSelectionListener, SearchClient, ActionListener
+public final class StringUseChecker implements Runnable, ListSelectionListener, IndexedSearchClient, ActionListener
 {
   private static final String FMT_PROGRESS = "Checking %ss...";
 
@@ -107,7 +109,6 @@ public void run()
     WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
     blocker.setBlocked(true);
     try {
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       files = new ArrayList<ResourceEntry>();
       for (final String fileType : FILETYPES)
         files.addAll(ResourceFactory.getResources(fileType));
@@ -126,6 +127,7 @@ public void run()
       strUsed = new boolean[StringResource.getMaxIndex() + 1];
       boolean isCancelled = false;
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
         ResourceEntry entry = files.get(i);
         if (i % 10 == 0) {
@@ -135,28 +137,15 @@ public void run()
             progress.setNote(String.format(FMT_PROGRESS, type));
           }
         }
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(entry));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(entry))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -263,7 +252,7 @@ public void actionPerformed(ActionEvent e)
 
 // --------------------- End Interface ActionListener ---------------------
 
-// --------------------- Begin Interface SearchClient ---------------------
+// --------------------- Begin Interface IndexedSearchClient ---------------------
 
   @Override
   public String getText(int nr)
@@ -280,7 +269,26 @@ public void hitFound(int nr)
     table.scrollRectToVisible(table.getCellRect(table.getSelectionModel().getMinSelectionIndex(), 0, true));
   }
 
-// --------------------- End Interface SearchClient ---------------------
+  @Override
+  public int[] getCandidates(String text)
+  {
+    StringIndex index = StringIndex.get(StringResource.getPath());
+    int[] strrefs = (index != null) ? index.findCandidates(text, false) : null;
+    if (strrefs == null) {
+      return null;
+    }
+    // mapping strrefs to table rows
+    List<Integer> rows = new ArrayList<>();
+    for (int row = 0, count = table.getRowCount(); row < count; row++) {
+      Integer strref = (Integer)table.getTableItemAt(row).getObjectAt(1);
+      if (Arrays.binarySearch(strrefs, strref.intValue()) >= 0) {
+        rows.add(Integer.valueOf(row));
+      }
+    }
+    return rows.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+// --------------------- End Interface IndexedSearchClient ---------------------
 
   private void checkDialog(DlgResource dialog)
   {
@@ -422,7 +430,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        Resource resource = ResourceFactory.getResource(entry);
+        Resource resource = ResourceCache.get(entry);
         if (resource instanceof DlgResource) {
           checkDialog((DlgResource)resource);
         } else if (resource instanceof BcsResource) {
@@ -76,6 +76,7 @@
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructureFactory;
+import org.infinity.resource.key.AbstractBIFFReader;
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.DialogSearcher;
@@ -86,6 +87,7 @@
 import org.infinity.updater.UpdateInfo;
 import org.infinity.updater.Updater;
 import org.infinity.updater.UpdaterSettings;
+import org.infinity.util.ArrayUtil;
 import org.infinity.util.MassExporter;
 import org.infinity.util.ObjectString;
 import org.infinity.util.Pair;
@@ -209,6 +211,11 @@ public boolean cacheOverride()
     return optionsMenu.optionCacheOverride.isSelected();
   }
 
+  public boolean mapBiffFiles()
+  {
+    return optionsMenu.optionMapBiffFiles.isSelected();
+  }
+
   public void gameLoaded(Profile.Game oldGame, String oldFile)
   {
     gameMenu.gameLoaded(oldGame, oldFile);
@@ -1538,6 +1545,8 @@ private static final class OptionsMenu extends JMenu implements ActionListener,
       new Font(Font.SANS_SERIF, Font.PLAIN, 12), new Font(Font.DIALOG, Font.PLAIN, 12), null};
     private static final String DefaultCharset = "Auto";
     private static final List<String[]> CharsetsUsed = new ArrayList<String[]>();
+    // Max. number of BIFF archives kept open
+    private static final int[] BIFFCACHELIMIT = {64, 256, AbstractBIFFReader.DEFAULT_CACHE_LIMIT, 4096};
     // BCS indentations to use when decompiling (indent, title)
     private static final String[][] BCSINDENT = { {"  ", "2 Spaces"},
                                                   {"    ", "4 Spaces"},
@@ -1580,6 +1589,7 @@ private static final class OptionsMenu extends JMenu implements ActionListener,
     private static final String OPTION_IGNOREREADERRORS         = "IgnoreReadErrors";
     private static final String OPTION_AUTOCHECK_BCS            = "AutocheckBCS";
     private static final String OPTION_CACHEOVERRIDE            = "CacheOverride";
+    private static final String OPTION_MAPBIFFFILES             = "MapBiffFiles";
     private static final String OPTION_CHECKSCRIPTNAMES         = "CheckScriptNames";
     private static final String OPTION_SHOWSTRREFS              = "ShowStrrefs";
     private static final String OPTION_DLG_SHOWICONS            = "DlgShowIcons";
@@ -1616,6 +1626,7 @@ private static final class OptionsMenu extends JMenu implements ActionListener,
     private static final String OPTION_TEXT_DEBUG_ENABLECOLORSCHEME = "DebugColorSchemeEnabled";
     private static final String OPTION_TEXT_DEBUG_COLORSCHEME       = "DebugColorSchemeFile";
     // this preferences key can be used internally to reset incorrectly set default values after a public release
+    private static final String OPTION_BIFFCACHELIMIT           = "BiffCacheLimit";
     private static final String OPTION_OPTION_FIXED             = "OptionFixedInternal";
 
     // Mask used for one-time resets of options (kept track of in OPTION_OPTION_FIXED)
@@ -1634,6 +1645,7 @@ private static final class OptionsMenu extends JMenu implements ActionListener,
     private final JRadioButtonMenuItem[] viewOrEditShown = new JRadioButtonMenuItem[3];
     private final JRadioButtonMenuItem[] selectFont = new JRadioButtonMenuItem[FONTS.length];
     private final JRadioButtonMenuItem[] selectTextTabSize = new JRadioButtonMenuItem[3];
+    private final JRadioButtonMenuItem[] selectBiffCacheLimit = new JRadioButtonMenuItem[BIFFCACHELIMIT.length];
     private final JRadioButtonMenuItem[] selectBcsIndent = new JRadioButtonMenuItem[BCSINDENT.length];
     private final JRadioButtonMenuItem[] selectBcsColorScheme = new JRadioButtonMenuItem[BCSCOLORSCHEME.length];
     private final JRadioButtonMenuItem[] selectGlslColorScheme = new JRadioButtonMenuItem[COLORSCHEME.length];
@@ -1650,7 +1662,8 @@ private static final class OptionsMenu extends JMenu implements ActionListener,
     private JMenuItem optionTextDebugColorSchemeSelect;
 
     private JCheckBoxMenuItem optionBackupOnSave, optionShowOffset, optionIgnoreOverride;
-    private JCheckBoxMenuItem optionIgnoreReadErrors, optionAutocheckBCS, optionCacheOverride;
+    private JCheckBoxMenuItem optionIgnoreReadErrors, optionAutocheckBCS, optionCacheOverride,
+                              optionMapBiffFiles;
     private JCheckBoxMenuItem optionCheckScriptNames, optionShowStrrefs, optionDlgShowIcons,
                               optionShowHexColored;
     private final JMenu mCharsetMenu, mLanguageMenu;
@@ -1691,6 +1704,11 @@ private OptionsMenu()
       optionCacheOverride.setToolTipText("Without this option selected, Refresh Tree is required " +
                                          "to discover new override files added while NI is open");
       add(optionCacheOverride);
+      optionMapBiffFiles =
+          new JCheckBoxMenuItem("Memory-mapped BIFF access", getPrefs().getBoolean(OPTION_MAPBIFFFILES, false));
+      optionMapBiffFiles.setToolTipText("Resources of uncompressed BIFF archives are accessed directly " +
+                                        "from memory-mapped files without copying.");
+      add(optionMapBiffFiles);
       optionCheckScriptNames =
           new JCheckBoxMenuItem("Interactive script names", getPrefs().getBoolean(OPTION_CHECKSCRIPTNAMES, true));
       optionCheckScriptNames.setToolTipText("With this option disabled, performance may be boosted " +
@@ -1921,6 +1939,24 @@ private OptionsMenu()
       vieworeditmenu.add(viewOrEditShown[DEFAULT_VIEW]);
       vieworeditmenu.add(viewOrEditShown[DEFAULT_EDIT]);
 
+      // Options->Open BIFF Archives
+      JMenu biffCacheMenu = new JMenu("Open BIFF Archives");
+      add(biffCacheMenu);
+      int selectedBiffCache = getPrefs().getInt(OPTION_BIFFCACHELIMIT, 2);
+      if (selectedBiffCache < 0 || selectedBiffCache >= BIFFCACHELIMIT.length) {
+        selectedBiffCache = 2;
+      }
+      bg = new ButtonGroup();
+      for (int i = 0; i < BIFFCACHELIMIT.length; i++) {
+        selectBiffCacheLimit[i] = new JRadioButtonMenuItem(String.format("Up to %1$d", BIFFCACHELIMIT[i]),
+                                                           selectedBiffCache == i);
+        selectBiffCacheLimit[i].setToolTipText("Least recently used BIFF archives are closed when the limit is exceeded.");
+        selectBiffCacheLimit[i].addActionListener(this);
+        biffCacheMenu.add(selectBiffCacheLimit[i]);
+        bg.add(selectBiffCacheLimit[i]);
+      }
+      AbstractBIFFReader.setCacheLimit(BIFFCACHELIMIT[selectedBiffCache]);
+
       // Options->Look and Feel
       JMenu lookandfeelmenu = new JMenu("Look and Feel");
       add(lookandfeelmenu);
@@ -2264,6 +2300,7 @@ private void storePreferences()
       getPrefs().putBoolean(OPTION_IGNOREREADERRORS, optionIgnoreReadErrors.isSelected());
       getPrefs().putBoolean(OPTION_AUTOCHECK_BCS, optionAutocheckBCS.isSelected());
       getPrefs().putBoolean(OPTION_CACHEOVERRIDE, optionCacheOverride.isSelected());
+      getPrefs().putBoolean(OPTION_MAPBIFFFILES, optionMapBiffFiles.isSelected());
       getPrefs().putBoolean(OPTION_CHECKSCRIPTNAMES, optionCheckScriptNames.isSelected());
       getPrefs().putBoolean(OPTION_SHOWSTRREFS, optionShowStrrefs.isSelected());
       getPrefs().putBoolean(OPTION_DLG_SHOWICONS, optionDlgShowIcons.isSelected());
@@ -2272,6 +2309,7 @@ private void storePreferences()
       getPrefs().putInt(OPTION_SHOWOVERRIDES, getOverrideMode());
       getPrefs().put(OPTION_LOOKANDFEELCLASS, getLookAndFeel().getClassName());
       getPrefs().putInt(OPTION_VIEWOREDITSHOWN, getDefaultStructView());
+      getPrefs().putInt(OPTION_BIFFCACHELIMIT, getSelectedButtonIndex(selectBiffCacheLimit, 2));
       int selectedFont = getSelectedButtonIndex(selectFont, 0);
       getPrefs().putInt(OPTION_FONT, selectedFont);
       Font font = FONTS[FONTS.length - 1];
@@ -2693,6 +2731,9 @@ else if (event.getSource() instanceof DataRadioButtonMenuItem) {
           ActionEvent refresh = new ActionEvent(dmi, 0, "Refresh");
           NearInfinity.getInstance().actionPerformed(refresh);
         }
+      } else if (ArrayUtil.indexOf(selectBiffCacheLimit, event.getSource()) >= 0) {
+        int index = ArrayUtil.indexOf(selectBiffCacheLimit, event.getSource());
+        AbstractBIFFReader.setCacheLimit(BIFFCACHELIMIT[index]);
       } else if (event.getSource() == optionTextDebugColorSchemeSelect) {
         // Debug: loading external color scheme file
         Path file = null;
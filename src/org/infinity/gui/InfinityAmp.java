@@ -35,8 +35,8 @@
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.mus.Entry;
-import org.infinity.resource.sound.AudioBuffer;
 import org.infinity.resource.sound.AudioPlayer;
+import org.infinity.resource.sound.AudioStream;
 import org.infinity.util.SimpleListModel;
 import org.infinity.util.io.StreamUtils;
 
@@ -268,6 +268,9 @@ private void playMus(ResourceEntry musEntry)
      int idx = 0;
      String dir = lines[idx++].trim();
      int count = Integer.parseInt(lines[idx++].trim());
+     for (final Entry entry : entryList) {
+       entry.close();
+     }
      entryList.clear();
      for (int i = 0; i < count; i++) {
        entryList.add(new Entry(musEntry, dir, entryList, lines[idx++].trim(), i));
@@ -280,15 +283,17 @@ private void playMus(ResourceEntry musEntry)
      setTitle("InfinityAmp: " + musEntry.toString());
      int nextnr = 0;
      while (keepPlaying) {
-       AudioBuffer audio = entryList.get(nextnr).getAudioBuffer();
+       AudioStream audio = entryList.get(nextnr).getAudioStream();
+       int following = entryList.get(nextnr).getNextNr();
+       if (following > nextnr && following < entryList.size())
+         entryList.get(following).prefetch();   // prepare next segment while playing
        player.play(audio);
-       if (entryList.get(nextnr).getNextNr() <= nextnr ||
-           entryList.get(nextnr).getNextNr() >= entryList.size())
+       if (following <= nextnr || following >= entryList.size())
          break;
-       nextnr = entryList.get(nextnr).getNextNr();
+       nextnr = following;
      }
-     if (keepPlaying && entryList.get(nextnr).getEndBuffer() != null)
-       player.play(entryList.get(nextnr).getEndBuffer());
+     if (keepPlaying && entryList.get(nextnr).hasEndAudio())
+       player.play(entryList.get(nextnr).getEndStream());
    } catch (Exception e) {
      JOptionPane.showMessageDialog(this, "Error accessing " + musEntry + '\n' + e.getMessage(), "Error",
                                    JOptionPane.ERROR_MESSAGE);
@@ -11,11 +11,7 @@
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
-import java.util.Vector;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -34,8 +30,7 @@
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.resource.key.ResourceTreeModel;
-import org.infinity.util.MapTree;
+import org.infinity.resource.key.ResourceNameIndex;
 import org.infinity.util.Misc;
 
 /**
@@ -53,9 +48,11 @@ private enum Result {
     CANCEL, OPEN, OPEN_NEW,
   }
 
+  // Max. number of suggestions
+  private static final int MAX_RESULTS = 500;
+
   private final ButtonPopupWindow parent;
   private final ResourceTree tree;
-  private final MapTree<Character, List<ResourceEntry>> resourceTree;
   private final Object monitor = new Object();  // synchronization object
   private final JPanel mainPanel = new JPanel(new GridBagLayout());
 
@@ -73,7 +70,6 @@ public QuickSearch(ButtonPopupWindow parent, ResourceTree tree)
     }
     this.parent = parent;
     this.tree = tree;
-    this.resourceTree = new MapTree<Character, List<ResourceEntry>>(Character.valueOf('\0'), null);
     this.command = Command.IDLE;
     new Thread(this).start();   // updating list of matching resources is done in the background
     init();
@@ -246,91 +242,6 @@ private void close(Result result)
     parent.hidePopupWindow();
   }
 
-  // Generates root list of resource entries
-  private void generateRootNode()
-  {
-    // removing old list (if any)
-    List<ResourceEntry> list = resourceTree.getValue();
-    if (list != null) {
-      list.clear();
-    } else {
-      list = new Vector<ResourceEntry>();
-      resourceTree.setValue(list);
-    }
-
-    // populating list with new entries
-    ResourceTreeModel model = tree.getModel();
-    if (model != null) {
-      List<ResourceEntry> entries = ResourceFactory.getResources();
-      if (entries != null) {
-        for (final ResourceEntry entry: entries) {
-          list.add(entry);
-        }
-      }
-      Collections.sort(list);
-    }
-  }
-
-  // Creates a new node with a list of matching resources based on the specified node and the new character
-  private MapTree<Character, List<ResourceEntry>> generateNode(MapTree<Character, List<ResourceEntry>> node, char ch)
-  {
-    // determining node level (0 = first level)
-    int index = 0;
-    for (MapTree<Character, List<ResourceEntry>> curNode = node;
-         curNode.getParent() != null;
-         curNode = curNode.getParent()) {
-      index++;
-    }
-
-    // generating filtered list of resource entries based on list of previous node
-    ch = Character.toUpperCase(ch);
-
-    // preparing child node
-    MapTree<Character, List<ResourceEntry>> retVal = node.getChild(Character.valueOf(ch));
-    if (retVal != null) {
-      if (retVal.getValue() != null) {
-        retVal.getValue().clear();
-      } else {
-        retVal.setValue(new Vector<ResourceEntry>());
-      }
-    } else {
-      retVal = new MapTree<Character, List<ResourceEntry>>(Character.valueOf(ch),
-                                                           new Vector<ResourceEntry>());
-    }
-    node.addChild(retVal);
-
-    // generating filtered list of resource entries
-    List<ResourceEntry> parentList = node.getValue();
-    List<ResourceEntry> curList = retVal.getValue();
-    for (Iterator<ResourceEntry> iter = parentList.iterator(); iter.hasNext();) {
-      final ResourceEntry entry = iter.next();
-      final String resName = entry.getResourceName();
-      if (resName.length() > index && Character.toUpperCase(resName.charAt(index)) == ch) {
-        curList.add(entry);
-      }
-    }
-
-    return retVal;
-  }
-
-  // Removes all child nodes and their values recursively
-//  private void clearResourceTree(MapTree<Character, List<ResourceEntry>> node)
-//  {
-//    if (node != null) {
-//      for (Iterator<MapTree<Character, List<ResourceEntry>>> iter = node.getChildren().iterator();
-//           iter.hasNext();) {
-//        MapTree<Character, List<ResourceEntry>> curNode = iter.next();
-//        clearResourceTree(curNode);
-//      }
-//      node.removeAllChildren();
-//      List<ResourceEntry> list = node.setValue(null);
-//      if (list != null) {
-//        list.clear();
-//        list = null;
-//      }
-//    }
-//  }
-
 // --------------------- Begin Interface Runnable ---------------------
 
   @Override
@@ -344,27 +255,24 @@ public void run()
         }
         break;
       } else if (command == Command.UPDATE) {
+        String text;
         synchronized (monitor) {
           command = Command.IDLE;
+          text = keyword;
+        }
 
-          // populating root node
-          if (resourceTree.getValue() == null || resourceTree.getValue().isEmpty()) {
-            generateRootNode();
+        // looking up matching resources outside of the lock, first call may build the name index
+        List<ResourceEntry> list = null;
+        if (text != null && !text.isEmpty()) {
+          ResourceNameIndex index = ResourceFactory.getResourceNameIndex();
+          if (index != null) {
+            list = index.find(text, MAX_RESULTS);
           }
+        }
 
+        synchronized (monitor) {
           // processing new keyword
-          if (keyword != null) {
-            keyword = keyword.toUpperCase(Locale.ENGLISH);
-            MapTree<Character, List<ResourceEntry>> node = resourceTree;
-            for (int i = 0, size = keyword.length(); i < size; i++) {
-              MapTree<Character, List<ResourceEntry>> newNode = node.getChild(Character.valueOf(keyword.charAt(i)));
-              if (newNode == null) {
-                node = generateNode(node, keyword.charAt(i));
-              } else {
-                node = newNode;
-              }
-            }
-
+          if (text != null) {
             // setting matching resource entries
             DefaultComboBoxModel<ResourceEntry> cbModel = (DefaultComboBoxModel<ResourceEntry>)cbSearch.getModel();
 
@@ -376,10 +284,9 @@ public void run()
 
             cbSearch.hidePopup();   // XXX: work-around to force visual update of file list
             cbModel.removeAllElements();
-            if (!keyword.isEmpty() && node != null && node.getValue() != null) {
-              List<ResourceEntry> list = node.getValue();
-              for (Iterator<ResourceEntry> iter = list.iterator(); iter.hasNext();) {
-                cbModel.addElement(iter.next());
+            if (list != null) {
+              for (final ResourceEntry entry: list) {
+                cbModel.addElement(entry);
               }
             }
 
@@ -395,13 +302,6 @@ public void run()
               cbSearch.hidePopup();
             }
           }
-//      } else if (command == Command.Clear) {
-//        // reset data
-//        synchronized(monitor) {
-//          command = Command.Idle;
-//          clearResourceTree(resourceTree);
-//          ((DefaultComboBoxModel)cbSearch.getModel()).removeAllElements();
-//          ((JTextComponent)cbSearch.getEditor().getEditorComponent()).setText("");
         }
       } else {
         // nothing else to do?
@@ -16,15 +16,24 @@
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 
 import org.fife.ui.rsyntaxtextarea.Token;
 import org.fife.ui.rsyntaxtextarea.folding.Fold;
+import org.fife.ui.rsyntaxtextarea.folding.FoldManager;
 import org.infinity.NearInfinity;
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
@@ -38,6 +47,7 @@
 public class ScriptTextArea extends InfinityTextArea
 {
   private ScriptPopupMenu menu = new ScriptPopupMenu();
+  private final CrosslinkIndex crosslinks = new CrosslinkIndex();
 
   public ScriptTextArea() {
     super(true);
@@ -62,6 +72,8 @@ public void mouseReleased(MouseEvent ev) {
         handlePopup(ev);
       }
     });
+
+    crosslinks.attach(getDocument());
   }
 
   @Override
@@ -72,6 +84,16 @@ public void setText(String text)
     discardAllEdits();
   }
 
+  @Override
+  public void setDocument(Document document)
+  {
+    super.setDocument(document);
+    // not yet available when called by the super constructor
+    if (crosslinks != null) {
+      crosslinks.attach(document);
+    }
+  }
+
   // try to paint an indicator below "crosslinks"
   @Override
   protected void paintComponent(Graphics g) {
@@ -88,15 +110,16 @@ protected void paintComponent(Graphics g) {
     } catch (BadLocationException e) { }
     //System.err.println("would consider drawing from lines " + upperLine + " to " + lowerLine);
     for (int line = upperLine; line <= lowerLine; line++) {
+      // crosslinks are only available for lines which have been resolved already
+      int[] linkOffsets = crosslinks.getLinks(line);
+      if (linkOffsets == null || linkOffsets.length == 0 || isLineFolded(line)) {
+        continue;
+      }
+
       try {
         int start = getLineStartOffset(line);
         int end = getLineEndOffset(line) - 1; // newline
 
-        int[][] linkOffsets = findLinksInSection(start, end);
-        if (linkOffsets.length == 0) {
-          continue;
-        }
-
         Graphics2D g2d = (Graphics2D) g;
         // clear that line before doing anything
         Color oldColor = g2d.getColor();
@@ -111,10 +134,10 @@ protected void paintComponent(Graphics g) {
         g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
                                       1, new float[] { 1, 2 }, 0));
         // now underline the crosslinks
-        for (int[] pair : linkOffsets) {
+        for (int i = 0; i + 1 < linkOffsets.length; i += 2) {
           // convert into view coordinates
-          rectStart = modelToView(pair[0]);
-          rectEnd = modelToView(pair[1]);
+          rectStart = modelToView(start + linkOffsets[i]);
+          rectEnd = modelToView(start + linkOffsets[i + 1]);
           g2d.drawLine(rectStart.x, rectStart.y + rectStart.height - 1,
                      rectEnd.x, rectEnd.y + rectEnd.height - 1);
         }
@@ -123,53 +146,43 @@ protected void paintComponent(Graphics g) {
     }
   }
 
-  // looks for "crosslinks" in script lines
-  private int[][] findLinksInSection(int start, int end) throws BadLocationException {
-    ArrayList<int[]> links = new ArrayList<int[]>();
-
-    int startLine = getLineOfOffset(start);
-    int endLine = getLineOfOffset(end);
-    for (int i = startLine; i <= endLine; i++) {
-      // skipping folded lines
-      boolean folded = false;
-      for (int j = 0; j < getFoldManager().getFoldCount(); j++) {
-        Fold fold = getFoldManager().getFold(j);
-        if (fold.isCollapsed() && i >= fold.getStartLine() && i <= fold.getEndLine()) {
-          folded = true;
-          break;
-        }
-      }
-      if (folded) {
-        continue;
-      }
+  // returns whether the line is part of a collapsed fold
+  private boolean isLineFolded(int line) {
+    FoldManager fm = getFoldManager();
+    if (fm.isLineHidden(line)) {
+      return true;
+    }
+    Fold fold = fm.getFoldForLine(line);
+    return (fold != null && fold.isCollapsed());
+  }
 
-      // looking for crosslinks
-      String lineText = getText().substring(getLineStartOffset(i), getLineEndOffset(i));
-      Token token = getTokenListForLine(i);
-      while (token != null && token.getType() != Token.NULL) {
-        if (token.getOffset() >= start && token.getOffset() + token.length() <= end) {
-          if (token.getType() == BCSTokenMaker.TOKEN_STRING && token.length() > 2) {
-            int ofsTokenFromLineStart = token.getOffset() - getLineStartOffset(i);
-            String text = token.getLexeme().substring(1, token.length() - 1);
-            if (findResEntry(lineText, ofsTokenFromLineStart + 1, text) != null) {
-              // add it to our list of crosslinks
-              links.add(new int[]{start + ofsTokenFromLineStart + 1,
-                                  start + ofsTokenFromLineStart + token.length() - 1});
-            }
-          } else if (token.getType() == BCSTokenMaker.TOKEN_SYMBOL_SPELL) {
-            int ofsTokenFromLineStart = token.getOffset() - getLineStartOffset(i);
-            String text = token.getLexeme();
-            if (findResEntry(lineText, ofsTokenFromLineStart + 1, text) != null) {
-              // add it to our list of crosslinks
-              links.add(new int[]{start + ofsTokenFromLineStart,
-                                  start + ofsTokenFromLineStart + token.length()});
-            }
+  // looks for "crosslink" candidates in the specified script line
+  private LineCandidates findCandidates(Element lineElement, int line) throws BadLocationException {
+    int start = lineElement.getStartOffset();
+    int end = lineElement.getEndOffset() - 1; // newline
+    LineCandidates candidates = null;
+
+    Token token = getTokenListForLine(line);
+    while (token != null && token.getType() != Token.NULL) {
+      if (token.getOffset() >= start && token.getOffset() + token.length() <= end) {
+        int ofsTokenFromLineStart = token.getOffset() - start;
+        if (token.getType() == BCSTokenMaker.TOKEN_STRING && token.length() > 2) {
+          if (candidates == null) {
+            candidates = new LineCandidates(line, getDocument().getText(start, lineElement.getEndOffset() - start));
           }
+          candidates.add(ofsTokenFromLineStart + 1, ofsTokenFromLineStart + token.length() - 1,
+                         ofsTokenFromLineStart + 1, token.getLexeme().substring(1, token.length() - 1));
+        } else if (token.getType() == BCSTokenMaker.TOKEN_SYMBOL_SPELL) {
+          if (candidates == null) {
+            candidates = new LineCandidates(line, getDocument().getText(start, lineElement.getEndOffset() - start));
+          }
+          candidates.add(ofsTokenFromLineStart, ofsTokenFromLineStart + token.length(),
+                         ofsTokenFromLineStart + 1, token.getLexeme());
         }
-        token = token.getNextToken();
       }
+      token = token.getNextToken();
     }
-    return links.toArray(new int[0][0]);
+    return candidates;
   }
 
   private void handlePopup(MouseEvent ev) {
@@ -192,7 +205,7 @@ private void handlePopup(MouseEvent ev) {
           }
         }
 
-        ResourceEntry resEntry = findResEntry(line, offset, token);
+        ResourceEntry resEntry = findResEntry(line, offset, token, null);
         menu.setResEntry(resEntry);
 
         if (resEntry != null) {
@@ -227,7 +240,8 @@ else if (invalidChars.indexOf(current) != -1) {
     return line.substring(tokenStart, tokenEnd);
   }
 
-  private ResourceEntry findResEntry(String line, int offset, String token) {
+  // compiler may be null, a new instance is created on demand
+  private ResourceEntry findResEntry(String line, int offset, String token, Compiler bcscomp) {
     // determine function name and param position
     int parenLevel = 0;
     int paramPos = 0;
@@ -278,7 +292,9 @@ else if (current == '(') {
            || function.equalsIgnoreCase("NumDead")
            || function.equalsIgnoreCase("NumDeadGT")
            || function.equalsIgnoreCase("NumDeadLT")))) {
-          Compiler bcscomp = new Compiler();
+          if (bcscomp == null) {
+            bcscomp = new Compiler();
+          }
           if (bcscomp.hasScriptName(token)) {
             Set<ResourceEntry> entries = bcscomp.getResForScriptName(token);
             for (ResourceEntry entry : entries) {
@@ -417,4 +433,235 @@ else if (ev.getSource() == mi_opennew) {
       }
     }
   }
+
+  /**
+   * Caches the crosslinks of all script lines. Lines are resolved in the background whenever
+   * they have been changed, so that painting only needs to read the cached ranges.
+   */
+  private class CrosslinkIndex implements DocumentListener {
+    // max. number of lines to tokenize on the event dispatch thread in one go
+    private static final int MAX_SCAN_LINES = 1024;
+    // max. number of lines to resolve by a single background task
+    private static final int MAX_RESOLVE_LINES = 256;
+
+    private final int[] noLinks = new int[0];
+    // [start, end) pairs of crosslinks relative to the line start, null if not yet resolved
+    private final ArrayList<int[]> lines = new ArrayList<int[]>();
+    private Document document;
+    private int modCount;     // invalidates results of background tasks
+    private boolean scheduled, running;
+
+    /** Starts tracking the specified document. */
+    public synchronized void attach(Document doc) {
+      if (document != null) {
+        document.removeDocumentListener(this);
+      }
+      document = doc;
+      lines.clear();
+      if (document != null) {
+        document.addDocumentListener(this);
+        lines.addAll(Collections.nCopies(document.getDefaultRootElement().getElementCount(), (int[])null));
+      }
+      modCount++;
+      schedule();
+    }
+
+    /** Returns the crosslinks of the specified line, or {@code null} if not yet available. */
+    public synchronized int[] getLinks(int line) {
+      return (line >= 0 && line < lines.size()) ? lines.get(line) : null;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+      update(e);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+      update(e);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+      // syntax highlighting has changed, e.g. by opening or closing a block comment
+      synchronized (this) {
+        Element root = e.getDocument().getDefaultRootElement();
+        int first = root.getElementIndex(e.getOffset());
+        int last = Math.min(root.getElementIndex(e.getOffset() + e.getLength()), lines.size() - 1);
+        for (int i = first; i <= last; i++) {
+          lines.set(i, null);
+        }
+        modCount++;
+        schedule();
+      }
+    }
+
+    private synchronized void update(DocumentEvent e) {
+      Element root = e.getDocument().getDefaultRootElement();
+      DocumentEvent.ElementChange change = e.getChange(root);
+      if (change != null) {
+        // lines have been added or removed
+        int index = change.getIndex();
+        lines.subList(index, Math.min(index + change.getChildrenRemoved().length, lines.size())).clear();
+        lines.addAll(index, Collections.nCopies(change.getChildrenAdded().length, (int[])null));
+      } else {
+        lines.set(root.getElementIndex(e.getOffset()), null);
+      }
+      modCount++;
+      schedule();
+    }
+
+    // Must be called while holding the lock
+    private void schedule() {
+      if (!scheduled && !running) {
+        scheduled = true;
+        SwingUtilities.invokeLater(this::resolveNext);
+      }
+    }
+
+    // Collects crosslink candidates of unresolved lines and resolves them in the background.
+    // Must be called on the event dispatch thread.
+    private void resolveNext() {
+      final Document doc;
+      synchronized (this) {
+        scheduled = false;
+        doc = document;
+        if (doc == null || running) {
+          return;
+        }
+      }
+
+      // unresolved lines in the visible area take precedence
+      int firstLine = 0;
+      try {
+        firstLine = getLineOfOffset(viewToModel(getVisibleRect().getLocation()));
+      } catch (BadLocationException e) { }
+      final int startLine = firstLine;
+
+      final ArrayList<LineCandidates> pending = new ArrayList<LineCandidates>();
+      final int[] stamp = new int[1];
+      doc.render(() -> {
+        synchronized (this) {
+          Element root = doc.getDefaultRootElement();
+          int count = Math.min(lines.size(), root.getElementCount());
+          if (count == 0) {
+            return;
+          }
+          int scanned = 0;
+          for (int i = 0; i < count && scanned < MAX_SCAN_LINES && pending.size() < MAX_RESOLVE_LINES; i++) {
+            int line = (startLine + i) % count;
+            if (lines.get(line) == null) {
+              scanned++;
+              LineCandidates candidates = null;
+              try {
+                candidates = findCandidates(root.getElement(line), line);
+              } catch (BadLocationException e) { }
+              if (candidates != null) {
+                pending.add(candidates);
+              } else {
+                lines.set(line, noLinks);
+              }
+            }
+          }
+          if (pending.isEmpty()) {
+            if (scanned > 0) {
+              schedule();
+            }
+            return;
+          }
+          running = true;
+          stamp[0] = modCount;
+        }
+      });
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      new SwingWorker<List<int[]>, Void>() {
+        @Override
+        protected List<int[]> doInBackground() {
+          ArrayList<int[]> result = new ArrayList<int[]>(pending.size());
+          // shared by all lines, initializing a compiler is expensive
+          Compiler bcscomp = new Compiler();
+          for (final LineCandidates candidates : pending) {
+            result.add(candidates.resolve(bcscomp));
+          }
+          return result;
+        }
+
+        @Override
+        protected void done() {
+          List<int[]> result = null;
+          try {
+            result = get();
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+          int firstDirty = Integer.MAX_VALUE, lastDirty = -1;
+          synchronized (CrosslinkIndex.this) {
+            running = false;
+            // results are discarded if the document has been changed in the meantime
+            if (stamp[0] == modCount && doc == document) {
+              for (int i = 0; i < pending.size(); i++) {
+                int line = pending.get(i).line;
+                int[] links = (result != null) ? result.get(i) : noLinks;
+                lines.set(line, links);
+                if (links.length > 0) {
+                  firstDirty = Math.min(firstDirty, line);
+                  lastDirty = Math.max(lastDirty, line);
+                }
+              }
+            }
+            schedule();
+          }
+          if (lastDirty >= 0) {
+            repaintLines(firstDirty, lastDirty);
+          }
+        }
+      }.execute();
+    }
+
+    private void repaintLines(int firstLine, int lastLine) {
+      try {
+        Rectangle r1 = modelToView(getLineStartOffset(firstLine));
+        Rectangle r2 = modelToView(getLineStartOffset(lastLine));
+        if (r1 != null && r2 != null) {
+          repaint(0, r1.y, getWidth(), r2.y + r2.height - r1.y);
+        }
+      } catch (BadLocationException e) { }
+    }
+  }
+
+  // Crosslink candidates of a single script line
+  private final class LineCandidates {
+    private final int line;
+    private final String text;
+    // [start, end, offset] of each candidate
+    private final ArrayList<int[]> ranges = new ArrayList<int[]>();
+    private final ArrayList<String> tokens = new ArrayList<String>();
+
+    LineCandidates(int line, String text) {
+      this.line = line;
+      this.text = text;
+    }
+
+    void add(int start, int end, int offset, String token) {
+      ranges.add(new int[]{start, end, offset});
+      tokens.add(token);
+    }
+
+    // returns [start, end) pairs of all candidates which refer to existing resources
+    int[] resolve(Compiler bcscomp) {
+      int[] links = new int[ranges.size() * 2];
+      int count = 0;
+      for (int i = 0; i < ranges.size(); i++) {
+        int[] range = ranges.get(i);
+        if (findResEntry(text, range[2], tokens.get(i), bcscomp) != null) {
+          links[count++] = range[0];
+          links[count++] = range[1];
+        }
+      }
+      return (count < links.length) ? Arrays.copyOf(links, count) : links;
+    }
+  }
 }
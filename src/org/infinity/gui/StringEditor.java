@@ -24,6 +24,7 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -54,15 +55,17 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
+import org.infinity.search.IndexedSearchClient;
 import org.infinity.search.SearchClient;
 import org.infinity.search.SearchMaster;
 import org.infinity.search.StringReferenceSearcher;
+import org.infinity.util.StringIndex;
 import org.infinity.util.StringResource;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
-public final class StringEditor extends ChildFrame implements ActionListener, ListSelectionListener, SearchClient,
-                                                              ChangeListener, ItemListener
+public final class StringEditor extends ChildFrame implements ActionListener, ListSelectionListener,
+                                                              IndexedSearchClient, ChangeListener, ItemListener
 {
   private static final String s_flags[] = { "None", "Has text", "Has sound", "Has token" };
   private static String signature, version;
@@ -86,6 +89,8 @@ public final class StringEditor extends ChildFrame implements ActionListener, Li
   private final JTextField tstrref = new JTextField(5);
   private final StringEditor editor;
   private final java.util.List<StringEntry> added_entries = new ArrayList<StringEntry>();
+  // Strrefs of strings which have been modified since the file has been read or saved
+  private final BitSet edited_entries = new BitSet();
   private DecNumber entries_count, entries_offset;
   private Editable editable;
   private StringEntry entries[];
@@ -317,7 +322,7 @@ else if (selected instanceof InlineEditable) {
 // --------------------- End Interface ListSelectionListener ---------------------
 
 
-// --------------------- Begin Interface SearchClient ---------------------
+// --------------------- Begin Interface IndexedSearchClient ---------------------
 
   @Override
   public String getText(int index)
@@ -338,7 +343,30 @@ public void hitFound(int index)
     showEntry(index);
   }
 
-// --------------------- End Interface SearchClient ---------------------
+  @Override
+  public int[] getCandidates(String text)
+  {
+    // the index covers the file content, modified strings have to be checked separately
+    StringIndex index = StringIndex.get(stringPath);
+    int[] candidates = (index != null) ? index.findCandidates(text, false) : null;
+    if (candidates == null) {
+      return null;
+    }
+    BitSet result = new BitSet();
+    for (final int strref : candidates) {
+      result.set(strref);
+    }
+    synchronized (edited_entries) {
+      result.or(edited_entries);
+    }
+    int count = entries_count.getValue();
+    if (result.length() > count) {
+      result.clear(count, result.length());
+    }
+    return result.stream().toArray();
+  }
+
+// --------------------- End Interface IndexedSearchClient ---------------------
 
   public Path getPath()
   {
@@ -385,6 +413,9 @@ private int addEntry(StringEntry entry)
     entries_count.incValue(1);
     slider.setMaximum(entries_count.getValue() - 1);
     entries_offset.incValue(entry_size);
+    synchronized (edited_entries) {
+      edited_entries.set(entries_count.getValue() - 1);
+    }
     return entries_count.getValue() - 1;
   }
 
@@ -404,11 +435,18 @@ private void deleteLastEntry()
 
   private void updateEntry(int index)
   {
+    StringEntry entry;
     if (index < entries.length) {
-      entries[index].setString(tatext.getText());
+      entry = entries[index];
     } else {
-      StringEntry entry = added_entries.get(index - entries.length);
-      entry.setString(tatext.getText());
+      entry = added_entries.get(index - entries.length);
+    }
+    String text = tatext.getText();
+    if (!text.equals(entry.string)) {
+      entry.setString(text);
+      synchronized (edited_entries) {
+        edited_entries.set(index);
+      }
     }
   }
 
@@ -426,6 +464,9 @@ public void run()
     {
       Charset charset = StringResource.getCharset();
       ProgressMonitor progress = null;
+      synchronized (edited_entries) {
+        edited_entries.clear();
+      }
       try (InputStream is = StreamUtils.getInputStream(stringPath)) {
         signature = StreamUtils.readString(is, 4);
         version = StreamUtils.readString(is, 4);
@@ -667,6 +708,24 @@ public void run()
           progress = null;
         }
       }
+
+      if (outFile.equals(stringPath)) {
+        // keep string index in sync with the modified strings
+        java.util.List<String> strings = new ArrayList<String>(entries.length + added_entries.size());
+        for (final StringEntry entry : entries) {
+          if (entry != null) {
+            strings.add(entry.string);
+          }
+        }
+        for (int i = 0; i < added_entries.size(); i++) {
+          strings.add(added_entries.get(i).string);
+        }
+        synchronized (edited_entries) {
+          StringIndex.update(outFile, strings.toArray(new String[strings.size()]), edited_entries);
+          edited_entries.clear();
+        }
+      }
+
       JOptionPane.showMessageDialog(editor, "File written successfully",
                                     "Save complete", JOptionPane.INFORMATION_MESSAGE);
       bsave.setEnabled(true);
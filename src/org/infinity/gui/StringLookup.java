@@ -15,11 +15,12 @@
 import org.infinity.NearInfinity;
 import org.infinity.datatype.StringRef;
 import org.infinity.icon.Icons;
-import org.infinity.search.SearchClient;
+import org.infinity.search.IndexedSearchClient;
 import org.infinity.search.SearchMaster;
+import org.infinity.util.StringIndex;
 import org.infinity.util.StringResource;
 
-final class StringLookup extends ChildFrame implements SearchClient
+final class StringLookup extends ChildFrame implements IndexedSearchClient
 {
   private final StringRef strref;
 
@@ -53,9 +54,12 @@ final class StringLookup extends ChildFrame implements SearchClient
 
     setSize(540, 350);
     Center.center(this, NearInfinity.getInstance().getBounds());
+
+    // prepare string index in the background
+    StringIndex.get(StringResource.getPath());
   }
 
-// --------------------- Begin Interface SearchClient ---------------------
+// --------------------- Begin Interface IndexedSearchClient ---------------------
 
   @Override
   public String getText(int index)
@@ -71,6 +75,13 @@ public void hitFound(int index)
     strref.setValue(index);
   }
 
-// --------------------- End Interface SearchClient ---------------------
+  @Override
+  public int[] getCandidates(String text)
+  {
+    StringIndex index = StringIndex.get(StringResource.getPath());
+    return (index != null) ? index.findCandidates(text, false) : null;
+  }
+
+// --------------------- End Interface IndexedSearchClient ---------------------
 }
 
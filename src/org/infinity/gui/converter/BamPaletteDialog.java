@@ -21,10 +21,8 @@
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 
 import javax.swing.AbstractAction;
@@ -48,6 +46,7 @@
 import org.infinity.gui.ViewerUtil;
 import org.infinity.icon.Icons;
 import org.infinity.resource.graphics.ColorConvert;
+import org.infinity.resource.graphics.ColorQuantizer;
 import org.infinity.resource.graphics.PseudoBamDecoder.PseudoBamFrameEntry;
 import org.infinity.util.io.StreamUtils;
 
@@ -66,8 +65,6 @@ class BamPaletteDialog extends JDialog
   private static final String FmtInfoRGB    = "%1$d  %2$d  %3$d";
   private static final String FmtInfoHexRGB = "#%1$02X%2$02X%3$02X";
 
-  // Stores all available color values of the current BAM and their number of occurence for faster palette creation
-  private final LinkedHashMap<Integer, Integer> colorMap = new LinkedHashMap<Integer, Integer>();
   private final int[][] palettes = new int[2][];
 
   private ConvertToBam converter;
@@ -120,7 +117,6 @@ public void clear()
     currentPaletteType = TYPE_GENERATED;
     hasExternalPalette = false;
     lockedPalette = false;
-    colorMap.clear();
     cbLockPalette.setEnabled(true);
     cbLockPalette.setSelected(lockedPalette);
     miPaletteClear.setEnabled(false);
@@ -142,12 +138,6 @@ public int getRleIndex()
     return rleIndex;
   }
 
-  /** Returns the global color map for the current BAM structure. */
-  public HashMap<Integer, Integer> getColorMap()
-  {
-    return colorMap;
-  }
-
   /** Indicates whether to prevent updating the current palette automatically. */
   public boolean isPaletteLocked()
   {
@@ -318,61 +308,52 @@ public void setPaletteModified()
   public void updateGeneratedPalette()
   {
     if (isPaletteModified() && !lockedPalette) {
-      if (colorMap.size() <= 256) {
-        // checking whether all frames share the same palette
-        boolean sharedPalette = true;
-        List<PseudoBamFrameEntry> listFrames =
-            getConverter().getBamDecoder(ConvertToBam.BAM_ORIGINAL).getFramesList();
-        int[] palette = null;
-        int[] tmpPalette = new int[256];
-        for (int i = 0; i < listFrames.size(); i++) {
-          BufferedImage image = listFrames.get(i).getFrame();
-          if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
-            IndexColorModel cm = (IndexColorModel)image.getColorModel();
-            if (palette == null) {
-              palette = new int[256];
-              cm.getRGBs(palette);
-            } else {
-              cm.getRGBs(tmpPalette);
-              if (!Arrays.equals(palette, tmpPalette)) {
-                sharedPalette = false;
-                break;
-              }
-            }
+      // checking whether all frames share the same palette
+      boolean sharedPalette = true;
+      List<PseudoBamFrameEntry> listFrames =
+          getConverter().getBamDecoder(ConvertToBam.BAM_ORIGINAL).getFramesList();
+      int[] palette = null;
+      int[] tmpPalette = new int[256];
+      for (int i = 0; i < listFrames.size(); i++) {
+        BufferedImage image = listFrames.get(i).getFrame();
+        if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+          IndexColorModel cm = (IndexColorModel)image.getColorModel();
+          if (palette == null) {
+            palette = new int[256];
+            cm.getRGBs(palette);
           } else {
-            sharedPalette = false;
-            break;
+            cm.getRGBs(tmpPalette);
+            if (!Arrays.equals(palette, tmpPalette)) {
+              sharedPalette = false;
+              break;
+            }
           }
+        } else {
+          sharedPalette = false;
+          break;
         }
-        tmpPalette = null;
+      }
+      tmpPalette = null;
 
-        if (sharedPalette) {
-          // using shared palette as is
-          for (int i = 0; i < palette.length; i++) {
-            palettes[TYPE_GENERATED][i] = palette[i];
-          }
-        } else {
-          // creating palette directly from color map without reduction
-          Iterator<Integer> iter = colorMap.keySet().iterator();
-          int idx = 0;
-          while (idx < 256 && iter.hasNext()) {
-            palettes[TYPE_GENERATED][idx] = iter.next();
-            idx++;
-          }
-          for (; idx < 256; idx++) {
-            palettes[TYPE_GENERATED][idx] = 0;
-          }
+      if (sharedPalette && palette != null) {
+        // using shared palette as is
+        for (int i = 0; i < palette.length; i++) {
+          palettes[TYPE_GENERATED][i] = palette[i];
         }
       } else {
-        // reducing color count to max. 256
-        int[] pixels = new int[colorMap.size()];
-        Iterator<Integer> iter = colorMap.keySet().iterator();
-        int idx = 0;
-        while (idx < pixels.length && iter.hasNext()) {
-          pixels[idx] = iter.next();
-          idx++;
+        // collecting colors of all frames in parallel, weighted by pixel count
+        List<BufferedImage> frames = new ArrayList<BufferedImage>(listFrames.size());
+        for (int i = 0; i < listFrames.size(); i++) {
+          frames.add(listFrames.get(i).getFrame());
         }
-        ColorConvert.medianCut(pixels, 256, palettes[TYPE_GENERATED], true);
+        ColorQuantizer.Histogram histogram = ColorQuantizer.createHistogram(frames, false);
+
+        // transparent pixels are not counted, the transparent color is always available
+        histogram.remove(0x0000ff00);
+        int[] colors = new int[255];
+        ColorQuantizer.medianCut(histogram, colors.length, colors);
+        palettes[TYPE_GENERATED][0] = 0x0000ff00;
+        System.arraycopy(colors, 0, palettes[TYPE_GENERATED], 1, colors.length);
       }
 
       // moving special "green" to the first index
@@ -101,6 +101,7 @@
 import org.infinity.resource.graphics.BamV1Decoder;
 import org.infinity.resource.graphics.ColorConvert;
 import org.infinity.resource.graphics.DxtEncoder;
+import org.infinity.resource.graphics.PaletteLookup;
 import org.infinity.resource.graphics.PseudoBamDecoder;
 import org.infinity.resource.graphics.BamDecoder.BamControl;
 import org.infinity.resource.graphics.PseudoBamDecoder.PseudoBamControl;
@@ -4005,12 +4006,10 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
         if (transIndex < 0) {
           transIndex = 0;
         }
-        int[] hclPalette = new int[palette.length];
-        ColorConvert.toHclPalette(palette, hclPalette);
-        HashMap<Integer, Byte> colorCache = new HashMap<Integer, Byte>(4096);
+        PaletteLookup lookup = new PaletteLookup(palette);
         for (int i = 0; i < palette.length; i++) {
           if (i != transIndex) {
-            colorCache.put(Integer.valueOf(palette[i]), Byte.valueOf((byte)i));
+            lookup.setColor(palette[i], i);
           }
         }
 
@@ -4030,18 +4029,7 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
             if (PseudoBamDecoder.isTransparentColor(c, threshold)) {
               dstBuf[ofs] = (byte)transIndex;
             } else {
-              c &= 0x00ffffff;
-              Byte colIdx = colorCache.get(Integer.valueOf(c));
-              if (colIdx != null) {
-                int ci = colIdx.intValue() & 0xff;
-                if (ci >= transIndex) ci++;
-                dstBuf[ofs] = colIdx.byteValue();//(byte)ci;
-              } else {
-                byte color = (byte)ColorConvert.nearestColor(srcBuf[ofs], hclPalette);
-                //int ci = (color < transIndex) ? color : (color + 1);
-                dstBuf[ofs] = color;//(byte)ci;
-                colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
-              }
+              dstBuf[ofs] = (byte)lookup.nearestColor(c);
             }
           }
           srcBuf = null;
@@ -4104,12 +4092,10 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
         if (transIndex < 0) {
           transIndex = 0;
         }
-        int[] hclPalette = new int[palette.length];
-        ColorConvert.toHclPalette(palette, hclPalette);
-        HashMap<Integer, Byte> colorCache = new HashMap<Integer, Byte>(4096);
+        PaletteLookup lookup = new PaletteLookup(palette);
         for (int i = 0; i < palette.length; i++) {
           if (i != transIndex) {
-            colorCache.put(Integer.valueOf(palette[i]), Byte.valueOf((byte)i));
+            lookup.setColor(palette[i], i);
           }
         }
         IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, false, transIndex, DataBuffer.TYPE_BYTE);
@@ -4126,18 +4112,7 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
           if (PseudoBamDecoder.isTransparentColor(c, threshold)) {
             dstBuf[ofs] = (byte)transIndex;
           } else {
-            c &= 0x00ffffff;
-            Byte colIdx = colorCache.get(Integer.valueOf(c));
-            if (colIdx != null) {
-              int ci = colIdx.intValue() & 0xff;
-              if (ci >= transIndex) ci++;
-              dstBuf[ofs] = colIdx.byteValue();//(byte)ci;
-            } else {
-              byte color = (byte)ColorConvert.nearestColor(srcBuf[ofs], hclPalette);
-              //int ci = (color < transIndex) ? color : (color + 1);
-              dstBuf[ofs] = color;//(byte)ci;
-              colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
-            }
+            dstBuf[ofs] = (byte)lookup.nearestColor(c);
           }
         }
         srcBuf = null;
@@ -4319,16 +4294,11 @@ public void insert(int pos, BufferedImage[] images, Point[] centers)
     {
       if (images != null && pos >= 0 && pos <= getDecoder().frameCount()) {
         int count = 0;
-        PseudoBamControl control = getDecoder().createControl();
-        control.setMode(BamDecoder.BamControl.Mode.INDIVIDUAL);
         for (int i = 0; i < images.length; i++) {
           if (images[i] != null) {
             // adding frame to global list
             Point center = (centers.length > i && centers[i] != null) ? centers[i] : null;
             getDecoder().frameInsert(pos+i, images[i], center);
-            // registering colors values in global HashMap
-            BufferedImage image = ColorConvert.toBufferedImage(images[i], true, false);
-            PseudoBamDecoder.registerColors(getConverter().paletteDialog.getColorMap(), image);
             getConverter().paletteDialog.setPaletteModified();
             count++;
           }
@@ -4358,14 +4328,7 @@ public void remove(int pos, int count)
         if (pos + count > getDecoder().frameCount()) {
           count = getDecoder().frameCount() - pos;
         }
-        PseudoBamControl control = getDecoder().createControl();
-        control.setMode(BamDecoder.BamControl.Mode.INDIVIDUAL);
-        // unregistering color values in global color map
-        for (int i = 0; i < count; i++) {
-          BufferedImage image = ColorConvert.toBufferedImage(getDecoder().frameGet(control, pos+i), true, false);
-          PseudoBamDecoder.unregisterColors(getConverter().paletteDialog.getColorMap(), image);
-          getConverter().paletteDialog.setPaletteModified();
-        }
+        getConverter().paletteDialog.setPaletteModified();
         getDecoder().frameRemove(pos, count);
         fireIntervalRemoved(this, pos, pos+count-1);
       }
@@ -4380,8 +4343,6 @@ public void clear()
       count = getDecoder().frameCount();
       PseudoBamControl control = getDecoder().createControl();
       control.setMode(BamDecoder.BamControl.Mode.INDIVIDUAL);
-      // clearing global color map
-      getConverter().paletteDialog.getColorMap().clear();
       getConverter().paletteDialog.setPaletteModified();
       getDecoder().frameClear();
       if (count > 0) {
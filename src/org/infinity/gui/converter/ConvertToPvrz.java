@@ -58,6 +58,9 @@ public class ConvertToPvrz extends ChildFrame implements ActionListener, Propert
 {
   private static String currentDir = Profile.getGameRoot().toString();
 
+  // Number of DXT blocks encoded between progress updates
+  private static final int BAND_BLOCKS = 4096;
+
   private JList<Path> lInputList;
   private SimpleListModel<Path> lInputModel;
   private JButton bConvert, bCancel;
@@ -527,7 +530,7 @@ private List<String> convert()
 
     // preparing progress meter
     final String note = "Converting file %1$d / %2$d";
-    int progressIndex = 0, progressInc = 1;
+    int progressIndex = 0;
     int progressMax = isSingle ? 100 : inputFiles.length;
     progress = new ProgressMonitor(this, "Converting PVRZ...",
                                    isSingle ? null : String.format(note, 0, progressMax),
@@ -541,7 +544,7 @@ private List<String> convert()
       progress.setProgress(progressIndex);
       if (!isSingle) {
         progress.setNote(String.format(note, progressIndex+1, progressMax));
-        progressIndex += progressInc;
+        progressIndex++;
       }
       Path inFile = inputFiles[fileIdx];
       if (isValidInput(inFile)) {
@@ -624,60 +627,36 @@ private List<String> convert()
             header = createPVRHeader(w, h, 7);
         }
 
-        // encoding block by block
+        // encoding bands of block rows (each band is encoded in parallel)
         int outSize = DxtEncoder.calcImageSize(w, h, dxtType);
         byte[] output = new byte[outSize];
-        int outOfs = 0;
         int bw = w / 4;
         int bh = h / 4;
-        int[] inBlock = new int[16];
-        byte[] outBlock = new byte[DxtEncoder.calcBlockSize(dxtType)];
-        // more initialization for progress meter
-        int counter = 0;
-        if (isSingle) {
-          progressInc = (bw*bh / 100);
-          if (progressInc == 0) {
-            progress.setMaximum(bw*bh + 1);
-            progressInc = 1;
+        int blockSize = DxtEncoder.calcBlockSize(dxtType);
+        int bandRows = Math.max(1, Math.min(bh, BAND_BLOCKS / bw));
+        for (int y = 0; y < bh; y += bandRows) {
+          // handling progress meter
+          if (isSingle) {
+            progressIndex = y * progressMax / bh;
           }
-        }
-        for (int y = 0; y < bh; y++) {
-          if (!isSingle) {
-            // force the progress meter to pop up
-            progress.setProgress(progressIndex);
+          progress.setProgress(progressIndex);
+          if (progress.isCanceled()) {
+            progress.close();
+            progress = null;
+            List<String> l = new Vector<String>(2);
+            l.add(null);
+            l.add("Conversion cancelled.");
+            return l;
           }
-          for (int x = 0; x < bw; x++) {
-            // handling progress meter
-            if (isSingle) {
-              if (counter >= progressInc) {
-                counter = 0;
-                progressIndex++;
-                progress.setProgress(progressIndex);
-              }
-              counter++;
-            }
-            if (progress.isCanceled()) {
-              progress.close();
-              progress = null;
-              List<String> l = new Vector<String>(2);
-              l.add(null);
-              l.add("Conversion cancelled.");
-              return l;
-            }
 
-            // starting encoding process
-            int ofs = y*w*4 + x*4;
-            for (int i = 0; i < 4; i++, ofs+=w) {
-              System.arraycopy(pixels, ofs, inBlock, i*4, 4);
-            }
-            try {
-              DxtEncoder.encodeBlock(inBlock, outBlock, dxtType);
-            } catch (Exception e) {
-              warnings++;
-              Arrays.fill(outBlock, (byte)0);
-            }
-            System.arraycopy(outBlock, 0, output, outOfs, outBlock.length);
-            outOfs += outBlock.length;
+          // starting encoding process
+          int rows = Math.min(bandRows, bh - y);
+          int outOfs = y*bw*blockSize;
+          try {
+            DxtEncoder.encodeImage(pixels, y*w*4, w, rows*4, output, outOfs, dxtType);
+          } catch (Exception e) {
+            warnings++;
+            Arrays.fill(output, outOfs, outOfs + rows*bw*blockSize, (byte)0);
           }
         }
 
@@ -699,8 +678,6 @@ private List<String> convert()
         srcImg = null;
         output = null;
         pvrz = null;
-        inBlock = null;
-        outBlock = null;
         header = null;
       } else {
         warnings++;
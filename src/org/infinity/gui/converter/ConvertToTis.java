@@ -55,11 +55,12 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.Profile;
 import org.infinity.resource.graphics.ColorConvert;
+import org.infinity.resource.graphics.ColorQuantizer;
 import org.infinity.resource.graphics.Compressor;
 import org.infinity.resource.graphics.DxtEncoder;
+import org.infinity.resource.graphics.PaletteLookup;
 import org.infinity.util.BinPack2D;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
@@ -135,7 +136,7 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
 
     int[] srcBlock = new int[64*64];      // temp. storage for a single tile
     int[] palette = new int[255];         // temp. storage for generated palette
-    int[] hclPalette = new int[255];      // needed for finding nearest color
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();  // reused for each tile
     byte[] tilePalette = new byte[1024];  // final palette for output
     byte[] tileData = new byte[64*64];    // final tile data for output
     int tw = img.getWidth() / 64;         // tiles per row
@@ -150,7 +151,6 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
         progress.setMillisToPopup(0);
       }
 
-      IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(2048);   // caching RGBColor -> index
       for (int tileIdx = 0; tileIdx < tileCount; tileIdx++) {
         if (showProgress) {
           if (progress.isCanceled()) {
@@ -168,9 +168,6 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
         int tx = tileIdx % tw;
         int ty = tileIdx / tw;
 
-        // resetting color cache
-        colorCache.clear();
-
         // initializing source tile
         int inOfs = ty*64*img.getWidth() + tx*64;
         for (int i = 0, outOfs = 0; i < 64; i++, inOfs += img.getWidth(), outOfs += 64) {
@@ -178,8 +175,10 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
         }
 
         // reducing colors
-        if (ColorConvert.medianCut(srcBlock, 255, palette, false)) {
-          ColorConvert.toHclPalette(palette, hclPalette);
+        histogram.clear();
+        histogram.add(srcBlock, false);
+        if (ColorQuantizer.medianCut(histogram, 255, palette)) {
+          PaletteLookup lookup = new PaletteLookup(palette);
 
           // filling palette and color cache, index 0 denotes transparency
           tilePalette[0] = tilePalette[2] = tilePalette[3] = 0; tilePalette[1] = (byte)255;
@@ -188,7 +187,7 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
             tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
             tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
             tilePalette[(i << 2) + 3] = 0;
-            colorCache.put(palette[i - 1], (byte)(i - 1));
+            lookup.setColor(palette[i - 1], i - 1);
           }
 
           // processing pixel data
@@ -196,14 +195,7 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
             if ((srcBlock[i] & 0xff000000) == 0) {
               tileData[i] = 0;
             } else {
-              Byte palIndex = colorCache.get(srcBlock[i]);
-              if (palIndex != null) {
-                tileData[i] = (byte)(palIndex + 1);
-              } else {
-                byte color = (byte)ColorConvert.nearestColor(srcBlock[i], hclPalette);
-                tileData[i] = (byte)(color + 1);
-                colorCache.put(srcBlock[i], color);
-              }
+              tileData[i] = (byte)(lookup.nearestColor(srcBlock[i]) + 1);
             }
           }
         } else {
@@ -16,6 +16,7 @@
 import org.infinity.resource.Closeable;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Misc;
+import org.infinity.util.io.StreamUtils;
 
 import tv.porst.jhexview.DataChangedEvent;
 import tv.porst.jhexview.HexViewEvent;
@@ -45,7 +46,7 @@ public GenericHexViewer()
 
   public GenericHexViewer(ResourceEntry entry) throws Exception
   {
-    this(entry.getResourceBuffer().array());
+    this(StreamUtils.toArray(entry.getResourceBuffer()));
   }
 
   public GenericHexViewer(byte[] data)
@@ -0,0 +1,147 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Memory-sensitive cache of parsed resources, shared by searches and checks.
+ * <p>
+ * Cached resources are shared between threads and tools and must be treated as read-only.
+ * Resources which are shown in a viewer or may be modified have to be requested
+ * by {@link ResourceFactory#getResource(ResourceEntry)} instead.
+ */
+public final class ResourceCache
+{
+  // Max. number of cached resources
+  private static final int MAX_ENTRIES = 4096;
+
+  private static final Map<Key, CacheEntry> cache = new LinkedHashMap<Key, CacheEntry>(256, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest)
+    {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  /**
+   * Returns the parsed resource of the specified entry. The resource is parsed if it is not
+   * cached or if its source file has been modified since.
+   * @return The resource, or {@code null} on error.
+   */
+  public static Resource get(ResourceEntry entry)
+  {
+    if (entry == null) {
+      return null;
+    }
+
+    Key key = new Key(entry);
+    Path path = entry.getActualPath();
+    BasicFileAttributes attr = getAttributes(path);
+    synchronized (cache) {
+      CacheEntry ce = cache.get(key);
+      if (ce != null) {
+        Resource res = ce.resource.get();
+        if (res != null && ce.isValid(path, attr)) {
+          return res;
+        }
+        cache.remove(key);
+      }
+    }
+
+    Resource res = ResourceFactory.getResource(entry);
+    if (res != null && attr != null) {
+      synchronized (cache) {
+        cache.put(key, new CacheEntry(res, path, attr));
+      }
+    }
+    return res;
+  }
+
+  /** Removes the specified resource from the cache. */
+  public static void cacheInvalid(ResourceEntry entry)
+  {
+    if (entry != null) {
+      synchronized (cache) {
+        cache.remove(new Key(entry));
+      }
+    }
+  }
+
+  public static void clearCache()
+  {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  private static BasicFileAttributes getAttributes(Path path)
+  {
+    try {
+      return (path != null) ? Files.readAttributes(path, BasicFileAttributes.class) : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private ResourceCache() {}
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Identifies resource entries by instance since different entries may share the same name
+  private static final class Key
+  {
+    private final ResourceEntry entry;
+
+    public Key(ResourceEntry entry)
+    {
+      this.entry = entry;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(entry);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      return (o instanceof Key) && ((Key)o).entry == entry;
+    }
+  }
+
+  private static final class CacheEntry
+  {
+    private final SoftReference<Resource> resource;
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+
+    public CacheEntry(Resource resource, Path path, BasicFileAttributes attr)
+    {
+      this.resource = new SoftReference<>(resource);
+      this.path = path;
+      this.lastModified = attr.lastModifiedTime().toMillis();
+      this.size = attr.size();
+    }
+
+    // Returns whether the resource location is unchanged
+    public boolean isValid(Path path, BasicFileAttributes attr)
+    {
+      return (attr != null && this.path.equals(path) &&
+              attr.lastModifiedTime().toMillis() == lastModified && attr.size() == size);
+    }
+  }
+}
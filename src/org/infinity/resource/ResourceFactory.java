@@ -54,6 +54,8 @@
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.Keyfile;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.key.ResourceIndex;
+import org.infinity.resource.key.ResourceNameIndex;
 import org.infinity.resource.key.ResourceTreeFolder;
 import org.infinity.resource.key.ResourceTreeModel;
 import org.infinity.resource.mus.MusResource;
@@ -78,6 +80,7 @@
 import org.infinity.resource.video.WbmResource;
 import org.infinity.resource.wed.WedResource;
 import org.infinity.resource.wmp.WmpResource;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.util.StaticSimpleXorDecryptor;
 import org.infinity.util.DynamicArray;
 import org.infinity.util.IdsMapCache;
@@ -97,6 +100,14 @@
   private Keyfile keyfile;
   private ResourceTreeModel treeModel;
 
+  private ResourceWatcher watcher;
+
+  // name index of getResources(), valid for the given tree model state
+  private ResourceNameIndex nameIndex;
+  private ResourceTreeModel nameIndexModel;
+  private int nameIndexModCount;
+  private boolean nameIndexOverrides;
+
   public static Keyfile getKeyfile()
   {
     if (getInstance() != null) {
@@ -498,6 +509,19 @@ public static List<ResourceEntry> getResources()
     }
   }
 
+  /**
+   * Returns a name index of all resources returned by {@link #getResources()}. The index is
+   * created on first access and reused until the resource tree is modified.
+   */
+  public static ResourceNameIndex getResourceNameIndex()
+  {
+    if (getInstance() != null) {
+      return getInstance().getResourceNameIndexInternal();
+    } else {
+      return null;
+    }
+  }
+
   /**
    * Returns all available resources from BIFFs, override and specified extra directories.
    * @param extraDirs List of extra directories to search. Specify {@code null} to search default
@@ -538,6 +562,20 @@ public static List<ResourceEntry> getResources(Pattern pattern, List<Path> extra
     }
   }
 
+  /**
+   * Returns whether changes in override folders are tracked by the file system. In this case
+   * the override state of BIFF resources is kept up to date automatically.
+   */
+  public static boolean isWatchingOverrides()
+  {
+    if (getInstance() != null) {
+      ResourceWatcher watcher = getInstance().watcher;
+      return (watcher != null && watcher.isWatchingOverrides());
+    } else {
+      return false;
+    }
+  }
+
   public static void loadResources() throws Exception
   {
     if (getInstance() != null) {
@@ -825,7 +863,15 @@ private ResourceFactory(Path keyFile)
   // Cleans up resources
   private void close()
   {
-    // nothing to do yet...
+    stopWatcher();
+  }
+
+  private void stopWatcher()
+  {
+    if (watcher != null) {
+      watcher.close();
+      watcher = null;
+    }
   }
 
   private void exportResourceInternal(ResourceEntry entry, Component parent, Path output) throws Exception
@@ -898,7 +944,11 @@ private void exportResourceInternal(ResourceEntry entry, ByteBuffer buffer, Stri
 
   private void loadResourcesInternal() throws Exception
   {
+    stopWatcher();
     treeModel = new ResourceTreeModel();
+    ResourceIndex.load();
+    ReferenceIndex.clearCache();
+    ResourceCache.clearCache();
 
     // Get resources from keyfile
     NearInfinity.advanceProgress("Loading BIFF resources...");
@@ -915,31 +965,71 @@ private void loadResourcesInternal() throws Exception
     });
 
     NearInfinity.advanceProgress("Loading override resources...");
-    final boolean overrideInOverride = (BrowserMenuBar.getInstance() != null &&
-                                        BrowserMenuBar.getInstance().getOverrideMode() == BrowserMenuBar.OVERRIDE_IN_OVERRIDE);
-    String overrideFolder = Profile.getOverrideFolderName();
     List<Path> overridePaths = Profile.getOverrideFolders(false);
     for (final Path overridePath: overridePaths) {
       if (Files.isDirectory(overridePath)) {
-        try (DirectoryStream<Path> dstream = Files.newDirectoryStream(overridePath)) {
-          dstream.forEach((path) -> {
-            if (Files.isRegularFile(path)) {
-              ResourceEntry entry = getResourceEntry(path.getFileName().toString());
-              if (entry instanceof FileResourceEntry) {
-                treeModel.addResourceEntry(entry, entry.getTreeFolder(), true);
-              } else if (entry instanceof BIFFResourceEntry) {
-                ((BIFFResourceEntry)entry).setOverride(true);
-                if (overrideInOverride) {
-                  treeModel.removeResourceEntry(entry, entry.getExtension());
-                  treeModel.addResourceEntry(new FileResourceEntry(path, true), overrideFolder, true);
-                }
-              }
-            }
-          });
-        }
+        ResourceIndex.getDirectoryContent(overridePath).forEach((info) -> {
+          if (info.isRegularFile()) {
+            addOverrideFile(info.getPath(overridePath));
+          }
+        });
       }
     }
     treeModel.sort();
+    ResourceIndex.save();
+
+    // keeping track of changes in override and extra folders
+    watcher = ResourceWatcher.start(this, overridePaths, extraPaths);
+  }
+
+  /** Adds the specified override file to the resource tree. */
+  void addOverrideFile(Path file)
+  {
+    ResourceEntry entry = getResourceEntry(file.getFileName().toString());
+    if (entry instanceof FileResourceEntry) {
+      treeModel.addResourceEntry(entry, entry.getTreeFolder(), true);
+    } else if (entry instanceof BIFFResourceEntry) {
+      ((BIFFResourceEntry)entry).setOverride(true);
+      if (isOverrideInOverride()) {
+        treeModel.removeResourceEntry(entry, entry.getExtension());
+        treeModel.addResourceEntry(new FileResourceEntry(file, true), Profile.getOverrideFolderName(), true);
+      }
+    }
+  }
+
+  /**
+   * Removes the override file of the specified name from the resource tree. Associated BIFF
+   * resources are restored. The override file must not exist anymore.
+   */
+  void removeOverrideFile(String fileName)
+  {
+    ResourceEntry entry = treeModel.getResourceEntry(fileName);
+    if (entry instanceof FileResourceEntry) {
+      Path parent = entry.getActualPath().getParent();
+      if (Profile.getOverrideFolders(false).contains(parent)) {
+        treeModel.removeResourceEntry(entry);
+      }
+    }
+
+    BIFFResourceEntry biffEntry = keyfile.getResourceEntry(fileName);
+    if (biffEntry != null) {
+      biffEntry.setOverride(false);
+      if (treeModel.getResourceEntry(fileName) == null) {
+        treeModel.addResourceEntry(biffEntry, biffEntry.getExtension(), true);
+      }
+    }
+
+    // resource may still be available in another override folder
+    Path file = FileManager.query(Profile.getOverrideFolders(false), fileName);
+    if (file != null && Files.isRegularFile(file)) {
+      addOverrideFile(file);
+    }
+  }
+
+  private static boolean isOverrideInOverride()
+  {
+    return (BrowserMenuBar.getInstance() != null &&
+            BrowserMenuBar.getInstance().getOverrideMode() == BrowserMenuBar.OVERRIDE_IN_OVERRIDE);
   }
 
   private List<ResourceEntry> getResourcesInternal(String type, List<Path> extraDirs)
@@ -978,6 +1068,20 @@ private List<ResourceEntry> getResourcesInternal(String type, List<Path> extraDi
     return list;
   }
 
+  private synchronized ResourceNameIndex getResourceNameIndexInternal()
+  {
+    boolean overrides = (BrowserMenuBar.getInstance() == null || !BrowserMenuBar.getInstance().ignoreOverrides());
+    int modCount = treeModel.getModificationCount();
+    if (nameIndex == null || nameIndexModel != treeModel || nameIndexModCount != modCount ||
+        nameIndexOverrides != overrides) {
+      nameIndex = new ResourceNameIndex(getResourcesInternal((Pattern)null, null));
+      nameIndexModel = treeModel;
+      nameIndexModCount = modCount;
+      nameIndexOverrides = overrides;
+    }
+    return nameIndex;
+  }
+
   private List<ResourceEntry> getResourcesInternal(Pattern pattern, List<Path> extraDirs)
   {
     List<ResourceEntry> retList = new ArrayList<>();
@@ -1176,10 +1280,14 @@ private boolean saveResourceInternal(Resource resource, Component parent)
       e.printStackTrace();
       return false;
     }
+    ReferenceIndex.invalidate(entry);
+    ResourceCache.cacheInvalid(entry);
     JOptionPane.showMessageDialog(parent, "File saved to \"" + outPath.toAbsolutePath() + '\"',
                                   "Save complete", JOptionPane.INFORMATION_MESSAGE);
     if (resource.getResourceEntry().getExtension().equals("IDS")) {
       IdsMapCache.cacheInvalid(resource.getResourceEntry());
+      // parsed resources may refer to outdated symbols
+      ResourceCache.clearCache();
       IdsBrowser idsbrowser = (IdsBrowser)ChildFrame.getFirstFrame(IdsBrowser.class);
       if (idsbrowser != null) {
         idsbrowser.refreshList();
@@ -0,0 +1,447 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.infinity.resource.key.BIFFResourceEntry;
+import org.infinity.resource.key.FileResourceEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.key.ResourceTreeFolder;
+import org.infinity.resource.key.ResourceTreeModel;
+
+/**
+ * Keeps the resource tree in sync with the content of the override and extra folders of the
+ * current game.
+ * <p>
+ * Folders are monitored by a {@link WatchService}. Events are collected until no further changes
+ * have been reported for a short time, so that mass updates, e.g. by mod installers, are applied
+ * to the resource tree in a few large batches. Batches are applied on the event dispatch thread
+ * through the methods of the {@link ResourceTreeModel}, which notifies listeners once per batch.
+ */
+final class ResourceWatcher implements Runnable
+{
+  // Time without further events before changes are applied, in milliseconds
+  private static final long DEBOUNCE_DELAY = 500L;
+  // Max. time to defer changes while events keep arriving, in milliseconds
+  private static final long MAX_DELAY = 3000L;
+
+  private final ResourceFactory factory;
+  private final WatchService service;
+  private final List<Path> overrideFolders = new ArrayList<>();
+  private final List<Path> extraFolders = new ArrayList<>();
+  private final Map<WatchKey, Path> keys = new HashMap<>();
+  private final Set<Path> watchedDirs = new HashSet<>();
+  // changed file names per directory, null value for directories which have to be rescanned
+  private final Map<Path, Set<String>> pending = new LinkedHashMap<>();
+  private final Thread thread;
+
+  private volatile boolean closed;
+
+  /**
+   * Starts monitoring the specified folders.
+   * @param factory The resource factory of the current game.
+   * @param overrideFolders Override folders of the game.
+   * @param extraFolders Extra folders of the game. Subfolders are included.
+   * @return The active watcher, or {@code null} if the file system does not support watching folders.
+   */
+  public static ResourceWatcher start(ResourceFactory factory, List<Path> overrideFolders, List<Path> extraFolders)
+  {
+    try {
+      ResourceWatcher watcher = new ResourceWatcher(factory, overrideFolders, extraFolders);
+      watcher.thread.start();
+      return watcher;
+    } catch (IOException | UnsupportedOperationException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  private ResourceWatcher(ResourceFactory factory, List<Path> overrideFolders, List<Path> extraFolders)
+      throws IOException
+  {
+    this.factory = factory;
+    FileSystem fs = null;
+    for (final Path dir: overrideFolders) {
+      if (Files.isDirectory(dir)) {
+        fs = dir.getFileSystem();
+        break;
+      }
+    }
+    if (fs == null) {
+      for (final Path dir: extraFolders) {
+        if (Files.isDirectory(dir)) {
+          fs = dir.getFileSystem();
+          break;
+        }
+      }
+    }
+    if (fs == null) {
+      throw new IOException("No folders to watch");
+    }
+    this.service = fs.newWatchService();
+    try {
+      for (final Path dir: overrideFolders) {
+        if (Files.isDirectory(dir) && dir.getFileSystem() == fs) {
+          register(dir);
+          this.overrideFolders.add(dir);
+        }
+      }
+      for (final Path dir: extraFolders) {
+        if (Files.isDirectory(dir) && dir.getFileSystem() == fs) {
+          registerAll(dir);
+          this.extraFolders.add(dir);
+        }
+      }
+    } catch (IOException e) {
+      service.close();
+      throw e;
+    }
+    this.thread = new Thread(this, "Resource watcher");
+    this.thread.setDaemon(true);
+  }
+
+  /** Returns whether at least one override folder is monitored. */
+  public boolean isWatchingOverrides()
+  {
+    return !closed && !overrideFolders.isEmpty();
+  }
+
+  /** Stops monitoring. Pending changes are discarded. */
+  public void close()
+  {
+    closed = true;
+    try {
+      service.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+// --------------------- Begin Interface Runnable ---------------------
+
+  @Override
+  public void run()
+  {
+    try {
+      while (!closed) {
+        long start = System.currentTimeMillis();
+        collect(service.take());
+
+        // waiting for the file system to settle down
+        long remaining;
+        while ((remaining = Math.min(DEBOUNCE_DELAY, start + MAX_DELAY - System.currentTimeMillis())) > 0L) {
+          WatchKey key = service.poll(remaining, TimeUnit.MILLISECONDS);
+          if (key == null) {
+            break;
+          }
+          collect(key);
+        }
+
+        if (!pending.isEmpty() && !closed) {
+          final Map<Path, Set<String>> changes = new LinkedHashMap<>(pending);
+          pending.clear();
+          final Map<Path, ResourceTreeModel.DirectoryContent> newDirs = scanNewDirectories(changes);
+          try {
+            SwingUtilities.invokeAndWait(() -> apply(changes, newDirs));
+          } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+          }
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // watcher has been closed
+    }
+  }
+
+// --------------------- End Interface Runnable ---------------------
+
+  // Adds the events of the specified key to the list of pending changes
+  private void collect(WatchKey key)
+  {
+    Path dir;
+    synchronized (keys) {
+      dir = keys.get(key);
+    }
+    for (final WatchEvent<?> event: key.pollEvents()) {
+      if (dir == null) {
+        continue;
+      }
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        pending.put(dir, null);
+      } else if (pending.containsKey(dir)) {
+        Set<String> names = pending.get(dir);
+        if (names != null) {
+          names.add(event.context().toString());
+        }
+      } else {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(event.context().toString());
+        pending.put(dir, names);
+      }
+    }
+    if (!key.reset()) {
+      // directory is no longer accessible
+      synchronized (keys) {
+        watchedDirs.remove(keys.remove(key));
+      }
+    }
+  }
+
+  // Registers and scans directories which have been added to extra folders. Directories are
+  // scanned by the watcher thread to keep the event dispatch thread responsive.
+  private Map<Path, ResourceTreeModel.DirectoryContent> scanNewDirectories(Map<Path, Set<String>> changes)
+  {
+    Map<Path, ResourceTreeModel.DirectoryContent> retVal = new HashMap<>();
+    changes.forEach((dir, names) -> {
+      if (!overrideFolders.contains(dir)) {
+        for (final String name: (names != null) ? names : listDirectory(dir)) {
+          Path path = dir.resolve(name);
+          if (Files.isDirectory(path) && !isWatched(path)) {
+            try {
+              registerAll(path);
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+            ResourceTreeModel.DirectoryContent content = ResourceTreeModel.scanDirectory(path);
+            if (content != null) {
+              retVal.put(path, content);
+            }
+          }
+        }
+      }
+    });
+    return retVal;
+  }
+
+  // Applies the specified changes to the resource tree. Must be called on the event dispatch thread.
+  private void apply(Map<Path, Set<String>> changes, Map<Path, ResourceTreeModel.DirectoryContent> newDirs)
+  {
+    ResourceTreeModel model = ResourceFactory.getResourceTreeModel();
+    if (closed || model == null) {
+      return;
+    }
+
+    model.beginUpdate();
+    try {
+      changes.forEach((dir, names) -> {
+        if (overrideFolders.contains(dir)) {
+          applyOverride(model, dir, (names != null) ? names : rescanOverride(model, dir));
+        } else {
+          applyExtra(model, dir, (names != null) ? names : rescanExtra(model, dir), newDirs);
+        }
+      });
+    } finally {
+      model.endUpdate();
+    }
+  }
+
+  private void applyOverride(ResourceTreeModel model, Path dir, Set<String> names)
+  {
+    for (final String name: names) {
+      Path file = dir.resolve(name);
+      ResourceEntry entry = model.getResourceEntry(name);
+      if (Files.isRegularFile(file)) {
+        if (entry instanceof FileResourceEntry && file.equals(entry.getActualPath())) {
+          // content has been modified
+          ResourceCache.cacheInvalid(entry);
+        } else {
+          factory.addOverrideFile(file);
+        }
+      } else if (!Files.exists(file)) {
+        if (entry != null) {
+          ResourceCache.cacheInvalid(entry);
+        }
+        factory.removeOverrideFile(name);
+      }
+
+      entry = model.getResourceEntry(name);
+      if (entry instanceof BIFFResourceEntry) {
+        model.resourceEntryChanged(entry);
+      }
+    }
+  }
+
+  private void applyExtra(ResourceTreeModel model, Path dir, Set<String> names,
+                          Map<Path, ResourceTreeModel.DirectoryContent> newDirs)
+  {
+    for (final String name: names) {
+      Path path = dir.resolve(name);
+      if (Files.isDirectory(path)) {
+        ResourceTreeModel.DirectoryContent content = newDirs.get(path);
+        if (content != null) {
+          ResourceTreeFolder parent = getFolder(model, dir, true);
+          if (parent != null && model.getFolder(parent, name) == null) {
+            model.addDirectory(parent, content, false);
+          }
+        }
+      } else if (Files.isRegularFile(path)) {
+        ResourceTreeFolder folder = getFolder(model, dir, true);
+        if (folder != null) {
+          ResourceEntry entry = findEntry(folder, path);
+          if (entry != null) {
+            ResourceCache.cacheInvalid(entry);
+          } else {
+            model.addResourceEntry(new FileResourceEntry(path), folder, false);
+          }
+        }
+      } else if (!Files.exists(path)) {
+        ResourceTreeFolder folder = getFolder(model, dir, false);
+        if (folder != null) {
+          ResourceEntry entry = findEntry(folder, path);
+          if (entry != null) {
+            ResourceCache.cacheInvalid(entry);
+            model.removeResourceEntry(entry, folder);
+          } else if (model.getFolder(folder, name) != null) {
+            model.removeDirectory(folder, name);
+          }
+        }
+      }
+    }
+  }
+
+  // Returns all names which may have been affected by changes in the override folder
+  private Set<String> rescanOverride(ResourceTreeModel model, Path dir)
+  {
+    Set<String> names = listDirectory(dir);
+    String folderName = Profile.getOverrideFolderName();
+    ResourceTreeFolder folder = model.getFolder(folderName);
+    if (folder != null) {
+      for (final ResourceEntry entry: folder.getResourceEntries()) {
+        if (dir.equals(entry.getActualPath().getParent())) {
+          names.add(entry.getResourceName());
+        }
+      }
+    }
+    for (final BIFFResourceEntry entry: model.getBIFFResourceEntries()) {
+      if (entry.hasOverride()) {
+        names.add(entry.getResourceName());
+      }
+    }
+    return names;
+  }
+
+  // Returns all names which may have been affected by changes in the extra folder
+  private Set<String> rescanExtra(ResourceTreeModel model, Path dir)
+  {
+    Set<String> names = listDirectory(dir);
+    ResourceTreeFolder folder = getFolder(model, dir, false);
+    if (folder != null) {
+      for (final ResourceEntry entry: folder.getResourceEntries()) {
+        names.add(entry.getActualPath().getFileName().toString());
+      }
+      for (final ResourceTreeFolder subFolder: folder.getFolders()) {
+        names.add(subFolder.folderName());
+      }
+    }
+    return names;
+  }
+
+  // Returns the tree folder associated with the specified directory within an extra folder
+  private ResourceTreeFolder getFolder(ResourceTreeModel model, Path dir, boolean create)
+  {
+    for (final Path root: extraFolders) {
+      if (dir.startsWith(root)) {
+        ResourceTreeFolder folder = (ResourceTreeFolder)model.getRoot();
+        List<String> names = new ArrayList<>();
+        names.add(root.getFileName().toString());
+        for (final Path name: root.relativize(dir)) {
+          if (!name.toString().isEmpty()) {
+            names.add(name.toString());
+          }
+        }
+        for (final String name: names) {
+          ResourceTreeFolder child = model.getFolder(folder, name);
+          if (child == null) {
+            if (!create) {
+              return null;
+            }
+            child = model.addFolder(folder, name);
+          }
+          folder = child;
+        }
+        return folder;
+      }
+    }
+    return null;
+  }
+
+  // Returns the resource entry of the folder which refers to the specified file
+  private static ResourceEntry findEntry(ResourceTreeFolder folder, Path file)
+  {
+    for (final ResourceEntry entry: folder.getResourceEntries()) {
+      if (file.equals(entry.getActualPath())) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private static Set<String> listDirectory(Path dir)
+  {
+    Set<String> names = new LinkedHashSet<>();
+    if (Files.isDirectory(dir)) {
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+        for (final Path path: ds) {
+          names.add(path.getFileName().toString());
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return names;
+  }
+
+  private void register(Path dir) throws IOException
+  {
+    WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    synchronized (keys) {
+      keys.put(key, dir);
+      watchedDirs.add(dir);
+    }
+  }
+
+  private boolean isWatched(Path dir)
+  {
+    synchronized (keys) {
+      return watchedDirs.contains(dir);
+    }
+  }
+
+  // Registers the directory and all subdirectories
+  private void registerAll(Path dir) throws IOException
+  {
+    register(dir);
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (final Path path: ds) {
+        if (Files.isDirectory(path)) {
+          registerAll(path);
+        }
+      }
+    }
+  }
+}
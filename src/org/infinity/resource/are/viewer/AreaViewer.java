@@ -1930,6 +1930,7 @@ public void run()
         boolean bRet = false;
         try {
           try {
+            rcCanvas.drawPendingTiles();
             VolatileImage srcImage = (VolatileImage)rcCanvas.getImage();
             BufferedImage dstImage = ColorConvert.createCompatibleImage(srcImage.getWidth(),
                                                                         srcImage.getHeight(),
@@ -9,12 +9,16 @@
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.VolatileImage;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.infinity.datatype.Bitmap;
 import org.infinity.datatype.DecNumber;
@@ -35,6 +39,7 @@
 import org.infinity.resource.wed.Overlay;
 import org.infinity.resource.wed.Tilemap;
 import org.infinity.resource.wed.WedResource;
+import org.infinity.util.TaskEngine;
 
 /**
  * Specialized renderer for drawing tileset-based graphics data.
@@ -51,6 +56,10 @@ public class TilesetRenderer extends RenderCanvas
   private static final int MaxOverlays = 8;   // max. supported overlay entries
   private static final double MinZoomFactor = 1.0/64.0;   // lower zoom factor limit
   private static final double MaxZoomFactor = 16.0;       // upper zoom factor limit
+  // max. number of decoded tiles per overlay, up to 1/16 of the available heap (16 KB per tile)
+  private static final int MaxCachedTiles =
+      (int)Math.max(256L, Math.min(8192L, Runtime.getRuntime().maxMemory() / 16L / (64L*64L*4L)));
+  private static final int PrefetchMargin = 4;      // number of tiles around the visible area to decode in advance
 
   // Lighting adjustment for day/twilight/night times (multiplied by 10.24 for faster calculations)
   // Formula:
@@ -68,6 +77,8 @@ public class TilesetRenderer extends RenderCanvas
   private final List<Tileset> listTilesets = new ArrayList<Tileset>(MaxOverlays);
   // array of tile indices used for closed door states for each door structure
   private final List<DoorInfo> listDoorTileIndices = new ArrayList<DoorInfo>();
+  // tiles of the primary overlay which have to be redrawn when they become visible
+  private final BitSet dirtyTiles = new BitSet();
 
   private final BufferedImage workingTile = ColorConvert.createCompatibleImage(64, 64, true); // internally used for drawing tile graphics
   private WedResource wed;                // current wed resource
@@ -83,6 +94,7 @@ public class TilesetRenderer extends RenderCanvas
   private int miniMapType = ViewerConstants.MAP_NONE;     // the currently overlayed mini map (one of the MAP_XXX constants)
   private int miniMapAlpha = 128;                         // alpha transparency for overlayed mini maps
   private GraphicsResource miniMap = null;                     // the current mini map resource
+  private TaskEngine.Batch prefetchBatch;                      // decodes tiles near the visible area in the background
 
   /**
    * Returns the number of supported lighting modes.
@@ -496,6 +508,18 @@ public void reload(boolean force)
     updateDisplay(b || force);
   }
 
+  /**
+   * Draws all tiles which have not been drawn yet. Tiles are otherwise drawn when they become
+   * visible. Should be called before accessing the map graphics directly.
+   */
+  public synchronized void drawPendingTiles()
+  {
+    if (isInitialized() && !dirtyTiles.isEmpty()) {
+      Tileset ts = listTilesets.get(0);
+      drawTiles(new Rectangle(0, 0, ts.tilesX, ts.tilesY));
+    }
+  }
+
   @Override
   public void paint(Graphics g)
   {
@@ -517,6 +541,7 @@ public void paint(Graphics g)
         }
       } while (image.contentsLost());
     }
+    drawVisibleTiles();
     super.paint(g);
   }
 
@@ -606,8 +631,18 @@ private void release(boolean forceUpdate)
   {
     if (isInitialized()) {
       wed = null;
+      if (prefetchBatch != null) {
+        // tilesets must not be closed while they are in use by the prefetch task
+        prefetchBatch.cancel();
+        prefetchBatch.await();
+        prefetchBatch = null;
+      }
+      for (final Tileset ts: listTilesets) {
+        ts.close();
+      }
       listTilesets.clear();
       listDoorTileIndices.clear();
+      dirtyTiles.clear();
 
       Image img = getImage();
       if (img != null) {
@@ -709,17 +744,19 @@ private void updateDisplay(boolean forced)
 
       if (hasChangedMap || hasChangedAppearance || forced) {
         // redraw each tile
-        drawAllTiles();
+        invalidateAllTiles();
       } else {
         if (hasChangedOverlays) {
           // redraw overlayed tiles only
-          drawOverlayTiles();
+          invalidateOverlayTiles();
         }
         if (hasChangedDoorState) {
           // redraw door tiles only
-          drawDoorTiles();
+          invalidateDoorTiles();
         }
       }
+      // remaining tiles are drawn when they become visible
+      drawVisibleTiles();
       repaint();
       notifyChangeListeners();
       hasChangedMap = false;
@@ -738,36 +775,107 @@ private boolean hasOverlay(int ovlIdx)
     return false;
   }
 
-  // draws all tiles of the map
-  private void drawAllTiles()
+  // marks all tiles of the map for redrawing
+  private synchronized void invalidateAllTiles()
   {
-    Tileset ts = listTilesets.get(0);
-    for (int i = 0, size = ts.listTiles.size(); i < size; i++) {
-      Tile tile = ts.listTiles.get(i);
-      drawTile(tile, isDoorTile(tile));
-    }
+    dirtyTiles.set(0, listTilesets.get(0).listTiles.size());
   }
 
-  // draws overlayed tiles only
-  private void drawOverlayTiles()
+  // marks overlayed tiles only for redrawing
+  private synchronized void invalidateOverlayTiles()
   {
     Tileset ts = listTilesets.get(0);
     for (int i = 0, size = ts.listOverlayTiles.size(); i < size; i++) {
       Tile tile = ts.listOverlayTiles.get(i);
-      drawTile(tile, isDoorTile(tile));
+      dirtyTiles.set((tile.getY() / 64) * ts.tilesX + tile.getX() / 64);
     }
   }
 
-  // draws door tiles only
-  private void drawDoorTiles()
+  // marks door tiles only for redrawing
+  private synchronized void invalidateDoorTiles()
   {
-    for (int i = 0, size = listDoorTileIndices.size(); i < size; i++) {
+    int size = listTilesets.get(0).listTiles.size();
+    for (int i = 0, count = listDoorTileIndices.size(); i < count; i++) {
       DoorInfo di = listDoorTileIndices.get(i);
       for (int j = 0, iCount = di.getIndicesCount(); j < iCount; j++) {
-        Tile tile = listTilesets.get(0).listTiles.get(di.getIndex(j));
+        int idx = di.getIndex(j);
+        if (idx >= 0 && idx < size) {
+          dirtyTiles.set(idx);
+        }
+      }
+    }
+  }
+
+  // draws all pending tiles within the visible area and prepares tiles around it
+  private synchronized void drawVisibleTiles()
+  {
+    if (isInitialized() && !dirtyTiles.isEmpty()) {
+      Rectangle rect = getVisibleTiles();
+      if (!rect.isEmpty()) {
+        drawTiles(rect);
+        prefetchTiles(rect);
+      }
+    }
+  }
+
+  // draws all pending tiles within the specified rectangle (in tile units)
+  private void drawTiles(Rectangle rect)
+  {
+    Tileset ts = listTilesets.get(0);
+    for (int y = rect.y, yEnd = rect.y + rect.height; y < yEnd; y++) {
+      int end = y * ts.tilesX + rect.x + rect.width;
+      for (int i = dirtyTiles.nextSetBit(y * ts.tilesX + rect.x); i >= 0 && i < end; i = dirtyTiles.nextSetBit(i + 1)) {
+        Tile tile = ts.listTiles.get(i);
         drawTile(tile, isDoorTile(tile));
+        dirtyTiles.clear(i);
+      }
+    }
+  }
+
+  // returns the visible area of the map in tile units
+  private Rectangle getVisibleTiles()
+  {
+    Tileset ts = listTilesets.get(0);
+    Rectangle view = getVisibleRect();
+    double tileSize = 64.0 * zoomFactor;
+    int x1 = Math.max(0, (int)(view.x / tileSize));
+    int y1 = Math.max(0, (int)(view.y / tileSize));
+    int x2 = Math.min(ts.tilesX, (int)Math.ceil((view.x + view.width) / tileSize));
+    int y2 = Math.min(ts.tilesY, (int)Math.ceil((view.y + view.height) / tileSize));
+    return new Rectangle(x1, y1, Math.max(0, x2 - x1), Math.max(0, y2 - y1));
+  }
+
+  // decodes the graphics data of pending tiles around the specified area in the background
+  private void prefetchTiles(Rectangle rect)
+  {
+    if (prefetchBatch != null) {
+      prefetchBatch.cancel();
+      prefetchBatch = null;
+    }
+
+    final Tileset ts = listTilesets.get(0);
+    int x1 = Math.max(0, rect.x - PrefetchMargin);
+    int y1 = Math.max(0, rect.y - PrefetchMargin);
+    int x2 = Math.min(ts.tilesX, rect.x + rect.width + PrefetchMargin);
+    int y2 = Math.min(ts.tilesY, rect.y + rect.height + PrefetchMargin);
+    final List<Integer> indices = new ArrayList<>();
+    for (int y = y1; y < y2; y++) {
+      for (int i = dirtyTiles.nextSetBit(y * ts.tilesX + x1); i >= 0 && i < y * ts.tilesX + x2; i = dirtyTiles.nextSetBit(i + 1)) {
+        Tile tile = ts.listTiles.get(i);
+        indices.add(Integer.valueOf(tile.getPrimaryIndex()));
+        indices.add(Integer.valueOf(tile.getSecondaryIndex()));
       }
     }
+
+    if (!indices.isEmpty()) {
+      final TaskEngine.Batch batch = TaskEngine.createBatch();
+      batch.submit(() -> {
+        for (int i = 0, size = indices.size(); i < size && !batch.isCancelled(); i++) {
+          ts.getTileData(indices.get(i).intValue());
+        }
+      });
+      prefetchBatch = batch;
+    }
   }
 
   // draws the specified tile into the target graphics buffer
@@ -785,17 +893,17 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
           int tileIdx = listTilesets.get(overlay).listTiles.get(0).getPrimaryIndex();
           int[] srcOvl = null;
           if (tileIdx >= 0) {
-            srcOvl = listTilesets.get(overlay).listTileData.get(tileIdx);
+            srcOvl = listTilesets.get(overlay).getTileData(tileIdx);
           }
           int[] srcPri = null;
           tileIdx = tile.getPrimaryIndex();
           if (tileIdx >= 0) {
-            srcPri = listTilesets.get(0).listTileData.get(tileIdx);
+            srcPri = listTilesets.get(0).getTileData(tileIdx);
           }
           int[] srcSec = null;
           tileIdx = tile.getSecondaryIndex();
           if (tileIdx >= 0) {
-            srcSec = listTilesets.get(0).listTileData.get(tileIdx);
+            srcSec = listTilesets.get(0).getTileData(tileIdx);
           }
 
           // determining correct rendering mode
@@ -896,7 +1004,7 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
         int tileIdx = (!isDoorClosed || !isDoorTile) ? tile.getPrimaryIndex() : tile.getSecondaryIndex();
         if (tileIdx < 0) { tileIdx = tile.getPrimaryIndex(); }    // XXX: hackish work-around for faulty tile definitions
         if (tileIdx >= 0) {
-          srcTile = listTilesets.get(0).listTileData.get(tileIdx);
+          srcTile = listTilesets.get(0).getTileData(tileIdx);
         }
 
         // drawing tile graphics
@@ -1018,8 +1126,14 @@ private void notifyChangeListeners()
   // Stores data of a specific overlay structure
   private static class Tileset
   {
-    // graphics data for all tiles of this overlay (as int arrays of 64*64 pixels)
-    public final List<int[]> listTileData = new ArrayList<int[]>();
+    // recently used graphics data of this overlay (as int arrays of 64*64 pixels), in access order
+    private final Map<Integer, int[]> tileCache = new LinkedHashMap<Integer, int[]>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest)
+      {
+        return size() > MaxCachedTiles;
+      }
+    };
     // info structures for all tiles of this overlay
     public final List<Tile> listTiles = new ArrayList<Tile>();
     // lists references to all tiles containing overlays from listTiles
@@ -1027,11 +1141,64 @@ private void notifyChangeListeners()
 
     public int tilesX, tilesY;    // stores number of tiles per row/column
 
+    // provides the graphics data of the tiles, palette-based tiles are kept in their compact form
+    private TisDecoder decoder;
+    // serializes access to the decoder, which is not thread-safe
+    private final Object decoderLock = new Object();
+
     public Tileset(WedResource wed, Overlay ovl)
     {
       init(wed, ovl);
     }
 
+    // Returns the graphics data of the specified tile, decodes it if needed. Returns null on error.
+    public int[] getTileData(int index)
+    {
+      Integer key = Integer.valueOf(index);
+      int[] data = getCachedTileData(key);
+      if (data == null) {
+        // decoding outside of the cache lock, so that cached tiles remain available in the meantime
+        synchronized (decoderLock) {
+          data = getCachedTileData(key);    // may have been decoded by another thread
+          if (data != null) {
+            return data;
+          }
+          if (decoder == null || index < 0 || index >= decoder.getTileCount()) {
+            return null;
+          }
+          data = new int[64*64];
+          if (!decoder.getTileData(index, data)) {
+            return null;
+          }
+        }
+        synchronized (tileCache) {
+          tileCache.put(key, data);
+        }
+      }
+      return data;
+    }
+
+    // Releases the graphics data of this overlay
+    public void close()
+    {
+      synchronized (decoderLock) {
+        if (decoder != null) {
+          decoder.close();
+          decoder = null;
+        }
+      }
+      synchronized (tileCache) {
+        tileCache.clear();
+      }
+    }
+
+    private int[] getCachedTileData(Integer key)
+    {
+      synchronized (tileCache) {
+        return tileCache.get(key);
+      }
+    }
+
     public void advanceTileFrame()
     {
       for (int i = 0, size = listTiles.size(); i < size; i++) {
@@ -1054,20 +1221,9 @@ private void init(WedResource wed, Overlay ovl)
         ResourceEntry tisEntry = getTisResource(wed, ovl);
         if (tisEntry != null) {
           try {
-            TisDecoder decoder = TisDecoder.loadTis(tisEntry);
+            // tiles are decoded on demand
+            decoder = TisDecoder.loadTis(tisEntry);
             isTilesetV1 = decoder.getType() == TisDecoder.Type.PALETTE;
-            BufferedImage tileImage = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
-            for (int i = 0, tCount = decoder.getTileCount(); i < tCount; i++) {
-              decoder.getTile(i, tileImage);
-              int[] srcData = ((DataBufferInt)tileImage.getRaster().getDataBuffer()).getData();
-              int[] dstData = new int[64*64];
-              System.arraycopy(srcData, 0, dstData, 0, 64*64);
-              listTileData.add(dstData);
-            }
-            tileImage.flush();
-            tileImage = null;
-            decoder.close();
-            decoder = null;
           } catch (Exception e) {
             e.printStackTrace();
             return;
@@ -15,21 +15,17 @@
 import java.util.SortedMap;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import org.infinity.NearInfinity;
 import org.infinity.gui.BrowserMenuBar;
 import org.infinity.gui.StatusBar;
 import org.infinity.resource.Profile;
 import org.infinity.resource.ResourceFactory;
-import org.infinity.resource.are.AreResource;
-import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.IdsMap;
 import org.infinity.util.IdsMapCache;
 import org.infinity.util.IdsMapEntry;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 import org.infinity.util.io.StreamUtils;
 
 public final class Compiler
@@ -104,6 +100,7 @@ public static synchronized void restartCompiler()
       scriptNamesCre.clear();
       scriptNamesAre.clear();
       scriptNamesValid = false;
+      ScriptNameIndex.clearCache();
       setupScriptNames();
     }
   }
@@ -372,27 +369,20 @@ public void run()
           statusBar.setMessage(notification);
         }
 
-        ThreadPoolExecutor executor = Misc.createThreadPool();
+        TaskEngine.Batch batch = TaskEngine.createBatch();
         List<ResourceEntry> files = ResourceFactory.getResources("CRE");
         for (int i = 0; i < files.size(); i++) {
-          Misc.isQueueReady(executor, true, -1);
-          executor.execute(new CreWorker(files.get(i)));
+          batch.submit(new CreWorker(files.get(i)));
         }
 
         files.clear();
         files = ResourceFactory.getResources("ARE");
         scriptNamesAre.add("none");   // default script name for many CRE resources
         for (int i = 0; i < files.size(); i++) {
-          Misc.isQueueReady(executor, true, -1);
-          executor.execute(new AreWorker(files.get(i)));
-        }
-
-        executor.shutdown();
-        try {
-          executor.awaitTermination(60, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
+          batch.submit(new AreWorker(files.get(i)));
         }
+        batch.await();
+        ScriptNameIndex.save();
 
         if (statusBar != null) {
           if (statusBar.getMessage().startsWith(notification)) {
@@ -1258,10 +1248,15 @@ public CreWorker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        try {
-          CreResource.addScriptName(scriptNamesCre, entry);
-        }
-        catch (Exception e) {
+        for (final String name: ScriptNameIndex.getScriptNames(entry)) {
+          synchronized (scriptNamesCre) {
+            Set<ResourceEntry> entries = scriptNamesCre.get(name);
+            if (entries == null) {
+              entries = new HashSet<ResourceEntry>();
+              scriptNamesCre.put(name, entries);
+            }
+            entries.add(entry);
+          }
         }
       }
     }
@@ -1280,10 +1275,9 @@ public AreWorker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        try {
-          AreResource.addScriptNames(scriptNamesAre, entry.getResourceBuffer());
-        }
-        catch (Exception e) {
+        String[] names = ScriptNameIndex.getScriptNames(entry);
+        synchronized (scriptNamesAre) {
+          scriptNamesAre.addAll(Arrays.asList(names));
         }
       }
     }
@@ -0,0 +1,197 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.bcs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.Misc;
+import org.infinity.util.StaticSimpleXorDecryptor;
+import org.infinity.util.TaskEngine;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Compiles or decompiles sets of scripts in parallel.
+ * <p>
+ * Scripts are processed by the shared {@link TaskEngine}. IDS tables are shared read-only
+ * between all workers via {@link org.infinity.util.IdsMapCache}. Results are either written
+ * into an output directory or returned in memory, together with the errors and warnings
+ * reported for each script.
+ */
+public final class ScriptBatch
+{
+  /**
+   * Decompiles the specified BCS or BS resources.
+   * @param entries The script resources to decompile.
+   * @param outputDir Directory for the decompiled BAF files. Specify {@code null} to return
+   *                  the decompiled sources in the result instead.
+   * @param cancelRequest Optional cancellation source, e.g. {@code progress::isCanceled}.
+   * @return Results of all processed scripts, sorted by resource name.
+   *         Returns {@code null} if the operation has been cancelled.
+   */
+  public static SortedMap<ResourceEntry, Result> decompile(Collection<? extends ResourceEntry> entries,
+                                                          Path outputDir, BooleanSupplier cancelRequest)
+  {
+    return process(entries, outputDir, cancelRequest, false);
+  }
+
+  /**
+   * Compiles the specified BAF resources.
+   * @param entries The script sources to compile.
+   * @param outputDir Directory for the compiled BCS files. Specify {@code null} to return
+   *                  the compiled code in the result instead. Scripts with errors are not written.
+   * @param cancelRequest Optional cancellation source, e.g. {@code progress::isCanceled}.
+   * @return Results of all processed scripts, sorted by resource name.
+   *         Returns {@code null} if the operation has been cancelled.
+   */
+  public static SortedMap<ResourceEntry, Result> compile(Collection<? extends ResourceEntry> entries,
+                                                        Path outputDir, BooleanSupplier cancelRequest)
+  {
+    return process(entries, outputDir, cancelRequest, true);
+  }
+
+  /**
+   * Decompiles a single BCS or BS resource in the calling thread.
+   * @param entry The script resource to decompile.
+   * @return The result containing the decompiled source.
+   */
+  public static Result decompile(ResourceEntry entry)
+  {
+    return decompileScript(entry, null);
+  }
+
+  private static SortedMap<ResourceEntry, Result> process(Collection<? extends ResourceEntry> entries,
+                                                          Path outputDir, BooleanSupplier cancelRequest,
+                                                          boolean compile)
+  {
+    final SortedMap<ResourceEntry, Result> results = new TreeMap<>();
+    TaskEngine.Batch batch = TaskEngine.createBatch(cancelRequest);
+    for (final ResourceEntry entry: entries) {
+      boolean submitted = batch.submit(() -> {
+        Result result = compile ? compileScript(entry, outputDir) : decompileScript(entry, outputDir);
+        synchronized (results) {
+          results.put(entry, result);
+        }
+      });
+      if (!submitted) {
+        break;
+      }
+    }
+
+    // waiting for pending tasks to finish
+    if (!batch.await()) {
+      return null;
+    }
+    return results;
+  }
+
+  private static Result decompileScript(ResourceEntry entry, Path outputDir)
+  {
+    try {
+      ByteBuffer bb = entry.getResourceBuffer();
+      if (bb.limit() > 1 && bb.getShort(0) == -1) {
+        bb = StaticSimpleXorDecryptor.decrypt(bb, 2);
+      }
+      Decompiler decompiler = new Decompiler(StreamUtils.readString(bb, bb.limit()), true);
+      String source = decompiler.getSource();
+      if (outputDir != null) {
+        write(outputDir.resolve(StreamUtils.replaceFileExtension(entry.getResourceName(), "BAF")), source);
+        source = null;
+      }
+      return new Result(source, decompiler.getIdsErrors(), null);
+    } catch (Exception e) {
+      return new Result(e);
+    }
+  }
+
+  private static Result compileScript(ResourceEntry entry, Path outputDir)
+  {
+    try {
+      Compiler compiler = new Compiler(entry);
+      String code = compiler.compile();
+      if (outputDir != null) {
+        if (compiler.getErrors().isEmpty()) {
+          write(outputDir.resolve(StreamUtils.replaceFileExtension(entry.getResourceName(), "BCS")), code);
+        }
+        code = null;
+      }
+      return new Result(code, compiler.getErrors(), compiler.getWarnings());
+    } catch (Exception e) {
+      return new Result(e);
+    }
+  }
+
+  private static void write(Path output, String text) throws IOException
+  {
+    try (BufferedWriter bw = Files.newBufferedWriter(output)) {
+      bw.write(text.replaceAll("\r?\n", Misc.LINE_SEPARATOR));
+      bw.newLine();
+    }
+  }
+
+  private ScriptBatch() {}
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Outcome of compiling or decompiling a single script. */
+  public static final class Result
+  {
+    private final String output;
+    private final SortedMap<Integer, String> errors;
+    private final SortedMap<Integer, String> warnings;
+
+    private Result(String output, SortedMap<Integer, String> errors, SortedMap<Integer, String> warnings)
+    {
+      this.output = output;
+      this.errors = (errors != null) ? errors : Collections.<Integer, String>emptySortedMap();
+      this.warnings = (warnings != null) ? warnings : Collections.<Integer, String>emptySortedMap();
+    }
+
+    private Result(Exception e)
+    {
+      this(null, new TreeMap<>(Collections.singletonMap(Integer.valueOf(0), e.toString())), null);
+    }
+
+    /**
+     * Returns the compiled code or decompiled source. Returns {@code null} if the result has been
+     * written to the output directory or if the script could not be processed.
+     */
+    public String getOutput()
+    {
+      return output;
+    }
+
+    /**
+     * Returns errors by line number. Contains unresolved IDS references of decompiled scripts.
+     * Errors which prevented processing the script are reported for line 0.
+     */
+    public SortedMap<Integer, String> getErrors()
+    {
+      return errors;
+    }
+
+    /** Returns warnings by line number. */
+    public SortedMap<Integer, String> getWarnings()
+    {
+      return warnings;
+    }
+
+    /** Returns whether the script has been processed without errors. */
+    public boolean isSuccess()
+    {
+      return errors.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.bcs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.infinity.resource.are.AreResource;
+import org.infinity.resource.cre.CreResource;
+import org.infinity.resource.key.FileResourceEntry;
+import org.infinity.resource.key.ResourceDataIndex;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Persistent index of script names defined by CRE and ARE resources of the current game.
+ * <p>
+ * Script names are extracted from fixed header offsets without parsing the resources.
+ * Only the header is read from CRE resources. Entries are keyed by the last modification time
+ * and size of the resource location, so that only modified resources have to be rescanned
+ * in subsequent sessions.
+ */
+final class ScriptNameIndex
+{
+  // Maps resource locations to script names
+  private static final ResourceDataIndex INDEX = new ResourceDataIndex("NISN", 1, "scriptnames.idx");
+
+  // Size of the largest supported CRE header (V2.2)
+  private static final int CRE_HEADER_SIZE = 948;
+
+  private static final String[] NO_NAMES = new String[0];
+
+  /**
+   * Returns the normalized script names (lower case, without spaces) defined by the specified
+   * CRE or ARE resource. The resource is only scanned if the index does not contain an
+   * up-to-date entry. Resources that cannot be read are reported without names and
+   * rescanned on the next call.
+   */
+  public static String[] getScriptNames(ResourceEntry entry)
+  {
+    String[] names = INDEX.get(entry);
+    if (names == null) {
+      names = scan(entry);
+      if (names == null) {
+        // don't persist failed scans
+        return NO_NAMES;
+      }
+      INDEX.put(entry, names);
+    }
+    return names;
+  }
+
+  /** Writes the index of the current game to disk if it has been modified. */
+  public static void save()
+  {
+    INDEX.writeIndex();
+  }
+
+  /** Removes all entries from memory. Called whenever a new game is opened. */
+  public static void clearCache()
+  {
+    INDEX.clearIndex();
+  }
+
+  // Extracts script names from the specified resource. Returns null if the resource could not be read.
+  private static String[] scan(ResourceEntry entry)
+  {
+    try {
+      if (entry.getExtension().equalsIgnoreCase("CRE")) {
+        ByteBuffer buffer;
+        try (InputStream is = getInputStream(entry)) {
+          buffer = StreamUtils.readBytes(is, CRE_HEADER_SIZE);
+        }
+        String name = CreResource.getScriptName(buffer);
+        return (name != null) ? new String[]{ name.intern() } : NO_NAMES;
+      } else if (entry.getExtension().equalsIgnoreCase("ARE")) {
+        Set<String> names = new HashSet<>();
+        AreResource.addScriptNames(names, entry.getResourceBuffer());
+        String[] retVal = new String[names.size()];
+        int i = 0;
+        for (final String name: names) {
+          retVal[i++] = name.intern();
+        }
+        return retVal;
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+    return NO_NAMES;
+  }
+
+  private static InputStream getInputStream(ResourceEntry entry) throws Exception
+  {
+    if (entry instanceof FileResourceEntry) {
+      // avoid loading the whole file
+      return StreamUtils.getInputStream(entry.getActualPath());
+    }
+    return entry.getResourceDataAsStream();
+  }
+
+  private ScriptNameIndex() {}
+}
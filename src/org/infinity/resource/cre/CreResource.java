@@ -496,43 +496,48 @@ public static void addScriptName(Map<String, Set<ResourceEntry>> scriptNames,
                                    ResourceEntry entry)
   {
     try {
-      ByteBuffer buffer = entry.getResourceBuffer();
-      String signature = StreamUtils.readString(buffer, 0, 4);
-      String scriptName = "";
-      if (signature.equalsIgnoreCase("CRE ")) {
-        String version = StreamUtils.readString(buffer, 4, 4);
-        if (version.equalsIgnoreCase("V1.0")) {
-          scriptName = StreamUtils.readString(buffer, 640, 32);
-        } else if (version.equalsIgnoreCase("V1.1") || version.equalsIgnoreCase("V1.2")) {
-          scriptName = StreamUtils.readString(buffer, 804, 32);
-        } else if (version.equalsIgnoreCase("V2.2")) {
-          scriptName = StreamUtils.readString(buffer, 916, 32);
-        } else if (version.equalsIgnoreCase("V9.0")) {
-          scriptName = StreamUtils.readString(buffer, 744, 32);
-        }
-        if (scriptName.equals("") || scriptName.equalsIgnoreCase("None")) {
-          return;
-        // Apparently script name is the only thing that matters
-  //        scriptName = entry.toString().substring(0, entry.toString().length() - 4);
-        } else {
-          scriptName = scriptName.toLowerCase(Locale.ENGLISH).replaceAll(" ", "");
-          if (scriptNames.containsKey(scriptName)) {
-            synchronized (scriptNames) {
-              Set<ResourceEntry> entries = scriptNames.get(scriptName);
-              entries.add(entry);
-            }
-          } else {
-            Set<ResourceEntry> entries = new HashSet<ResourceEntry>();
-            entries.add(entry);
-            synchronized (scriptNames) {
-              scriptNames.put(scriptName, entries);
-            }
+      String scriptName = getScriptName(entry.getResourceBuffer());
+      if (scriptName != null) {
+        synchronized (scriptNames) {
+          Set<ResourceEntry> entries = scriptNames.get(scriptName);
+          if (entries == null) {
+            entries = new HashSet<ResourceEntry>();
+            scriptNames.put(scriptName, entries);
           }
+          entries.add(entry);
         }
       }
     } catch (Exception e) {}
   }
 
+  /**
+   * Returns the normalized script name (lower case, without spaces) of the CRE resource
+   * starting at position 0 of the specified buffer. Only the header has to be available.
+   * Returns {@code null} if no script name is defined.
+   */
+  public static String getScriptName(ByteBuffer buffer)
+  {
+    String signature = StreamUtils.readString(buffer, 0, 4);
+    String scriptName = "";
+    if (signature.equalsIgnoreCase("CRE ")) {
+      String version = StreamUtils.readString(buffer, 4, 4);
+      if (version.equalsIgnoreCase("V1.0")) {
+        scriptName = StreamUtils.readString(buffer, 640, 32);
+      } else if (version.equalsIgnoreCase("V1.1") || version.equalsIgnoreCase("V1.2")) {
+        scriptName = StreamUtils.readString(buffer, 804, 32);
+      } else if (version.equalsIgnoreCase("V2.2")) {
+        scriptName = StreamUtils.readString(buffer, 916, 32);
+      } else if (version.equalsIgnoreCase("V9.0")) {
+        scriptName = StreamUtils.readString(buffer, 744, 32);
+      }
+    }
+    if (scriptName.equals("") || scriptName.equalsIgnoreCase("None")) {
+      // Apparently script name is the only thing that matters
+      return null;
+    }
+    return scriptName.toLowerCase(Locale.ENGLISH).replaceAll(" ", "");
+  }
+
   private static void adjustEntryOffsets(AbstractStruct struct, int amount)
   {
     for (int i = 0; i < struct.getFieldCount(); i++) {
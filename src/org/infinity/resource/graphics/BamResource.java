@@ -76,7 +76,6 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.ReferenceSearcher;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
@@ -993,12 +992,10 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
       g.dispose();
       int[] chainedImageData = ((DataBufferInt)composedImage.getRaster().getDataBuffer()).getData();
       int[] palette = ColorConvert.medianCut(chainedImageData, hasTransparency ? 255 : 256, false);
-      int[] hclPalette = new int[palette.length];
-      ColorConvert.toHclPalette(palette, hclPalette);
-      // initializing color cache
-      IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1536);
+      // initializing color lookup
+      PaletteLookup lookup = new PaletteLookup(palette);
       for (int i = 0; i < palette.length; i++) {
-        colorCache.put(palette[i] & 0x00ffffff, (byte)i);
+        lookup.setColor(palette[i], i);
       }
       // adding transparent color index to the palette if available
       if (hasTransparency) {
@@ -1033,14 +1030,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
                 dstData[dstIdx++] = (byte)cnt;
               } else {
                 // visible pixel
-                Byte colIdx = colorCache.get(srcData[srcIdx] & 0x00ffffff);
-                if (colIdx != null) {
-                  dstData[dstIdx++] = (byte)(colIdx + colorShift);
-                } else {
-                  int color = ColorConvert.nearestColor(srcData[srcIdx], hclPalette);
-                  dstData[dstIdx++] = (byte)(color + colorShift);
-                  colorCache.put(srcData[srcIdx] & 0x00ffffff, (byte)color);
-                }
+                dstData[dstIdx++] = (byte)(lookup.nearestColor(srcData[srcIdx]) + colorShift);
                 srcIdx++;
               }
             }
@@ -1055,14 +1045,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
             byte[] dstData = new byte[img.getWidth()*img.getHeight()];
             int idx = 0, max = dstData.length;
             while (idx < max) {
-              Byte colIdx = colorCache.get(srcData[idx] & 0x00ffffff);
-              if (colIdx != null) {
-                dstData[idx] = (byte)(colIdx + colorShift);
-              } else {
-                int color = ColorConvert.nearestColor(srcData[idx], hclPalette);
-                dstData[idx] = (byte)(color + colorShift);
-                colorCache.put(srcData[idx] & 0x00ffffff, (byte)color);
-              }
+              dstData[idx] = (byte)(lookup.nearestColor(srcData[idx]) + colorShift);
               idx++;
             }
             frameList.add(dstData);
@@ -1145,8 +1128,8 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
         }
       }
       frameList.clear(); frameList = null;
-      colorCache.clear(); colorCache = null;
-      palette = null; hclPalette = null;
+      lookup = null;
+      palette = null;
 
       // optionally compressing to MOSC V1
       if (compressed) {
@@ -32,6 +32,7 @@ public class BamV2Decoder extends BamDecoder
   private final List<BamV2FrameEntry> listFrames = new ArrayList<BamV2FrameEntry>();
   private final List<CycleEntry> listCycles = new ArrayList<CycleEntry>();
   private final BamV2FrameEntry defaultFrameInfo = new BamV2FrameEntry(null, 0, 0);
+  private final PvrPageTable pvrTable = new PvrPageTable(this::getPvrzEntry);
 
   private BamV2Control defaultControl;
   private ByteBuffer bamBuffer;           // contains the raw (uncompressed) BAM v2 data
@@ -63,7 +64,7 @@ public BamV2FrameEntry getFrameInfo(int frameIdx)
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    pvrTable.releaseAll();
     bamBuffer = null;
     listFrames.clear();
     listCycles.clear();
@@ -229,30 +230,19 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
-  private PvrDecoder getPVR(int page)
+  // Returns the PVRZ resource of the specified page
+  private ResourceEntry getPvrzEntry(int page)
   {
-    try {
-      String name = String.format("MOS%1$04d.PVRZ", page);
-      ResourceEntry entry = null;
-      if (bamPath != null) {
-        // preferring PVRZ files from the BAM's base path
-        Path pvrzFile = FileManager.resolve(bamPath.resolve(name));
-        if (Files.isRegularFile(pvrzFile)) {
-          entry = new FileResourceEntry(pvrzFile);
-        }
-      }
-      if (entry == null) {
-        // fallback: use PVRZ resources from game
-        entry = ResourceFactory.getResourceEntry(name);
-      }
-      if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
+    String name = String.format("MOS%1$04d.PVRZ", page);
+    if (bamPath != null) {
+      // preferring PVRZ files from the BAM's base path
+      Path pvrzFile = FileManager.resolve(bamPath.resolve(name));
+      if (Files.isRegularFile(pvrzFile)) {
+        return new FileResourceEntry(pvrzFile);
       }
-    } catch (Exception e) {
-      e.printStackTrace();
     }
-    return null;
+    // fallback: use PVRZ resources from game
+    return ResourceFactory.getResourceEntry(name);
   }
 
   // Draws the absolute frame onto the canvas. Takes BAM mode into account.
@@ -370,7 +360,7 @@ private void decodeImage(ByteBuffer buffer, int ofsBlocks, int start, int count)
           int dstY = buffer.getInt(ofs+0x18);
           ofs += dataBlockSize;
 
-          PvrDecoder decoder = getPVR(page);
+          PvrDecoder decoder = pvrTable.get(page);
           if (decoder != null) {
             try {
               BufferedImage srcImage = decoder.decode(srcX, srcY, w, h);
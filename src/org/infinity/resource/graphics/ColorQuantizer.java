@@ -0,0 +1,449 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.util.List;
+
+import org.infinity.util.TaskEngine;
+
+/**
+ * Generates palettes by median cut color reduction.
+ * <p>
+ * Colors are collected in a {@link Histogram} of unique RGB values and their pixel counts, so that
+ * the cost of color reduction depends on the number of unique colors rather than on the number
+ * of pixels. Histograms of multiple images can be built in parallel.
+ */
+public final class ColorQuantizer
+{
+  // Min. number of images to build histograms in parallel
+  private static final int MIN_PARALLEL_IMAGES = 2;
+
+  /**
+   * Creates a histogram of the colors of the specified images. Histograms of individual images are
+   * built in parallel by the shared {@link TaskEngine}.
+   * @param images List of images. {@code null} entries are skipped.
+   * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+   * @return The histogram of all image colors.
+   */
+  public static Histogram createHistogram(List<? extends BufferedImage> images, boolean ignoreAlpha)
+  {
+    final Histogram retVal = new Histogram();
+    if (images.size() < MIN_PARALLEL_IMAGES || TaskEngine.getParallelism() < 2) {
+      for (final BufferedImage image: images) {
+        retVal.add(image, ignoreAlpha);
+      }
+      return retVal;
+    }
+
+    TaskEngine.Batch batch = TaskEngine.createBatch();
+    for (final BufferedImage image: images) {
+      batch.submit(() -> {
+        Histogram hist = new Histogram();
+        hist.add(image, ignoreAlpha);
+        synchronized (retVal) {
+          retVal.add(hist);
+        }
+      });
+    }
+    batch.await();
+    return retVal;
+  }
+
+  /**
+   * Reduces the colors of the specified histogram.
+   * @param histogram The histogram with the source colors.
+   * @param desiredColors The resulting number of colors after reduction (range 1..256).
+   * @return An array containing the resulting colors, or {@code null} on error.
+   */
+  public static int[] medianCut(Histogram histogram, int desiredColors)
+  {
+    if (desiredColors > 0 && desiredColors <= 256) {
+      int[] palette = new int[desiredColors];
+      if (medianCut(histogram, desiredColors, palette)) {
+        return palette;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reduces the colors of the specified histogram.
+   * <p>
+   * If the histogram contains no more than {@code desiredColors} unique colors, they are returned
+   * unchanged. Unused palette entries are set to 0.
+   * @param histogram The histogram with the source colors.
+   * @param desiredColors The resulting number of colors after reduction (range 1..256).
+   * @param palette The array to write the resulting colors into.
+   * @return {@code true} if color reduction succeeded, {@code false} otherwise.
+   */
+  public static boolean medianCut(Histogram histogram, int desiredColors, int[] palette)
+  {
+    if (histogram == null || palette == null) {
+      throw new NullPointerException();
+    }
+    if (desiredColors <= 0 || desiredColors > 256 || palette.length < desiredColors) {
+      return false;
+    }
+
+    // collecting unique colors
+    int count = histogram.size();
+    int[] colors = new int[count];
+    int[] weights = new int[count];
+    histogram.getEntries(colors, weights);
+
+    if (count <= desiredColors) {
+      System.arraycopy(colors, 0, palette, 0, count);
+      for (int i = count; i < desiredColors; i++) {
+        palette[i] = 0;
+      }
+      return true;
+    }
+
+    // boxes are ranges of the colors array, split along their longest side
+    int[] boxBegin = new int[desiredColors];
+    int[] boxEnd = new int[desiredColors];
+    int[] boxSide = new int[desiredColors];   // length of the longest side
+    int[] boxAxis = new int[desiredColors];   // index of the longest side (0=red, 1=green, 2=blue)
+    int numBoxes = 1;
+    boxBegin[0] = 0;
+    boxEnd[0] = count;
+    shrink(colors, 0, count, boxSide, boxAxis, 0);
+
+    int[] tmpColors = new int[count];
+    int[] tmpWeights = new int[count];
+    int[] buckets = new int[257];
+    while (numBoxes < desiredColors) {
+      // finding box with the longest side
+      int box = -1;
+      for (int i = 0, max = 0; i < numBoxes; i++) {
+        if (boxSide[i] > max) {
+          max = boxSide[i];
+          box = i;
+        }
+      }
+      if (box < 0) {
+        // each box contains a single color
+        break;
+      }
+
+      int begin = boxBegin[box], end = boxEnd[box];
+      int shift = 16 - (boxAxis[box] << 3);
+      sortByComponent(colors, weights, begin, end, shift, tmpColors, tmpWeights, buckets);
+
+      // splitting at the median pixel
+      long total = 0L;
+      for (int i = begin; i < end; i++) {
+        total += weights[i];
+      }
+      long half = (total + 1L) / 2L, sum = 0L;
+      int median = begin;
+      while (median < end - 1) {
+        sum += weights[median++];
+        if (sum >= half) {
+          break;
+        }
+      }
+
+      boxEnd[box] = median;
+      shrink(colors, begin, median, boxSide, boxAxis, box);
+      boxBegin[numBoxes] = median;
+      boxEnd[numBoxes] = end;
+      shrink(colors, median, end, boxSide, boxAxis, numBoxes);
+      numBoxes++;
+    }
+
+    // averaging colors of each box
+    for (int i = 0; i < numBoxes; i++) {
+      long r = 0L, g = 0L, b = 0L, total = 0L;
+      for (int j = boxBegin[i]; j < boxEnd[i]; j++) {
+        int c = colors[j], w = weights[j];
+        r += (long)((c >>> 16) & 0xff) * w;
+        g += (long)((c >>> 8) & 0xff) * w;
+        b += (long)(c & 0xff) * w;
+        total += w;
+      }
+      palette[i] = (int)(((r / total) << 16) | ((g / total) << 8) | (b / total));
+    }
+    for (int i = numBoxes; i < desiredColors; i++) {
+      palette[i] = 0;
+    }
+    return true;
+  }
+
+  // Determines longest side length and axis of the colors in the specified range
+  private static void shrink(int[] colors, int begin, int end, int[] boxSide, int[] boxAxis, int box)
+  {
+    int minR = 255, minG = 255, minB = 255, maxR = 0, maxG = 0, maxB = 0;
+    for (int i = begin; i < end; i++) {
+      int r = (colors[i] >>> 16) & 0xff, g = (colors[i] >>> 8) & 0xff, b = colors[i] & 0xff;
+      if (r < minR) minR = r;
+      if (r > maxR) maxR = r;
+      if (g < minG) minG = g;
+      if (g > maxG) maxG = g;
+      if (b < minB) minB = b;
+      if (b > maxB) maxB = b;
+    }
+    int side = maxR - minR, axis = 0;
+    if (maxG - minG > side) { side = maxG - minG; axis = 1; }
+    if (maxB - minB > side) { side = maxB - minB; axis = 2; }
+    boxSide[box] = side;
+    boxAxis[box] = axis;
+  }
+
+  // Sorts the specified range by a single color component (counting sort)
+  private static void sortByComponent(int[] colors, int[] weights, int begin, int end, int shift,
+                                      int[] tmpColors, int[] tmpWeights, int[] buckets)
+  {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = 0;
+    }
+    for (int i = begin; i < end; i++) {
+      buckets[((colors[i] >>> shift) & 0xff) + 1]++;
+    }
+    for (int i = 1; i < buckets.length; i++) {
+      buckets[i] += buckets[i - 1];
+    }
+    for (int i = begin; i < end; i++) {
+      int pos = buckets[(colors[i] >>> shift) & 0xff]++;
+      tmpColors[pos] = colors[i];
+      tmpWeights[pos] = weights[i];
+    }
+    System.arraycopy(tmpColors, 0, colors, begin, end - begin);
+    System.arraycopy(tmpWeights, 0, weights, begin, end - begin);
+  }
+
+  private ColorQuantizer() {}
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /**
+   * Counts the occurrences of RGB colors. Alpha components are ignored.
+   * Instances are not thread-safe.
+   */
+  public static final class Histogram
+  {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // colors (RGB | 0x1000000, 0 = unused) and counts, using open addressing
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    public Histogram()
+    {
+      keys = new int[INITIAL_CAPACITY];
+      counts = new int[INITIAL_CAPACITY];
+    }
+
+    /** Returns the number of unique colors. */
+    public int size()
+    {
+      return size;
+    }
+
+    /** Removes all colors. */
+    public void clear()
+    {
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = 0;
+      }
+      size = 0;
+    }
+
+    /** Returns how often the specified color has been added. */
+    public int getCount(int rgbColor)
+    {
+      int key = (rgbColor & 0xffffff) | 0x1000000;
+      int mask = keys.length - 1;
+      for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return counts[slot];
+        }
+      }
+      return 0;
+    }
+
+    /** Adds a single occurrence of the specified color. */
+    public void add(int rgbColor)
+    {
+      add(rgbColor, 1);
+    }
+
+    /** Adds the specified number of occurrences of the specified color. */
+    public void add(int rgbColor, int count)
+    {
+      if (count <= 0) {
+        return;
+      }
+      if ((size + 1) * 2 > keys.length) {
+        grow();
+      }
+      int key = (rgbColor & 0xffffff) | 0x1000000;
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      while (keys[slot] != 0 && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (keys[slot] == 0) {
+        keys[slot] = key;
+        counts[slot] = count;
+        size++;
+      } else {
+        counts[slot] += count;
+      }
+    }
+
+    /**
+     * Adds all pixels of the specified array.
+     * @param pixels Pixel data in ARGB format.
+     * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+     */
+    public void add(int[] pixels, boolean ignoreAlpha)
+    {
+      add(pixels, 0, pixels.length, ignoreAlpha);
+    }
+
+    /**
+     * Adds a range of pixels of the specified array.
+     * @param pixels Pixel data in ARGB format.
+     * @param ofs Start offset.
+     * @param len Number of pixels.
+     * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+     */
+    public void add(int[] pixels, int ofs, int len, boolean ignoreAlpha)
+    {
+      // consecutive pixels are often identical
+      int last = 0, run = 0;
+      for (int i = ofs, end = ofs + len; i < end; i++) {
+        int c = pixels[i];
+        if (!ignoreAlpha && (c & 0xff000000) == 0) {
+          continue;
+        }
+        c &= 0xffffff;
+        if (run > 0 && c == last) {
+          run++;
+        } else {
+          add(last, run);
+          last = c;
+          run = 1;
+        }
+      }
+      add(last, run);
+    }
+
+    /**
+     * Adds all pixels of the specified image.
+     * @param image The image. Does nothing if {@code null}.
+     * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+     */
+    public void add(BufferedImage image, boolean ignoreAlpha)
+    {
+      if (image == null) {
+        return;
+      }
+
+      if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED &&
+          image.getColorModel() instanceof IndexColorModel) {
+        // counting palette indices first
+        IndexColorModel cm = (IndexColorModel)image.getColorModel();
+        byte[] buffer = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+        int[] indexCounts = new int[256];
+        for (int i = 0; i < buffer.length; i++) {
+          indexCounts[buffer[i] & 0xff]++;
+        }
+        for (int i = 0; i < cm.getMapSize(); i++) {
+          int c = cm.getRGB(i);
+          if (ignoreAlpha || (c & 0xff000000) != 0) {
+            add(c, indexCounts[i]);
+          }
+        }
+      } else if (image.getType() == BufferedImage.TYPE_INT_ARGB ||
+                 image.getType() == BufferedImage.TYPE_INT_RGB) {
+        int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        add(buffer, image.getType() == BufferedImage.TYPE_INT_RGB || ignoreAlpha);
+      } else {
+        int[] buffer = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        add(buffer, ignoreAlpha);
+      }
+    }
+
+    /** Adds all colors of the specified histogram. */
+    public void add(Histogram histogram)
+    {
+      for (int i = 0; i < histogram.keys.length; i++) {
+        if (histogram.keys[i] != 0) {
+          add(histogram.keys[i], histogram.counts[i]);
+        }
+      }
+    }
+
+    /** Removes the specified color. */
+    public void remove(int rgbColor)
+    {
+      int key = (rgbColor & 0xffffff) | 0x1000000;
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      while (keys[slot] != key) {
+        if (keys[slot] == 0) {
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      // moving subsequent entries of the probe sequence into the gap
+      keys[slot] = 0;
+      size--;
+      for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+        int home = hash(keys[next]) & mask;
+        if (((next - home) & mask) >= ((next - slot) & mask)) {
+          keys[slot] = keys[next];
+          counts[slot] = counts[next];
+          keys[next] = 0;
+          slot = next;
+        }
+      }
+    }
+
+    /**
+     * Writes the unique colors and their counts into the specified arrays.
+     * Both arrays must provide space for at least {@link #size()} entries.
+     */
+    public void getEntries(int[] colors, int[] counts)
+    {
+      for (int i = 0, idx = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+          colors[idx] = keys[i] & 0xffffff;
+          counts[idx] = this.counts[i];
+          idx++;
+        }
+      }
+    }
+
+    private void grow()
+    {
+      int[] oldKeys = keys;
+      int[] oldCounts = counts;
+      keys = new int[oldKeys.length * 2];
+      counts = new int[oldCounts.length * 2];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+          add(oldKeys[i], oldCounts[i]);
+        }
+      }
+    }
+
+    private static int hash(int value)
+    {
+      int h = value * 0x9e3779b9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -29,11 +29,21 @@
 
 package org.infinity.resource.graphics;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.infinity.util.TaskEngine;
+
 /**
  * Encodes pixel data into the DXT1/DXT3/DXT5 format.
+ * <p>
+ * Images are encoded in parallel by the shared {@link TaskEngine} when they are large enough.
+ * Blocks are encoded without allocating temporary objects.
  */
 public final class DxtEncoder
 {
+  // Images with fewer blocks are always encoded by the calling thread
+  private static final int MIN_PARALLEL_BLOCKS = 1024;
+
   /**
    * Supported DXT compression types
    */
@@ -83,6 +93,23 @@ static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dx
    */
   static public void encodeImage(int[] pixels, int width, int height, byte[] output,
                               DxtType dxtType) throws Exception
+  {
+    encodeImage(pixels, 0, width, height, output, 0, dxtType);
+  }
+
+  /**
+   * Encodes a section of an image into a series of DXTn code blocks.
+   * @param pixels The pixel data as array of integers in ARGB format.
+   * @param pixelsOfs Start offset of the image data in {@code pixels}.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param output The storage space for the compressed data.
+   * @param outputOfs Start offset of the compressed data in {@code output}.
+   * @param dxtType The compression type to use.
+   * @throws Exception
+   */
+  static public void encodeImage(int[] pixels, int pixelsOfs, int width, int height, byte[] output,
+                                 int outputOfs, DxtType dxtType) throws Exception
   {
     // consistency check
     if (dxtType == null)
@@ -91,30 +118,40 @@ static public void encodeImage(int[] pixels, int width, int height, byte[] outpu
       throw new Exception("Invalid width or height specified");
     if ((width & 3) != 0 || (height & 3) != 0)
       throw new Exception("Width and height must be a multiple of 4");
-    if (pixels == null || pixels.length < width*height)
+    if (pixels == null || pixelsOfs < 0 || pixels.length - pixelsOfs < width*height)
       throw new Exception("Insufficient source data.");
-    if (output == null || output.length < calcImageSize(width, height, dxtType))
+    int size = calcImageSize(width, height, dxtType);
+    if (output == null || outputOfs < 0 || output.length - outputOfs < size)
       throw new Exception(String.format("Insufficient space in output array. Needed: %1$d bytes, available: %2$d bytes",
-                          calcImageSize(width, height, dxtType), (output == null) ? 0 : output.length));
-
-    int outputOfs = 0;    // points to the end of encoded data
-    int bw = width / 4;
-    int bh = height / 4;
-    int[] inBlock = new int[16];
-    byte[] outBlock = new byte[calcBlockSize(dxtType)];
-    for (int y = 0; y < bh; y++) {
-      for (int x = 0; x < bw; x++) {
-        // create 4x4 block of pixels for DXTn compression
-        int ofs = (y*4)*width + (x*4);
-        for (int i = 0; i < 4; i++, ofs+=width) {
-          System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+                          size, (output == null) ? 0 : Math.max(0, output.length - outputOfs)));
+
+    final int bw = width / 4;
+    final int bh = height / 4;
+    final int blockSize = calcBlockSize(dxtType);
+    int parallelism = TaskEngine.getParallelism();
+    if (parallelism < 2 || bw*bh < MIN_PARALLEL_BLOCKS) {
+      encodeRows(pixels, pixelsOfs, width, 0, bh, output, outputOfs, dxtType);
+      return;
+    }
+
+    // encoding bands of block rows in parallel
+    final int rowsPerTask = Math.max(1, bh / (parallelism * 4));
+    final AtomicReference<Exception> error = new AtomicReference<>();
+    TaskEngine.Batch batch = TaskEngine.createBatch();
+    for (int y = 0; y < bh; y += rowsPerTask) {
+      final int y0 = y;
+      final int y1 = Math.min(bh, y + rowsPerTask);
+      batch.submit(() -> {
+        try {
+          encodeRows(pixels, pixelsOfs, width, y0, y1, output, outputOfs + y0*bw*blockSize, dxtType);
+        } catch (Exception e) {
+          error.compareAndSet(null, e);
         }
-
-        // compress pixel block
-        encodeBlock(inBlock, outBlock, dxtType);
-        System.arraycopy(outBlock, 0, output, outputOfs, outBlock.length);
-        outputOfs += outBlock.length;
-      }
+      });
+    }
+    batch.await();
+    if (error.get() != null) {
+      throw error.get();
     }
   }
 
@@ -132,45 +169,7 @@ public static void encodeBlock(int[] pixels, byte[] block, DxtType dxtType) thro
       throw new Exception(String.format("Insufficient output space. Needed: %1$d bytes, available: %2$d bytes",
                           calcBlockSize(dxtType), (block == null) ? 0 : block.length));
 
-    byte[] colorBlock = new byte[8];
-    byte[] alphaBlock = null;
-    if (dxtType == DxtType.DXT3 || dxtType == DxtType.DXT5) {
-      alphaBlock = new byte[8];
-    }
-
-    // create the minimal point set
-    ColorSet colors = new ColorSet(pixels, dxtType);
-
-    // check the compression type and compress color
-    ColorFit fit = null;
-    if (colors.getCount() == 1) {
-      // always do a single color fit
-      fit = new SingleColorFit(colors, dxtType);
-    } else if (colors.getCount() == 0) {
-      // do a range fit
-      fit = new RangeFit(colors, dxtType);
-    } else {
-      // default to a cluster fit
-      fit = new ClusterFit(colors, dxtType);
-    }
-    fit.compress(colorBlock);
-
-    // compress alpha separately if necessary
-    if (dxtType == DxtType.DXT3) {
-      Alpha.compressAlphaDxt3(pixels, alphaBlock);
-    } else if (dxtType == DxtType.DXT5) {
-      Alpha.compressAlphaDxt5(pixels, alphaBlock);
-    }
-
-    int ofs = 0;
-    if (alphaBlock != null) {
-      for (int i = 0; i < alphaBlock.length; i++, ofs++) {
-        block[ofs] = alphaBlock[i];
-      }
-    }
-    for (int i = 0; i < colorBlock.length; i++, ofs++) {
-      block[ofs] = colorBlock[i];
-    }
+    new BlockEncoder().encode(pixels, block, 0, dxtType);
   }
 
 
@@ -211,14 +210,84 @@ public static int calcImageSize(int width, int height, DxtType dxtType)
     return (width*height)/16 * calcBlockSize(dxtType);
   }
 
+  // Encodes the block rows [y0, y1) of the image
+  private static void encodeRows(int[] pixels, int pixelsOfs, int width, int y0, int y1,
+                                 byte[] output, int outputOfs, DxtType dxtType) throws Exception
+  {
+    BlockEncoder encoder = new BlockEncoder();
+    int[] inBlock = new int[16];
+    int blockSize = calcBlockSize(dxtType);
+    int bw = width / 4;
+    for (int y = y0; y < y1; y++) {
+      for (int x = 0; x < bw; x++) {
+        // create 4x4 block of pixels for DXTn compression
+        int ofs = pixelsOfs + (y*4)*width + (x*4);
+        for (int i = 0; i < 4; i++, ofs+=width) {
+          System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+        }
+
+        // compress pixel block
+        encoder.encode(inBlock, output, outputOfs, dxtType);
+        outputOfs += blockSize;
+      }
+    }
+  }
+
 
 // --------------------------- INNER CLASSES ---------------------------
 
+  // Encodes single blocks. Holds all temporary data, so that no objects are allocated per block.
+  // Instances must not be shared between threads.
+  private static final class BlockEncoder
+  {
+    private final ColorSet colors = new ColorSet();
+    private final SingleColorFit singleColorFit = new SingleColorFit(colors);
+    private final RangeFit rangeFit = new RangeFit(colors);
+    private final ClusterFit clusterFit = new ClusterFit(colors);
+    private final Alpha alpha = new Alpha();
+
+    public void encode(int[] pixels, byte[] block, int ofs, DxtType dxtType)
+    {
+      // create the minimal point set
+      colors.init(pixels, dxtType);
+
+      // check the compression type and compress color
+      ColorFit fit = null;
+      if (colors.getCount() == 1) {
+        // always do a single color fit
+        fit = singleColorFit;
+      } else if (colors.getCount() == 0) {
+        // do a range fit
+        fit = rangeFit;
+      } else {
+        // default to a cluster fit
+        fit = clusterFit;
+      }
+      fit.init(dxtType);
+
+      // compress alpha separately if necessary (stored in front of the color data)
+      if (dxtType == DxtType.DXT3) {
+        Alpha.compressAlphaDxt3(pixels, block, ofs);
+        ofs += 8;
+      } else if (dxtType == DxtType.DXT5) {
+        alpha.compressAlphaDxt5(pixels, block, ofs);
+        ofs += 8;
+      }
+
+      // color blocks are left empty if no fit improves on the initial error
+      for (int i = 0; i < 8; i++) {
+        block[ofs+i] = 0;
+      }
+      fit.compress(block, ofs);
+    }
+  }
+
+
   private static class ColorSet
   {
-    private final Vec3[] points;
-    private final float[] weights;
-    private final int[] remap;
+    private final float[] points = new float[16*3];   // (x, y, z) triplets
+    private final float[] weights = new float[16];
+    private final int[] remap = new int[16];
     private int count;
     private boolean transparent;
 
@@ -228,11 +297,8 @@ public static int argb(int color, int pos)
       return (color >>> ((pos & 3) << 3)) & 0xff;
     }
 
-    public ColorSet(int[] pixels, DxtType dxtType)
+    public void init(int[] pixels, DxtType dxtType)
     {
-      points = new Vec3[16];
-      weights = new float[16];
-      remap = new int[16];
       count = 0;
       transparent = false;
 
@@ -260,7 +326,9 @@ public ColorSet(int[] pixels, DxtType dxtType)
             float w = (float)(argb(pixels[i], 3) + 1) / 256.0f;
 
             // add the points
-            points[count] = new Vec3(x, y, z);
+            points[3*count] = x;
+            points[3*count+1] = y;
+            points[3*count+2] = z;
             weights[count] = w;
             remap[i] = count;
 
@@ -294,7 +362,7 @@ public ColorSet(int[] pixels, DxtType dxtType)
 
     public int getCount() { return count; }
 
-    public Vec3[] getPoints() { return points; }
+    public float[] getPoints() { return points; }
 
     public float[] getWeights() { return weights; }
 
@@ -307,83 +375,103 @@ public void remapIndices(int[] source, int[] target)
         target[i] = (j == -1) ? 3 : source[j];
       }
     }
+
+    // Fills all target indices with the specified index, transparent pixels excluded
+    public void remapIndices(int index, int[] target)
+    {
+      for (int i = 0; i < 16; i++) {
+        target[i] = (remap[i] == -1) ? 3 : index;
+      }
+    }
   }
 
 
   private static abstract class ColorFit
   {
-    protected ColorSet colors;
+    protected final ColorSet colors;
     protected DxtType dxtType;
 
-    public ColorFit(ColorSet colors, DxtType dxtType)
+    public ColorFit(ColorSet colors)
     {
       this.colors = colors;
+    }
+
+    // Prepares the fit for the current content of the color set
+    public void init(DxtType dxtType)
+    {
       this.dxtType = dxtType;
     }
 
-    public void compress(byte[] block)
+    public void compress(byte[] block, int ofs)
     {
       boolean isDXT1 = (dxtType == DxtType.DXT1);
       if (isDXT1) {
-        compress3(block);
+        compress3(block, ofs);
         if (!colors.isTransparent()) {
-          compress4(block);
+          compress4(block, ofs);
         }
       } else {
-        compress4(block);
+        compress4(block, ofs);
       }
     }
 
-    protected abstract void compress3(byte[] block);
-    protected abstract void compress4(byte[] block);
+    protected abstract void compress3(byte[] block, int ofs);
+    protected abstract void compress4(byte[] block, int ofs);
   }
 
 
   private static class SingleColorFit extends ColorFit
   {
-    private final int[] color;
+    private static final SingleColorLookup[][] LOOKUPS3 = {
+        Lookups.lookup53, Lookups.lookup63, Lookups.lookup53
+    };
+    private static final SingleColorLookup[][] LOOKUPS4 = {
+        Lookups.lookup54, Lookups.lookup64, Lookups.lookup54
+    };
 
-    private Vec3 start, end;
+    private final int[] color = new int[3];
+    private final int[] indices = new int[16];
+
+    private float startX, startY, startZ, endX, endY, endZ;
     private int index;
     private int error;
     private int bestError;
 
-    public SingleColorFit(ColorSet colors, DxtType dxtType)
+    public SingleColorFit(ColorSet colors)
     {
-      super(colors, dxtType);
-      color = new int[3];
-      start = new Vec3();
-      end = new Vec3();
+      super(colors);
+    }
+
+    @Override
+    public void init(DxtType dxtType)
+    {
+      super.init(dxtType);
+      startX = startY = startZ = endX = endY = endZ = 0.0f;
 
       // grab the single color
-      Vec3 value = this.colors.getPoints()[0];
-      color[0] = Misc.floatToInt(255.0f*value.x(), 255);
-      color[1] = Misc.floatToInt(255.0f*value.y(), 255);
-      color[2] = Misc.floatToInt(255.0f*value.z(), 255);
+      float[] values = colors.getPoints();
+      color[0] = Misc.floatToInt(255.0f*values[0], 255);
+      color[1] = Misc.floatToInt(255.0f*values[1], 255);
+      color[2] = Misc.floatToInt(255.0f*values[2], 255);
 
       // initialize the best error
       bestError = Integer.MAX_VALUE;
     }
 
     @Override
-    protected void compress3(byte[] block)
+    protected void compress3(byte[] block, int ofs)
     {
-      // build the table of lookups
-      SingleColorLookup[][] lookups = new SingleColorLookup[][]{
-          Lookups.lookup53, Lookups.lookup63, Lookups.lookup53
-      };
-
       // find the best end-points and index
-      computeEndPoints(lookups);
+      computeEndPoints(LOOKUPS3);
 
       // build the block if we win
       if (error < bestError) {
         // remap indices
-        int[] indices = new int[16];
-        colors.remapIndices(new int[]{index}, indices);
+        colors.remapIndices(index, indices);
 
         // save the block
-        ColorBlock.writeColorBlock3(start, end, indices, block);
+        ColorBlock.writeColorBlock3(ColorBlock.floatTo565(startX, startY, startZ),
+                                    ColorBlock.floatTo565(endX, endY, endZ), indices, block, ofs);
 
         // save the error
         bestError = error;
@@ -391,24 +479,19 @@ protected void compress3(byte[] block)
     }
 
     @Override
-    protected void compress4(byte[] block)
+    protected void compress4(byte[] block, int ofs)
     {
-      // build the table of lookups
-      SingleColorLookup[][] lookups = new SingleColorLookup[][]{
-          Lookups.lookup54, Lookups.lookup64, Lookups.lookup54
-      };
-
       // find the best end-points and index
-      computeEndPoints(lookups);
+      computeEndPoints(LOOKUPS4);
 
       // build the block if we win
       if (error < bestError) {
         // remap indices
-        int[] indices = new int[16];
-        colors.remapIndices(new int[]{index}, indices);
+        colors.remapIndices(index, indices);
 
         // save the block
-        ColorBlock.writeColorBlock4(start, end, indices, block);
+        ColorBlock.writeColorBlock4(ColorBlock.floatTo565(startX, startY, startZ),
+                                    ColorBlock.floatTo565(endX, endY, endZ), indices, block, ofs);
 
         // save the error
         bestError = error;
@@ -420,29 +503,23 @@ protected void computeEndPoints(SingleColorLookup[][] lookups)
       // check each index combination (endpoint or intermediate)
       this.error = Integer.MAX_VALUE;
       for (int index = 0; index < 2; index++) {
-        SourceBlock[] sources = new SourceBlock[3];
-        int error = 0;
-        for (int channel = 0; channel < 3; channel++) {
-          // grab the lookup table and index for this channel
-          SingleColorLookup[] lookup = lookups[channel];
-          int target = color[channel];
-
-          // store a pointer to the source for this channel
-          sources[channel] = lookup[target].sources[index];
-
-          // accumulate the error
-          int diff = sources[channel].error;
-          error += diff * diff;
-        }
+        // grab the lookup table and index for each channel
+        SourceBlock source0 = lookups[0][color[0]].sources[index];
+        SourceBlock source1 = lookups[1][color[1]].sources[index];
+        SourceBlock source2 = lookups[2][color[2]].sources[index];
+
+        // accumulate the error
+        int error = source0.error*source0.error + source1.error*source1.error +
+                    source2.error*source2.error;
 
         // keep it if the error is lower
         if (error < this.error) {
-          start = new Vec3((float)sources[0].start / 31.0f,
-                           (float)sources[1].start / 63.0f,
-                           (float)sources[2].start / 31.0f);
-          end = new Vec3((float)sources[0].end / 31.0f,
-                         (float)sources[1].end / 63.0f,
-                         (float)sources[2].end / 31.0f);
+          startX = (float)source0.start / 31.0f;
+          startY = (float)source1.start / 63.0f;
+          startZ = (float)source2.start / 31.0f;
+          endX = (float)source0.end / 31.0f;
+          endY = (float)source1.end / 63.0f;
+          endZ = (float)source2.end / 31.0f;
           this.index = 2 * index;
           this.error = error;
         }
@@ -452,108 +529,92 @@ protected void computeEndPoints(SingleColorLookup[][] lookups)
 
   private static class RangeFit extends ColorFit
   {
-    private Vec3 metric, start, end;
+    // using perceptual metric for color error
+    private static final float METRIC_X = 0.2126f;
+    private static final float METRIC_Y = 0.7152f;
+    private static final float METRIC_Z = 0.0722f;
+
+    private final float[] covariance = new float[6];
+    private final float[] principle = new float[3];
+    private final float[] codes = new float[4*3];
+    private final int[] closest = new int[16];
+    private final int[] indices = new int[16];
+
+    private float startX, startY, startZ, endX, endY, endZ;
     private float bestError;
 
-    public RangeFit(ColorSet colors, DxtType dxtType)
+    public RangeFit(ColorSet colors)
     {
-      super(colors, dxtType);
+      super(colors);
+    }
 
-      // using perceptual metric for color error
-      metric = new Vec3(0.2126f, 0.7152f, 0.0722f);
+    @Override
+    public void init(DxtType dxtType)
+    {
+      super.init(dxtType);
 
       // initialize the best error
       bestError = Float.MAX_VALUE;
 
       // cache some values
-      int count = this.colors.getCount();
-      Vec3[] values = this.colors.getPoints();
-      float[] weights = this.colors.getWeights();
+      int count = colors.getCount();
+      float[] values = colors.getPoints();
+      float[] weights = colors.getWeights();
 
       // get the covariance matrix
-      Sym3x3 covariance = Sym3x3.computeWeightedCovariance(count, values, weights);
+      Sym3x3.computeWeightedCovariance(count, values, weights, covariance);
 
       // compute the principle component
-      Vec3 principle = Sym3x3.computePrincipleComponent(covariance);
+      Sym3x3.computePrincipleComponent(covariance, principle);
 
       // get the min and max range as the codebook endpoints
-      Vec3 start = new Vec3();
-      Vec3 end = new Vec3();
+      int start = -1, end = -1;
       if (count > 0) {
         float min, max;
 
         // compute the range
-        start = end = values[0];
-        min = max = Vec3.dot(values[0], principle);
+        start = end = 0;
+        min = max = Misc.dot(values, 0, principle[0], principle[1], principle[2]);
         for (int i = 1; i < count; i++) {
-          float val = Vec3.dot(values[i], principle);
+          float val = Misc.dot(values, i, principle[0], principle[1], principle[2]);
           if (val < min) {
-            start = values[i];
+            start = i;
             min = val;
           } else if (val > max) {
-            end = values[i];
+            end = i;
             max = val;
           }
         }
       }
 
-      // clamp the output to [0, 1]
-      final Vec3 one = new Vec3(1.0f);
-      final Vec3 zero = new Vec3(0.0f);
-      start = Vec3.min(one, Vec3.max(zero, start));
-      end = Vec3.min(one, Vec3.max(zero, end));
-
-      // clamp the grid and save
-      final Vec3 grid = new Vec3(31.0f, 63.0f, 31.0f);
-      final Vec3 gridrcp = new Vec3(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f);
-      final Vec3 half = new Vec3(0.5f);
-      this.start = Vec3.truncate(Vec3.mul(grid, start).add(half)).mul(gridrcp);
-      this.end = Vec3.truncate(Vec3.mul(grid, end).add(half)).mul(gridrcp);
+      // clamp the output to [0, 1] and clamp the grid
+      startX = toGrid((start < 0) ? 0.0f : values[3*start], 31.0f);
+      startY = toGrid((start < 0) ? 0.0f : values[3*start+1], 63.0f);
+      startZ = toGrid((start < 0) ? 0.0f : values[3*start+2], 31.0f);
+      endX = toGrid((end < 0) ? 0.0f : values[3*end], 31.0f);
+      endY = toGrid((end < 0) ? 0.0f : values[3*end+1], 63.0f);
+      endZ = toGrid((end < 0) ? 0.0f : values[3*end+2], 31.0f);
     }
 
     @Override
-    protected void compress3(byte[] block)
+    protected void compress3(byte[] block, int ofs)
     {
-      // cache some values
-      int count = colors.getCount();
-      Vec3[] values = colors.getPoints();
-
       // create a codebook
-      Vec3[] codes = new Vec3[3];
-      codes[0] = start;
-      codes[1] = end;
-      codes[2] = Vec3.mul(start, 0.5f).add(Vec3.mul(end, 0.5f));
+      setCode(0, startX, startY, startZ);
+      setCode(1, endX, endY, endZ);
+      setCode(2, startX*0.5f + endX*0.5f, startY*0.5f + endY*0.5f, startZ*0.5f + endZ*0.5f);
 
       // match each point to the closest code
-      int[] closest = new int[16];
-      float error = 0.0f;
-      for (int i = 0; i < count; i++) {
-        // find the closest code
-        float dist = Float.MAX_VALUE;
-        int idx = 0;
-        for (int j = 0; j < 3; j++) {
-          float d = Vec3.lengthSquared(Vec3.mul(metric, Vec3.sub(values[i], codes[j])));
-          if (d < dist) {
-            dist = d;
-            idx = j;
-          }
-        }
-
-        // save the index
-        closest[i] = idx;
-
-        // accumulate the error
-        error += dist;
-      }
+      float error = matchCodes(3);
 
       // save this scheme if it wins
       if (error < bestError) {
         // remap the indices
-        int[] indices = new int[16];
         colors.remapIndices(closest, indices);
 
         // save the block
-        ColorBlock.writeColorBlock3(start, end, indices, block);
+        ColorBlock.writeColorBlock3(ColorBlock.floatTo565(startX, startY, startZ),
+                                    ColorBlock.floatTo565(endX, endY, endZ), indices, block, ofs);
 
         // save the error
         bestError = error;
@@ -561,28 +622,55 @@ protected void compress3(byte[] block)
     }
 
     @Override
-    protected void compress4(byte[] block)
+    protected void compress4(byte[] block, int ofs)
     {
-      // cache some values
-      int count = colors.getCount();
-      Vec3[] values = colors.getPoints();
-
       // create a codebook
-      Vec3[] codes = new Vec3[4];
-      codes[0] = start;
-      codes[1] = end;
-      codes[2] = Vec3.mul(start, 2.0f/3.0f).add(Vec3.mul(end, 1.0f/3.0f));
-      codes[3] = Vec3.mul(start, 1.0f/3.0f).add(Vec3.mul(end, 2.0f/3.0f));
+      setCode(0, startX, startY, startZ);
+      setCode(1, endX, endY, endZ);
+      setCode(2, startX*(2.0f/3.0f) + endX*(1.0f/3.0f), startY*(2.0f/3.0f) + endY*(1.0f/3.0f),
+              startZ*(2.0f/3.0f) + endZ*(1.0f/3.0f));
+      setCode(3, startX*(1.0f/3.0f) + endX*(2.0f/3.0f), startY*(1.0f/3.0f) + endY*(2.0f/3.0f),
+              startZ*(1.0f/3.0f) + endZ*(2.0f/3.0f));
 
       // match each point to the closest code
-      int[] closest = new int[16];
+      float error = matchCodes(4);
+
+      // save this scheme if it wins
+      if (error < bestError) {
+        // remap the indices
+        colors.remapIndices(closest, indices);
+
+        // save the block
+        ColorBlock.writeColorBlock4(ColorBlock.floatTo565(startX, startY, startZ),
+                                    ColorBlock.floatTo565(endX, endY, endZ), indices, block, ofs);
+
+        // save the error
+        bestError = error;
+      }
+    }
+
+    private void setCode(int index, float x, float y, float z)
+    {
+      codes[3*index] = x;
+      codes[3*index+1] = y;
+      codes[3*index+2] = z;
+    }
+
+    // Matches each point to the closest code and returns the accumulated error
+    private float matchCodes(int numCodes)
+    {
+      int count = colors.getCount();
+      float[] values = colors.getPoints();
       float error = 0.0f;
       for (int i = 0; i < count; i++) {
         // find the closest code
         float dist = Float.MAX_VALUE;
         int idx = 0;
-        for (int j = 0; j < 4; j++) {
-          float d = Vec3.lengthSquared(Vec3.mul(metric, Vec3.sub(values[i], codes[j])));
+        for (int j = 0; j < numCodes; j++) {
+          float dx = METRIC_X * (values[3*i] - codes[3*j]);
+          float dy = METRIC_Y * (values[3*i+1] - codes[3*j+1]);
+          float dz = METRIC_Z * (values[3*i+2] - codes[3*j+2]);
+          float d = dx*dx + dy*dy + dz*dz;
           if (d < dist) {
             dist = d;
             idx = j;
@@ -595,19 +683,14 @@ protected void compress4(byte[] block)
         // accumulate the error
         error += dist;
       }
+      return error;
+    }
 
-      // save this scheme if it wins
-      if (error < bestError) {
-        // remap the indices
-        int[] indices = new int[16];
-        colors.remapIndices(closest, indices);
-
-        // save the block
-        ColorBlock.writeColorBlock4(start, end, indices, block);
-
-        // save the error
-        bestError = error;
-      }
+    // Clamps the value to [0, 1] and rounds it to the nearest grid point
+    private static float toGrid(float value, float grid)
+    {
+      value = Misc.clamp(value);
+      return Misc.truncate(grid*value + 0.5f) * (1.0f/grid);
     }
   }
 
@@ -615,105 +698,116 @@ private static class ClusterFit extends ColorFit
   {
     private static final int IterationCount = 8;
 
-    private final int[] order;
-    private final Vec4[] pointsWeights;
+    // using perceptual metric for color error
+    private static final float METRIC_X = 0.2126f;
+    private static final float METRIC_Y = 0.7152f;
+    private static final float METRIC_Z = 0.0722f;
+
+    private static final float GRID_X = 31.0f;
+    private static final float GRID_Y = 63.0f;
+    private static final float GRID_Z = 31.0f;
+    private static final float GRIDRCP_X = 1.0f/31.0f;
+    private static final float GRIDRCP_Y = 1.0f/63.0f;
+    private static final float GRIDRCP_Z = 1.0f/31.0f;
+
+    private final int[] order = new int[16*IterationCount];
+    private final float[] pointsWeights = new float[16*4];  // (x, y, z, w) quadruplets
+    private final float[] covariance = new float[6];
+    private final float[] principle = new float[3];
+    private final float[] dps = new float[16];
+    private final int[] unordered = new int[16];
+    private final int[] bestIndices = new int[16];
+
+    private float xsumX, xsumY, xsumZ, wsum;
+    private float bestError;
 
-    private Vec3 principle;
-    private Vec4 xsum_wsum;
-    private Vec4 metric;
-    private Vec4 bestError;
+    public ClusterFit(ColorSet colors)
+    {
+      super(colors);
+    }
 
-    public ClusterFit(ColorSet colors, DxtType dxtType)
+    @Override
+    public void init(DxtType dxtType)
     {
-      super(colors, dxtType);
-      order = new int[16*IterationCount];
-      pointsWeights = new Vec4[16];
+      super.init(dxtType);
 
       // initialize the best error
-      bestError = new Vec4(Float.MAX_VALUE);
-
-      // using perceptual metric for color error
-      metric = new Vec4(0.2126f, 0.7152f, 0.0722f, 0.0f);
+      bestError = Float.MAX_VALUE;
 
       // get the covariance matrix
-      Sym3x3 covariance = Sym3x3.computeWeightedCovariance(this.colors.getCount(),
-                                                           this.colors.getPoints(),
-                                                           this.colors.getWeights());
+      Sym3x3.computeWeightedCovariance(colors.getCount(), colors.getPoints(), colors.getWeights(),
+                                       covariance);
 
       // compute the principle component
-      principle = Sym3x3.computePrincipleComponent(covariance);
+      Sym3x3.computePrincipleComponent(covariance, principle);
     }
 
     @Override
-    protected void compress3(byte[] block)
+    protected void compress3(byte[] block, int ofs)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 halfHalf2 = new Vec4(0.5f, 0.5f, 0.5f, 0.25f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float[] pw = pointsWeights;
 
       // prepare an ordering using the principle axis
-      constructOrdering(principle, 0);
+      constructOrdering(principle[0], principle[1], principle[2], 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0;
 
       // loop over iterations (we avoid the case that all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float part0X = 0.0f, part0Y = 0.0f, part0Z = 0.0f, part0W = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is half along
-          Vec4 part1 = (i == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+          float part1X = 0.0f, part1Y = 0.0f, part1Z = 0.0f, part1W = 0.0f;
+          if (i == 0) {
+            part1X = pw[0]; part1Y = pw[1]; part1Z = pw[2]; part1W = pw[3];
+          }
           int jmin = (i == 0) ? 1 : i;
           for (int j = jmin; ; ) {
             // last cluster [j, count) is at the end
-            Vec4 part2 = Vec4.sub(xsum_wsum, part1).sub(part0);
+            float part2X = xsumX - part1X - part0X;
+            float part2Y = xsumY - part1Y - part0Y;
+            float part2Z = xsumZ - part1Z - part0Z;
+            float part2W = wsum - part1W - part0W;
 
             // compute least squares terms directly
-            Vec4 alphaXSum = Vec4.multiplyAdd(part1, halfHalf2, part0);
-            Vec4 alpha2Sum = alphaXSum.splatW();
+            float alphaXSumX = part1X*0.5f + part0X;
+            float alphaXSumY = part1Y*0.5f + part0Y;
+            float alphaXSumZ = part1Z*0.5f + part0Z;
+            float alpha2Sum = part1W*0.25f + part0W;
 
-            Vec4 betaXSum = Vec4.multiplyAdd(part1, halfHalf2, part2);
-            Vec4 beta2Sum = betaXSum.splatW();
+            float betaXSumX = part1X*0.5f + part2X;
+            float betaXSumY = part1Y*0.5f + part2Y;
+            float betaXSumZ = part1Z*0.5f + part2Z;
+            float beta2Sum = part1W*0.25f + part2W;
 
-            Vec4 alphaBetaSum = Vec4.mul(part1, halfHalf2).splatW();
+            float alphaBetaSum = part1W*0.25f;
 
             // compute the least squares optimal points
-            Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum, Vec4.mul(alpha2Sum, beta2Sum)));
-            Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-            Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
-
-            // clamp to the grid
-            a = Vec4.min(one, Vec4.max(zero, a));
-            b = Vec4.min(one, Vec4.max(zero, b));
-            a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-            b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
+            float factor = 1.0f / (alpha2Sum*beta2Sum - alphaBetaSum*alphaBetaSum);
+            float aX = toGrid((alphaXSumX*beta2Sum - betaXSumX*alphaBetaSum)*factor, GRID_X, GRIDRCP_X);
+            float aY = toGrid((alphaXSumY*beta2Sum - betaXSumY*alphaBetaSum)*factor, GRID_Y, GRIDRCP_Y);
+            float aZ = toGrid((alphaXSumZ*beta2Sum - betaXSumZ*alphaBetaSum)*factor, GRID_Z, GRIDRCP_Z);
+            float bX = toGrid((betaXSumX*alpha2Sum - alphaXSumX*alphaBetaSum)*factor, GRID_X, GRIDRCP_X);
+            float bY = toGrid((betaXSumY*alpha2Sum - alphaXSumY*alphaBetaSum)*factor, GRID_Y, GRIDRCP_Y);
+            float bZ = toGrid((betaXSumZ*alpha2Sum - alphaXSumZ*alphaBetaSum)*factor, GRID_Z, GRIDRCP_Z);
 
             // compute the error (we skip the constant xxsum)
-            Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-            Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-            Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-            Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-            // apply the metric to the error terms
-            Vec4 e5 = Vec4.mul(e4, metric);
-            Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+            float error = computeError(aX, aY, aZ, bX, bY, bZ, alphaXSumX, alphaXSumY, alphaXSumZ,
+                                       betaXSumX, betaXSumY, betaXSumZ, alpha2Sum, beta2Sum,
+                                       alphaBetaSum);
 
             // keep the solution if it wins
-            if (Vec4.compareAnyLessThan(error, bestError)) {
-              bestStart = a;
-              bestEnd = b;
+            if (error < bestError) {
+              bestStartX = aX; bestStartY = aY; bestStartZ = aZ;
+              bestEndX = bX; bestEndY = bY; bestEndZ = bZ;
               bestI = i;
               bestJ = j;
               bestError = error;
@@ -723,11 +817,11 @@ protected void compress3(byte[] block)
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            part1X += pw[4*j]; part1Y += pw[4*j+1]; part1Z += pw[4*j+2]; part1W += pw[4*j+3];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          part0X += pw[4*i]; part0Y += pw[4*i+1]; part0Z += pw[4*i+2]; part0W += pw[4*i+3];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -739,16 +833,15 @@ protected void compress3(byte[] block)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
-        if (!constructOrdering(axis, iterIndex))
+        if (!constructOrdering(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ,
+                               iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -759,7 +852,9 @@ protected void compress3(byte[] block)
         colors.remapIndices(unordered, bestIndices);
 
         // save the block
-        ColorBlock.writeColorBlock3(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock3(ColorBlock.floatTo565(bestStartX, bestStartY, bestStartZ),
+                                    ColorBlock.floatTo565(bestEndX, bestEndY, bestEndZ),
+                                    bestIndices, block, ofs);
 
         // save the error
         this.bestError = bestError;
@@ -767,83 +862,79 @@ protected void compress3(byte[] block)
     }
 
     @Override
-    protected void compress4(byte[] block)
+    protected void compress4(byte[] block, int ofs)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 oneThirdOneThird2 = new Vec4(1.0f/3.0f, 1.0f/3.0f, 1.0f/3.0f, 1.0f/9.0f);
-      final Vec4 twoThirdsTwoThirds2 = new Vec4(2.0f/3.0f, 2.0f/3.0f, 2.0f/3.0f, 4.0f/9.0f);
-      final Vec4 twoNineth = new Vec4(2.0f/9.0f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float[] pw = pointsWeights;
+      final float oneThird = 1.0f/3.0f;
+      final float oneNinth = 1.0f/9.0f;
+      final float twoThirds = 2.0f/3.0f;
+      final float fourNinths = 4.0f/9.0f;
+      final float twoNinths = 2.0f/9.0f;
 
       // prepare an ordering using the principle axis
-      constructOrdering(principle, 0);
+      constructOrdering(principle[0], principle[1], principle[2], 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0, bestK = 0;
 
       // loop over iterations (we avoid the case all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float part0X = 0.0f, part0Y = 0.0f, part0Z = 0.0f, part0W = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is one third along
-          Vec4 part1 = new Vec4();
+          float part1X = 0.0f, part1Y = 0.0f, part1Z = 0.0f, part1W = 0.0f;
           for (int j = i; ; ) {
             // third cluster [j, k) is two thirds along
-            Vec4 part2 = (j == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+            float part2X = 0.0f, part2Y = 0.0f, part2Z = 0.0f, part2W = 0.0f;
+            if (j == 0) {
+              part2X = pw[0]; part2Y = pw[1]; part2Z = pw[2]; part2W = pw[3];
+            }
             int kmin = (j == 0) ? 1 : j;
             for (int k = kmin; ; ) {
               // last cluster [k, count) is at the end
-              Vec4 part3 = Vec4.sub(xsum_wsum, part2).sub(part1).sub(part0);
+              float part3X = xsumX - part2X - part1X - part0X;
+              float part3Y = xsumY - part2Y - part1Y - part0Y;
+              float part3Z = xsumZ - part2Z - part1Z - part0Z;
+              float part3W = wsum - part2W - part1W - part0W;
 
               // compute least squares terms directly
-              Vec4 alphaXSum = Vec4.multiplyAdd(part2, oneThirdOneThird2,
-                                                Vec4.multiplyAdd(part1, twoThirdsTwoThirds2, part0));
-              Vec4 alpha2Sum = alphaXSum.splatW();
+              float alphaXSumX = part2X*oneThird + (part1X*twoThirds + part0X);
+              float alphaXSumY = part2Y*oneThird + (part1Y*twoThirds + part0Y);
+              float alphaXSumZ = part2Z*oneThird + (part1Z*twoThirds + part0Z);
+              float alpha2Sum = part2W*oneNinth + (part1W*fourNinths + part0W);
 
-              Vec4 betaXSum = Vec4.multiplyAdd(part1, oneThirdOneThird2,
-                                               Vec4.multiplyAdd(part2, twoThirdsTwoThirds2, part3));
-              Vec4 beta2Sum = betaXSum.splatW();
+              float betaXSumX = part1X*oneThird + (part2X*twoThirds + part3X);
+              float betaXSumY = part1Y*oneThird + (part2Y*twoThirds + part3Y);
+              float betaXSumZ = part1Z*oneThird + (part2Z*twoThirds + part3Z);
+              float beta2Sum = part1W*oneNinth + (part2W*fourNinths + part3W);
 
-              Vec4 alphaBetaSum = Vec4.mul(twoNineth, Vec4.add(part1, part2).splatW());
+              float alphaBetaSum = twoNinths * (part1W + part2W);
 
               // compute the least-squares optimal points
-              Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum,
-                                            Vec4.mul(alpha2Sum, beta2Sum)));
-              Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-              Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
-
-              // clamp to the grid
-              a = Vec4.min(one, Vec4.max(zero, a));
-              b = Vec4.min(one, Vec4.max(zero, b));
-              a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-              b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
+              float factor = 1.0f / (alpha2Sum*beta2Sum - alphaBetaSum*alphaBetaSum);
+              float aX = toGrid((alphaXSumX*beta2Sum - betaXSumX*alphaBetaSum)*factor, GRID_X, GRIDRCP_X);
+              float aY = toGrid((alphaXSumY*beta2Sum - betaXSumY*alphaBetaSum)*factor, GRID_Y, GRIDRCP_Y);
+              float aZ = toGrid((alphaXSumZ*beta2Sum - betaXSumZ*alphaBetaSum)*factor, GRID_Z, GRIDRCP_Z);
+              float bX = toGrid((betaXSumX*alpha2Sum - alphaXSumX*alphaBetaSum)*factor, GRID_X, GRIDRCP_X);
+              float bY = toGrid((betaXSumY*alpha2Sum - alphaXSumY*alphaBetaSum)*factor, GRID_Y, GRIDRCP_Y);
+              float bZ = toGrid((betaXSumZ*alpha2Sum - alphaXSumZ*alphaBetaSum)*factor, GRID_Z, GRIDRCP_Z);
 
               // compute the error (we skip the constant xxsum)
-              Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-              Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-              Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-              Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-              // apply the metric to the error term
-              Vec4 e5 = Vec4.mul(e4, metric);
-              Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+              float error = computeError(aX, aY, aZ, bX, bY, bZ, alphaXSumX, alphaXSumY, alphaXSumZ,
+                                         betaXSumX, betaXSumY, betaXSumZ, alpha2Sum, beta2Sum,
+                                         alphaBetaSum);
 
               // keep the solution if it wins
-              if (Vec4.compareAnyLessThan(error, bestError)) {
-                bestStart = a;
-                bestEnd = b;
+              if (error < bestError) {
+                bestStartX = aX; bestStartY = aY; bestStartZ = aZ;
+                bestEndX = bX; bestEndY = bY; bestEndZ = bZ;
                 bestError = error;
                 bestI = i;
                 bestJ = j;
@@ -853,17 +944,17 @@ protected void compress4(byte[] block)
               // advance
               if (k == count)
                 break;
-              part2.add(pointsWeights[k]);
+              part2X += pw[4*k]; part2Y += pw[4*k+1]; part2Z += pw[4*k+2]; part2W += pw[4*k+3];
               k++;
             }
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            part1X += pw[4*j]; part1Y += pw[4*j+1]; part1Z += pw[4*j+2]; part1W += pw[4*j+3];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          part0X += pw[4*i]; part0Y += pw[4*i+1]; part0Z += pw[4*i+2]; part0W += pw[4*i+3];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -875,16 +966,15 @@ protected void compress4(byte[] block)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
-        if (!constructOrdering(axis, iterIndex))
+        if (!constructOrdering(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ,
+                               iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -897,24 +987,52 @@ protected void compress4(byte[] block)
         colors.remapIndices(unordered, bestIndices);
 
         // save the block
-        ColorBlock.writeColorBlock4(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock4(ColorBlock.floatTo565(bestStartX, bestStartY, bestStartZ),
+                                    ColorBlock.floatTo565(bestEndX, bestEndY, bestEndZ),
+                                    bestIndices, block, ofs);
 
         // save the error
         this.bestError = bestError;
       }
     }
 
-    private boolean constructOrdering(Vec3 axis, int iteration)
+    // Clamps the value to [0, 1] and rounds it to the nearest grid point
+    private static float toGrid(float value, float grid, float gridrcp)
+    {
+      return Misc.truncate(grid*Misc.clamp(value) + 0.5f) * gridrcp;
+    }
+
+    // Returns the metric weighted error of the specified end points (without the constant xxsum)
+    private static float computeError(float aX, float aY, float aZ, float bX, float bY, float bZ,
+                                      float alphaXSumX, float alphaXSumY, float alphaXSumZ,
+                                      float betaXSumX, float betaXSumY, float betaXSumZ,
+                                      float alpha2Sum, float beta2Sum, float alphaBetaSum)
+    {
+      float eX = componentError(aX, bX, alphaXSumX, betaXSumX, alpha2Sum, beta2Sum, alphaBetaSum);
+      float eY = componentError(aY, bY, alphaXSumY, betaXSumY, alpha2Sum, beta2Sum, alphaBetaSum);
+      float eZ = componentError(aZ, bZ, alphaXSumZ, betaXSumZ, alpha2Sum, beta2Sum, alphaBetaSum);
+      return eX*METRIC_X + eY*METRIC_Y + eZ*METRIC_Z;
+    }
+
+    private static float componentError(float a, float b, float alphaXSum, float betaXSum,
+                                        float alpha2Sum, float beta2Sum, float alphaBetaSum)
+    {
+      float e1 = (a*a)*alpha2Sum + (b*b)*beta2Sum;
+      float e2 = (a*b)*alphaBetaSum - a*alphaXSum;
+      float e3 = e2 - b*betaXSum;
+      return 2.0f*e3 + e1;
+    }
+
+    private boolean constructOrdering(float axisX, float axisY, float axisZ, int iteration)
     {
       // cache some values
       final int count = colors.getCount();
-      final Vec3[] values = colors.getPoints();
+      final float[] values = colors.getPoints();
 
       // build list of dot products
-      float[] dps = new float[16];
       int orderIdx = 16*iteration;
       for (int i = 0; i < count; i++) {
-        dps[i] = Vec3.dot(values[i], axis);
+        dps[i] = Misc.dot(values, i, axisX, axisY, axisZ);
         order[orderIdx+i] = i;
       }
 
@@ -941,16 +1059,22 @@ private boolean constructOrdering(Vec3 axis, int iteration)
       }
 
       // copy the ordering and weight all the points
-      final Vec3[] unweighted = colors.getPoints();
       final float[] weights = colors.getWeights();
-      xsum_wsum = new Vec4();
+      xsumX = xsumY = xsumZ = wsum = 0.0f;
       for (int i = 0; i < count; i++) {
         int j = order[orderIdx+i];
-        Vec4 p = new Vec4(unweighted[j].x(), unweighted[j].y(), unweighted[j].z(), 1.0f);
-        Vec4 w = new Vec4(weights[j]);
-        Vec4 x = Vec4.mul(p, w);
-        pointsWeights[i] = x;
-        xsum_wsum.add(x);
+        float w = weights[j];
+        float x = values[3*j] * w;
+        float y = values[3*j+1] * w;
+        float z = values[3*j+2] * w;
+        pointsWeights[4*i] = x;
+        pointsWeights[4*i+1] = y;
+        pointsWeights[4*i+2] = z;
+        pointsWeights[4*i+3] = w;
+        xsumX += x;
+        xsumY += y;
+        xsumZ += z;
+        wsum += w;
       }
       return true;
     }
@@ -959,97 +1083,83 @@ private boolean constructOrdering(Vec3 axis, int iteration)
 
   private static final class ColorBlock
   {
-    public static void writeColorBlock3(Vec3 start, Vec3 end, int[] indices, byte[] block)
+    // Note: indices are remapped in place
+    public static void writeColorBlock3(int a, int b, int[] indices, byte[] block, int ofs)
     {
-      // get the packed values
-      int a = floatTo565(start);
-      int b = floatTo565(end);
-
       // remap the indices
-      int[] remapped = new int[16];
-      if (a <= b) {
-        // use the indices directly
-        for (int i = 0; i < 16; i++) {
-          remapped[i] = indices[i];
-        }
-      } else {
+      if (a > b) {
         // swap a and b
         int tmp = a; a = b; b = tmp;
         for (int i = 0; i < 16; i++) {
           if (indices[i] == 0) {
-            remapped[i] = 1;
+            indices[i] = 1;
           } else if (indices[i] == 1) {
-            remapped[i] = 0;
-          } else {
-            remapped[i] = indices[i];
+            indices[i] = 0;
           }
         }
       }
 
       // write the block
-      writeColorBlock(a, b, remapped, block);
+      writeColorBlock(a, b, indices, block, ofs);
     }
 
-    public static void writeColorBlock4(Vec3 start, Vec3 end, int[] indices, byte[] block)
+    // Note: indices are remapped in place
+    public static void writeColorBlock4(int a, int b, int[] indices, byte[] block, int ofs)
     {
-      // get the packed values
-      int a = floatTo565(start);
-      int b = floatTo565(end);
-
       // remap the indices
-      int[] remapped = new int[16];
       if (a < b) {
         // swap a and b
         int tmp = a; a = b; b = tmp;
         for (int i = 0; i < 16; i++) {
-          remapped[i] = (indices[i] ^ 1) & 3;
+          indices[i] = (indices[i] ^ 1) & 3;
         }
       } else if (a == b) {
         // use index 0
         for (int i = 0; i < 16; i++) {
-          remapped[i] = 0;
+          indices[i] = 0;
         }
-      } else {
-        // use the indices directly
-        for (int i = 0; i < 16; i++)
-          remapped[i] = indices[i];
       }
 
       // write the block
-      writeColorBlock(a, b, remapped, block);
+      writeColorBlock(a, b, indices, block, ofs);
     }
 
-    private static int floatTo565(Vec3 color)
+    public static int floatTo565(float x, float y, float z)
     {
       // get the components in the correct range
-      int r = Misc.floatToInt(31.0f*color.x(), 31);
-      int g = Misc.floatToInt(63.0f*color.y(), 63);
-      int b = Misc.floatToInt(31.0f*color.z(), 31);
+      int r = Misc.floatToInt(31.0f*x, 31);
+      int g = Misc.floatToInt(63.0f*y, 63);
+      int b = Misc.floatToInt(31.0f*z, 31);
 
       // pack the color into a single value
       return ((r << 11) | (g << 5) | b) & 0xffff;
     }
 
-    private static void writeColorBlock(int a, int b, int[] indices, byte[] block)
+    private static void writeColorBlock(int a, int b, int[] indices, byte[] block, int ofs)
     {
       // write the endpoints
-      block[0] = (byte)(a & 0xff);
-      block[1] = (byte)((a >>> 8) & 0xff);
-      block[2] = (byte)(b & 0xff);
-      block[3] = (byte)((b >>> 8) & 0xff);
+      block[ofs] = (byte)(a & 0xff);
+      block[ofs+1] = (byte)((a >>> 8) & 0xff);
+      block[ofs+2] = (byte)(b & 0xff);
+      block[ofs+3] = (byte)((b >>> 8) & 0xff);
 
       // write the indices
       for (int i = 0; i < 4; i++) {
         int idx = 4*i;
-        block[i+4] = (byte)((indices[idx+0]) | (indices[idx+1] << 2) |
-                            (indices[idx+2] << 4) | (indices[idx+3] << 6));
+        block[ofs+i+4] = (byte)((indices[idx+0]) | (indices[idx+1] << 2) |
+                                (indices[idx+2] << 4) | (indices[idx+3] << 6));
       }
     }
   }
 
   private static final class Alpha
   {
-    public static void compressAlphaDxt3(int[] pixels, byte[] block)
+    private final int[] codes5 = new int[8];
+    private final int[] codes7 = new int[8];
+    private final int[] indices5 = new int[16];
+    private final int[] indices7 = new int[16];
+
+    public static void compressAlphaDxt3(int[] pixels, byte[] block, int ofs)
     {
       // quantize and pack the alpha values pairwise
       for (int i = 0; i < 8; i++) {
@@ -1060,11 +1170,11 @@ public static void compressAlphaDxt3(int[] pixels, byte[] block)
         int quant2 = Misc.floatToInt(alpha2, 15);
 
         // pack into the byte
-        block[i] = (byte)(quant1 | (quant2 << 4));
+        block[ofs+i] = (byte)(quant1 | (quant2 << 4));
       }
     }
 
-    public static void compressAlphaDxt5(int[] pixels, byte[] block)
+    public void compressAlphaDxt5(int[] pixels, byte[] block, int ofs)
     {
       // get the range for 5-alpha and 7-alpha interpolation
       int min5 = 255;
@@ -1091,16 +1201,16 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
         min7 = max7;
 
       // fix the range to be the minimum in each case
-      int[] minmax = new int[2];
-      minmax[0] = min5; minmax[1] = max5;
-      fixRange(minmax, 5);
-      min5 = minmax[0]; max5 = minmax[1];
-      minmax[0] = min7; minmax[1] = max7;
-      fixRange(minmax, 7);
-      min7 = minmax[0]; max7 = minmax[1];
+      if (max5 - min5 < 5)
+        max5 = Math.min(min5 + 5, 255);
+      if (max5 - min5 < 5)
+        min5 = Math.max(0, max5 - 5);
+      if (max7 - min7 < 7)
+        max7 = Math.min(min7 + 7, 255);
+      if (max7 - min7 < 7)
+        min7 = Math.max(0, max7 - 7);
 
       // set up the 5-alpha code book
-      int[] codes5 = new int[8];
       codes5[0] = min5;
       codes5[1] = max5;
       for (int i = 1; i < 5; i++) {
@@ -1110,7 +1220,6 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
       codes5[7] = 255;
 
       // set up the 7-alpha code book
-      int[] codes7 = new int[8];
       codes7[0] = min7;
       codes7[1] = max7;
       for (int i = 1; i < 7; i++) {
@@ -1118,27 +1227,17 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
       }
 
       // fit the data to both code books
-      int[] indices5 = new int[16];
-      int[] indices7 = new int[16];
       int err5 = fitCodes(pixels, codes5, indices5);
       int err7 = fitCodes(pixels, codes7, indices7);
 
       // save the block with the least error
       if (err5 <= err7) {
-        writeAlphaBlock5(min5, max5, indices5, block);
+        writeAlphaBlock5(min5, max5, indices5, block, ofs);
       } else {
-        writeAlphaBlock7(min7, max7, indices7, block);
+        writeAlphaBlock7(min7, max7, indices7, block, ofs);
       }
     }
 
-    private static void fixRange(int[] minMax, int steps)
-    {
-      if (minMax[1] - minMax[0] < steps)
-        minMax[1] = Math.min(minMax[0] + steps, 255);
-      if (minMax[1] - minMax[0] < steps)
-        minMax[0] = Math.max(0, minMax[1] - steps);
-    }
-
     private static int fitCodes(int[] pixels, int[] codes, int[] indices)
     {
       // fit each alpha value to the code book
@@ -1169,14 +1268,14 @@ private static int fitCodes(int[] pixels, int[] codes, int[] indices)
       return err;
     }
 
-    private static void writeAlphaBlock(int alpha0, int alpha1, int[] indices, byte[] block)
+    private static void writeAlphaBlock(int alpha0, int alpha1, int[] indices, byte[] block, int ofs)
     {
       // write the first two bytes
-      block[0] = (byte)(alpha0 & 0xff);
-      block[1] = (byte)(alpha1 & 0xff);
+      block[ofs] = (byte)(alpha0 & 0xff);
+      block[ofs+1] = (byte)(alpha1 & 0xff);
 
       // pack the indices with 3 bits each
-      for (int i = 0, srcIdx = 0, dstIdx = 2; i < 2; i++) {
+      for (int i = 0, srcIdx = 0, dstIdx = ofs+2; i < 2; i++) {
         // pack 8 3-bit values
         int value = 0;
         for (int j = 0; j < 8; j++) {
@@ -1192,55 +1291,53 @@ private static void writeAlphaBlock(int alpha0, int alpha1, int[] indices, byte[
       }
     }
 
-    private static void writeAlphaBlock5(int alpha0, int alpha1, int[] indices, byte[] block)
+    // Note: indices are swapped in place
+    private static void writeAlphaBlock5(int alpha0, int alpha1, int[] indices, byte[] block, int ofs)
     {
       // check the relative values of the endpoints
       if (alpha0 > alpha1) {
         // swap the indices
-        int[] swapped = new int[16];
         for (int i = 0; i < 16; i++) {
           int index = indices[i];
           if (index == 0) {
-            swapped[i] = 1;
+            indices[i] = 1;
           } else if (index == 1) {
-            swapped[i] = 0;
+            indices[i] = 0;
           } else if (index <= 5) {
-            swapped[i] = 7 - index;
-          } else {
-            swapped[i] = index;
+            indices[i] = 7 - index;
           }
         }
 
         // write the block
-        writeAlphaBlock(alpha1, alpha0, swapped, block);
+        writeAlphaBlock(alpha1, alpha0, indices, block, ofs);
 
       } else {
         // write the block
-        writeAlphaBlock(alpha0, alpha1, indices, block);
+        writeAlphaBlock(alpha0, alpha1, indices, block, ofs);
       }
     }
 
-    private static void writeAlphaBlock7(int alpha0, int alpha1, int[] indices, byte[] block)
+    // Note: indices are swapped in place
+    private static void writeAlphaBlock7(int alpha0, int alpha1, int[] indices, byte[] block, int ofs)
     {
       if (alpha0 < alpha1) {
         // swap the indices
-        int[] swapped = new int[16];
         for (int i = 0; i < 16; i++) {
           int index = indices[i];
           if (index == 0) {
-            swapped[i] = 1;
+            indices[i] = 1;
           } else if (index == 1) {
-            swapped[i] = 0;
+            indices[i] = 0;
           } else {
-            swapped[i] = 9 - index;
+            indices[i] = 9 - index;
           }
         }
 
         // write the block
-        writeAlphaBlock(alpha1, alpha0, swapped, block);
+        writeAlphaBlock(alpha1, alpha0, indices, block, ofs);
       } else {
         // write the block
-        writeAlphaBlock(alpha0, alpha1, indices, block);
+        writeAlphaBlock(alpha0, alpha1, indices, block, ofs);
       }
     }
   }
@@ -2306,394 +2403,66 @@ public SingleColorLookup(SourceBlock sb1, SourceBlock sb2)
     }
   }
 
-
-  public static class Vec3
-  {
-    float vx, vy, vz;
-
-    public static Vec3 neg(Vec3 v)
-    {
-      return new Vec3(-v.vx, -v.vy, -v.vz);
-    }
-
-    public static Vec3 add(Vec3 v1, Vec3 v2)
-    {
-      return new Vec3(v1.vx + v2.vx, v1.vy + v2.vy, v1.vz + v2.vz);
-    }
-
-    public static Vec3 sub(Vec3 v1, Vec3 v2)
-    {
-      return new Vec3(v1.vx - v2.vx, v1.vy - v2.vy, v1.vz - v2.vz);
-    }
-
-    public static Vec3 mul(Vec3 v1, Vec3 v2)
-    {
-      return new Vec3(v1.vx * v2.vx, v1.vy * v2.vy, v1.vz * v2.vz);
-    }
-
-    public static Vec3 mul(Vec3 v, float s)
-    {
-      return new Vec3(v.vx * s, v.vy * s, v.vz * s);
-    }
-
-    public static Vec3 div(Vec3 v1, Vec3 v2)
-    {
-      return new Vec3(v1.vx / v2.vx, v1.vy / v2.vy, v1.vz / v2.vz);
-    }
-
-    public static Vec3 div(Vec3 v, float s)
-    {
-      float t = 1.0f / s;
-      return new Vec3(v.vx * t, v.vy * t, v.vz * t);
-    }
-
-    public static float dot(Vec3 v1, Vec3 v2)
-    {
-      return v1.vx*v2.vx + v1.vy*v2.vy + v1.vz*v2.vz;
-    }
-
-    public static Vec3 min(Vec3 v1, Vec3 v2)
-    {
-      v1.fixNaN(); v2.fixNaN();
-      return new Vec3(Math.min(v1.vx, v2.vx), Math.min(v1.vy, v2.vy), Math.min(v1.vz, v2.vz));
-    }
-
-    public static Vec3 max(Vec3 v1, Vec3 v2)
-    {
-      v1.fixNaN(); v2.fixNaN();
-      return new Vec3(Math.max(v1.vx, v2.vx), Math.max(v1.vy, v2.vy), Math.max(v1.vz, v2.vz));
-    }
-
-    public static Vec3 truncate(Vec3 v)
-    {
-      return new Vec3((v.vx > 0.0f) ? (float)Math.floor(v.vx) : (float)Math.ceil(v.vx),
-                      (v.vy > 0.0f) ? (float)Math.floor(v.vy) : (float)Math.ceil(v.vy),
-                      (v.vz > 0.0f) ? (float)Math.floor(v.vz) : (float)Math.ceil(v.vz));
-    }
-
-    public static float lengthSquared(Vec3 v)
-    {
-      return v.vx*v.vx + v.vy*v.vy + v.vz*v.vz;
-    }
-
-    public Vec3()
-    {
-      vx = 0.0f; vy = 0.0f; vz = 0.0f;
-    }
-
-    public Vec3(float s)
-    {
-      vx = s; vy = s; vz = s;
-    }
-
-    public Vec3(float x, float y, float z)
-    {
-      vx = x; vy = y; vz = z;
-    }
-
-    @Override
-    public boolean equals(Object o)
-    {
-      if (o instanceof Vec3) {
-        return ((Vec3)o).x() == vx && ((Vec3)o).y() == vy && ((Vec3)o).z() == vz;
-      } else if (o instanceof Vec4) {
-        return ((Vec4)o).x() == vx && ((Vec4)o).y() == vy && ((Vec4)o).z() == vz && ((Vec4)o).w() == 0.0f;
-      } else {
-        return false;
-      }
-    }
-
-    @Override
-    public String toString()
-    {
-      return "(" + vx + ", " + vy + ", " + vz + ")";
-    }
-
-    @Override
-    public Object clone()
-    {
-      return new Vec3(vx, vy, vz);
-    }
-
-    public float x() { return vx; }
-    public float y() { return vy; }
-    public float z() { return vz; }
-
-    public Vec3 add(Vec3 v)
-    {
-      vx += v.vx;
-      vy += v.vy;
-      vz += v.vz;
-      return this;
-    }
-
-    public Vec3 sub(Vec3 v)
-    {
-      vx -= v.vx;
-      vy -= v.vy;
-      vz -= v.vz;
-      return this;
-    }
-
-    public Vec3 mul(Vec3 v)
-    {
-      vx *= v.vx;
-      vy *= v.vy;
-      vz *= v.vz;
-      return this;
-    }
-
-    public Vec3 mul(float s)
-    {
-      vx *= s;
-      vy *= s;
-      vz *= s;
-      return this;
-    }
-
-    public Vec3 div(Vec3 v)
-    {
-      vx /= v.vx;
-      vy /= v.vy;
-      vz /= v.vz;
-      return this;
-    }
-
-    public Vec3 div(float s)
-    {
-      float t = 1.0f / s;
-      vx *= t;
-      vy *= t;
-      vz *= t;
-      return this;
-    }
-
-    public float dot(Vec3 v)
-    {
-      return vx*v.vx + vy*v.vy + vz*v.vz;
-    }
-
-    // Converts NaN values into a defined number
-    private Vec3 fixNaN()
-    {
-      if (Float.isNaN(vx)) vx = 0.0f;
-      if (Float.isNaN(vy)) vy = 0.0f;
-      if (Float.isNaN(vz)) vz = 0.0f;
-      return this;
-    }
-  }
-
-
-  public static class Vec4
-  {
-    float vx, vy, vz, vw;
-
-//    public static Vec4 neg(Vec4 v)
-//    {
-//      return new Vec4(-v.vx, -v.vy, -v.vz, -v.vw);
-//    }
-
-    public static Vec4 add(Vec4 v1, Vec4 v2)
-    {
-      return new Vec4(v1.vx + v2.vx, v1.vy + v2.vy, v1.vz + v2.vz, v1.vw + v2.vw);
-    }
-
-    public static Vec4 sub(Vec4 v1, Vec4 v2)
-    {
-      return new Vec4(v1.vx - v2.vx, v1.vy - v2.vy, v1.vz - v2.vz, v1.vw - v2.vw);
-    }
-
-    public static Vec4 mul(Vec4 v1, Vec4 v2)
-    {
-      return new Vec4(v1.vx * v2.vx, v1.vy * v2.vy, v1.vz * v2.vz, v1.vw * v2.vw);
-    }
-
-    public static Vec4 multiplyAdd(Vec4 v1, Vec4 v2, Vec4 v3)
-    {
-      return new Vec4(v1.vx*v2.vx + v3.vx, v1.vy*v2.vy + v3.vy, v1.vz*v2.vz + v3.vz, v1.vw*v2.vw + v3.vw);
-    }
-
-    public static Vec4 negMulSub(Vec4 v1, Vec4 v2, Vec4 v3)
-    {
-      return new Vec4(v3.vx - v1.vx*v2.vx, v3.vy - v1.vy*v2.vy, v3.vz - v1.vz*v2.vz, v3.vw - v1.vw*v2.vw);
-    }
-
-    public static Vec4 reciprocal(Vec4 v)
-    {
-      return new Vec4(1.0f / v.vx, 1.0f / v.vy, 1.0f / v.vz, 1.0f / v.vw);
-    }
-
-    public static Vec4 min(Vec4 v1, Vec4 v2)
-    {
-      v1.fixNaN(); v2.fixNaN();
-      return new Vec4(Math.min(v1.vx, v2.vx),
-                      Math.min(v1.vy, v2.vy),
-                      Math.min(v1.vz, v2.vz),
-                      Math.min(v1.vw, v2.vw));
-
-    }
-
-    public static Vec4 max(Vec4 v1, Vec4 v2)
-    {
-      v1.fixNaN(); v2.fixNaN();
-      return new Vec4(Math.max(v1.vx, v2.vx),
-                      Math.max(v1.vy, v2.vy),
-                      Math.max(v1.vz, v2.vz),
-                      Math.max(v1.vw, v2.vw));
-    }
-
-    public static Vec4 truncate(Vec4 v)
-    {
-      return new Vec4((v.vx > 0.0f) ? (float)Math.floor(v.vx) : (float)Math.ceil(v.vx),
-                      (v.vy > 0.0f) ? (float)Math.floor(v.vy) : (float)Math.ceil(v.vy),
-                      (v.vz > 0.0f) ? (float)Math.floor(v.vz) : (float)Math.ceil(v.vz),
-                      (v.vw > 0.0f) ? (float)Math.floor(v.vw) : (float)Math.ceil(v.vw));
-    }
-
-    public static boolean compareAnyLessThan(Vec4 v1, Vec4 v2)
-    {
-      return (v1.vx < v2.vx || v1.vy < v2.vy || v1.vz < v2.vz || v1.vw < v2.vw);
-    }
-
-    public Vec4()
-    {
-      vx = 0.0f; vy = 0.0f; vz = 0.0f; vw = 0.0f;
-    }
-
-    public Vec4(float s)
-    {
-      vx = s; vy = s; vz = s; vw = s;
-    }
-
-    public Vec4(float x, float y, float z, float w)
-    {
-      vx = x; vy = y; vz = z; vw = w;
-    }
-
-    @Override
-    public boolean equals(Object o)
-    {
-      if (o instanceof Vec4) {
-        return ((Vec4)o).x() == vx && ((Vec4)o).y() == vy && ((Vec4)o).z() == vz && ((Vec4)o).w() == vw;
-      } else if (o instanceof Vec3) {
-        return ((Vec3)o).x() == vx && ((Vec3)o).y() == vy && ((Vec3)o).z() == vz && vw == 0.0f;
-      } else {
-        return false;
-      }
-    }
-
-    @Override
-    public String toString()
-    {
-      return "(" + vx + ", " + vy + ", " + vz + ", " + vw + ")";
-    }
-
-    @Override
-    public Object clone()
-    {
-      return new Vec4(vx, vy, vz, vw);
-    }
-
-    public Vec3 getVec3() { return new Vec3(vx, vy, vz); }
-
-    public Vec4 splatX() { return new Vec4(vx); }
-    public Vec4 splatY() { return new Vec4(vy); }
-    public Vec4 splatZ() { return new Vec4(vz); }
-    public Vec4 splatW() { return new Vec4(vw); }
-
-    public float x() { return vx; }
-    public float y() { return vy; }
-    public float z() { return vz; }
-    public float w() { return vw; }
-
-    public Vec4 add(Vec4 v)
-    {
-      vx += v.vx;
-      vy += v.vy;
-      vz += v.vz;
-      vw += v.vw;
-      return this;
-    }
-
-    public Vec4 sub(Vec4 v)
-    {
-      vx -= v.vx;
-      vy -= v.vy;
-      vz -= v.vz;
-      vw -= v.vw;
-      return this;
-    }
-
-    public Vec4 mul(Vec4 v)
-    {
-      vx *= v.vx;
-      vy *= v.vy;
-      vz *= v.vz;
-      vw *= v.vw;
-      return this;
-    }
-
-    // Converts NaN values into a defined number
-    private Vec4 fixNaN()
-    {
-      if (Float.isNaN(vx)) vx = 0.0f;
-      if (Float.isNaN(vy)) vy = 0.0f;
-      if (Float.isNaN(vz)) vz = 0.0f;
-      if (Float.isNaN(vw)) vw = 0.0f;
-      return this;
-    }
-  }
-
-
-  public static class Sym3x3
+  // Operations on symmetric 3x3 matrices, stored as float[6] (m00, m01, m02, m11, m12, m22)
+  private static final class Sym3x3
   {
     private static final float FLT_EPSILON = Float.intBitsToFloat(0x34000000); // = 1.1920929e-7
 
-    private final float[] m;
-
-    public static Sym3x3 computeWeightedCovariance(int count, Vec3[] points, float[] weights)
+    // Computes the weighted covariance matrix of the (x, y, z) points into "covariance"
+    public static void computeWeightedCovariance(int count, float[] points, float[] weights,
+                                                 float[] covariance)
     {
       // computing the centroid
       float total = 0.0f;
-      Vec3 centroid = new Vec3();
+      float cx = 0.0f, cy = 0.0f, cz = 0.0f;
       for (int i = 0; i < count; i++) {
         total += weights[i];
-        centroid.add(Vec3.mul(points[i], weights[i]));
+        cx += points[3*i] * weights[i];
+        cy += points[3*i+1] * weights[i];
+        cz += points[3*i+2] * weights[i];
       }
-      centroid.div(total);
+      float t = 1.0f / total;
+      cx *= t;
+      cy *= t;
+      cz *= t;
 
       // accumulating the covariance matrix
-      Sym3x3 covariance = new Sym3x3(0.0f);
+      for (int i = 0; i < 6; i++) {
+        covariance[i] = 0.0f;
+      }
       for (int i = 0; i < count; i++) {
-        Vec3 a = Vec3.sub(points[i], centroid);
-        Vec3 b = Vec3.mul(a, weights[i]);
-
-        covariance.m[0] += a.x()*b.x();
-        covariance.m[1] += a.x()*b.y();
-        covariance.m[2] += a.x()*b.z();
-        covariance.m[3] += a.y()*b.y();
-        covariance.m[4] += a.y()*b.z();
-        covariance.m[5] += a.z()*b.z();
+        float ax = points[3*i] - cx;
+        float ay = points[3*i+1] - cy;
+        float az = points[3*i+2] - cz;
+        float bx = ax * weights[i];
+        float by = ay * weights[i];
+        float bz = az * weights[i];
+
+        covariance[0] += ax*bx;
+        covariance[1] += ax*by;
+        covariance[2] += ax*bz;
+        covariance[3] += ay*by;
+        covariance[4] += ay*bz;
+        covariance[5] += az*bz;
       }
-
-      return covariance;
     }
 
-    public static Vec3 computePrincipleComponent(Sym3x3 matrix)
+    // Computes the principle component of the matrix into the (x, y, z) vector "result"
+    public static void computePrincipleComponent(float[] m, float[] result)
     {
       // computing the cubic coefficients
-      float c0 = matrix.m[0] * matrix.m[3] * matrix.m[5] +
-                 2.0f * matrix.m[1] * matrix.m[2] * matrix.m[4] -
-                 matrix.m[0] * matrix.m[4] * matrix.m[4] -
-                 matrix.m[3] * matrix.m[2] * matrix.m[2] -
-                 matrix.m[5] * matrix.m[1] * matrix.m[1];
-      float c1 = matrix.m[0] * matrix.m[3] +
-                 matrix.m[0] * matrix.m[5] +
-                 matrix.m[3] * matrix.m[5] -
-                 matrix.m[1] * matrix.m[1] -
-                 matrix.m[2] * matrix.m[2] -
-                 matrix.m[4] * matrix.m[4];
-      float c2 = matrix.m[0] + matrix.m[3] + matrix.m[5];
+      float c0 = m[0] * m[3] * m[5] +
+                 2.0f * m[1] * m[2] * m[4] -
+                 m[0] * m[4] * m[4] -
+                 m[3] * m[2] * m[2] -
+                 m[5] * m[1] * m[1];
+      float c1 = m[0] * m[3] +
+                 m[0] * m[5] +
+                 m[3] * m[5] -
+                 m[1] * m[1] -
+                 m[2] * m[2] -
+                 m[4] * m[4];
+      float c2 = m[0] + m[3] + m[5];
 
       // computing the quadratic coefficients
       float a = c1 - (1.0f/3.0f)*c2*c2;
@@ -2705,7 +2474,7 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
       // testing the multiplicity
       if (FLT_EPSILON < Q) {
         // only one root, which implies we have a multiple of the identity
-        return new Vec3(1.0f);
+        result[0] = result[1] = result[2] = 1.0f;
       } else if (Q < -FLT_EPSILON) {
         // three distinct roots
         double theta = Math.atan2(Math.sqrt(-Q), -0.5*b);
@@ -2726,7 +2495,7 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
           l1 = l3;
 
         // getting the eigenvector
-        return getMultiplicity1Evector(matrix, l1);
+        getMultiplicity1Evector(m, l1, result);
       } else {    // if (-FLT_EPSILON <= Q && Q <= FLT_EPSILON)
         // two roots
         float rt = (float)((b < 0.0f) ? -Math.pow(-0.5*b, 1.0/3.0) : Math.pow(0.5*b, 1.0/3.0));
@@ -2736,138 +2505,91 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
 
         // getting the eigenvector
         if (Math.abs(l1) > Math.abs(l2)) {
-          return getMultiplicity2Evector(matrix, l1);
+          getMultiplicity2Evector(m, l1, result);
         } else {
-          return getMultiplicity1Evector(matrix, l2);
+          getMultiplicity1Evector(m, l2, result);
         }
       }
     }
 
-    private static Vec3 getMultiplicity1Evector(Sym3x3 matrix, float evalue)
+    private static void getMultiplicity1Evector(float[] matrix, float evalue, float[] result)
     {
-      if (matrix == null)
-        throw new NullPointerException();
-
       // computing M
-      Sym3x3 m = new Sym3x3();
-      m.m[0] = matrix.m[0] - evalue;
-      m.m[1] = matrix.m[1];
-      m.m[2] = matrix.m[2];
-      m.m[3] = matrix.m[3] - evalue;
-      m.m[4] = matrix.m[4];
-      m.m[5] = matrix.m[5] - evalue;
+      float m0 = matrix[0] - evalue;
+      float m1 = matrix[1];
+      float m2 = matrix[2];
+      float m3 = matrix[3] - evalue;
+      float m4 = matrix[4];
+      float m5 = matrix[5] - evalue;
 
       // computing U
-      Sym3x3 u = new Sym3x3();
-      u.m[0] = m.m[3]*m.m[5] - m.m[4]*m.m[4];
-      u.m[1] = m.m[2]*m.m[4] - m.m[1]*m.m[5];
-      u.m[2] = m.m[1]*m.m[4] - m.m[2]*m.m[3];
-      u.m[3] = m.m[0]*m.m[5] - m.m[2]*m.m[2];
-      u.m[4] = m.m[1]*m.m[2] - m.m[4]*m.m[0];
-      u.m[5] = m.m[0]*m.m[3] - m.m[1]*m.m[1];
+      float u0 = m3*m5 - m4*m4;
+      float u1 = m2*m4 - m1*m5;
+      float u2 = m1*m4 - m2*m3;
+      float u3 = m0*m5 - m2*m2;
+      float u4 = m1*m2 - m4*m0;
+      float u5 = m0*m3 - m1*m1;
 
       // finding the largest component
-      float mc = Math.abs(u.m[0]);
-      int mi = 0;
-      for (int i = 1; i < 6; i++) {
-        float c = Math.abs(u.m[i]);
-        if (c > mc) {
-          mc = c;
-          mi = i;
-        }
-      }
+      int mi = indexOfMaxAbs(u0, u1, u2, u3, u4, u5);
 
       // picking the column with this component
       switch (mi) {
         case 0:
-          return new Vec3(u.m[0], u.m[1], u.m[2]);
+          result[0] = u0; result[1] = u1; result[2] = u2;
+          break;
         case 1:
         case 3:
-          return new Vec3(u.m[1], u.m[3], u.m[4]);
+          result[0] = u1; result[1] = u3; result[2] = u4;
+          break;
         default:
-          return new Vec3(u.m[2], u.m[4], u.m[5]);
+          result[0] = u2; result[1] = u4; result[2] = u5;
       }
     }
 
-    private static Vec3 getMultiplicity2Evector(Sym3x3 matrix, float evalue)
+    private static void getMultiplicity2Evector(float[] matrix, float evalue, float[] result)
     {
-      if (matrix == null)
-        throw new NullPointerException();
-
       // computing M
-      Sym3x3 m = new Sym3x3();
-      m.m[0] = matrix.m[0] - evalue;
-      m.m[1] = matrix.m[1];
-      m.m[2] = matrix.m[2];
-      m.m[3] = matrix.m[3] - evalue;
-      m.m[4] = matrix.m[4];
-      m.m[5] = matrix.m[5] - evalue;
+      float m0 = matrix[0] - evalue;
+      float m1 = matrix[1];
+      float m2 = matrix[2];
+      float m3 = matrix[3] - evalue;
+      float m4 = matrix[4];
+      float m5 = matrix[5] - evalue;
 
       // finding the largest component
-      float mc = Math.abs(m.m[0]);
-      int mi = 0;
-      for (int i = 1; i < 6; i++) {
-        float c = Math.abs(m.m[i]);
-        if (c > mc) {
-          mc = c;
-          mi = i;
-        }
-      }
+      int mi = indexOfMaxAbs(m0, m1, m2, m3, m4, m5);
 
       // picking the first eigenvector based on this index
       switch (mi) {
         case 0:
         case 1:
-          return new Vec3(-m.m[1], m.m[0], 0.0f);
+          result[0] = -m1; result[1] = m0; result[2] = 0.0f;
+          break;
         case 2:
-          return new Vec3(m.m[2], 0.0f, -m.m[0]);
+          result[0] = m2; result[1] = 0.0f; result[2] = -m0;
+          break;
         case 3:
         case 4:
-          return new Vec3(0.0f, -m.m[4], m.m[3]);
+          result[0] = 0.0f; result[1] = -m4; result[2] = m3;
+          break;
         default:
-          return new Vec3(0.0f, -m.m[5], m.m[4]);
+          result[0] = 0.0f; result[1] = -m5; result[2] = m4;
       }
     }
 
-    public Sym3x3()
+    // Returns the index of the first value with the largest magnitude
+    private static int indexOfMaxAbs(float v0, float v1, float v2, float v3, float v4, float v5)
     {
-      m = new float[6];
-      for (int i = 0; i < m.length; i++) {
-        m[i] = 0.0f;
-      }
-    }
-
-    public Sym3x3(float s)
-    {
-      m = new float[6];
-      for (int i = 0; i < m.length; i++) {
-        m[i] = s;
-      }
-    }
-
-    @Override
-    public String toString()
-    {
-      return String.format("(%1$f, %2$f, %3$f, %4$f, %5$f, %6$f)", m[0], m[1], m[2], m[3], m[4], m[5]);
-    }
-
-    @Override
-    public Object clone()
-    {
-      Sym3x3 s = new Sym3x3();
-      s.m[0] = m[0]; s.m[1] = m[1]; s.m[2] = m[2]; s.m[3] = m[3]; s.m[4] = m[4]; s.m[5] = m[5];
-      return s;
-    }
-
-    public float get(int idx)
-    {
-      return m[idx];
-    }
-
-    public Sym3x3 set(int idx, float s)
-    {
-      m[idx] = s;
-      return this;
+      float mc = Math.abs(v0);
+      int mi = 0;
+      float c;
+      if ((c = Math.abs(v1)) > mc) { mc = c; mi = 1; }
+      if ((c = Math.abs(v2)) > mc) { mc = c; mi = 2; }
+      if ((c = Math.abs(v3)) > mc) { mc = c; mi = 3; }
+      if ((c = Math.abs(v4)) > mc) { mc = c; mi = 4; }
+      if ((c = Math.abs(v5)) > mc) { mc = c; mi = 5; }
+      return mi;
     }
   }
 
@@ -2886,5 +2608,25 @@ else if (i > limit)
 
       return i;
     }
+
+    // Returns the dot product of the (x, y, z) point at the specified index and the given vector
+    public static float dot(float[] points, int index, float x, float y, float z)
+    {
+      return points[3*index]*x + points[3*index+1]*y + points[3*index+2]*z;
+    }
+
+    // Clamps the value to [0, 1]. NaN is treated as 0.
+    public static float clamp(float value)
+    {
+      if (Float.isNaN(value))
+        value = 0.0f;
+      return Math.min(1.0f, Math.max(0.0f, value));
+    }
+
+    // Rounds towards zero
+    public static float truncate(float value)
+    {
+      return (value > 0.0f) ? (float)Math.floor(value) : (float)Math.ceil(value);
+    }
   }
 }
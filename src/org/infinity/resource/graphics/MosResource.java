@@ -47,7 +47,6 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.ReferenceSearcher;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.StreamUtils;
 
 public class MosResource implements Resource, ActionListener, PropertyChangeListener
@@ -400,13 +399,10 @@ private byte[] convertToMosV1(boolean compressed) throws Exception
 
       // applying color reduction to each tile
       int[] palette = new int[255];
-      int[] hclPalette = new int[255];
       byte[] tilePalette = new byte[1024];
       byte[] tileData = new byte[64*64];
       int curPalOfs = palOfs, curTableOfs = tableOfs, curDataOfs = dataOfs;
-      IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1536);   // caching RGBColor -> index
       for (int tileIdx = 0; tileIdx < tileList.size(); tileIdx++) {
-        colorCache.clear();
         if (progress.isCanceled()) {
           buf = new byte[0];
           break;
@@ -419,7 +415,7 @@ private byte[] convertToMosV1(boolean compressed) throws Exception
 
         int[] pixels = tileList.get(tileIdx);
         if (ColorConvert.medianCut(pixels, 255, palette, false)) {
-          ColorConvert.toHclPalette(palette, hclPalette);
+          PaletteLookup lookup = new PaletteLookup(palette);
           // filling palette
           // first palette entry denotes transparency
           tilePalette[0] = tilePalette[2] = tilePalette[3] = 0; tilePalette[1] = (byte)255;
@@ -428,21 +424,14 @@ private byte[] convertToMosV1(boolean compressed) throws Exception
             tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
             tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
             tilePalette[(i << 2) + 3] = 0;
-            colorCache.put(palette[i - 1], (byte)(i - 1));
+            lookup.setColor(palette[i - 1], i - 1);
           }
           // filling pixel data
           for (int i = 0; i < pixels.length; i++) {
             if ((pixels[i] & 0xff000000) == 0) {
               tileData[i] = 0;
             } else {
-              Byte palIndex = colorCache.get(pixels[i]);
-              if (palIndex != null) {
-                tileData[i] = (byte)(palIndex + 1);
-              } else {
-                byte color = (byte)ColorConvert.nearestColor(pixels[i], hclPalette);
-                tileData[i] = (byte)(color + 1);
-                colorCache.put(pixels[i], color);
-              }
+              tileData[i] = (byte)(lookup.nearestColor(pixels[i]) + 1);
             }
           }
         } else {
@@ -458,7 +447,7 @@ private byte[] convertToMosV1(boolean compressed) throws Exception
         curDataOfs += pixels.length;
       }
       tileList.clear(); tileList = null;
-      tileData = null; tilePalette = null; hclPalette = null; palette = null;
+      tileData = null; tilePalette = null; palette = null;
 
       // optionally compressing to MOSC V1
       if (compressed) {
@@ -22,6 +22,7 @@ public class MosV2Decoder extends MosDecoder
 
   private ByteBuffer mosBuffer;
   private int width, height, blockCount, ofsData;
+  private final PvrPageTable pvrTable = new PvrPageTable(this::getPvrzEntry);
 
   public MosV2Decoder(ResourceEntry mosEntry)
   {
@@ -40,7 +41,7 @@ public void preloadPvrz()
       if (ofs > 0) {
         int page = mosBuffer.getInt(ofs);
         if (page >= 0) {
-          getPVR(page);
+          pvrTable.get(page);
         }
       }
     }
@@ -49,7 +50,7 @@ public void preloadPvrz()
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    pvrTable.releaseAll();
     mosBuffer = null;
     width = height = blockCount = 0;
     ofsData = 0;
@@ -261,19 +262,10 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
-  private PvrDecoder getPVR(int page)
+  // Returns the PVRZ resource of the specified page
+  private ResourceEntry getPvrzEntry(int page)
   {
-    try {
-      String name = String.format("MOS%1$04d.PVRZ", page);
-      ResourceEntry entry = ResourceFactory.getResourceEntry(name);
-      if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return null;
+    return ResourceFactory.getResourceEntry(String.format("MOS%1$04d.PVRZ", page));
   }
 
   // Returns if a valid MOS has been initialized
@@ -307,7 +299,7 @@ private boolean renderBlock(int blockIdx, Image canvas, int left, int top)
       int srcY = mosBuffer.getInt(ofsBlock + 0x08);
       int blockWidth = mosBuffer.getInt(ofsBlock + 0x0c);
       int blockHeight = mosBuffer.getInt(ofsBlock + 0x10);
-      PvrDecoder decoder = getPVR(page);
+      PvrDecoder decoder = pvrTable.get(page);
       if (decoder != null) {
         try {
           int w = (left + blockWidth < canvas.getWidth(null)) ? canvas.getWidth(null) - left : blockWidth;
@@ -343,7 +335,7 @@ private boolean renderBlock(int blockIdx, int[] buffer, int width, int height, i
       int srcY = mosBuffer.getInt(ofsBlock + 0x08);
       int blockWidth = mosBuffer.getInt(ofsBlock + 0x0c);
       int blockHeight = mosBuffer.getInt(ofsBlock + 0x10);
-      PvrDecoder decoder = getPVR(page);
+      PvrDecoder decoder = pvrTable.get(page);
       if (decoder != null) {
         try {
           int w = (left + blockWidth < width) ? width - left : blockWidth;
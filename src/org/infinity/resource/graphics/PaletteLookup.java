@@ -0,0 +1,212 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Finds the nearest palette entries for arbitrary colors. Create it once per palette and reuse it
+ * for all pixels to remap.
+ * <p>
+ * The results are identical to {@link ColorConvert#nearestColor(int, int[])}.
+ * Palette entries are sorted by luminance, so that most entries can be skipped, and the results
+ * of previous lookups are remembered.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class PaletteLookup
+{
+  private static final int INITIAL_CAPACITY = 4096;
+
+  // HCL components of the palette entries, sorted by luminance
+  private final int[] sortedH, sortedC, sortedL;
+  // palette indices of the sorted entries
+  private final int[] sortedIndex;
+
+  // remembered colors (RGB | 0x1000000, 0 = unused) and palette indices, using open addressing
+  private int[] cacheKeys;
+  private byte[] cacheValues;
+  private int cacheCount;
+
+  /**
+   * Prepares a lookup for the specified palette.
+   * @param rgbPalette Palette entries in ARGB format (A is ignored). Max. 256 entries.
+   */
+  public PaletteLookup(int[] rgbPalette)
+  {
+    if (rgbPalette == null) {
+      throw new NullPointerException();
+    }
+    if (rgbPalette.length > 256) {
+      throw new IllegalArgumentException("Palette contains more than 256 entries");
+    }
+
+    int count = rgbPalette.length;
+
+    // sorting by luminance without changing the order of entries with equal luminance
+    int[] hclPalette = new int[count];
+    ColorConvert.toHclPalette(rgbPalette, hclPalette);
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      int l = (byte)(hclPalette[i] & 0xff);
+      keys[i] = ((long)(l + 128) << 16) | i;
+    }
+    Arrays.sort(keys);
+
+    sortedH = new int[count];
+    sortedC = new int[count];
+    sortedL = new int[count];
+    sortedIndex = new int[count];
+    for (int i = 0; i < count; i++) {
+      int index = (int)(keys[i] & 0xffff);
+      int hcl = hclPalette[index];
+      sortedH[i] = (byte)((hcl >>> 16) & 0xff);
+      sortedC[i] = (byte)((hcl >>> 8) & 0xff);
+      sortedL[i] = (byte)(hcl & 0xff);
+      sortedIndex[i] = index;
+    }
+
+    cacheKeys = new int[INITIAL_CAPACITY];
+    cacheValues = new byte[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the palette index of the color nearest to the specified color.
+   * @param rgbColor The source color value in ARGB format (A is ignored).
+   * @return The palette index pointing to the nearest color, or -1 if the palette is empty.
+   */
+  public int nearestColor(int rgbColor)
+  {
+    if (sortedIndex.length == 0) {
+      return -1;
+    }
+
+    rgbColor &= 0xffffff;
+    int index = getCached(rgbColor);
+    if (index < 0) {
+      index = search(rgbColor);
+      putCached(rgbColor, index);
+    }
+    return index;
+  }
+
+  /**
+   * Assigns a fixed palette index to the specified color, which is returned by subsequent calls
+   * of {@link #nearestColor(int)} instead of the calculated nearest color.
+   * @param rgbColor The color value in ARGB format (A is ignored).
+   * @param index The palette index.
+   */
+  public void setColor(int rgbColor, int index)
+  {
+    if (index < 0 || index >= sortedIndex.length) {
+      throw new IndexOutOfBoundsException("Invalid palette index: " + index);
+    }
+    putCached(rgbColor & 0xffffff, index);
+  }
+
+  // Returns the index of the nearest palette entry. Equal distances are resolved by the lowest index.
+  private int search(int rgbColor)
+  {
+    int v = ColorConvert.rgbToHcl(rgbColor);
+    int h = (byte)((v >>> 16) & 0xff), c = (byte)((v >>> 8) & 0xff), l = (byte)(v & 0xff);
+
+    // determining start position by luminance
+    int count = sortedL.length;
+    int lo = 0, hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sortedL[mid] < l) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    // searching in both directions until the luminance difference exceeds the best distance
+    int distance = Integer.MAX_VALUE;
+    int index = -1;
+    int up = lo, down = lo - 1;
+    while (up < count || down >= 0) {
+      if (up < count) {
+        int dl = sortedL[up] - l;
+        if (dl*dl > distance) {
+          up = count;
+        } else {
+          int dh = sortedH[up] - h;
+          int dc = sortedC[up] - c;
+          int d = dh*dh + dc*dc + dl*dl;
+          if (d < distance || (d == distance && sortedIndex[up] < index)) {
+            distance = d;
+            index = sortedIndex[up];
+          }
+          up++;
+        }
+      }
+      if (down >= 0) {
+        int dl = sortedL[down] - l;
+        if (dl*dl > distance) {
+          down = -1;
+        } else {
+          int dh = sortedH[down] - h;
+          int dc = sortedC[down] - c;
+          int d = dh*dh + dc*dc + dl*dl;
+          if (d < distance || (d == distance && sortedIndex[down] < index)) {
+            distance = d;
+            index = sortedIndex[down];
+          }
+          down--;
+        }
+      }
+    }
+    return index;
+  }
+
+  private int getCached(int rgbColor)
+  {
+    int key = rgbColor | 0x1000000;
+    int mask = cacheKeys.length - 1;
+    for (int slot = hash(rgbColor) & mask; cacheKeys[slot] != 0; slot = (slot + 1) & mask) {
+      if (cacheKeys[slot] == key) {
+        return cacheValues[slot] & 0xff;
+      }
+    }
+    return -1;
+  }
+
+  private void putCached(int rgbColor, int index)
+  {
+    if ((cacheCount + 1) * 2 > cacheKeys.length) {
+      // growing table
+      int[] oldKeys = cacheKeys;
+      byte[] oldValues = cacheValues;
+      cacheKeys = new int[oldKeys.length * 2];
+      cacheValues = new byte[oldValues.length * 2];
+      cacheCount = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+          putCached(oldKeys[i] & 0xffffff, oldValues[i] & 0xff);
+        }
+      }
+    }
+
+    int key = rgbColor | 0x1000000;
+    int mask = cacheKeys.length - 1;
+    int slot = hash(rgbColor) & mask;
+    while (cacheKeys[slot] != 0 && cacheKeys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    if (cacheKeys[slot] == 0) {
+      cacheCount++;
+    }
+    cacheKeys[slot] = key;
+    cacheValues[slot] = (byte)index;
+  }
+
+  private static int hash(int value)
+  {
+    int h = value * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+}
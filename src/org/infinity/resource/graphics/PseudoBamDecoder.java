@@ -1022,6 +1022,9 @@ public boolean exportBamV2(Path fileName, DxtEncoder.DxtType dxtType, int pvrzIn
    * Creates an array of max. 255 colors that can be used to create a global palette for all available frames.
    * Makes use of the specified color map if available. Does not consider transparent color.
    * @param colorMap An optional color map that will be used if available. Can be {@code null}.
+   *                 Otherwise colors of all frames are collected in parallel, weighted by pixel count.
+   *                 Only fully transparent pixels are skipped. Partially transparent palette entries of
+   *                 indexed frames are counted with their RGB value, the same way as for true color frames.
    * @return An int array containing up to 255 colors without the transparent color entry.
    */
   public int[] createGlobalPalette(HashMap<Integer, Integer> colorMap)
@@ -1030,36 +1033,27 @@ public int[] createGlobalPalette(HashMap<Integer, Integer> colorMap)
 
     int[] retVal;
     if (!listFrames.isEmpty() && !listCycles.isEmpty()) {
-      // adding pixels of all available frames to the hashset
-      HashMap<Integer, Integer> newMap;
+      // collecting colors of all available frames
+      ColorQuantizer.Histogram histogram;
       if (colorMap == null) {
-        newMap = new HashMap<Integer, Integer>();
+        List<BufferedImage> frames = new ArrayList<BufferedImage>(listFrames.size());
         for (int i = 0; i < listFrames.size(); i++) {
-          registerColors(newMap, listFrames.get(i).frame);
+          frames.add(listFrames.get(i).frame);
         }
+        histogram = ColorQuantizer.createHistogram(frames, false);
       } else {
-        newMap = new HashMap<Integer, Integer>(colorMap);
+        histogram = new ColorQuantizer.Histogram();
+        for (final Integer color: colorMap.keySet()) {
+          histogram.add(color.intValue());
+        }
       }
 
       // transparent color does not count
-      if (newMap.containsKey(Integer.valueOf(Green))) {
-        newMap.remove(Integer.valueOf(Green));
-      }
+      histogram.remove(Green);
 
       // creating palette
-      int numColors = newMap.size();
-      int[] colorBuffer = new int[numColors];
-      Iterator<Integer> iter = newMap.keySet().iterator();
-      int idx = 0;
-      while (iter.hasNext()) {
-        colorBuffer[idx] = iter.next();
-        idx++;
-      }
-      if (colorBuffer.length > 255) {
-        retVal = ColorConvert.medianCut(colorBuffer, 255, true);
-      } else {
-        retVal = colorBuffer;
-      }
+      int numColors = Math.min(255, histogram.size());
+      retVal = (numColors > 0) ? ColorQuantizer.medianCut(histogram, numColors) : new int[0];
 
       // removing duplicate entries from the palette
       HashSet<Integer> colorSet = new HashSet<Integer>();
@@ -1068,8 +1062,8 @@ public int[] createGlobalPalette(HashMap<Integer, Integer> colorMap)
       }
       if (colorSet.size() != retVal.length) {
         retVal = new int[colorSet.size()];
-        idx = 0;
-        iter = colorSet.iterator();
+        int idx = 0;
+        Iterator<Integer> iter = colorSet.iterator();
         while (iter.hasNext()) {
           retVal[idx] = iter.next().intValue();
           idx++;
@@ -1082,125 +1076,6 @@ public int[] createGlobalPalette(HashMap<Integer, Integer> colorMap)
   }
 
 
-  /** Maps all color values of the specified image. */
-  public static void registerColors(HashMap<Integer, Integer> colorMap, BufferedImage image)
-  {
-    final int Green = 0x0000ff00;
-
-    if (image != null) {
-      if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED &&
-          image.getColorModel() instanceof IndexColorModel) {
-        IndexColorModel cm = (IndexColorModel)image.getColorModel();
-        boolean hasAlpha = cm.hasAlpha();
-        int numColors = 1 << cm.getPixelSize();
-        for (int i = 0; i < numColors; i++) {
-          int color = cm.getRGB(i);
-
-          // determining transparency
-          if (hasAlpha && ((color >>> 24) < 255)) {
-            color = Green;
-          }
-
-          // registering color in map
-          Integer key = Integer.valueOf(color);
-          Integer count = colorMap.get(key);
-          if (count == null) {
-            count = Integer.valueOf(1);
-          } else {
-            ++count;
-          }
-          colorMap.put(key, count);
-        }
-      } else if (image.getRaster().getDataBuffer().getDataType() == DataBuffer.TYPE_INT) {
-        int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-        for (int i = 0; i < buffer.length; i++) {
-          int color = buffer[i];
-
-          // determining transparency
-          if ((color & 0xff000000) == 0) {
-            color = Green;
-          } else {
-            color &= 0x00ffffff;
-          }
-
-          // registering color in map
-          Integer key = Integer.valueOf(color);
-          Integer count = colorMap.get(key);
-          if (count == null) {
-            count = Integer.valueOf(1);
-          } else {
-            ++count;
-          }
-          colorMap.put(key, count);
-        }
-      }
-    }
-  }
-
-  /** Unmaps all color values of the specified image. */
-  public static void unregisterColors(HashMap<Integer, Integer> colorMap, BufferedImage image)
-  {
-    final int Green = 0x0000ff00;
-
-    if (image != null) {
-      if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED &&
-          image.getColorModel() instanceof IndexColorModel) {
-        IndexColorModel cm = (IndexColorModel)image.getColorModel();
-        byte[] buffer = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
-        boolean hasAlpha = cm.hasAlpha();
-        for (int i = 0; i < buffer.length; i++) {
-          int pixel = buffer[i] & 0xff;
-          int color = (cm.getRed(pixel) << 16) | (cm.getGreen(pixel) << 8) | cm.getBlue(pixel);
-
-          // determining transparency
-          if (hasAlpha) {
-            int a = cm.getAlpha(pixel);
-            if (a > 0) {
-              color = Green;
-            }
-          }
-
-          // unregistering color in map
-          Integer key = Integer.valueOf(color);
-          Integer count = colorMap.get(key);
-          if (count != null) {
-            --count;
-            if (count == 0) {
-              colorMap.remove(key);
-            } else {
-              colorMap.put(key, count);
-            }
-          }
-        }
-      } else if (image.getRaster().getDataBuffer().getDataType() == DataBuffer.TYPE_INT) {
-        int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-        for (int i = 0; i < buffer.length; i++) {
-          int color = buffer[i];
-
-          // determining transparency
-          if ((color & 0xff000000) == 0) {
-            color = Green;
-          } else {
-            color &= 0x00ffffff;
-          }
-
-          // unregistering color in map
-          Integer key = Integer.valueOf(color);
-          Integer count = colorMap.get(key);
-          if (count != null) {
-            --count;
-            if (count == 0) {
-              colorMap.remove(key);
-            } else {
-              colorMap.put(key, count);
-            }
-          }
-        }
-      }
-    }
-  }
-
-
   // Calculates the locations of all frames on PVRZ textures and stores the results in framesList and gridList.
   private boolean buildFrameDataList(List<FrameDataV2> framesList, List<BinPack2D> gridList,
                                      int pvrzPageIndex) throws Exception
@@ -11,12 +11,17 @@
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -31,6 +36,12 @@
  * Decodes a PVR(Z) file.
  * Note: Supports only the minimal set of PVR-specific features required to decode the BGEE's
  * PVRZ resources (this includes only a selected number of supported pixel formats).
+ * <p>
+ * Decoders are shared by a global cache. Decoded pixel data is stored in regions of
+ * 64x64 pixels, so that only the regions covered by a decode request are decompressed once.
+ * The cache is limited by the memory used for encoded and decoded data. Textures which are
+ * used by open resources are acquired by {@link #acquirePvr(ResourceEntry)} and are not removed
+ * from the cache before they are released again.
  */
 public class PvrDecoder
 {
@@ -61,10 +72,16 @@ public enum ChannelType {
     FLOAT
   }
 
-  // The global cache list for PVR objects. The "key" has to be a unique String (e.g. filename or integer as string)
-  private static final Map<String, PvrDecoder> pvrCache = new LinkedHashMap<String, PvrDecoder>();
-  // The max. number of cache entries to hold
-  private static int MaxCacheEntries = 32;
+  // The global cache list for PVR objects in least recently used order.
+  // The "key" has to be a unique String (e.g. filename or integer as string)
+  private static final Map<String, PvrDecoder> pvrCache = new LinkedHashMap<String, PvrDecoder>(16, 0.75f, true);
+  // The max. memory used by cached PVR objects (encoded and decoded pixel data), in bytes
+  private static long MaxCacheSize = Math.min(128L << 20, Runtime.getRuntime().maxMemory() / 8L);
+  // The memory currently used by cached PVR objects, in bytes
+  private static long cacheSize;
+
+  // Width and height of a region of decoded pixel data
+  private static final int RegionSize = 64;
 
   // Supported pixel formats
   private static final EnumSet<PixelFormat> SupportedFormat =
@@ -73,6 +90,12 @@ public enum ChannelType {
                  PixelFormat.PVRTC_4BPP_RGB, PixelFormat.PVRTC_4BPP_RGBA);
 
   private PvrInfo info;
+  private String cacheKey;          // key of the cache entry, or null if not cached
+  private Path source;              // source file, or null if not available
+  private long sourceModified;      // last modification time of the source file
+  private int refCount;             // number of acquisitions
+  private int[][] regions;          // decoded pixel data by region index, row by row
+  private int regionsSize;          // memory used by decoded regions, in bytes
 
 
   /**
@@ -82,21 +105,7 @@ public enum ChannelType {
    */
   public static PvrDecoder loadPvr(ResourceEntry entry)
   {
-    if (entry == null) {
-      throw new NullPointerException();
-    }
-    try {
-      String key = entry.getResourceName().toUpperCase(Locale.ENGLISH);
-      PvrDecoder decoder = getCachedPvrDecoder(key);
-      if (decoder != null) {
-        return decoder;
-      } else {
-        return createPvrDecoder(key, entry.getResourceDataAsStream());
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return null;
+    return loadPvr(entry, false);
   }
 
   /**
@@ -111,11 +120,12 @@ public static PvrDecoder loadPvr(String fileName)
     }
     try {
       String key = fileName.toUpperCase(Locale.ENGLISH);
-      PvrDecoder decoder = getCachedPvrDecoder(key);
+      Path source = FileManager.resolve(fileName);
+      PvrDecoder decoder = getCachedPvrDecoder(key, source, false);
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(FileManager.resolve(fileName)));
+        return createPvrDecoder(key, source, StreamUtils.getInputStream(source), false);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -132,11 +142,11 @@ public static PvrDecoder loadPvr(Path file)
   {
     try {
       String key = file.getFileName().toString().toUpperCase(Locale.ENGLISH);
-      PvrDecoder decoder = getCachedPvrDecoder(key);
+      PvrDecoder decoder = getCachedPvrDecoder(key, file, false);
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(file));
+        return createPvrDecoder(key, file, StreamUtils.getInputStream(file), false);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -156,11 +166,11 @@ public static PvrDecoder loadPvr(InputStream input)
     }
     try {
       String key = Integer.valueOf(input.hashCode()).toString();
-      PvrDecoder decoder = getCachedPvrDecoder(key);
+      PvrDecoder decoder = getCachedPvrDecoder(key, null, false);
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, input);
+        return createPvrDecoder(key, null, input, false);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -168,70 +178,118 @@ public static PvrDecoder loadPvr(InputStream input)
     return null;
   }
 
-  /** Returns the max. number of PvrDecoder objects to cache. */
-  public static int getMaxCacheEntries()
+  /**
+   * Returns an initialized PvrDecoder object with the specified resource and prevents it from
+   * being removed from the cache. Each acquired object has to be released by {@link #release()}
+   * when it is not needed anymore.
+   * @param entry The ResourceEntry object of the pvr(z) resource to load.
+   * @return the PvrDecoder object containing the decoded PVR resource, or {@code null} on error.
+   */
+  public static PvrDecoder acquirePvr(ResourceEntry entry)
   {
-    return MaxCacheEntries;
+    return loadPvr(entry, true);
   }
 
-  /** Specify the new max. number of PvrDecoder objects to cache. Specifying 0 disables the cache. */
-  public static synchronized void setMaxCacheEntries(int maxValue)
+  /** Returns the max. memory used by cached PvrDecoder objects, in bytes. */
+  public static synchronized long getMaxCacheSize()
   {
-    if (maxValue < 0) maxValue = 0; else if (maxValue > 65535) maxValue = 65535;
-    if (maxValue != MaxCacheEntries) {
-      MaxCacheEntries = maxValue;
-      while (pvrCache.size() > MaxCacheEntries) {
-        pvrCache.remove(pvrCache.keySet().iterator().next());
-      }
+    return MaxCacheSize;
+  }
+
+  /**
+   * Specify the new max. memory used by cached PvrDecoder objects, in bytes. Specifying 0 disables
+   * the cache for all objects which have not been acquired.
+   */
+  public static synchronized void setMaxCacheSize(long maxValue)
+  {
+    if (maxValue < 0L) maxValue = 0L;
+    if (maxValue != MaxCacheSize) {
+      MaxCacheSize = maxValue;
+      trimCache();
     }
   }
 
   /** Clears all available caches. */
   public static synchronized void flushCache()
   {
+    for (final PvrDecoder decoder: pvrCache.values()) {
+      decoder.uncache();
+    }
     pvrCache.clear();
+    cacheSize = 0L;
     DecodePVRT.flushCache();
   }
 
   /** Returns the current cache load as percentage value. */
-  public static int getCacheLoad()
+  public static synchronized int getCacheLoad()
   {
-    if (MaxCacheEntries > 0) {
-      return (pvrCache.size()*100) / MaxCacheEntries;
+    if (MaxCacheSize > 0L) {
+      return (int)Math.min(100L, (cacheSize*100L) / MaxCacheSize);
     } else {
       return 0;
     }
   }
 
-  // Returns a PvrDecoder object only if it already exists in the cache.
-  private static synchronized PvrDecoder getCachedPvrDecoder(String key)
+  // Loads the specified resource and optionally acquires it
+  private static PvrDecoder loadPvr(ResourceEntry entry, boolean acquire)
+  {
+    if (entry == null) {
+      throw new NullPointerException();
+    }
+    try {
+      String key = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+      Path source = entry.getActualPath();
+      PvrDecoder decoder = getCachedPvrDecoder(key, source, acquire);
+      if (decoder != null) {
+        return decoder;
+      } else {
+        return createPvrDecoder(key, source, entry.getResourceDataAsStream(), acquire);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  // Returns a PvrDecoder object only if it already exists in the cache and is still up to date.
+  // The returned object is acquired within the same lock if requested.
+  private static synchronized PvrDecoder getCachedPvrDecoder(String key, Path source, boolean acquire)
   {
     PvrDecoder retVal = null;
     if (key != null && !key.isEmpty()) {
-      if (pvrCache.containsKey(key)) {
-        retVal = pvrCache.get(key);
-        // re-inserting entry to prevent premature removal from cache
+      retVal = pvrCache.get(key);
+      if (retVal != null && !retVal.isSourceValid(source)) {
+        // source has been modified
         pvrCache.remove(key);
-        pvrCache.put(key, retVal);
+        retVal.uncache();
+        retVal = null;
       }
     }
+    if (retVal != null && acquire) {
+      retVal.refCount++;
+    }
     return retVal;
   }
 
   // Returns a PvrDecoder object of the specified key if available, or creates and returns a new one otherwise.
-  private static synchronized PvrDecoder createPvrDecoder(String key, InputStream input)
+  // The new object is acquired before the cache is trimmed if requested.
+  private static synchronized PvrDecoder createPvrDecoder(String key, Path source, InputStream input,
+                                                          boolean acquire)
   {
-    PvrDecoder retVal = getCachedPvrDecoder(key);
+    PvrDecoder retVal = getCachedPvrDecoder(key, source, acquire);
     if (retVal == null && input != null) {
       try {
         retVal = new PvrDecoder(input);
-        if (retVal != null) {
-          pvrCache.put(key, retVal);
-          // removing excess cache entries
-          while (pvrCache.size() > MaxCacheEntries) {
-            pvrCache.remove(pvrCache.keySet().iterator().next());
-          }
+        retVal.source = source;
+        retVal.sourceModified = getLastModified(source);
+        retVal.cacheKey = key;
+        if (acquire) {
+          retVal.refCount++;
         }
+        pvrCache.put(key, retVal);
+        cacheSize += retVal.getCacheSize();
+        // removing excess cache entries
+        trimCache();
       } catch (Exception e) {
         e.printStackTrace();
       }
@@ -239,6 +297,39 @@ private static synchronized PvrDecoder createPvrDecoder(String key, InputStream
     return retVal;
   }
 
+  // Removes least recently used data until the cache size limit is satisfied.
+  // Must be called while holding the class lock.
+  private static void trimCache()
+  {
+    // removing textures which are not in use
+    Iterator<PvrDecoder> iter = pvrCache.values().iterator();
+    while (cacheSize > MaxCacheSize && iter.hasNext()) {
+      PvrDecoder decoder = iter.next();
+      if (decoder.refCount == 0) {
+        iter.remove();
+        decoder.uncache();
+      }
+    }
+
+    // discarding decoded pixel data of textures in use
+    iter = pvrCache.values().iterator();
+    while (cacheSize > MaxCacheSize && iter.hasNext()) {
+      iter.next().discardRegions();
+    }
+  }
+
+  // Returns the last modification time of the specified file, or 0 if not available.
+  private static long getLastModified(Path file)
+  {
+    if (file != null) {
+      try {
+        return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+      } catch (IOException e) {
+      }
+    }
+    return 0L;
+  }
+
   // Returns a rectangle that is aligned to the values specified as arguments 2 and 3
   private static Rectangle alignRectangle(Rectangle rect, int alignX, int alignY)
   {
@@ -319,6 +410,22 @@ private static Rectangle alignRectangle(Rectangle rect, int alignX, int alignY)
   /** Provides direct access to the content of the encoded pixel data. */
   public byte[] getData() { return info.data; }
 
+  /**
+   * Releases an object which has been acquired by {@link #acquirePvr(ResourceEntry)}. Released
+   * objects remain usable, but may be removed from the cache when they are not in use anymore.
+   */
+  public void release()
+  {
+    synchronized (PvrDecoder.class) {
+      if (refCount > 0) {
+        refCount--;
+        if (refCount == 0) {
+          trimCache();
+        }
+      }
+    }
+  }
+
   /** Returns whether the pixel format of the current texture is supported by the PvrDecoder. */
   public boolean isSupported()
   {
@@ -400,7 +507,82 @@ public boolean decode(BufferedImage image, int x, int y, int width, int height)
     if (getChannelType() != ChannelType.UBYTE_NORM) {
       throw new Exception(String.format("Channel type '%1$s' not supported", getChannelType().toString()));
     }
-    Rectangle region = new Rectangle(x, y, width, height);
+
+    // copying pixel data from the decoded regions
+    DataBuffer db = image.getRaster().getDataBuffer();
+    int[] imgData = (db instanceof DataBufferInt) ? ((DataBufferInt)db).getData() : null;
+    int imgWidth = image.getWidth();
+    int maxX = x + Math.min(width, imgWidth);
+    int maxY = y + Math.min(height, image.getHeight());
+    for (int ry = y / RegionSize; ry*RegionSize < maxY; ry++) {
+      int top = ry*RegionSize;
+      int regionHeight = Math.min(RegionSize, getHeight() - top);
+      int y0 = Math.max(y, top);
+      int y1 = Math.min(maxY, top + regionHeight);
+      for (int rx = x / RegionSize; rx*RegionSize < maxX; rx++) {
+        int left = rx*RegionSize;
+        int regionWidth = Math.min(RegionSize, getWidth() - left);
+        int[] data = getRegion(rx, ry, regionWidth, regionHeight);
+        if (data == null) {
+          return false;
+        }
+        int x0 = Math.max(x, left);
+        int x1 = Math.min(maxX, left + regionWidth);
+        int srcOfs = (y0 - top)*regionWidth + (x0 - left);
+        int dstOfs = (y0 - y)*imgWidth + (x0 - x);
+        for (int row = y0; row < y1; row++, srcOfs += regionWidth, dstOfs += imgWidth) {
+          if (imgData != null) {
+            System.arraycopy(data, srcOfs, imgData, dstOfs, x1 - x0);
+          } else {
+            image.setRGB(x0 - x, row - y, x1 - x0, 1, data, srcOfs, regionWidth);
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+
+  // Returns the decoded pixel data of the specified region. Decodes and caches it if needed.
+  private int[] getRegion(int rx, int ry, int regionWidth, int regionHeight) throws Exception
+  {
+    int regionsX = (getWidth() + RegionSize - 1) / RegionSize;
+    int index = ry*regionsX + rx;
+    synchronized (PvrDecoder.class) {
+      if (regions != null && regions[index] != null) {
+        return regions[index];
+      }
+    }
+
+    BufferedImage image = new BufferedImage(regionWidth, regionHeight, BufferedImage.TYPE_INT_ARGB);
+    if (!decodeTexture(image, new Rectangle(rx*RegionSize, ry*RegionSize, regionWidth, regionHeight))) {
+      return null;
+    }
+    int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+    synchronized (PvrDecoder.class) {
+      if (cacheKey != null) {
+        if (regions == null) {
+          int regionsY = (getHeight() + RegionSize - 1) / RegionSize;
+          regions = new int[regionsX*regionsY][];
+        }
+        if (regions[index] == null) {
+          regions[index] = data;
+          regionsSize += data.length*4;
+          cacheSize += data.length*4;
+          trimCache();
+        } else {
+          // decoded concurrently
+          data = regions[index];
+        }
+      }
+    }
+    return data;
+  }
+
+  // Decodes the specified region of the texture into the image
+  private boolean decodeTexture(BufferedImage image, Rectangle region) throws Exception
+  {
     switch (getPixelFormat()) {
       case PVRTC_2BPP_RGB:
       case PVRTC_2BPP_RGBA:
@@ -419,6 +601,41 @@ public boolean decode(BufferedImage image, int x, int y, int width, int height)
     }
   }
 
+  // Returns the memory used by this object, in bytes
+  private long getCacheSize()
+  {
+    return (long)info.data.length + regionsSize;
+  }
+
+  // Returns whether the object has been created from the current version of the specified file.
+  private boolean isSourceValid(Path source)
+  {
+    if (source == null || this.source == null) {
+      return (source == this.source);
+    }
+    return source.equals(this.source) && getLastModified(source) == sourceModified;
+  }
+
+  // Discards decoded pixel data. Must be called while holding the class lock.
+  private void discardRegions()
+  {
+    if (cacheKey != null) {
+      cacheSize -= regionsSize;
+    }
+    regions = null;
+    regionsSize = 0;
+  }
+
+  // Marks the object as removed from the cache. Must be called while holding the class lock.
+  private void uncache()
+  {
+    discardRegions();
+    if (cacheKey != null) {
+      cacheSize -= info.data.length;
+      cacheKey = null;
+    }
+  }
+
 
   private PvrDecoder(InputStream input) throws Exception
   {
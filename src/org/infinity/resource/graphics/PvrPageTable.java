@@ -0,0 +1,66 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Keeps the PVRZ textures used by a PVRZ-based graphics resource, indexed by page number.
+ * Textures are acquired from the global {@link PvrDecoder} cache on first request and remain
+ * acquired until {@link #releaseAll()} is called.
+ */
+final class PvrPageTable
+{
+  private final Map<Integer, PvrDecoder> pvrTable = new HashMap<Integer, PvrDecoder>();
+  private final IntFunction<ResourceEntry> resolver;
+
+  /**
+   * @param resolver Returns the PVRZ resource of the specified page, or {@code null} if
+   *                 not available.
+   */
+  public PvrPageTable(IntFunction<ResourceEntry> resolver)
+  {
+    this.resolver = resolver;
+  }
+
+  /** Returns the PVRZ texture of the specified page. Returns {@code null} if not available. */
+  public PvrDecoder get(int page)
+  {
+    synchronized (pvrTable) {
+      PvrDecoder decoder = pvrTable.get(Integer.valueOf(page));
+      if (decoder != null) {
+        return decoder;
+      }
+      try {
+        ResourceEntry entry = resolver.apply(page);
+        if (entry != null) {
+          decoder = PvrDecoder.acquirePvr(entry);
+          if (decoder != null) {
+            pvrTable.put(Integer.valueOf(page), decoder);
+          }
+          return decoder;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  /** Releases all textures acquired by this table. */
+  public void releaseAll()
+  {
+    synchronized (pvrTable) {
+      for (final PvrDecoder decoder: pvrTable.values()) {
+        decoder.release();
+      }
+      pvrTable.clear();
+    }
+  }
+}
@@ -26,6 +26,7 @@ public class TisV2Decoder extends TisDecoder
   private int tileCount, tileSize;
   private String pvrzNameBase;
   private BufferedImage workingCanvas;
+  private final PvrPageTable pvrTable = new PvrPageTable(this::getPvrzEntry);
 
   public TisV2Decoder(ResourceEntry tisEntry)
   {
@@ -76,7 +77,7 @@ public String getPvrzFileName(int tileIdx)
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    pvrTable.releaseAll();
     tisBuffer = null;
     tileCount = 0;
     tileSize = 0;
@@ -183,19 +184,10 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
-  private PvrDecoder getPVR(int page)
+  // Returns the PVRZ resource of the specified page
+  private ResourceEntry getPvrzEntry(int page)
   {
-    try {
-      String name = String.format("%1$s%2$02d.PVRZ", pvrzNameBase, page);
-      ResourceEntry entry = ResourceFactory.getResourceEntry(name);
-      if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return null;
+    return ResourceFactory.getResourceEntry(String.format("%1$s%2$02d.PVRZ", pvrzNameBase, page));
   }
 
   // Returns the start offset of the specified tile. Returns -1 on error.
@@ -250,7 +242,7 @@ private boolean updateWorkingCanvas(int tileIdx)
       int page = tisBuffer.getInt(ofs);
       int x = tisBuffer.getInt(ofs+4);
       int y = tisBuffer.getInt(ofs+8);
-      PvrDecoder decoder = getPVR(page);
+      PvrDecoder decoder = pvrTable.get(page);
       if (decoder != null || page == -1) {
         // removing old content
         try {
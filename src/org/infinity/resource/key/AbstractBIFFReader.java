@@ -4,12 +4,17 @@
 
 package org.infinity.resource.key;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.infinity.util.io.StreamUtils;
 
@@ -28,14 +33,30 @@ public enum Type {
     BIFC,
   }
 
+  /** Default max. number of BIFF readers kept in the cache. */
+  public static final int DEFAULT_CACHE_LIMIT = 1024;
+
   // A cache for AbstractBIFFReader instances
-  private static final LinkedHashMap<Path, AbstractBIFFReader> BIFF_CACHE = new LinkedHashMap<>();
+  private static final ConcurrentHashMap<Path, AbstractBIFFReader> BIFF_CACHE = new ConcurrentHashMap<>();
+  // Used to synchronize creation and eviction of cache entries
+  private static final Object CACHE_LOCK = new Object();
+
+  private static volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
 
   // Maps resource locators to BIFF entry structures
   private final HashMap<Integer, Entry> mapEntries = new HashMap<>();
 
   protected final Path file;
 
+  // Shared read-only channel for positional read operations, guarded by this
+  private FileChannel channel;
+  // Number of read operations currently using the shared channel
+  private int channelUsers;
+  // Set when the reader has been removed from the cache, the channel is closed after the last use
+  private boolean evicted;
+  // Timestamp of the most recent cache access (used for LRU eviction)
+  private volatile long lastAccess;
+
   /**
    * Opens the specified BIFF file (of any supported type) and returns it fully initialized and
    * ready for read operations as a BIFFReader object.
@@ -43,11 +64,30 @@ public enum Type {
    * @return A BIFFReader object for accessing the BIFF archive.
    * @throws IOException On error.
    */
-  public static synchronized AbstractBIFFReader open(Path file) throws Exception
+  public static AbstractBIFFReader open(Path file) throws Exception
   {
     return queryBIFFReader(file);
   }
 
+  /** Returns the max. number of BIFF readers kept in the cache. */
+  public static int getCacheLimit()
+  {
+    return cacheLimit;
+  }
+
+  /**
+   * Sets the max. number of BIFF readers kept in the cache. Least recently used readers are
+   * removed from the cache if the limit is exceeded.
+   * @param limit The new cache limit. Values less than 1 are treated as 1.
+   */
+  public static void setCacheLimit(int limit)
+  {
+    cacheLimit = Math.max(1, limit);
+    synchronized (CACHE_LOCK) {
+      evictEntries();
+    }
+  }
+
   /** Returns a fully initialized TIS header as {@link ByteBuffer} object. */
   public static ByteBuffer getTisHeader(int tileCount, int tileSize)
   {
@@ -64,7 +104,12 @@ public static ByteBuffer getTisHeader(int tileCount, int tileSize)
   /** Removes all {@code AbstractBIFFReader} entries from the cache. */
   public static void resetCache()
   {
-    BIFF_CACHE.clear();
+    synchronized (CACHE_LOCK) {
+      for (final AbstractBIFFReader reader: BIFF_CACHE.values()) {
+        reader.evict();
+      }
+      BIFF_CACHE.clear();
+    }
   }
 
   // Fetches a cached AbstractBIFFReader associated of the specified path or creates a new one
@@ -72,29 +117,54 @@ private static AbstractBIFFReader queryBIFFReader(Path file) throws Exception
   {
     AbstractBIFFReader retVal = null;
     if (file != null) {
-      // get and remove an available cached entry
       retVal = BIFF_CACHE.get(file);
       if (retVal == null) {
-        Type type = detectBiffType(file);
-        switch (type) {
-          case BIFF:
-            retVal = new BIFFReader(file);
-            break;
-          case BIF:
-            retVal = new BIFReader(file);
-            break;
-          case BIFC:
-            retVal = new BIFCReader(file);
-            break;
-          default:
-            throw new IOException("Unsupported BIFF type");
+        synchronized (CACHE_LOCK) {
+          retVal = BIFF_CACHE.get(file);
+          if (retVal == null) {
+            Type type = detectBiffType(file);
+            switch (type) {
+              case BIFF:
+                retVal = new BIFFReader(file);
+                break;
+              case BIF:
+                retVal = new BIFReader(file);
+                break;
+              case BIFC:
+                retVal = new BIFCReader(file);
+                break;
+              default:
+                throw new IOException("Unsupported BIFF type");
+            }
+            retVal.lastAccess = System.nanoTime();
+            BIFF_CACHE.put(file, retVal);
+            evictEntries();
+          }
         }
-        BIFF_CACHE.put(file, retVal);
       }
+      retVal.lastAccess = System.nanoTime();
     }
     return retVal;
   }
 
+  // Removes least recently used readers until the cache limit is satisfied. Must be called with CACHE_LOCK held.
+  private static void evictEntries()
+  {
+    while (BIFF_CACHE.size() > cacheLimit) {
+      AbstractBIFFReader oldest = null;
+      for (final AbstractBIFFReader reader: BIFF_CACHE.values()) {
+        if (oldest == null || reader.lastAccess - oldest.lastAccess < 0L) {
+          oldest = reader;
+        }
+      }
+      if (oldest == null) {
+        break;
+      }
+      BIFF_CACHE.remove(oldest.getFile(), oldest);
+      oldest.evict();
+    }
+  }
+
 
   /** Returns whether the BIFF file uses any kind of compression. */
   public boolean isCompressed()
@@ -168,6 +238,103 @@ protected AbstractBIFFReader(Path file) throws Exception
     this.file = file;
   }
 
+  /**
+   * Performs the specified operation on a read-only {@link FileChannel} of the BIFF file that is
+   * shared by all read operations of this reader. The channel must not be closed by the operation
+   * and should only be used for positional read operations. The operation is repeated once
+   * if the channel has been closed concurrently.
+   * @return The result of the operation.
+   */
+  protected <T> T withChannel(ChannelOperation<T> operation) throws IOException
+  {
+    for (int retry = 0; ; retry++) {
+      FileChannel ch = acquireChannel();
+      try {
+        return operation.apply(ch);
+      } catch (ClosedByInterruptException e) {
+        throw e;
+      } catch (ClosedChannelException e) {
+        // channel may have been closed by the interruption of another thread using it
+        if (retry > 0) {
+          throw e;
+        }
+      } finally {
+        releaseChannel();
+      }
+    }
+  }
+
+  /**
+   * Reads data from the BIFF file into the specified buffer, starting at the given file position,
+   * until the buffer is full. Does not modify the position of the shared channel.
+   * @param buffer The buffer to fill.
+   * @param position File position of the first byte to read.
+   * @throws EOFException if the end of file is reached before the buffer is full.
+   */
+  protected void readFully(ByteBuffer buffer, long position) throws IOException
+  {
+    final int start = buffer.position();
+    withChannel(ch -> {
+      while (buffer.hasRemaining()) {
+        int n = ch.read(buffer, position + buffer.position() - start);
+        if (n < 0) {
+          throw new EOFException("Unexpected end of file: " + getFile());
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Returns an {@link InputStream} which reads sequentially from the shared channel of the BIFF file,
+   * starting at the specified file position.
+   */
+  protected InputStream getChannelInputStream(long position) throws IOException
+  {
+    return new ChannelInputStream(position);
+  }
+
+  // Returns the shared channel, opens it if needed. Each call must be followed by releaseChannel().
+  private synchronized FileChannel acquireChannel() throws IOException
+  {
+    if (channel == null || !channel.isOpen()) {
+      channel = FileChannel.open(getFile(), StandardOpenOption.READ);
+    }
+    channelUsers++;
+    return channel;
+  }
+
+  private synchronized void releaseChannel()
+  {
+    channelUsers--;
+    if (channelUsers == 0 && evicted) {
+      closeChannel();
+    }
+  }
+
+  // Called when the reader is removed from the cache. Readers still in use keep their channel
+  // until the last read operation has completed.
+  private synchronized void evict()
+  {
+    evicted = true;
+    if (channelUsers == 0) {
+      closeChannel();
+    }
+  }
+
+  private synchronized void closeChannel()
+  {
+    FileChannel ch = channel;
+    channel = null;
+    if (ch != null) {
+      try {
+        ch.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   // Internally used to store BIFF entry information
   protected void addEntry(Entry entry)
   {
@@ -211,6 +378,59 @@ private static Type detectBiffType(Path file) throws Exception
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Sequential input stream based on positional read operations of the shared channel
+  private class ChannelInputStream extends InputStream
+  {
+    private long position;
+
+    public ChannelInputStream(long position) throws IOException
+    {
+      this.position = Math.max(0L, position);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      final byte[] b = {0};
+      return (read(b, 0, 1) == 1) ? (b[0] & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (len == 0) {
+        return 0;
+      }
+      int n = withChannel(ch -> ch.read(ByteBuffer.wrap(b, off, len), position));
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+      long size = withChannel(FileChannel::size);
+      n = Math.max(0L, Math.min(n, size - position));
+      position += n;
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+      return (int)Math.max(0L, Math.min(Integer.MAX_VALUE, withChannel(FileChannel::size) - position));
+    }
+  }
+
+  /** An operation on the shared channel of the BIFF file. */
+  @FunctionalInterface
+  protected interface ChannelOperation<T>
+  {
+    T apply(FileChannel channel) throws IOException;
+  }
+
   // File or tileset entry definition
   protected static class Entry
   {
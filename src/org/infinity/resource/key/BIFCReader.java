@@ -9,10 +9,14 @@
 import java.io.InputStream;
 import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.zip.Inflater;
 
 import org.infinity.NearInfinity;
@@ -29,6 +33,10 @@ public class BIFCReader extends AbstractBIFFReader
 
   private int uncSize;
   private int numFiles, numTilesets;
+  // Decompressed start offsets of all compressed blocks (in ascending order)
+  private int[] blockOffsets;
+  // File positions of the compressed blocks, matching the entries in blockOffsets
+  private long[] blockPositions;
 
   protected BIFCReader(Path file) throws Exception
   {
@@ -50,6 +58,8 @@ public synchronized void open() throws Exception
       if (this.uncSize < 0) {
         throw new Exception("Invalid BIFF archive");
       }
+
+      initBlockIndex(channel);
     }
     init();
   }
@@ -102,10 +112,7 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
       blocker.setBlocked(true);
     }
 
-    try (InputStream is = new BifcInputStream(
-        new BufferedInputStream(
-            Files.newInputStream(getFile(), StandardOpenOption.READ)),
-        entry.offset, size)) {
+    try (InputStream is = getBifcInputStream(entry.offset, size)) {
       StreamUtils.readBytes(is, buffer);
     } finally {
       blocker.setBlocked(false);
@@ -127,26 +134,75 @@ public InputStream getResourceAsStream(int locator) throws IOException
       ByteBuffer header = getTisHeader(entry.count, entry.size);
       InputStream is1 = new ByteBufferInputStream(header);
       @SuppressWarnings("resource")
-      InputStream is2 = new BifcInputStream(
-          new BufferedInputStream(
-              Files.newInputStream(getFile(), StandardOpenOption.READ)),
-          entry.offset, entry.count*entry.size);
+      InputStream is2 = getBifcInputStream(entry.offset, entry.count*entry.size);
       InputStream is = new SequenceInputStream(is1, is2);
       return is;
     } else {
-      return new BifcInputStream(
-          new BufferedInputStream(
-              Files.newInputStream(getFile(), StandardOpenOption.READ)),
-          entry.offset, entry.size);
+      return getBifcInputStream(entry.offset, entry.size);
+    }
+  }
+
+
+  // Scans the headers of all compressed blocks and maps their decompressed offsets to file positions
+  private void initBlockIndex(FileChannel channel) throws Exception
+  {
+    MappedByteBuffer mb = channel.map(MapMode.READ_ONLY, 0L, channel.size());
+    mb.order(ByteOrder.LITTLE_ENDIAN);
+
+    int[] offsets = new int[64];
+    long[] positions = new long[64];
+    int numBlocks = 0;
+    int curOfs = 0;
+    int pos = 12;   // skipping BIFC header
+    while (curOfs < uncSize && pos + 8 <= mb.limit()) {
+      int blockUncSize = mb.getInt(pos);
+      int blockCompSize = mb.getInt(pos + 4);
+      if (blockUncSize < 0 || blockCompSize < 0) {
+        throw new Exception("Invalid compressed block at offset " + pos);
+      }
+      if (numBlocks == offsets.length) {
+        offsets = Arrays.copyOf(offsets, numBlocks*2);
+        positions = Arrays.copyOf(positions, numBlocks*2);
+      }
+      offsets[numBlocks] = curOfs;
+      positions[numBlocks] = pos;
+      numBlocks++;
+      curOfs += blockUncSize;
+      pos += 8 + blockCompSize;
     }
+    if (curOfs < uncSize) {
+      throw new Exception("Unexpected end of compressed data");
+    }
+
+    this.blockOffsets = Arrays.copyOf(offsets, numBlocks);
+    this.blockPositions = Arrays.copyOf(positions, numBlocks);
   }
 
+  // Returns a BifcInputStream which starts decompression at the block containing the specified offset
+  private InputStream getBifcInputStream(int offset, int size) throws IOException
+  {
+    if (offset < 0 || offset > uncSize) {
+      throw new IOException("Start offset is out of bounds");
+    }
+
+    // finding last block that starts at or before the requested offset
+    int block = Arrays.binarySearch(blockOffsets, offset);
+    if (block < 0) {
+      block = -block - 2;
+    }
+    if (block < 0) {
+      // empty archive or no block header available
+      return new BifcInputStream(new BufferedInputStream(
+          Files.newInputStream(getFile(), StandardOpenOption.READ)), offset, size);
+    }
+
+    return new BifcInputStream(new BufferedInputStream(getChannelInputStream(blockPositions[block])),
+                               uncSize, blockOffsets[block], offset, size);
+  }
 
   private void init() throws Exception
   {
-    try (InputStream is = new BifcInputStream(
-        new BufferedInputStream(
-            Files.newInputStream(getFile(), StandardOpenOption.READ)), 0, -1)) {
+    try (InputStream is = getBifcInputStream(0, -1)) {
       int curOfs = 0;
       String sigver = StreamUtils.readString(is, 8);
       if (!"BIFFV1  ".equals(sigver)) {
@@ -238,6 +294,40 @@ public BifcInputStream(InputStream is, int offset, int size) throws IOException
       skip(offset);
     }
 
+    /**
+     * Constructs an InputStream over a specific section of a BIFC archive, starting at an
+     * arbitrary compressed block.
+     * @param is The BIFC archive as input stream, positioned at the header of a compressed block.
+     * @param uncSize Total size of decompressed BIFF data.
+     * @param blockOffset Start offset of the current compressed block in decompressed BIFF data.
+     * @param offset Start offset in decompressed BIFF data. Must not be less than {@code blockOffset}.
+     * @param size Size of decompressed BIFF data to map.
+     *             Specify -1 to map until the end of decompressed data.
+     */
+    public BifcInputStream(InputStream is, int uncSize, int blockOffset, int offset, int size)
+        throws IOException
+    {
+      if (is == null) {
+        throw new NullPointerException();
+      }
+      this.input = is;
+      if (blockOffset < 0 || offset < blockOffset || offset > uncSize) {
+        throw new IOException("Start offset is out of bounds");
+      }
+      if (size < 0) {
+        size = uncSize - offset;
+      }
+      if (size < 0 || offset+size > uncSize) {
+        throw new IOException("Size is out of bounds");
+      }
+      this.endOffset = offset + size;
+      this.position = blockOffset;
+      this.inflater = new Inflater();
+      this.bufOfs = 0;
+      this.bufLen = 0;
+      skip(offset - blockOffset);
+    }
+
     @Override
     public int read() throws IOException
     {
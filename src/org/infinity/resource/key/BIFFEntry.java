@@ -204,7 +204,11 @@ public void updateBIFF(Path keyFile, int index, ByteBuffer buffer, int offset)
       this.separatorChar = '/';
     }
     this.fileName = this.fileName.replace(this.separatorChar, '/');
-    this.biffFile = findBiffFile(this.keyFile.getParent(), this.location, this.fileName);
+    this.biffFile = ResourceIndex.getBiffFile(this.keyFile, this.fileName);
+    if (this.biffFile == null) {
+      this.biffFile = findBiffFile(this.keyFile.getParent(), this.location, this.fileName);
+      ResourceIndex.putBiffFile(this.keyFile, this.fileName, this.biffFile);
+    }
   }
 
 
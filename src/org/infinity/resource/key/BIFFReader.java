@@ -8,6 +8,7 @@
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
@@ -15,6 +16,7 @@
 import java.nio.file.StandardOpenOption;
 
 import org.infinity.NearInfinity;
+import org.infinity.gui.BrowserMenuBar;
 import org.infinity.gui.WindowBlocker;
 import org.infinity.util.io.ByteBufferInputStream;
 import org.infinity.util.io.StreamUtils;
@@ -27,6 +29,8 @@ public class BIFFReader extends AbstractBIFFReader
   private final WindowBlocker blocker;
 
   private int numFiles, numTilesets;
+  // The whole BIFF archive mapped into memory (only used in zero-copy mode)
+  private volatile MappedByteBuffer mappedBuffer;
 
   protected BIFFReader(Path file) throws Exception
   {
@@ -51,9 +55,19 @@ public synchronized void open() throws Exception
       channel.read(bb);
       bb.position(0);
       init(bb, numFiles, numTilesets);
+      mappedBuffer = null;
     }
   }
 
+  /**
+   * Returns whether resource data is returned as read-only slices of the memory-mapped BIFF archive
+   * instead of copies on the heap.
+   */
+  public static boolean isZeroCopyEnabled()
+  {
+    return (NearInfinity.getInstance() != null) && BrowserMenuBar.getInstance().mapBiffFiles();
+  }
+
   @Override
   public Type getType()
   {
@@ -90,31 +104,40 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
       throw new IOException("Resource not found");
     }
 
-    ByteBuffer buffer;
-    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
-      channel.position(entry.offset);
-      if (entry.isTile) {
-        ByteBuffer header = getTisHeader(entry.count, entry.size);
-        int remaining = entry.count*entry.size + header.limit();
-        if (remaining > 1000000) {
-          blocker.setBlocked(true);
-        }
-        try {
-          buffer = StreamUtils.getByteBuffer(remaining);
-          StreamUtils.copyBytes(header, buffer, header.limit());
-          remaining -= header.limit();
-          while (channel.read(buffer) > 0);
-        } finally {
-          blocker.setBlocked(false);
-        }
-      } else {
-        buffer = StreamUtils.getByteBuffer(entry.size);
-        while (channel.read(buffer) > 0);
+    if (isZeroCopyEnabled()) {
+      ByteBuffer data = getMappedData(entry);
+      if (!entry.isTile) {
+        return data;
       }
-
+      // tilesets require a TIS header in front of the tile data
+      ByteBuffer header = getTisHeader(entry.count, entry.size);
+      ByteBuffer buffer = StreamUtils.getByteBuffer(header.limit() + data.limit());
+      buffer.put(header).put(data);
       buffer.position(0);
       return buffer;
     }
+
+    ByteBuffer buffer;
+    if (entry.isTile) {
+      ByteBuffer header = getTisHeader(entry.count, entry.size);
+      int remaining = entry.count*entry.size + header.limit();
+      if (remaining > 1000000) {
+        blocker.setBlocked(true);
+      }
+      try {
+        buffer = StreamUtils.getByteBuffer(remaining);
+        StreamUtils.copyBytes(header, buffer, header.limit());
+        readFully(buffer, entry.offset);
+      } finally {
+        blocker.setBlocked(false);
+      }
+    } else {
+      buffer = StreamUtils.getByteBuffer(entry.size);
+      readFully(buffer, entry.offset);
+    }
+
+    buffer.position(0);
+    return buffer;
   }
 
   @Override
@@ -125,18 +148,44 @@ public InputStream getResourceAsStream(int locator) throws IOException
       throw new IOException("Resource not found");
     }
 
-    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
+    ByteBuffer buffer;
+    if (isZeroCopyEnabled()) {
+      buffer = getMappedData(entry);
+    } else {
       int size = entry.isTile ? entry.count*entry.size : entry.size;
-      ByteBuffer buffer = channel.map(MapMode.READ_ONLY, entry.offset, size).order(ByteOrder.LITTLE_ENDIAN);
-      InputStream is;
-      if (entry.isTile) {
-        ByteBuffer header = getTisHeader(entry.count, entry.size);
-        is = new ByteBufferInputStream(header, buffer);
-      } else {
-        is = new ByteBufferInputStream(buffer);
+      buffer = withChannel(ch -> ch.map(MapMode.READ_ONLY, entry.offset, size)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    InputStream is;
+    if (entry.isTile) {
+      ByteBuffer header = getTisHeader(entry.count, entry.size);
+      is = new ByteBufferInputStream(header, buffer);
+    } else {
+      is = new ByteBufferInputStream(buffer);
+    }
+    return is;
+  }
+
+  // Returns the data of the specified entry as read-only slice of the memory-mapped BIFF archive
+  private ByteBuffer getMappedData(Entry entry) throws IOException
+  {
+    MappedByteBuffer mb = mappedBuffer;
+    if (mb == null) {
+      synchronized (this) {
+        mb = mappedBuffer;
+        if (mb == null) {
+          mb = withChannel(ch -> ch.map(MapMode.READ_ONLY, 0L, ch.size()));
+          mappedBuffer = mb;
+        }
       }
-      return is;
     }
+
+    int size = entry.isTile ? entry.count*entry.size : entry.size;
+    if (entry.offset < 0 || size < 0 || (long)entry.offset + size > mb.capacity()) {
+      throw new IOException("Resource data out of bounds");
+    }
+    ByteBuffer buffer = mb.duplicate();
+    buffer.position(entry.offset).limit(entry.offset + size);
+    return buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
   }
 
   private void init(ByteBuffer buffer, int numFiles, int numTilesets) throws IOException
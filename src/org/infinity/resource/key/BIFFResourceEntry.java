@@ -16,6 +16,7 @@
 
 import org.infinity.gui.BrowserMenuBar;
 import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.Writeable;
 import org.infinity.util.io.FileManager;
@@ -255,8 +256,8 @@ public int getType()
   @Override
   public boolean hasOverride()
   {
-    // TODO: update dynamically via WatchService class?
-    if (!BrowserMenuBar.getInstance().cacheOverride()) {
+    // override state is kept up to date by the resource watcher if available
+    if (!ResourceFactory.isWatchingOverrides() && !BrowserMenuBar.getInstance().cacheOverride()) {
       List<Path> overrides = Profile.getOverrideFolders(false);
       Path file = FileManager.query(overrides, getResourceName());
       synchronized (this) {
@@ -268,6 +269,9 @@ public boolean hasOverride()
 
   public synchronized void setOverride(boolean hasOverride)
   {
+    if (hasOverride != this.hasOverride) {
+      ResourceCache.cacheInvalid(this);
+    }
     this.hasOverride = hasOverride;
   }
 
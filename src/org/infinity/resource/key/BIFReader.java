@@ -4,8 +4,10 @@
 
 package org.infinity.resource.key;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
@@ -13,6 +15,8 @@
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import org.infinity.NearInfinity;
@@ -25,11 +29,16 @@
  */
 public class BIFReader extends AbstractBIFFReader
 {
+  /** Max. size of decompressed archive data that is kept in memory for random access. */
+  private static final int MAX_CACHE_SIZE = 0x4000000;  // 64 MB
+
   private final WindowBlocker blocker;
 
   private MappedByteBuffer mappedBuffer;
   private int uncSize, compSize, compOffset;
   private int numFiles, numTilesets;
+  // Lazily decompressed archive data, released by the garbage collector if memory is needed
+  private SoftReference<DecompressedData> cache;
 
   protected BIFReader(Path file) throws Exception
   {
@@ -59,6 +68,7 @@ public synchronized void open() throws Exception
 
       mappedBuffer = channel.map(MapMode.READ_ONLY, compOffset, compSize);
       mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+      cache = null;
     }
     init();
   }
@@ -95,26 +105,40 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
       throw new IOException("Resource not found");
     }
 
+    int size;
     ByteBuffer buffer;
     if (entry.isTile) {
       ByteBuffer header = getTisHeader(entry.count, entry.size);
       buffer = StreamUtils.getByteBuffer(entry.count*entry.size + header.limit());
       StreamUtils.copyBytes(header, buffer, header.limit());
+      size = entry.count*entry.size;
     } else {
       buffer = StreamUtils.getByteBuffer(entry.size);
+      size = entry.size;
     }
 
     if (buffer.limit() > 1000000) {
       blocker.setBlocked(true);
     }
 
-    try (InflaterInputStream iis = getInflaterInputStream()) {
-      int remaining = entry.offset;
-      while (remaining > 0) {
-        long n = iis.skip(entry.offset);
-        remaining -= n;
+    try {
+      DecompressedData data = getDecompressedData();
+      if (data != null) {
+        data.read(entry.offset, buffer, size);
+      } else {
+        // archive too big to be cached: decompress from start of data
+        try (InflaterInputStream iis = getInflaterInputStream()) {
+          int remaining = entry.offset;
+          while (remaining > 0) {
+            long n = iis.skip(remaining);
+            if (n <= 0) {
+              throw new EOFException("Unexpected end of compressed data");
+            }
+            remaining -= n;
+          }
+          StreamUtils.readBytes(iis, buffer);
+        }
       }
-      StreamUtils.readBytes(iis, buffer);
     } finally {
       blocker.setBlocked(false);
     }
@@ -179,4 +203,89 @@ private InflaterInputStream getInflaterInputStream() throws IOException
   {
     return new InflaterInputStream(new ByteBufferInputStream(mappedBuffer.duplicate()));
   }
+
+  // Returns the (partially) decompressed archive data. Returns null if the archive is too big to be cached.
+  private synchronized DecompressedData getDecompressedData()
+  {
+    if (uncSize > MAX_CACHE_SIZE) {
+      return null;
+    }
+
+    DecompressedData data = (cache != null) ? cache.get() : null;
+    if (data == null) {
+      data = new DecompressedData(mappedBuffer.duplicate(), uncSize);
+      cache = new SoftReference<>(data);
+    }
+    return data;
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Decompresses archive data on demand and keeps it available for subsequent random access
+  private static class DecompressedData
+  {
+    private static final int CHUNK_SIZE = 0x10000;
+
+    private final Inflater inflater;
+    private final ByteBuffer input;   // compressed data
+    private final byte[] inBuffer;    // chunk of compressed data passed to the inflater
+    private final byte[] data;        // decompressed data
+    private int available;            // number of bytes already decompressed
+
+    public DecompressedData(ByteBuffer input, int size)
+    {
+      this.inflater = new Inflater();
+      this.input = input;
+      this.inBuffer = new byte[CHUNK_SIZE];
+      this.data = new byte[size];
+      this.available = 0;
+    }
+
+    /**
+     * Copies decompressed data into the specified buffer. Data is decompressed on demand if needed.
+     * @param offset Start offset in decompressed data.
+     * @param dst The destination buffer.
+     * @param length Number of bytes to copy.
+     */
+    public synchronized void read(int offset, ByteBuffer dst, int length) throws IOException
+    {
+      if (offset < 0 || length < 0 || offset + length > data.length) {
+        throw new IOException("Resource data out of bounds");
+      }
+      ensureAvailable(offset + length);
+      dst.put(data, offset, length);
+    }
+
+    // Decompresses data at least up to the specified offset
+    private void ensureAvailable(int endOffset) throws IOException
+    {
+      try {
+        while (available < endOffset) {
+          int len = Math.min(data.length - available, Math.max(endOffset - available, CHUNK_SIZE));
+          int n = inflater.inflate(data, available, len);
+          if (n == 0) {
+            if (inflater.finished() || inflater.needsDictionary()) {
+              throw new EOFException("Unexpected end of compressed data");
+            }
+            if (inflater.needsInput()) {
+              if (!input.hasRemaining()) {
+                throw new EOFException("Unexpected end of compressed data");
+              }
+              int count = Math.min(inBuffer.length, input.remaining());
+              input.get(inBuffer, 0, count);
+              inflater.setInput(inBuffer, 0, count);
+            }
+          }
+          available += n;
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      }
+
+      if (available == data.length) {
+        inflater.end();
+      }
+    }
+  }
 }
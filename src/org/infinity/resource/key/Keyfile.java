@@ -370,6 +370,15 @@ public BIFFEntry[] getBIFFEntriesSorted()
     return biffList.toArray(new BIFFEntry[biffList.size()]);
   }
 
+  /**
+   * Returns the BIFF resource entry of the specified name, regardless of whether it is currently
+   * listed in the resource tree. Returns {@code null} if not available.
+   */
+  public BIFFResourceEntry getResourceEntry(String resourceName)
+  {
+    return (resourceName != null) ? resourceEntries.get(resourceName) : null;
+  }
+
   public BIFFEntry getBIFFEntry(Path keyFile, int index)
   {
     List<BIFFEntry> biffs = getBIFFList(keyFile, false);
@@ -0,0 +1,222 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.infinity.resource.Profile;
+import org.infinity.util.io.FileManager;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Base class for index data of the current game which is stored in the cache folder between
+ * sessions.
+ * <p>
+ * Index files start with a signature and a version number, followed by the content written by
+ * the implementing class. Files with a different signature or version are ignored and rebuilt.
+ * Numbers are stored in little endian byte order, strings as UTF-8 data preceded by their length.
+ * Loading, saving and clearing the index synchronize on the index object.
+ */
+public abstract class PersistentIndex
+{
+  private final String signature;
+  private final int version;
+  private final String fileName;
+
+  private volatile boolean loaded;
+  private volatile boolean modified;
+
+  /**
+   * @param signature Four character signature of the index file.
+   * @param version Version of the index file format.
+   * @param fileName File name of the index within the cache folder of the game.
+   */
+  protected PersistentIndex(String signature, int version, String fileName)
+  {
+    this.signature = signature;
+    this.version = version;
+    this.fileName = fileName;
+  }
+
+  /**
+   * Discards the current index content and loads the index of the current game from disk.
+   */
+  public final synchronized void readIndex()
+  {
+    clearContent();
+    loaded = true;
+    modified = false;
+
+    Path file = getIndexFile();
+    if (file == null || !Files.isRegularFile(file)) {
+      return;
+    }
+
+    try {
+      // not memory-mapped: the file is replaced by writeIndex() while the buffer may still be alive
+      ByteBuffer buffer = StreamUtils.getByteBuffer(Files.readAllBytes(file));
+      String sig = StreamUtils.readString(buffer, 4);
+      buffer.position(4);
+      int ver = buffer.getInt();
+      if (!signature.equals(sig) || ver != version) {
+        return;
+      }
+      readContent(buffer);
+    } catch (Exception e) {
+      // corrupted or incompatible index: rebuild from scratch
+      e.printStackTrace();
+      clearContent();
+      modified = true;
+    }
+  }
+
+  /** Loads the index of the current game from disk if this has not been done yet. */
+  public final void ensureLoaded()
+  {
+    if (!loaded) {
+      synchronized (this) {
+        if (!loaded) {
+          readIndex();
+        }
+      }
+    }
+  }
+
+  /** Writes the index of the current game to disk if it has been modified. */
+  public final synchronized void writeIndex()
+  {
+    if (!loaded || !modified) {
+      return;
+    }
+
+    Path file = getIndexFile();
+    if (file == null) {
+      return;
+    }
+
+    Path tmpFile = file.resolveSibling(fileName + ".tmp");
+    try {
+      modified = false;
+      try (OutputStream os = StreamUtils.getOutputStream(tmpFile, true)) {
+        StreamUtils.writeString(os, signature, 4);
+        StreamUtils.writeInt(os, version);
+        writeContent(os);
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      e.printStackTrace();
+      modified = true;
+      try {
+        Files.deleteIfExists(tmpFile);
+      } catch (IOException e2) {
+      }
+    }
+  }
+
+  /** Removes all entries from memory. Data on disk is not affected. */
+  public final synchronized void clearIndex()
+  {
+    clearContent();
+    loaded = false;
+    modified = false;
+  }
+
+  /** Marks the index as modified, so that it is written by the next call of {@link #writeIndex()}. */
+  protected final void setModified()
+  {
+    modified = true;
+  }
+
+  /** Reads the index content following the file header. */
+  protected abstract void readContent(ByteBuffer buffer) throws Exception;
+
+  /** Writes the index content following the file header. */
+  protected abstract void writeContent(OutputStream os) throws IOException;
+
+  /** Removes the index content from memory. */
+  protected abstract void clearContent();
+
+  // Returns the path to the index file of the current game
+  private Path getIndexFile()
+  {
+    Path folder = FileManager.getCacheFolder(Profile.getGameRoot());
+    return (folder != null) ? folder.resolve(fileName) : null;
+  }
+
+  protected static String readString(ByteBuffer buffer)
+  {
+    int len = buffer.getInt();
+    byte[] data = new byte[len];
+    buffer.get(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  protected static void writeString(OutputStream os, String s) throws IOException
+  {
+    byte[] data = s.getBytes(StandardCharsets.UTF_8);
+    StreamUtils.writeInt(os, data.length);
+    StreamUtils.writeBytes(os, data);
+  }
+
+  protected static void writeLong(OutputStream os, long value) throws IOException
+  {
+    StreamUtils.writeInt(os, (int)value);
+    StreamUtils.writeInt(os, (int)(value >>> 32));
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Last modification time and size of a file, used to detect outdated index entries. */
+  protected static final class FileStamp
+  {
+    private final long lastModified;
+    private final long size;
+
+    public FileStamp(long lastModified, long size)
+    {
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    /** Returns the current stamp of the specified file. */
+    public static FileStamp of(Path file) throws IOException
+    {
+      BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+      return new FileStamp(attr.lastModifiedTime().toMillis(), attr.size());
+    }
+
+    /** Reads a stamp written by {@link #write(OutputStream)}. */
+    public static FileStamp read(ByteBuffer buffer)
+    {
+      long lastModified = buffer.getLong();
+      return new FileStamp(lastModified, buffer.getLong());
+    }
+
+    public void write(OutputStream os) throws IOException
+    {
+      writeLong(os, lastModified);
+      writeLong(os, size);
+    }
+
+    /** Returns whether the specified file still matches this stamp. */
+    public boolean isValid(Path file)
+    {
+      try {
+        BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+        return (attr.lastModifiedTime().toMillis() == lastModified && attr.size() == size);
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.infinity.util.io.FileManager;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Persistent index which associates resources of the current game with a list of strings.
+ * <p>
+ * Entries are keyed by the resource location and are considered outdated as soon as the
+ * last modification time or size of the file containing the resource changes. Resources located
+ * in virtual file systems are not indexed. The index is loaded on first access.
+ */
+public final class ResourceDataIndex extends PersistentIndex
+{
+  // Maps resource locations to index entries
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * @param signature Four character signature of the index file.
+   * @param version Version of the index file format.
+   * @param fileName File name of the index within the cache folder of the game.
+   */
+  public ResourceDataIndex(String signature, int version, String fileName)
+  {
+    super(signature, version, fileName);
+  }
+
+  /**
+   * Returns the data associated with the specified resource. Returns {@code null} if the index
+   * does not contain an up-to-date entry for the resource.
+   */
+  public String[] get(ResourceEntry entry)
+  {
+    ensureLoaded();
+    Entry e = entries.get(getEntryKey(entry));
+    return (e != null && e.stamp.isValid(entry.getActualPath())) ? e.values : null;
+  }
+
+  /**
+   * Associates the specified data with the current state of the given resource.
+   * Strings should be interned by the caller if they are likely to be shared by many entries.
+   */
+  public void put(ResourceEntry entry, String[] values)
+  {
+    ensureLoaded();
+    Path path = entry.getActualPath();
+    if (!FileManager.isDefaultFileSystem(path)) {
+      // locations within archives are not persistent
+      return;
+    }
+    String key = getEntryKey(entry);
+    try {
+      entries.put(key, new Entry(FileStamp.of(path), values));
+      setModified();
+    } catch (IOException e) {
+      entries.remove(key);
+    }
+  }
+
+  /** Removes the entry of the specified resource, e.g. after it has been modified. */
+  public void remove(ResourceEntry entry)
+  {
+    ensureLoaded();
+    if (entries.remove(getEntryKey(entry)) != null) {
+      setModified();
+    }
+  }
+
+  @Override
+  protected void readContent(ByteBuffer buffer) throws Exception
+  {
+    int numEntries = buffer.getInt();
+    for (int i = 0; i < numEntries; i++) {
+      String key = readString(buffer);
+      FileStamp stamp = FileStamp.read(buffer);
+      String[] values = new String[buffer.getInt()];
+      for (int j = 0; j < values.length; j++) {
+        values[j] = readString(buffer).intern();
+      }
+      entries.put(key, new Entry(stamp, values));
+    }
+  }
+
+  @Override
+  protected void writeContent(OutputStream os) throws IOException
+  {
+    List<Map.Entry<String, Entry>> list = new ArrayList<>(entries.entrySet());
+    StreamUtils.writeInt(os, list.size());
+    for (final Map.Entry<String, Entry> entry: list) {
+      Entry e = entry.getValue();
+      writeString(os, entry.getKey());
+      e.stamp.write(os);
+      StreamUtils.writeInt(os, e.values.length);
+      for (final String value: e.values) {
+        writeString(os, value);
+      }
+    }
+  }
+
+  @Override
+  protected void clearContent()
+  {
+    entries.clear();
+  }
+
+  // Returns a key which identifies the location of the resource
+  private static String getEntryKey(ResourceEntry entry)
+  {
+    if (entry instanceof BIFFResourceEntry) {
+      return entry.getResourceName().toUpperCase(Locale.ENGLISH);
+    } else {
+      return entry.getActualPath().toAbsolutePath().toString();
+    }
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private static final class Entry
+  {
+    private final FileStamp stamp;
+    private final String[] values;
+
+    public Entry(FileStamp stamp, String[] values)
+    {
+      this.stamp = stamp;
+      this.values = values;
+    }
+  }
+}
@@ -0,0 +1,327 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.infinity.util.io.FileManager;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Persistent index of directory listings and BIFF file locations of the current game.
+ * <p>
+ * Directory listings are keyed by the last modification time of the directory, BIFF file
+ * locations by the last modification time and size of the associated KEY file. Only entries
+ * that are no longer up to date have to be rescanned when the resource tree is populated.
+ */
+public final class ResourceIndex extends PersistentIndex
+{
+  private static final ResourceIndex INSTANCE = new ResourceIndex();
+
+  // Directory listings are only stored if the directory has not been modified for this time span
+  // to account for file systems with low timestamp resolution
+  private static final long MIN_DIRECTORY_AGE = 2000L;
+
+  // Maps absolute directory paths to directory content
+  private final Map<String, DirectoryInfo> directories = new HashMap<>();
+  // Maps absolute KEY file paths to BIFF file locations
+  private final Map<String, KeyInfo> keyFiles = new HashMap<>();
+
+  /**
+   * Loads the resource index of the current game from disk. Outdated entries of KEY files are
+   * discarded. Previously loaded data is replaced.
+   */
+  public static void load()
+  {
+    INSTANCE.readIndex();
+  }
+
+  /** Writes the resource index of the current game to disk if it has been modified. */
+  public static void save()
+  {
+    INSTANCE.writeIndex();
+  }
+
+  /** Removes all entries from the index. Data on disk is not affected. */
+  public static void clearCache()
+  {
+    INSTANCE.clearIndex();
+  }
+
+  /**
+   * Returns the content of the specified directory. The directory is only scanned if the
+   * index does not contain an up-to-date listing. Different directories may be scanned concurrently.
+   * @param dir The directory to list.
+   * @return List of directory entries in no particular order.
+   * @throws IOException if the directory could not be read.
+   */
+  public static List<FileInfo> getDirectoryContent(Path dir) throws IOException
+  {
+    if (!FileManager.isDefaultFileSystem(dir)) {
+      // listings of virtual file systems are never cached
+      return scanDirectory(dir);
+    }
+
+    String key = dir.toAbsolutePath().normalize().toString();
+    long lastModified = Files.getLastModifiedTime(dir).toMillis();
+    synchronized (INSTANCE) {
+      DirectoryInfo info = INSTANCE.directories.get(key);
+      if (info != null && info.lastModified == lastModified) {
+        return Collections.unmodifiableList(info.content);
+      }
+    }
+
+    List<FileInfo> list = scanDirectory(dir);
+    synchronized (INSTANCE) {
+      if (System.currentTimeMillis() - lastModified > MIN_DIRECTORY_AGE) {
+        INSTANCE.directories.put(key, new DirectoryInfo(lastModified, list));
+      } else {
+        INSTANCE.directories.remove(key);
+      }
+      INSTANCE.setModified();
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  /**
+   * Returns the cached location of a BIFF file referenced by the specified KEY file.
+   * Returns {@code null} if no valid location is available.
+   */
+  static Path getBiffFile(Path keyFile, String fileName)
+  {
+    if (keyFile != null && fileName != null) {
+      String path = null;
+      synchronized (INSTANCE) {
+        KeyInfo info = INSTANCE.keyFiles.get(keyFile.toString());
+        if (info != null) {
+          path = info.biffFiles.get(fileName);
+        }
+      }
+      if (path != null) {
+        Path biffFile = Paths.get(path);
+        if (Files.isRegularFile(biffFile)) {
+          return biffFile;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Stores the location of a BIFF file referenced by the specified KEY file. */
+  static void putBiffFile(Path keyFile, String fileName, Path biffFile)
+  {
+    if (keyFile != null && fileName != null && biffFile != null &&
+        FileManager.isDefaultFileSystem(keyFile) && FileManager.isDefaultFileSystem(biffFile)) {
+      String key = keyFile.toString();
+      synchronized (INSTANCE) {
+        KeyInfo info = INSTANCE.keyFiles.get(key);
+        if (info == null) {
+          try {
+            info = new KeyInfo(FileStamp.of(keyFile));
+          } catch (IOException e) {
+            return;
+          }
+          INSTANCE.keyFiles.put(key, info);
+        }
+        info.biffFiles.put(fileName, biffFile.toAbsolutePath().toString());
+        INSTANCE.setModified();
+      }
+    }
+  }
+
+  @Override
+  protected void readContent(ByteBuffer buffer) throws Exception
+  {
+    // KEY files
+    int numKeys = buffer.getInt();
+    for (int i = 0; i < numKeys; i++) {
+      String keyPath = readString(buffer);
+      KeyInfo info = new KeyInfo(FileStamp.read(buffer));
+      int numBiffs = buffer.getInt();
+      for (int j = 0; j < numBiffs; j++) {
+        String name = readString(buffer);
+        info.biffFiles.put(name, readString(buffer));
+      }
+      if (info.stamp.isValid(Paths.get(keyPath))) {
+        keyFiles.put(keyPath, info);
+      } else {
+        setModified();
+      }
+    }
+
+    // directories
+    int numDirs = buffer.getInt();
+    for (int i = 0; i < numDirs; i++) {
+      String dirPath = readString(buffer);
+      long lastModified = buffer.getLong();
+      int numEntries = buffer.getInt();
+      List<FileInfo> list = new ArrayList<>(numEntries);
+      for (int j = 0; j < numEntries; j++) {
+        String name = readString(buffer);
+        list.add(new FileInfo(name, buffer.get()));
+      }
+      directories.put(dirPath, new DirectoryInfo(lastModified, list));
+    }
+  }
+
+  @Override
+  protected void writeContent(OutputStream os) throws IOException
+  {
+    StreamUtils.writeInt(os, keyFiles.size());
+    for (final Map.Entry<String, KeyInfo> entry: keyFiles.entrySet()) {
+      KeyInfo info = entry.getValue();
+      writeString(os, entry.getKey());
+      info.stamp.write(os);
+      StreamUtils.writeInt(os, info.biffFiles.size());
+      for (final Map.Entry<String, String> biff: info.biffFiles.entrySet()) {
+        writeString(os, biff.getKey());
+        writeString(os, biff.getValue());
+      }
+    }
+
+    StreamUtils.writeInt(os, directories.size());
+    for (final Map.Entry<String, DirectoryInfo> entry: directories.entrySet()) {
+      DirectoryInfo info = entry.getValue();
+      writeString(os, entry.getKey());
+      writeLong(os, info.lastModified);
+      StreamUtils.writeInt(os, info.content.size());
+      for (final FileInfo fi: info.content) {
+        writeString(os, fi.name);
+        StreamUtils.writeByte(os, fi.flags);
+      }
+    }
+  }
+
+  @Override
+  protected void clearContent()
+  {
+    directories.clear();
+    keyFiles.clear();
+  }
+
+  // Reads the content of the specified directory from disk. Attributes are provided by the
+  // directory listing itself where supported by the file system, e.g. on Windows.
+  private static List<FileInfo> scanDirectory(Path dir) throws IOException
+  {
+    final List<FileInfo> list = new ArrayList<>();
+    Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+      {
+        if (attrs.isSymbolicLink()) {
+          // broken link
+          return FileVisitResult.CONTINUE;
+        }
+        byte flags = 0;
+        if (attrs.isDirectory()) {
+          flags |= FileInfo.FLAG_DIRECTORY;
+        }
+        if (attrs.isRegularFile()) {
+          flags |= FileInfo.FLAG_FILE;
+        }
+        list.add(new FileInfo(file.getFileName().toString(), flags));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException
+      {
+        if (file.equals(dir)) {
+          throw exc;
+        }
+        // skipping inaccessible entries
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return list;
+  }
+
+  private ResourceIndex()
+  {
+    super("NIRI", 1, "resources.idx");
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Describes a single directory entry. */
+  public static final class FileInfo
+  {
+    private static final byte FLAG_DIRECTORY  = 0x01;
+    private static final byte FLAG_FILE       = 0x02;
+
+    private final String name;
+    private final byte flags;
+
+    private FileInfo(String name, byte flags)
+    {
+      this.name = name;
+      this.flags = flags;
+    }
+
+    /** Returns the file name of the directory entry. */
+    public String getName()
+    {
+      return name;
+    }
+
+    /** Returns the path of the directory entry, based on the specified parent directory. */
+    public Path getPath(Path dir)
+    {
+      return dir.resolve(name);
+    }
+
+    /** Returns whether the directory entry is a directory. */
+    public boolean isDirectory()
+    {
+      return (flags & FLAG_DIRECTORY) != 0;
+    }
+
+    /** Returns whether the directory entry is a regular file. */
+    public boolean isRegularFile()
+    {
+      return (flags & FLAG_FILE) != 0;
+    }
+  }
+
+  private static final class DirectoryInfo
+  {
+    private final long lastModified;
+    private final List<FileInfo> content;
+
+    public DirectoryInfo(long lastModified, List<FileInfo> content)
+    {
+      this.lastModified = lastModified;
+      this.content = content;
+    }
+  }
+
+  private static final class KeyInfo
+  {
+    private final FileStamp stamp;
+    // Maps BIFF file names as defined in the KEY file to absolute BIFF file paths
+    private final Map<String, String> biffFiles = new HashMap<>();
+
+    public KeyInfo(FileStamp stamp)
+    {
+      this.stamp = stamp;
+    }
+  }
+}
@@ -0,0 +1,362 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable index of resource names for interactive lookups.
+ * <p>
+ * Names are stored in upper case as a single character array in alphabetical order, so that
+ * prefix matches are found by binary search. Substring matches are located by a trigram index
+ * which maps each sequence of three characters to the names containing it. Fuzzy matches, i.e.
+ * names containing all characters of the search string in the same order, are prefiltered by
+ * a bit mask of the characters in each name.
+ */
+public final class ResourceNameIndex
+{
+  private final ResourceEntry[] entries;  // sorted by name
+  private final char[] chars;             // concatenated upper case resource names
+  private final int[] offsets;            // start offsets into chars, one more than the number of entries
+  private final long[] charMasks;         // characters contained in each name, see charBit()
+
+  // trigram index in compressed sparse row format
+  private final long[] gramKeys;          // sorted trigram keys
+  private final int[] gramOffsets;        // start offsets into gramEntries, one more than the number of keys
+  private final int[] gramEntries;        // entry indices of each trigram in ascending order
+
+  /**
+   * Creates an index of the specified resources. Entries with identical names are all included.
+   * @param resources The resources to index.
+   */
+  public ResourceNameIndex(Collection<? extends ResourceEntry> resources)
+  {
+    final int count = resources.size();
+    final String[] names = new String[count];
+    final Integer[] order = new Integer[count];
+    ResourceEntry[] list = resources.toArray(new ResourceEntry[count]);
+    int length = 0;
+    for (int i = 0; i < count; i++) {
+      names[i] = list[i].getResourceName().toUpperCase(Locale.ENGLISH);
+      order[i] = Integer.valueOf(i);
+      length += names[i].length();
+    }
+    Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+
+    entries = new ResourceEntry[count];
+    chars = new char[length];
+    offsets = new int[count + 1];
+    charMasks = new long[count];
+    int numGrams = 0;
+    for (int i = 0, ofs = 0; i < count; i++) {
+      String name = names[order[i]];
+      entries[i] = list[order[i]];
+      name.getChars(0, name.length(), chars, ofs);
+      offsets[i] = ofs;
+      for (int j = 0; j < name.length(); j++) {
+        charMasks[i] |= charBit(name.charAt(j));
+      }
+      numGrams += Math.max(0, name.length() - 2);
+      ofs += name.length();
+    }
+    offsets[count] = length;
+
+    // collecting unique trigrams
+    long[] keys = new long[numGrams];
+    for (int i = 0, n = 0; i < count; i++) {
+      for (int j = offsets[i], end = offsets[i + 1] - 2; j < end; j++) {
+        keys[n++] = gramKey(chars, j);
+      }
+    }
+    Arrays.sort(keys);
+    int numKeys = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (numKeys == 0 || keys[numKeys - 1] != keys[i]) {
+        keys[numKeys++] = keys[i];
+      }
+    }
+    gramKeys = Arrays.copyOf(keys, numKeys);
+
+    // counting entries per trigram, ignoring repeated trigrams within the same name
+    int[] gramIndices = new int[numGrams];
+    int[] last = new int[numKeys];
+    Arrays.fill(last, -1);
+    int[] counts = new int[numKeys];
+    int total = 0;
+    for (int i = 0, n = 0; i < count; i++) {
+      for (int j = offsets[i], end = offsets[i + 1] - 2; j < end; j++, n++) {
+        int k = Arrays.binarySearch(gramKeys, gramKey(chars, j));
+        gramIndices[n] = k;
+        if (last[k] != i) {
+          last[k] = i;
+          counts[k]++;
+          total++;
+        }
+      }
+    }
+
+    gramOffsets = new int[numKeys + 1];
+    for (int k = 0; k < numKeys; k++) {
+      gramOffsets[k + 1] = gramOffsets[k] + counts[k];
+    }
+    gramEntries = new int[total];
+    Arrays.fill(last, -1);
+    Arrays.fill(counts, 0);
+    for (int i = 0, n = 0; i < count; i++) {
+      for (int j = offsets[i], end = offsets[i + 1] - 2; j < end; j++, n++) {
+        int k = gramIndices[n];
+        if (last[k] != i) {
+          last[k] = i;
+          gramEntries[gramOffsets[k] + counts[k]++] = i;
+        }
+      }
+    }
+  }
+
+  /** Returns the number of indexed resources. */
+  public int size()
+  {
+    return entries.length;
+  }
+
+  /**
+   * Returns resources matching the specified search string, ignoring case. Names starting with
+   * the search string are returned first in alphabetical order, followed by names containing
+   * the search string, ordered by match position. Remaining slots are filled with names containing
+   * all characters of the search string in the same order, closest matches first.
+   * @param text The search string.
+   * @param maxResults Max. number of resources to return.
+   * @return List of matching resources. Returns an empty list if the search string is empty.
+   */
+  public List<ResourceEntry> find(String text, int maxResults)
+  {
+    if (text == null || text.isEmpty() || maxResults <= 0) {
+      return Collections.emptyList();
+    }
+
+    final String key = text.toUpperCase(Locale.ENGLISH);
+    final List<ResourceEntry> retVal = new ArrayList<>(Math.min(maxResults, 64));
+
+    // prefix matches
+    int first = lowerBound(key);
+    int next = first;
+    while (next < entries.length && startsWith(next, key)) {
+      if (retVal.size() < maxResults) {
+        retVal.add(entries[next]);
+      }
+      next++;
+    }
+    if (retVal.size() >= maxResults) {
+      return retVal;
+    }
+
+    // substring matches, excluding prefix matches
+    final boolean[] found = new boolean[entries.length];
+    Arrays.fill(found, first, next, true);
+    final Matches matches = new Matches();
+    long mask = 0L;
+    for (int i = 0; i < key.length(); i++) {
+      mask |= charBit(key.charAt(i));
+    }
+    if (key.length() >= 3) {
+      int k = rarestGram(key);
+      if (k >= 0) {
+        for (int p = gramOffsets[k], end = gramOffsets[k + 1]; p < end; p++) {
+          addSubstringMatch(gramEntries[p], key, found, matches);
+        }
+      }
+    } else {
+      for (int i = 0; i < entries.length; i++) {
+        if ((charMasks[i] & mask) == mask) {
+          addSubstringMatch(i, key, found, matches);
+        }
+      }
+    }
+    matches.addTo(retVal, maxResults);
+    if (retVal.size() >= maxResults) {
+      return retVal;
+    }
+
+    // fuzzy matches
+    matches.clear();
+    for (int i = 0; i < entries.length; i++) {
+      if (!found[i] && (charMasks[i] & mask) == mask) {
+        int span = matchSpan(i, key);
+        if (span >= 0) {
+          matches.add(span, i);
+        }
+      }
+    }
+    matches.addTo(retVal, maxResults);
+
+    return retVal;
+  }
+
+  // Registers the entry if its name contains the search string
+  private void addSubstringMatch(int index, String key, boolean[] found, Matches matches)
+  {
+    if (!found[index]) {
+      int pos = indexOf(index, key);
+      if (pos >= 0) {
+        found[index] = true;
+        matches.add(pos, index);
+      }
+    }
+  }
+
+  // Returns the index of the first entry whose name is not less than the specified string
+  private int lowerBound(String key)
+  {
+    int low = 0, high = entries.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(mid, key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int compare(int index, String key)
+  {
+    int ofs = offsets[index];
+    int len = offsets[index + 1] - ofs;
+    int n = Math.min(len, key.length());
+    for (int i = 0; i < n; i++) {
+      int d = chars[ofs + i] - key.charAt(i);
+      if (d != 0) {
+        return d;
+      }
+    }
+    return len - key.length();
+  }
+
+  private boolean startsWith(int index, String key)
+  {
+    int ofs = offsets[index];
+    if (offsets[index + 1] - ofs < key.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (chars[ofs + i] != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns the position of the search string within the name of the entry, or -1 if not found
+  private int indexOf(int index, String key)
+  {
+    int ofs = offsets[index];
+    int last = offsets[index + 1] - key.length();
+    char c = key.charAt(0);
+    for (int i = ofs; i <= last; i++) {
+      if (chars[i] == c) {
+        int j = 1;
+        while (j < key.length() && chars[i + j] == key.charAt(j)) {
+          j++;
+        }
+        if (j == key.length()) {
+          return i - ofs;
+        }
+      }
+    }
+    return -1;
+  }
+
+  // Returns the number of characters between the leftmost in-order occurrence of all characters
+  // of the search string within the name of the entry, or -1 if not found
+  private int matchSpan(int index, String key)
+  {
+    int ofs = offsets[index];
+    int end = offsets[index + 1];
+    int start = -1;
+    int j = 0;
+    for (int i = ofs; i < end && j < key.length(); i++) {
+      if (chars[i] == key.charAt(j)) {
+        if (j == 0) {
+          start = i;
+        }
+        j++;
+        if (j == key.length()) {
+          return i - start + 1 - key.length();
+        }
+      }
+    }
+    return -1;
+  }
+
+  // Returns the index of the trigram of the search string with the fewest entries,
+  // or -1 if any of the trigrams does not occur in the index
+  private int rarestGram(String key)
+  {
+    int retVal = -1;
+    int min = Integer.MAX_VALUE;
+    for (int i = 0, end = key.length() - 2; i < end; i++) {
+      long gram = ((long)key.charAt(i) << 32) | ((long)key.charAt(i + 1) << 16) | key.charAt(i + 2);
+      int k = Arrays.binarySearch(gramKeys, gram);
+      if (k < 0) {
+        return -1;
+      }
+      int cnt = gramOffsets[k + 1] - gramOffsets[k];
+      if (cnt < min) {
+        min = cnt;
+        retVal = k;
+      }
+    }
+    return retVal;
+  }
+
+  private static long gramKey(char[] buf, int ofs)
+  {
+    return ((long)buf[ofs] << 32) | ((long)buf[ofs + 1] << 16) | buf[ofs + 2];
+  }
+
+  // Characters are mapped to one of 64 bits, collisions only weaken the filter
+  private static long charBit(char c)
+  {
+    return 1L << (c & 63);
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Ranked entry indices, encoded as (rank << 32 | index)
+  private final class Matches
+  {
+    private long[] data = new long[64];
+    private int size;
+
+    public void add(int rank, int index)
+    {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = ((long)rank << 32) | index;
+    }
+
+    public void clear()
+    {
+      size = 0;
+    }
+
+    // Adds the resources in order of ascending rank and index
+    public void addTo(List<ResourceEntry> list, int maxResults)
+    {
+      Arrays.sort(data, 0, size);
+      for (int i = 0; i < size && list.size() < maxResults; i++) {
+        list.add(entries[(int)data[i]]);
+      }
+    }
+  }
+}
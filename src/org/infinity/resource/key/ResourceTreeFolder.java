@@ -13,6 +13,11 @@
 import java.util.SortedSet;
 import java.util.Spliterator;
 
+/**
+ * A folder of the resource tree. The tree is modified by the event dispatch thread. Lists of
+ * resource entries are returned as snapshots which can be created safely by background tasks
+ * while the folder is modified.
+ */
 public final class ResourceTreeFolder implements Comparable<ResourceTreeFolder>
 {
   private final SortedListSet<ResourceEntry> resourceEntries = new SortedListSet<>();
@@ -49,24 +54,34 @@ public String folderName()
 
   public List<ResourceEntry> getResourceEntries()
   {
-    return Collections.unmodifiableList(new ArrayList<>(resourceEntries));
+    synchronized (resourceEntries) {
+      return Collections.unmodifiableList(new ArrayList<>(resourceEntries));
+    }
   }
 
   public List<ResourceEntry> getResourceEntries(String type)
   {
     List<ResourceEntry> list = new ArrayList<ResourceEntry>();
-    resourceEntries.forEach((entry) -> {
-      if (entry.getExtension().equalsIgnoreCase(type)) {
-        list.add(entry);
-      }
-    });
-    folders.forEach((folder) -> list.addAll(folder.getResourceEntries(type)));
+    synchronized (resourceEntries) {
+      resourceEntries.forEach((entry) -> {
+        if (entry.getExtension().equalsIgnoreCase(type)) {
+          list.add(entry);
+        }
+      });
+    }
+    List<ResourceTreeFolder> subFolders;
+    synchronized (folders) {
+      subFolders = new ArrayList<>(folders);
+    }
+    subFolders.forEach((folder) -> list.addAll(folder.getResourceEntries(type)));
     return list;
   }
 
   public void addFolder(ResourceTreeFolder folder)
   {
-    folders.add(folder);
+    synchronized (folders) {
+      folders.add(folder);
+    }
   }
 
   public void addResourceEntry(ResourceEntry entry, boolean overwrite)
@@ -79,6 +94,22 @@ public void addResourceEntry(ResourceEntry entry, boolean overwrite)
     }
   }
 
+  /**
+   * Adds multiple resource entries in a single pass. Invisible entries are skipped.
+   * @param entries The entries to add in no particular order.
+   * @param overwrite Whether to replace existing entries of the same name.
+   */
+  public void addResourceEntries(Collection<? extends ResourceEntry> entries, boolean overwrite)
+  {
+    List<ResourceEntry> list = new ArrayList<>(entries.size());
+    entries.forEach((entry) -> {
+      if (entry.isVisible()) {
+        list.add(entry);
+      }
+    });
+    resourceEntries.merge(list, overwrite);
+  }
+
   public Object getChild(int index)
   {
     if (index >= 0) {
@@ -123,7 +154,9 @@ public ResourceTreeFolder getParentFolder()
 
   public void removeFolder(ResourceTreeFolder folder)
   {
-    folders.remove(folder);
+    synchronized (folders) {
+      folders.remove(folder);
+    }
   }
 
   public void removeResourceEntry(ResourceEntry entry)
@@ -133,7 +166,9 @@ public void removeResourceEntry(ResourceEntry entry)
 
   public void sortChildren(boolean recursive)
   {
-    Collections.sort(folders);
+    synchronized (folders) {
+      Collections.sort(folders);
+    }
     if (recursive) {
       folders.forEach((folder) -> folder.sortChildren(recursive));
     }
@@ -161,6 +196,44 @@ public synchronized boolean add(T item)
       return true;
     }
 
+    /**
+     * Merges the specified elements into the set.
+     * @param items Elements in no particular order. The list will be sorted.
+     * @param replace Whether elements replace existing elements which compare equal.
+     */
+    public synchronized void merge(List<T> items, boolean replace)
+    {
+      Collections.sort(items);
+      List<T> result = new ArrayList<>(size() + items.size());
+      int i = 0, j = 0;
+      while (i < size() || j < items.size()) {
+        // duplicates are resolved in the same way as by consecutive calls of add()
+        T item = null;
+        if (j < items.size()) {
+          item = items.get(j++);
+          while (j < items.size() && items.get(j).compareTo(item) == 0) {
+            if (replace) {
+              item = items.get(j);
+            }
+            j++;
+          }
+        }
+        while (i < size() && (item == null || get(i).compareTo(item) < 0)) {
+          result.add(get(i++));
+        }
+        if (item != null) {
+          if (i < size() && get(i).compareTo(item) == 0) {
+            result.add(replace ? item : get(i));
+            i++;
+          } else {
+            result.add(item);
+          }
+        }
+      }
+      clear();
+      super.addAll(result);
+    }
+
     @Override
     public void add(int index, T element)
     {
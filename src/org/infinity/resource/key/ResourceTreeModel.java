@@ -5,18 +5,19 @@
 package org.infinity.resource.key;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
@@ -24,14 +25,21 @@
 import javax.swing.tree.TreePath;
 
 import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class ResourceTreeModel implements TreeModel
 {
   private final List<TreeModelListener> treeModelListeners = new ArrayList<>();
   private final Map<String, ResourceEntry> entries = new HashMap<>(25000);
-  private final Map<String, ResourceTreeFolder> folders = new TreeMap<>(Misc.getIgnoreCaseComparator());
+  private final Map<String, ResourceTreeFolder> folders =
+      Collections.synchronizedMap(new TreeMap<>(Misc.getIgnoreCaseComparator()));
   private final ResourceTreeFolder root = new ResourceTreeFolder(null, "");
 
+  // incremented after resource entries have been added, removed or renamed
+  private final AtomicInteger modCount = new AtomicInteger();
+  // folders modified since beginUpdate(), null if no update is in progress
+  private Set<ResourceTreeFolder> modifiedFolders;
+
   public ResourceTreeModel()
   {
   }
@@ -97,32 +105,54 @@ public void removeTreeModelListener(TreeModelListener l)
 
 // --------------------- End Interface TreeModel ---------------------
 
+  /**
+   * Scans the specified directory and its subdirectories in parallel by the shared
+   * {@link TaskEngine}. The tree is not modified, so that scanning can be performed by
+   * a background thread.
+   * @return The directory content for {@link #addDirectory(ResourceTreeFolder, DirectoryContent, boolean)},
+   *         or {@code null} if the directory could not be read.
+   */
+  public static DirectoryContent scanDirectory(Path directory)
+  {
+    return TaskEngine.invoke(new DirectoryScan(directory));
+  }
+
+  /**
+   * Adds the content of the specified directory and its subdirectories as a new or existing
+   * subfolder of the parent folder. Blocks until the directory has been scanned.
+   */
   public void addDirectory(ResourceTreeFolder parentFolder, Path directory, boolean overwrite)
   {
-    try (DirectoryStream<Path> dstream = Files.newDirectoryStream(directory)) {
-      Iterator<Path> iter = dstream.iterator();
-      if (iter.hasNext()) {
-        final ResourceTreeFolder folder = addFolder(parentFolder, directory.getFileName().toString());
-        iter.forEachRemaining((path) -> {
-          if (Files.isDirectory(path)) {
-            addDirectory(folder, path, overwrite);
-          } else {
-            folder.addResourceEntry(new FileResourceEntry(path), overwrite);
-          }
-        });
-        parentFolder.sortChildren(true);
+    addDirectory(parentFolder, scanDirectory(directory), overwrite);
+  }
 
-//        TreePath path = getPathToNode(parentFolder);
-//        TreeModelEvent event = new TreeModelEvent(this, path,
-//                                                  new int[]{getIndexOfChild(parentFolder, folder)},
-//                                                  new Object[]{folder});
-//        for (int i = 0; i < treeModelListeners.size(); i++) {
-//          treeModelListeners.get(i).treeNodesInserted(event);
-//        }
+  /**
+   * Adds the directory content returned by {@link #scanDirectory(Path)} as a new or existing
+   * subfolder of the parent folder.
+   */
+  public void addDirectory(ResourceTreeFolder parentFolder, DirectoryContent content, boolean overwrite)
+  {
+    if (content != null) {
+      mergeDirectory(parentFolder, content, overwrite);
+      parentFolder.sortChildren(true);
+      folderModified(parentFolder);
+    }
+  }
+
+  // Merges the scanned directory content into the tree, subfolders are not sorted
+  private void mergeDirectory(ResourceTreeFolder parentFolder, DirectoryContent content, boolean overwrite)
+  {
+    if (!content.isEmpty) {
+      ResourceTreeFolder folder = getFolder(parentFolder, content.name);
+      if (folder == null) {
+        folder = new ResourceTreeFolder(parentFolder, getFolderName(content.name));
+        folders.put(folder.folderName(), folder);
+        parentFolder.addFolder(folder);
+      }
+      folder.addResourceEntries(content.entries, overwrite);
+      for (final DirectoryContent subContent: content.directories) {
+        mergeDirectory(folder, subContent, overwrite);
       }
-    } catch (IOException e) {
-      e.printStackTrace();
-      return;
     }
   }
 
@@ -133,6 +163,7 @@ public ResourceTreeFolder addResourceEntry(ResourceEntry entry, String folderNam
     if (entry.isVisible()) {
       entries.put(entry.getResourceName().toUpperCase(Locale.ENGLISH), entry);
       folder.sortChildren(false);
+      folderModified(folder);
 
 //      TreePath path = getPathToNode(entry).getParentPath();
 //      TreeModelEvent event = new TreeModelEvent(this, path,
@@ -145,6 +176,18 @@ public ResourceTreeFolder addResourceEntry(ResourceEntry entry, String folderNam
     return folder;
   }
 
+  /**
+   * Adds the entry to the specified folder without registering it for lookup by name,
+   * in the same way as the content of directories added by {@link #addDirectory}.
+   */
+  public void addResourceEntry(ResourceEntry entry, ResourceTreeFolder folder, boolean overwrite)
+  {
+    if (entry.isVisible()) {
+      folder.addResourceEntry(entry, overwrite);
+      folderModified(folder);
+    }
+  }
+
   public List<BIFFResourceEntry> getBIFFResourceEntries()
   {
     return getBIFFResourceEntries(null);
@@ -208,13 +251,12 @@ public ResourceTreeFolder addFolder(ResourceTreeFolder parent, String folderName
       }
       ResourceTreeFolder folder = getFolder(parent, folderName);
       if (folder == null) {
-        if (folderName.length() > 0) {
-          folderName = Character.toUpperCase(folderName.charAt(0)) + folderName.substring(1);
-        }
+        folderName = getFolderName(folderName);
         folder = new ResourceTreeFolder(parent, folderName);
         folders.put(folderName, folder);
         parent.addFolder(folder);
         parent.sortChildren(false);
+        folderModified(parent);
 
 //        TreePath path = getPathToNode(parent);
 //        TreeModelEvent event = new TreeModelEvent(this, path,
@@ -229,6 +271,15 @@ public ResourceTreeFolder addFolder(ResourceTreeFolder parent, String folderName
     return null;
   }
 
+  // Returns the displayed name of a folder
+  private static String getFolderName(String name)
+  {
+    if (name.length() > 0) {
+      name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+    return name;
+  }
+
   public TreePath getPathToNode(ResourceEntry entry)
   {
     List<Object> path = new ArrayList<>(4);
@@ -251,6 +302,7 @@ public TreePath getPathToNode(ResourceTreeFolder folder)
         path.add(folder);
         folder = folder.getParentFolder();
       }
+      Collections.reverse(path);
       retVal = new TreePath(path.toArray());
     }
     return retVal;
@@ -286,6 +338,7 @@ public List<ResourceEntry> removeDirectory(ResourceTreeFolder parentFolder, Stri
         }
         parentFolder.removeFolder(folder);
         folders.remove(folder.folderName());
+        folderModified(parentFolder);
         retVal.addAll(entries);
       }
     }
@@ -311,23 +364,95 @@ public void removeResourceEntry(ResourceEntry entry, String folder)
     if (parent.getChildCount() == 0) {
       root.removeFolder(parent);
       folders.remove(parent.folderName());
+      folderModified(root);
+    } else {
+      folderModified(parent);
     }
-    for (int i = 0; i < treeModelListeners.size(); i++) {
-      treeModelListeners.get(i).treeNodesRemoved(event);
+    fireTreeNodesRemoved(event);
+  }
+
+  /**
+   * Removes the entry from the specified folder.
+   * @see #addResourceEntry(ResourceEntry, ResourceTreeFolder, boolean)
+   */
+  public void removeResourceEntry(ResourceEntry entry, ResourceTreeFolder folder)
+  {
+    int index = getIndexOfChild(folder, entry);
+    if (index >= 0) {
+      TreeModelEvent event = new TreeModelEvent(this, getPathToNode(folder), new int[]{index}, new Object[]{entry});
+      folder.removeResourceEntry(entry);
+      folderModified(folder);
+      fireTreeNodesRemoved(event);
     }
   }
 
-  public void resourceEntryChanged(FileResourceEntry entry)
+  public void resourceEntryChanged(ResourceEntry entry)
   {
+    modCount.incrementAndGet();
     TreePath parentPath = getPathToNode(entry).getParentPath();
+    if (parentPath == null) {
+      return;
+    }
     ResourceTreeFolder parentFolder = (ResourceTreeFolder)parentPath.getLastPathComponent();
-    TreeModelEvent event = new TreeModelEvent(this, parentPath,
-        new int[]{getIndexOfChild(parentFolder, entry)}, new Object[]{entry});
+    int index = getIndexOfChild(parentFolder, entry);
+    if (index < 0) {
+      // not listed in the tree
+      return;
+    }
+    if (modifiedFolders != null) {
+      modifiedFolders.add(parentFolder);
+      return;
+    }
+    TreeModelEvent event = new TreeModelEvent(this, parentPath, new int[]{index}, new Object[]{entry});
     for (int i = 0; i < treeModelListeners.size(); i++) {
       treeModelListeners.get(i).treeNodesChanged(event);
     }
   }
 
+  /**
+   * Starts a series of modifications. Until {@link #endUpdate()} is called, listeners are not
+   * notified about individual changes.
+   */
+  public void beginUpdate()
+  {
+    if (modifiedFolders == null) {
+      modifiedFolders = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+  }
+
+  /**
+   * Completes a series of modifications started by {@link #beginUpdate()}. Listeners are notified
+   * about the outermost folders which have been modified in the meantime.
+   */
+  public void endUpdate()
+  {
+    Set<ResourceTreeFolder> changed = modifiedFolders;
+    modifiedFolders = null;
+    if (changed != null) {
+      for (final ResourceTreeFolder folder: changed) {
+        boolean outermost = true;
+        for (ResourceTreeFolder parent = folder.getParentFolder(); parent != null; parent = parent.getParentFolder()) {
+          if (changed.contains(parent)) {
+            outermost = false;
+            break;
+          }
+        }
+        if (outermost) {
+          fireTreeStructureChanged(getPathToNode(folder));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a counter which is incremented after resource entries have been added, removed or renamed.
+   * Can be used to detect outdated data derived from the resource tree.
+   */
+  public int getModificationCount()
+  {
+    return modCount.get();
+  }
+
   public int size()
   {
     int size = 0;
@@ -343,6 +468,24 @@ public void sort()
     fireTreeStructureChanged(new TreePath(new Object[]{root}));
   }
 
+  // Must be called after the content of the folder has been modified
+  private void folderModified(ResourceTreeFolder folder)
+  {
+    modCount.incrementAndGet();
+    if (modifiedFolders != null) {
+      modifiedFolders.add(folder);
+    }
+  }
+
+  private void fireTreeNodesRemoved(TreeModelEvent event)
+  {
+    if (modifiedFolders == null) {
+      for (int i = 0; i < treeModelListeners.size(); i++) {
+        treeModelListeners.get(i).treeNodesRemoved(event);
+      }
+    }
+  }
+
   private void fireTreeStructureChanged(TreePath changed)
   {
     TreeModelEvent event = new TreeModelEvent(this, changed);
@@ -350,5 +493,66 @@ private void fireTreeStructureChanged(TreePath changed)
       treeModelListeners.get(i).treeStructureChanged(event);
     }
   }
-}
 
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Scanned content of a directory and its subdirectories. */
+  public static final class DirectoryContent
+  {
+    private final String name;
+    private final boolean isEmpty;
+    private final List<ResourceEntry> entries = new ArrayList<>();
+    private final List<DirectoryContent> directories = new ArrayList<>();
+
+    private DirectoryContent(String name, boolean isEmpty)
+    {
+      this.name = name;
+      this.isEmpty = isEmpty;
+    }
+  }
+
+  // Scans a directory and forks a separate task for each subdirectory
+  private static final class DirectoryScan extends RecursiveTask<DirectoryContent>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Path directory;
+
+    public DirectoryScan(Path directory)
+    {
+      this.directory = directory;
+    }
+
+    // Returns null if the directory could not be read
+    @Override
+    protected DirectoryContent compute()
+    {
+      List<ResourceIndex.FileInfo> list;
+      try {
+        list = ResourceIndex.getDirectoryContent(directory);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return null;
+      }
+
+      DirectoryContent content = new DirectoryContent(directory.getFileName().toString(), list.isEmpty());
+      List<DirectoryScan> tasks = new ArrayList<>();
+      for (final ResourceIndex.FileInfo info: list) {
+        Path path = info.getPath(directory);
+        if (info.isDirectory()) {
+          tasks.add(new DirectoryScan(path));
+        } else {
+          content.entries.add(new FileResourceEntry(path));
+        }
+      }
+      for (final DirectoryScan task: invokeAll(tasks)) {
+        DirectoryContent subContent = task.join();
+        if (subContent != null) {
+          content.directories.add(subContent);
+        }
+      }
+      return content;
+    }
+  }
+}
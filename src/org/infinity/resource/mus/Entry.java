@@ -5,7 +5,6 @@
 package org.infinity.resource.mus;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
@@ -13,17 +12,20 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.sound.AudioBuffer;
 import org.infinity.resource.sound.AudioFactory;
+import org.infinity.resource.sound.AudioStream;
+import org.infinity.util.TaskEngine;
 import org.infinity.util.io.FileManager;
-import org.infinity.util.io.StreamUtils;
 
 public class Entry
 {
-  // Caches AudioBuffer objects for faster reload
-  private static final LinkedHashMap<Path, AudioBuffer> BufferCache = new LinkedHashMap<>(100);
+  // Caches source data of audio files for faster reload
+  private static final LinkedHashMap<Path, byte[]> SourceCache = new LinkedHashMap<>(100, 0.75f, true);
   private static final long MAX_CACHE_SIZE = getMaxCacheSize();
   private static long currentCacheSize = 0L;
 
@@ -31,70 +33,56 @@
   private final ResourceEntry entry;
   private final String line;
   private final String dir;
-  private AudioBuffer audioBuffer, endBuffer;
+  private Path audioFile, endFile;
+  private Future<AudioStream> prefetched;
   private String name;
   private int nextnr;
 
   /**
-   * Clears the whole AudioBuffer cache
+   * Clears the whole source data cache
    */
   public static void clearCache()
   {
-    BufferCache.clear();
-    currentCacheSize = 0L;
-  }
-
-  // adds an AudioBuffer object to the cache
-  private static void addCacheEntry(Path path, String name, AudioBuffer buffer)
-  {
-    if (name != null && buffer != null) {
-      while (currentCacheSize + buffer.getAudioData().length > MAX_CACHE_SIZE &&
-             !BufferCache.isEmpty()) {
-        Iterator<Path> iter = BufferCache.keySet().iterator();
-        if (iter.hasNext()) {
-          AudioBuffer ab = BufferCache.get(iter.next());
-          iter.remove();
-          currentCacheSize -= ab.getAudioData().length;
-        }
-      }
-      BufferCache.put(getCacheKey(path, name), buffer);
-      currentCacheSize += buffer.getAudioData().length;
+    synchronized (SourceCache) {
+      SourceCache.clear();
+      currentCacheSize = 0L;
     }
   }
 
-  // returns a cached AudioBuffer object or null if none found
-  private static AudioBuffer getCacheEntry(Path path, String name)
+  // returns the source data of the specified audio file, either from cache or from disk
+  private static byte[] getSourceData(Path file) throws IOException
   {
-    if (name != null) {
-      Path key = getCacheKey(path, name);
-      if (BufferCache.containsKey(key)) {
-        AudioBuffer ab = BufferCache.get(key);
-        return ab;
+    Path key = file.toAbsolutePath();
+    synchronized (SourceCache) {
+      byte[] data = SourceCache.get(key);
+      if (data != null) {
+        return data;
       }
     }
-    return null;
-  }
 
-  // internally used to create a valid cache key
-  private static Path getCacheKey(Path path, String name)
-  {
-    Path key = null;
-    if (name != null) {
-      name = name.toUpperCase(Locale.ENGLISH);
-      key = (path != null) ? path.resolve(name) : FileManager.resolve(name);
-      key = key.toAbsolutePath();
+    byte[] data = Files.readAllBytes(file);
+    synchronized (SourceCache) {
+      if (!SourceCache.containsKey(key)) {
+        Iterator<byte[]> iter = SourceCache.values().iterator();
+        while (currentCacheSize + data.length > MAX_CACHE_SIZE && iter.hasNext()) {
+          currentCacheSize -= iter.next().length;
+          iter.remove();
+        }
+        SourceCache.put(key, data);
+        currentCacheSize += data.length;
+      }
     }
-    return key;
+    return data;
   }
 
   private static long getMaxCacheSize()
   {
-    // use max. 1/10th of max. available memory or 100MB for caching AudioBuffer objects
+    // use max. 1/32th of max. available memory or 8MB for caching source data
     long memSize = Runtime.getRuntime().maxMemory();
     if (memSize == Long.MAX_VALUE || memSize < (long)(256*1024*1024)) {
-      return (long)(32*1024*1024);
+      return (long)(8*1024*1024);
     } else {
-      return Math.max(memSize / 8L, (long)(256*1024*1024));
+      return memSize / 32L;
     }
   }
 
@@ -110,8 +98,9 @@ public Entry(ResourceEntry entry, String dir, List<Entry> entries, String line,
 
   public void close()
   {
-    audioBuffer = null;
-    endBuffer = null;
+    cancelPrefetch();
+    audioFile = null;
+    endFile = null;
     nextnr = -1;
   }
 
@@ -121,26 +110,73 @@ public String toString()
     return line;
   }
 
-  public AudioBuffer getEndBuffer()
+  public int getNextNr()
   {
-    return endBuffer;
+    return nextnr;
   }
 
-  public int getNextNr()
+  /** Returns whether the sound of this entry is available. */
+  public boolean hasAudio()
   {
-    return nextnr;
+    return audioFile != null;
   }
 
-  public AudioBuffer getAudioBuffer()
+  /** Returns whether this entry defines a sound to finish playback. */
+  public boolean hasEndAudio()
   {
-    return audioBuffer;
+    return endFile != null;
+  }
+
+  /**
+   * Returns a new stream for the sound of this entry. Uses the stream prepared by
+   * {@link #prefetch()} if available.
+   */
+  public AudioStream getAudioStream() throws IOException
+  {
+    if (audioFile == null) {
+      return null;
+    }
+
+    Future<AudioStream> task;
+    synchronized (this) {
+      task = prefetched;
+      prefetched = null;
+    }
+    if (task != null) {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // try again
+      }
+    }
+    return openStream(audioFile);
+  }
+
+  /** Returns a new stream for the sound to finish playback, or {@code null} if not available. */
+  public AudioStream getEndStream() throws IOException
+  {
+    return (endFile != null) ? openStream(endFile) : null;
+  }
+
+  /**
+   * Loads the sound of this entry and prepares the decoder in the background, so that
+   * a subsequent call of {@link #getAudioStream()} can start playback without delay.
+   */
+  public synchronized void prefetch()
+  {
+    if (prefetched == null && audioFile != null) {
+      final Path file = audioFile;
+      prefetched = TaskEngine.submit(() -> openStream(file));
+    }
   }
 
   public void init() throws IOException
   {
     StringTokenizer st = new StringTokenizer(line);
     name = st.nextToken();
-    audioBuffer = getAudioBuffer(name);
+    audioFile = getAudioFile(name);
     while (st.hasMoreTokens()) {
       String command = st.nextToken();
       if (command.equalsIgnoreCase("@TAG")) {
@@ -148,7 +184,7 @@ public void init() throws IOException
         if (next.equalsIgnoreCase("END")) {
           nextnr = -1;
         } else {
-          endBuffer = getAudioBuffer(next);
+          endFile = getAudioFile(next);
         }
       } else {
         if (command.equalsIgnoreCase(dir)) {
@@ -171,7 +207,7 @@ public void init() throws IOException
     }
   }
 
-  private AudioBuffer getAudioBuffer(String fileName) throws IOException
+  private Path getAudioFile(String fileName) throws IOException
   {
     // audio file can reside in a number of different locations
     Path acmFile = FileManager.query(entry.getActualPath().getParent(), dir, dir + fileName + ".acm");
@@ -185,28 +221,40 @@ private AudioBuffer getAudioBuffer(String fileName) throws IOException
       throw new IOException("Could not find " + fileName);
     }
 
-    // simplest case: grab AudioBuffer from cache
-    AudioBuffer audio = getCacheEntry(acmFile, fileName);
-    if (audio != null) {
-      return audio;
-    }
+    // validating audio data
+    openStream(acmFile).close();
+    return acmFile;
+  }
 
-    try (InputStream is = StreamUtils.getInputStream(acmFile)) {
-      byte[] buffer = new byte[(int)Files.size(acmFile)];
-      int bytesRead = is.read(buffer);
-      if (bytesRead > 0) {
-        // ignore # channels in header (only ACM will be affected)
-        audio = AudioFactory.getAudioBuffer(buffer, 0, AudioBuffer.AudioOverride.overrideChannels(2));
-        if (audio != null) {
-          addCacheEntry(acmFile.getParent(), fileName, audio);
-        }
-      } else {
-        throw new IOException("Unexpected end of file");
-      }
+  private static AudioStream openStream(Path file) throws IOException
+  {
+    byte[] data;
+    try {
+      data = getSourceData(file);
     } catch (IOException e) {
-      throw new IOException("Error reading " + fileName);
+      throw new IOException("Error reading " + file.getFileName());
+    }
+
+    // ignore # channels in header (only ACM will be affected)
+    AudioStream stream = AudioFactory.getAudioStream(data, 0, AudioBuffer.AudioOverride.overrideChannels(2));
+    if (stream == null) {
+      throw new IOException("Error decoding " + file.getFileName());
     }
-    return audio;
+    return stream;
   }
 
+  private void cancelPrefetch()
+  {
+    Future<AudioStream> task;
+    synchronized (this) {
+      task = prefetched;
+      prefetched = null;
+    }
+    if (task != null) {
+      try {
+        task.get().close();
+      } catch (Exception e) {
+      }
+    }
+  }
 }
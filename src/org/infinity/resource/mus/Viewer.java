@@ -28,6 +28,7 @@
 import org.infinity.gui.BrowserMenuBar;
 import org.infinity.icon.Icons;
 import org.infinity.resource.sound.AudioPlayer;
+import org.infinity.resource.sound.AudioStream;
 import org.infinity.util.SimpleListModel;
 
 public class Viewer extends JPanel implements Runnable, ActionListener
@@ -88,9 +89,11 @@ public void run()
           list.setSelectedIndex(nextnr);
           list.ensureIndexIsVisible(nextnr);
           list.repaint();
-          player.play(entryList.get(nextnr).getAudioBuffer());
-        } else if (entryList.get(nextnr).getEndBuffer() != null) {
-          player.play(entryList.get(nextnr).getEndBuffer());
+          AudioStream stream = entryList.get(nextnr).getAudioStream();
+          prefetch(entryList.get(nextnr).getNextNr());
+          player.play(stream);
+        } else if (entryList.get(nextnr).hasEndAudio()) {
+          player.play(entryList.get(nextnr).getEndStream());
           play = false;
         }
         if (!end) {
@@ -170,7 +173,7 @@ private boolean parseMusFile(MusResource mus)
         }
       }
 
-      boolean enable = (!entryList.isEmpty() && entryList.get(0).getAudioBuffer() != null);
+      boolean enable = (!entryList.isEmpty() && entryList.get(0).hasAudio());
       bPlay.setEnabled(enable);
       list.setEnabled(enable);
       return true;
@@ -219,6 +222,14 @@ private void initGUI()
     add(centerPanel, BorderLayout.CENTER);
   }
 
+  // Prepares the next segment in the background while the current segment is playing
+  private void prefetch(int index)
+  {
+    if (index >= 0 && index < entryList.size()) {
+      entryList.get(index).prefetch();
+    }
+  }
+
   public void stopPlay()
   {
     if (player != null) {
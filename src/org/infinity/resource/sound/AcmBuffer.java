@@ -4,6 +4,11 @@
 
 package org.infinity.resource.sound;
 
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.DynamicArray;
 
@@ -33,6 +38,17 @@ public AcmBuffer(byte[] buffer, int offset, AudioOverride override) throws Excep
     super(buffer, offset, override);
   }
 
+  /**
+   * Returns a stream which decodes the specified ACM data on demand.
+   * @param buffer Buffer containing ACM audio data.
+   * @param offset Start offset into buffer.
+   * @param override An optional override object to force certain properties of the audio format.
+   */
+  static AudioStream createStream(byte[] buffer, int offset, AudioOverride override) throws Exception
+  {
+    return new AcmStream(new AcmReader(buffer, offset, override));
+  }
+
 //--------------------- Begin Class AudioBuffer ---------------------
 
   @Override
@@ -43,10 +59,14 @@ protected void convert(byte[] buffer, int offset, AudioOverride override) throws
     int numChannels = acm.getChannels();
     int sampleRate = acm.getSampleRate();
     int bitsPerSample = acm.getBitsPerSample();
-    byte[] header = createWAVHeader(numSamples / numChannels, numChannels, sampleRate, bitsPerSample);
-    data = new byte[header.length + numSamples * bitsPerSample / 8];
-    System.arraycopy(header, 0, data, 0, header.length);
-    acm.readSamples(data, header.length, numSamples);
+    try {
+      byte[] header = createWAVHeader(numSamples / numChannels, numChannels, sampleRate, bitsPerSample);
+      data = new byte[header.length + numSamples * bitsPerSample / 8];
+      System.arraycopy(header, 0, data, 0, header.length);
+      acm.readSamples(data, header.length, numSamples);
+    } finally {
+      acm.close();
+    }
   }
 
 //--------------------- End Class AudioBuffer ---------------------
@@ -54,6 +74,103 @@ protected void convert(byte[] buffer, int offset, AudioOverride override) throws
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Provides decoded ACM data as 16-bit PCM samples
+  private static final class AcmStream implements AudioStream
+  {
+    private final AcmReader acm;
+    private final AudioFormat format;
+    private int samplesLeft;
+
+    private AcmStream(AcmReader acm)
+    {
+      this.acm = acm;
+      this.format = new AudioFormat(acm.getSampleRate(), 16, acm.getChannels(), true, false);
+      this.samplesLeft = acm.getSampleCount();
+    }
+
+    @Override
+    public AudioFormat getFormat()
+    {
+      return format;
+    }
+
+    @Override
+    public long getFrameLength()
+    {
+      return acm.getSampleCount() / acm.getChannels();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+      if (samplesLeft == 0) {
+        return -1;
+      }
+      int count = Math.min(length / 2, samplesLeft);
+      if (count == 0) {
+        return 0;
+      }
+      try {
+        // missing source data results in silence
+        acm.readSamples(buffer, offset, count);
+      } catch (RuntimeException e) {
+        throw new IOException("Error decoding ACM data", e);
+      }
+      samplesLeft -= count;
+      return count * 2;
+    }
+
+    @Override
+    public void close()
+    {
+      samplesLeft = 0;
+      acm.close();
+    }
+  }
+
+  // Work buffers of the ACM decoder, which are reused by subsequent decoders of the same thread
+  private static final class DecoderState
+  {
+    private static final ThreadLocal<DecoderState> CACHE = new ThreadLocal<>();
+
+    private final byte[] ampBuffer = new byte[0x10000 * 2];   // ValueUnpacker: 0x10000 shorts
+    private byte[] memBuffer = new byte[0];                   // SubbandDecoder
+    private byte[] blockBuffer = new byte[0];                 // AcmReader
+    private volatile boolean inUse;
+
+    // Returns cleared buffers for the specified block configuration
+    private static DecoderState acquire(int levels, int blockSize)
+    {
+      DecoderState state = CACHE.get();
+      if (state == null || state.inUse) {
+        // streams may be decoded concurrently by the same thread, or may not have been closed
+        state = new DecoderState();
+        CACHE.set(state);
+      } else {
+        Arrays.fill(state.ampBuffer, (byte)0);
+      }
+      state.inUse = true;
+
+      int memSize = ((levels == 0) ? 0 : (3*((1 << levels) >> 1) - 2)) * 4;
+      if (state.memBuffer.length < memSize) {
+        state.memBuffer = new byte[memSize];
+      } else {
+        Arrays.fill(state.memBuffer, 0, memSize, (byte)0);
+      }
+      if (state.blockBuffer.length < blockSize * 4) {
+        state.blockBuffer = new byte[blockSize * 4];
+      } else {
+        Arrays.fill(state.blockBuffer, 0, blockSize * 4, (byte)0);
+      }
+      return state;
+    }
+
+    private void release()
+    {
+      inUse = false;
+    }
+  }
+
   // ACM decoder class
   private static class AcmReader
   {
@@ -69,6 +186,7 @@ protected void convert(byte[] buffer, int offset, AudioOverride override) throws
     private DynamicArray blockI, valuesI;
     private ValueUnpacker unpacker;     // ACM-stream unpacker
     private SubbandDecoder decoder;     // Interplay's subband decoder
+    private DecoderState state;         // work buffers, null after close()
 
 
     private AcmReader(byte[] buffer, int offset) throws Exception
@@ -117,9 +235,20 @@ private void init() throws Exception
 
       samplesLeft = numSamples;
       blockSize = (1 << levels) * subBlocks;
-      blockI = DynamicArray.allocate(blockSize, DynamicArray.ElementType.INTEGER);
-      unpacker = new ValueUnpacker(levels, subBlocks, bufferB);
-      decoder = new SubbandDecoder(levels);
+      state = DecoderState.acquire(levels, blockSize);
+      blockI = DynamicArray.wrap(state.blockBuffer, DynamicArray.ElementType.INTEGER);
+      unpacker = new ValueUnpacker(levels, subBlocks, bufferB, state.ampBuffer);
+      decoder = new SubbandDecoder(levels, state.memBuffer);
+    }
+
+    // Makes the work buffers available to other decoders. No more samples can be read afterwards.
+    private void close()
+    {
+      samplesLeft = samplesReady = 0;
+      if (state != null) {
+        state.release();
+        state = null;
+      }
     }
 
     private void makeNewSamples()
@@ -138,7 +267,7 @@ private int readSamples(byte[] outBuffer, int offset, int sampleCount)
       int res = 0;
       while (res < sampleCount) {
         if (samplesReady == 0) {
-          if (samplesLeft == 0)
+          if (samplesLeft == 0 || state == null)
             break;
           makeNewSamples();
         }
@@ -220,7 +349,7 @@ private int getBitsPerSample()
     private DynamicArray ampBufS, bufMiddleS;
     private DynamicArray blockI;
 
-    private ValueUnpacker(int levels, int sbCount, DynamicArray bufB)
+    private ValueUnpacker(int levels, int sbCount, DynamicArray bufB, byte[] ampBuffer)
     {
       if (bufB == null)
         throw new NullPointerException();
@@ -231,12 +360,12 @@ private ValueUnpacker(int levels, int sbCount, DynamicArray bufB)
       this.nextBits = this.availBits = 0;
       this.sbSize = 1 << this.levels;
       this.ampBufS = bufMiddleS = this.blockI = null;
-      init();
+      init(ampBuffer);
     }
 
-    private void init()
+    private void init(byte[] ampBuffer)
     {
-      ampBufS = DynamicArray.allocate(0x10000, DynamicArray.ElementType.SHORT);
+      ampBufS = DynamicArray.wrap(ampBuffer, DynamicArray.ElementType.SHORT);
       bufMiddleS = ampBufS.clone().addToBaseOffset(0x8000);
     }
 
@@ -633,11 +762,11 @@ private int getBits(int bits)
     private final int levels, blockSize;
     private DynamicArray memBufI;
 
-    private SubbandDecoder(int levels)
+    private SubbandDecoder(int levels, byte[] memBuffer)
     {
       this.levels = levels;
       blockSize = 1 << this.levels;
-      init();
+      init(memBuffer);
     }
 
     private void decode(DynamicArray bufferI, int blocks)
@@ -668,11 +797,11 @@ private void decode(DynamicArray bufferI, int blocks)
       }
     }
 
-    private void init()
+    private void init(byte[] memBuffer)
     {
       int memSize = (levels == 0) ? 0 : (3*(blockSize >> 1) - 2);
       if (memSize > 0) {
-        memBufI = DynamicArray.allocate(memSize, DynamicArray.ElementType.INTEGER);
+        memBufI = DynamicArray.wrap(memBuffer, DynamicArray.ElementType.INTEGER);
       }
     }
 
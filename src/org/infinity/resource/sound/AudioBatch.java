@@ -0,0 +1,107 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.sound;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.TaskEngine;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Converts audio resources into uncompressed WAV files, e.g. for exports running on the shared
+ * {@link TaskEngine}.
+ * <p>
+ * Audio data is decoded in chunks via {@link AudioStream} and written directly to the output file,
+ * so that the decoded sound is never held in memory as a whole. Each thread reuses its decoder and
+ * I/O buffers for all resources it converts.
+ */
+public final class AudioBatch
+{
+  private static final int HEADER_SIZE = 44;
+  private static final int BUFFER_SIZE = 0x10000;
+
+  // I/O buffer of the current thread
+  private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue()
+    {
+      return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+  };
+
+  /**
+   * Decodes the specified audio resource and writes it as WAV file. The decoded audio data is
+   * identical to the data returned by {@link AudioFactory#convertAudio(ResourceEntry)}.
+   * @param entry The audio resource to convert. Supported formats are WAV, ACM, WAVC and OGG.
+   * @param output Channel of the WAV file to create. The file is written from the start and
+   *               truncated after the audio data. The channel is not closed by this method.
+   * @return Number of sample frames written.
+   * @throws Exception If the resource could not be decoded or the file could not be written.
+   */
+  public static long convert(ResourceEntry entry, FileChannel output) throws Exception
+  {
+    if (entry == null || output == null) {
+      throw new NullPointerException();
+    }
+
+    byte[] data = StreamUtils.toArray(entry.getResourceBuffer());
+    try (AudioStream stream = AudioFactory.getAudioStream(data, 0, null)) {
+      if (stream == null) {
+        throw new Exception("Unsupported audio format: " + entry.getResourceName());
+      }
+      return write(stream, output);
+    }
+  }
+
+  /**
+   * Writes the remaining data of the specified audio stream as WAV file.
+   * @param stream The audio stream to write. The stream is not closed by this method.
+   * @param output Channel of the WAV file to create. The file is written from the start and
+   *               truncated after the audio data. The channel is not closed by this method.
+   * @return Number of sample frames written.
+   * @throws Exception If the stream could not be decoded or the file could not be written.
+   */
+  public static long write(AudioStream stream, FileChannel output) throws Exception
+  {
+    AudioFormat format = stream.getFormat();
+    ByteBuffer buffer = BUFFER.get();
+    try {
+      // header depends on the total data size, which is not known in advance for all formats
+      long dataSize = 0L;
+      output.position(HEADER_SIZE);
+      int len;
+      while ((len = stream.read(buffer.array(), 0, buffer.capacity())) >= 0) {
+        buffer.clear().limit(len);
+        while (buffer.hasRemaining()) {
+          output.write(buffer);
+        }
+        dataSize += len;
+      }
+      output.truncate(HEADER_SIZE + dataSize);
+
+      long frames = dataSize / format.getFrameSize();
+      if (frames > Integer.MAX_VALUE) {
+        throw new IOException("Audio data too large");
+      }
+      byte[] header = AudioBuffer.createWAVHeader((int)frames, format.getChannels(),
+                                                  (int)format.getSampleRate(), format.getSampleSizeInBits());
+      ByteBuffer bb = ByteBuffer.wrap(header);
+      long pos = 0L;
+      while (bb.hasRemaining()) {
+        pos += output.write(bb, pos);
+      }
+      return frames;
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  private AudioBatch() {}
+}
@@ -6,7 +6,10 @@
 
 import java.nio.ByteBuffer;
 
+import javax.sound.sampled.AudioFormat;
+
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.DynamicArray;
 import org.infinity.util.io.StreamUtils;
 
 /**
@@ -52,6 +55,15 @@ public byte[] getAudioData()
     return data;
   }
 
+  /**
+   * Returns a stream providing the uncompressed PCM data of this buffer without WAV header.
+   * @return An {@link AudioStream} object, or {@code null} if no audio data is available.
+   */
+  public AudioStream getAudioStream()
+  {
+    return (data != null) ? new BufferStream(data) : null;
+  }
+
   /**
    * Converts the source audio data into uncompressed PCM WAV data.
    * @param buffer Buffer containing source audio data.
@@ -119,6 +131,54 @@ protected static byte[] createWAVHeader(int samplesPerChannel, int channels, int
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Provides access to the PCM data of a WAV structure created by createWAVHeader()
+  private static final class BufferStream implements AudioStream
+  {
+    private final byte[] data;
+    private final AudioFormat format;
+    private int position;
+
+    private BufferStream(byte[] data)
+    {
+      this.data = data;
+      int numChannels = DynamicArray.getUnsignedShort(data, 22);
+      int sampleRate = DynamicArray.getInt(data, 24);
+      int bitsPerSample = DynamicArray.getUnsignedShort(data, 34);
+      this.format = new AudioFormat(sampleRate, bitsPerSample, numChannels, bitsPerSample > 8, false);
+      this.position = 44;
+    }
+
+    @Override
+    public AudioFormat getFormat()
+    {
+      return format;
+    }
+
+    @Override
+    public long getFrameLength()
+    {
+      return (data.length - 44) / format.getFrameSize();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+    {
+      if (position >= data.length) {
+        return -1;
+      }
+      int len = Math.min(length, data.length - position);
+      System.arraycopy(data, position, buffer, offset, len);
+      position += len;
+      return len;
+    }
+
+    @Override
+    public void close()
+    {
+      position = data.length;
+    }
+  }
+
   /**
    * Use to override autodetected properties of the source audio format.
    * Audio buffers are not required to honor the properties defined in the AudioOverride object.
@@ -88,6 +88,66 @@ public static AudioBuffer getAudioBuffer(byte[] buffer, int offset, AudioOverrid
     }
   }
 
+  /**
+   * Attempts to detect the resource format of the specified resource and returns a
+   * matching AudioStream object which decodes the audio data on demand.
+   * @param entry The audio resource to decode.
+   * @param override An optional AudioOverride object containing audio properties to override.
+   * @return An AudioStream object, or null if resource format could not be determined.
+   */
+  public static AudioStream getAudioStream(ResourceEntry entry, AudioOverride override)
+  {
+    if (entry != null) {
+      try {
+        return getAudioStream(StreamUtils.toArray(entry.getResourceBuffer()), 0, override);
+      } catch (Exception e) {
+        e.printStackTrace();
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Attempts to detect the resource format of the specified data and returns a
+   * matching AudioStream object which decodes the audio data on demand.
+   * Uncompressed WAV data is converted as a whole.
+   * @param buffer A buffer containing unprocessed audio data.
+   * @param offset Start offset of the audio data.
+   * @param override An optional AudioOverride object containing audio properties to override.
+   * @return An AudioStream object, or null on error or if audio format could not be determined.
+   */
+  public static AudioStream getAudioStream(byte[] buffer, int offset, AudioOverride override)
+  {
+    try {
+      switch (detectFormat(buffer, offset)) {
+        case FMT_WAV:
+          return new WavBuffer(buffer, offset, override).getAudioStream();
+        case FMT_ACM:
+          return AcmBuffer.createStream(buffer, offset, override);
+        case FMT_WAVC:
+          return WavcBuffer.createStream(buffer, offset, override);
+        case FMT_OGG:
+          return OggBuffer.createStream(buffer, offset);
+        default:
+          return null;
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the specified data contains audio in WAV format.
+   * @param buffer A buffer containing unprocessed audio data.
+   * @param offset Start offset of the audio data.
+   */
+  public static boolean isWav(byte[] buffer, int offset)
+  {
+    return detectFormat(buffer, offset) == AudioFormat.FMT_WAV;
+  }
+
   /**
    * Convenience method: Returns a buffer containing decoded audio data including WAV header.
    * @param entry The audio resource to decode.
@@ -4,18 +4,14 @@
 
 package org.infinity.resource.sound;
 
-import java.io.ByteArrayInputStream;
-
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
 import javax.sound.sampled.SourceDataLine;
-import javax.sound.sampled.UnsupportedAudioFileException;
 
 public class AudioPlayer
 {
-  private static final byte buffer[] = new byte[8196];
+  private final byte buffer[] = new byte[8192];
 
   private AudioFormat audioFormat;
   private SourceDataLine dataLine;
@@ -31,39 +27,58 @@ public void play(AudioBuffer audioBuffer) throws Exception
     if (audioBuffer == null || audioBuffer.getAudioData() == null)
       return;
 
+    play(audioBuffer.getAudioStream());
+  }
+
+  /**
+   * Starts playback of the specified audio stream. Audio data is decoded in chunks while playing.
+   * The stream is closed when playback ends.
+   * @param audioStream AudioStream object providing audio data.
+   * @throws Exception On error
+   */
+  public void play(AudioStream audioStream) throws Exception
+  {
+    if (audioStream == null)
+      return;
+
     setPlaying(true);
     setStopped(false);
-    AudioInputStream ais = null;
     try {
-      ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(audioBuffer.getAudioData()));
-    } catch (UnsupportedAudioFileException e) {
-      throw new Exception("Unsupported audio format");
-    }
-
-    if (dataLine == null || !ais.getFormat().matches(audioFormat)) {
-      audioFormat = ais.getFormat();
-      DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
-      if (!AudioSystem.isLineSupported(info)) {
-        throw new Exception("Unsupported audio format");
+      AudioFormat format = audioStream.getFormat();
+      if (dataLine == null || !format.matches(audioFormat)) {
+        audioFormat = format;
+        DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
+        if (!AudioSystem.isLineSupported(info)) {
+          throw new Exception("Unsupported audio format");
+        }
+        dataLine = (SourceDataLine)AudioSystem.getLine(info);
+        dataLine.open(format, 16384);
+      }
+      dataLine.start();
+
+      // line accepts whole sample frames only
+      int frameSize = Math.max(1, format.getFrameSize());
+      int numBytes = 0;
+      while (isPlaying()) {
+        int numBytesRead = audioStream.read(buffer, numBytes, buffer.length - numBytes);
+        if (numBytesRead < 0)
+          break;
+        numBytes += numBytesRead;
+        int numBytesWrite = numBytes - (numBytes % frameSize);
+        if (numBytesWrite > 0) {
+          dataLine.write(buffer, 0, numBytesWrite);
+          numBytes -= numBytesWrite;
+          System.arraycopy(buffer, numBytesWrite, buffer, 0, numBytes);
+        }
       }
-      dataLine = (SourceDataLine)AudioSystem.getLine(info);
-      dataLine.open(ais.getFormat(), 16384);
-    }
-    dataLine.start();
-
-    while (isPlaying()) {
-      int numBytesRead = ais.read(buffer, 0, buffer.length);
-      if (numBytesRead < 0)
-        break;
-      dataLine.write(buffer, 0, numBytesRead);
-    }
-    ais.close();
 
-    if (!isPlaying()) {
-      dataLine.drain();
+      if (!isPlaying()) {
+        dataLine.drain();
+      }
+    } finally {
+      audioStream.close();
+      setStopped(true);
     }
-
-    setStopped(true);
   }
 
   /**
@@ -0,0 +1,41 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.sound;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Provides uncompressed PCM audio data which is decoded on demand.
+ * <p>
+ * Unlike {@link AudioBuffer} only the data requested by the consumer is decoded, which allows
+ * playback to start immediately and keeps memory usage independent of the length of the sound.
+ * Instances are created by {@link AudioFactory#getAudioStream(byte[], int, AudioBuffer.AudioOverride)}.
+ */
+public interface AudioStream extends Closeable
+{
+  /** Returns the format of the decoded PCM data. */
+  AudioFormat getFormat();
+
+  /**
+   * Returns the total number of sample frames, or {@link AudioSystem#NOT_SPECIFIED}
+   * if the length is not known in advance.
+   */
+  long getFrameLength();
+
+  /**
+   * Decodes the next chunk of PCM data. May return less data than requested, and is not required
+   * to return whole sample frames.
+   * @param buffer The buffer to write decoded data into.
+   * @param offset Start offset into buffer.
+   * @param length Max. number of bytes to write.
+   * @return Number of bytes written, or -1 if the end of the stream has been reached.
+   * @throws IOException If the source data could not be decoded.
+   */
+  int read(byte[] buffer, int offset, int length) throws IOException;
+}
@@ -6,6 +6,10 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
 
 import org.infinity.resource.key.ResourceEntry;
 
@@ -44,78 +48,155 @@ public OggBuffer(byte[] buffer, int offset, AudioOverride override) throws Excep
     super(buffer, offset, override);
   }
 
+  /**
+   * Returns a stream which decodes the specified Ogg Vorbis data on demand.
+   * @param buffer Buffer containing Ogg Vorbis audio data.
+   * @param offset Start offset into buffer.
+   */
+  static AudioStream createStream(byte[] buffer, int offset) throws Exception
+  {
+    return new OggStream(buffer, offset);
+  }
+
 //--------------------- Begin Class AudioBuffer ---------------------
 
   @Override
   protected void convert(byte[] buffer, int offset, AudioOverride override) throws Exception
   {
-    if (buffer == null)
-      throw new NullPointerException();
-    if (offset < 0 || offset >= buffer.length)
-      throw new Exception("Invalid buffer offset");
-
     // override object will be ignored
     data = decodeOgg(buffer, offset);
   }
 
-//--------------------- Begin Class AudioBuffer ---------------------
+//--------------------- End Class AudioBuffer ---------------------
 
-  // Ogg decode routine closely based on JOrbis' DecodeExample.java
   private byte[] decodeOgg(byte[] inBuf, int offset) throws Exception
   {
-    if (inBuf == null)
-      throw new NullPointerException();
-    if (offset < 0)
-      offset = 0;
-    if (offset >= inBuf.length)
-      throw new Exception("Input buffer too small");
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    AudioFormat format;
+    try (OggStream ogg = new OggStream(inBuf, offset)) {
+      format = ogg.getFormat();
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = ogg.read(buffer, 0, buffer.length)) >= 0) {
+        bos.write(buffer, 0, len);
+      }
+    }
+
+    // create final output buffer
+    int samplesPerChannel = bos.size() / format.getFrameSize();
+    byte[] header = createWAVHeader(samplesPerChannel, format.getChannels(), (int)format.getSampleRate(), 16);
+    byte[] output = new byte[header.length + bos.size()];
+    System.arraycopy(header, 0, output, 0, header.length);
+    System.arraycopy(bos.toByteArray(), 0, output, header.length, bos.size());
+
+    return output;
+  }
 
-    int convSize = 4096 * 2;
-    final byte[] convBuffer = new byte[convSize]; // take 8k out of the data segment, not the stack
 
-    ByteArrayInputStream bis = new ByteArrayInputStream(inBuf, offset, inBuf.length - offset);
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+//-------------------------- INNER CLASSES --------------------------
 
-    SyncState oy = new SyncState();     // sync and verify incoming physical bitstream
-    StreamState os = new StreamState(); // take physical pages, weld into a logical stream of packets
-    Page og = new Page();               // one Ogg bitstream page.  Vorbis packets are inside
-    Packet op = new Packet();           // one raw packet of data for decode
+  // Ogg decode routine closely based on JOrbis' DecodeExample.java, decoding one packet at a time
+  private static final class OggStream implements AudioStream
+  {
+    private final ByteArrayInputStream bis;
+
+    private final SyncState oy = new SyncState();     // sync and verify incoming physical bitstream
+    private final StreamState os = new StreamState(); // take physical pages, weld into a logical stream of packets
+    private final Page og = new Page();               // one Ogg bitstream page.  Vorbis packets are inside
+    private final Packet op = new Packet();           // one raw packet of data for decode
+
+    private final Info vi = new Info();               // struct that stores all the static vorbis bitstream settings
+    private final Comment vc = new Comment();         // struct that stores all the bitstream user comments
+    private final DspState vd = new DspState();       // central working state for the packet->PCM decoder
+    private final Block vb = new Block(vd);           // local working space for packet->PCM decode
+
+    private final float[][][] _pcm = new float[1][][];
+    private final AudioFormat format;
+
+    private int[] _index;
+    private boolean lastPage;   // last page of the logical bitstream has been submitted
+    private boolean finished;   // end of physical bitstream
+
+    // decoded PCM data which has not been consumed yet
+    private byte[] pending = new byte[8192];
+    private int pendingOfs, pendingLen;
+
+    private OggStream(byte[] buffer, int offset) throws Exception
+    {
+      if (buffer == null)
+        throw new NullPointerException();
+      if (offset < 0 || offset >= buffer.length)
+        throw new Exception("Invalid buffer offset");
+
+      bis = new ByteArrayInputStream(buffer, offset, buffer.length - offset);
+      oy.init(); // Now we can read pages
+      if (!initStream()) {
+        throw new Exception("Input does not appear to be an Ogg bitstream.");
+      }
+      // chained bitstreams are expected to share the format of the first bitstream
+      format = new AudioFormat(vi.rate, 16, vi.channels, true, false);
+    }
 
-    Info vi = new Info();               // struct that stores all the static vorbis bitstream settings
-    Comment vc = new Comment();         // struct that stores all the bitstream user comments
-    DspState vd = new DspState();       // central working state for the packet->PCM decoder
-    Block vb = new Block(vd);           // local working space for packet->PCM decode
+    @Override
+    public AudioFormat getFormat()
+    {
+      return format;
+    }
 
-    byte[] buffer;
-    int bytes = 0;
+    @Override
+    public long getFrameLength()
+    {
+      return AudioSystem.NOT_SPECIFIED;
+    }
 
-    // Decode setup
-    oy.init(); // Now we can read pages
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+      if (pendingLen == 0) {
+        pendingOfs = 0;
+        try {
+          if (!decode()) {
+            return -1;
+          }
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e.getMessage(), e);
+        }
+      }
+      int len = Math.min(length, pendingLen);
+      System.arraycopy(pending, pendingOfs, buffer, offset, len);
+      pendingOfs += len;
+      pendingLen -= len;
+      return len;
+    }
 
-    while (true) {   // we repeat if the bitstream is chained
-      int eos = 0;
+    @Override
+    public void close()
+    {
+      if (!finished) {
+        finished = true;
+        clearStream();
+        oy.clear();
+      }
+    }
 
+    // Sets up decoding of the next logical bitstream. Returns false if no more data is available.
+    private boolean initStream() throws Exception
+    {
       // grab some data at the head of the stream.  We want the first page
       // (which is guaranteed to be small and only contain the Vorbis
       // stream initial header) We need the first page to get the stream
       // serialno.
 
       // submit a 4k block to libvorbis' Ogg layer
-      int index = oy.buffer(4096);
-      buffer = oy.data;
-      try {
-        bytes = bis.read(buffer, index, 4096);
-      }
-      catch (Exception e) {
-        throw new Exception(e.getMessage());
-      }
-      oy.wrote(bytes);
+      int bytes = fetchData();
 
       // Get the first page.
       if (oy.pageout(og) != 1) {
         // have we simply run out of data?  If so, we're done.
         if (bytes < 4096)
-          break;
+          return false;
 
         // error case.  Must not be Vorbis data
         throw new Exception("Input does not appear to be an Ogg bitstream.");
@@ -124,42 +205,32 @@ private byte[] decodeOgg(byte[] inBuf, int offset) throws Exception
       // Get the serial number and set up the rest of decode.
       // serialno first; use it to set up a logical stream
       os.init(og.serialno());
+      os.reset();   // JOrbis keeps page and packet state of a previous [chained] bitstream otherwise
 
       // extract the initial header from the first page and verify that the
       // Ogg bitstream is in fact Vorbis data
-
-      // I handle the initial header first instead of just having the code
-      // read all three Vorbis headers at once because reading the initial
-      // header is an easy way to identify a Vorbis bitstream and it's
-      // useful to see that functionality seperated out.
-
       vi.init();
       vc.init();
-      if (os.pagein(og) < 0){
+      if (os.pagein(og) < 0) {
         // error; stream version mismatch perhaps
         throw new Exception("Error reading first page of Ogg bitstream data.");
       }
 
-      if (os.packetout(op) != 1){
+      if (os.packetout(op) != 1) {
         // no page? must not be vorbis
         throw new Exception("Error reading initial header packet.");
       }
 
-      if (vi.synthesis_headerin(vc, op) < 0){
+      if (vi.synthesis_headerin(vc, op) < 0) {
         // error case; not a vorbis header
         throw new Exception("This Ogg bitstream does not contain Vorbis audio data.");
       }
 
-      // At this point, we're sure we're Vorbis.  We've set up the logical
-      // (Ogg) bitstream decoder.  Get the comment and codebook headers and
-      // set up the Vorbis decoder
-
       // The next two packets in order are the comment and codebook headers.
-      // They're likely large and may span multiple pages.  Thus we reead
-      // and submit data until we get our two pacakets, watching that no
+      // They're likely large and may span multiple pages.  Thus we read
+      // and submit data until we get our two packets, watching that no
       // pages are missing.  If a page is missing, error out; losing a
-      // header page is the only place where missing data is fatal. */
-
+      // header page is the only place where missing data is fatal.
       int i = 0;
       while (i < 2) {
         while (i < 2) {
@@ -169,12 +240,8 @@ private byte[] decodeOgg(byte[] inBuf, int offset) throws Exception
 
           // Don't complain about missing or corrupt data yet.
           // We'll catch it at the packet output phase.
-
           if (result == 1) {
-            os.pagein(og);  // we can ignore any errors here
-
-            // as they'll also become apparent
-            // at packetout
+            os.pagein(og);  // we can ignore any errors here as they'll also become apparent at packetout
             while (i < 2) {
               result = os.packetout(op);
               if (result == 0)
@@ -191,152 +258,119 @@ private byte[] decodeOgg(byte[] inBuf, int offset) throws Exception
         }
 
         // no harm in not checking before adding more
-        index = oy.buffer(4096);
-        buffer = oy.data;
-        try {
-          bytes = bis.read(buffer, index, 4096);
-        }
-        catch (Exception e) {
-          throw new Exception(e.getMessage());
-        }
-
-        if (bytes == 0 && i < 2) {
+        if (fetchData() == 0 && i < 2) {
           throw new Exception("End of file before finding all Vorbis headers!");
         }
-        oy.wrote(bytes);
       }
 
-      // Throw the comments plus a few lines about the bitstream we're decoding
-//      {
-//        byte[][] ptr = vc.user_comments;
-//        for (int j = 0; j < ptr.length; j++) {
-//          if (ptr[j] == null)
-//            break;
-//          System.err.println(new String(ptr[j], 0, ptr[j].length-1));
-//        }
-//        System.err.println("\nBitstream is "+vi.channels+" channel, "+vi.rate+"Hz");
-//        System.err.println("Encoded by: "+new String(vc.vendor, 0, vc.vendor.length-1)+"\n");
-//      }
-
-      convSize = 4096 / vi.channels;
-
       // OK, got and parsed all three headers. Initialize the Vorbis packet->PCM decoder.
       vd.synthesis_init(vi);    // central decode state
-      vb.init(vd);    // local state for most of the decode, so multiple block decodes can proceed
-                      // in parallel.  We could init multiple vorbis_block structures for vd here
-
-      float[][][] _pcm = new float[1][][];
-      int[] _index = new int[vi.channels];
+      vb.init(vd);              // local state for most of the decode
+      _index = new int[vi.channels];
+      lastPage = false;
+      return true;
+    }
 
-      // The rest is just a straight decode loop until end of stream
-      while (eos == 0) {
-        while(eos == 0) {
+    // clean up the current logical bitstream
+    private void clearStream()
+    {
+      os.clear();
 
-          int result = oy.pageout(og);
-          if (result == 0)    // need more data
-            break;
+      // ogg_page and ogg_packet structs always point to storage in libvorbis.
+      // They're never freed or manipulated directly
+      vb.clear();
+      vd.clear();
+      vi.clear();     // must be called last
+    }
 
-          if (result == -1) {   // missing or corrupt data at this page position
-            System.err.println("Corrupt or missing data in bitstream; continuing...");
-          } else {
+    // Decodes packets until PCM data is available. Returns false at the end of the physical bitstream.
+    private boolean decode() throws Exception
+    {
+      while (!finished) {
+        int result = os.packetout(op);
+        if (result == 1) {
+          // we have a packet.  Decode it
+          if (vb.synthesis(op) == 0) {   // test for success!
+            vd.synthesis_blockin(vb);
+          }
+          if (convertPcm()) {
+            return true;
+          }
+        } else if (result == -1) {
+          // missing or corrupt data at this page position
+          // no reason to complain; already complained at the page level
+        } else if (lastPage) {
+          // end of logical bitstream; see if we're followed by another [chained] one
+          clearStream();
+          if (!initStream()) {
+            finished = true;
+            oy.clear();
+          }
+        } else {
+          result = oy.pageout(og);
+          if (result == 1) {
             os.pagein(og);  // can safely ignore errors at this point
-
-            while (true) {
-              result = os.packetout(op);
-
-              if (result == 0)    // need more data
-                break;
-
-              if (result == -1) {   // missing or corrupt data at this page position
-                // no reason to complain; already complained above
-              } else {
-                // we have a packet.  Decode it
-                int samples;
-                if(vb.synthesis(op) == 0) {   // test for success!
-                  vd.synthesis_blockin(vb);
-                }
-
-                // **pcm is a multichannel float vector.  In stereo, for
-                // example, pcm[0] is left, and pcm[1] is right.  samples is
-                // the size of each channel.  Convert the float values
-                // (-1.<=range<=1.) to whatever PCM format and write it out
-
-                while ((samples = vd.synthesis_pcmout(_pcm, _index)) > 0) {
-                  float[][] pcm = _pcm[0];
-                  int bout = (samples < convSize) ? samples : convSize;
-
-                  // convert floats to 16 bit signed ints (host order) and interleave
-                  for (i = 0; i < vi.channels; i++) {
-                    int ptr = i * 2;
-                    //int ptr = i;
-                    int mono = _index[i];
-                    for (int j = 0; j < bout; j++) {
-                      int val = (int)(pcm[i][mono + j] * 32767.0f);
-                      //          short val = (short)(pcm[i][mono + j] * 32767.0f);
-                      //          int val = (int)Math.round(pcm[i][mono + j] * 32767.0f);
-                      // might as well guard against clipping
-                      if (val > 32767) {
-                        val = 32767;
-                      }
-                      if (val < -32768) {
-                        val = -32768;
-                      }
-                      if (val < 0)
-                        val = val | 0x8000;
-                      convBuffer[ptr] = (byte)(val);
-                      convBuffer[ptr + 1] = (byte)(val >>> 8);
-                      ptr += 2 * vi.channels;
-                    }
-                  }
-
-                  bos.write(convBuffer, 0, 2 * vi.channels * bout);
-
-                  // tell libvorbis how
-                  // many samples we
-                  // actually consumed
-                  vd.synthesis_read(bout);
-                }
-              }
-            }
             if (og.eos() != 0)
-              eos = 1;
+              lastPage = true;
+          } else if (result == -1) {
+            // missing or corrupt data at this page position
+            System.err.println("Corrupt or missing data in bitstream; continuing...");
+          } else if (fetchData() == 0) {
+            lastPage = true;
           }
         }
+      }
+      return false;
+    }
 
-        if (eos == 0) {
-          index = oy.buffer(4096);
-          buffer = oy.data;
-          try {
-            bytes = bis.read(buffer, index, 4096);
-          } catch(Exception e) {
-            throw new Exception(e.getMessage());
+    // Converts all available PCM samples into pending data. Returns whether samples were available.
+    private boolean convertPcm()
+    {
+      int samples;
+      while ((samples = vd.synthesis_pcmout(_pcm, _index)) > 0) {
+        // **pcm is a multichannel float vector.  In stereo, for
+        // example, pcm[0] is left, and pcm[1] is right.  samples is
+        // the size of each channel.  Convert the float values
+        // (-1.<=range<=1.) to 16 bit signed ints (host order) and interleave
+        float[][] pcm = _pcm[0];
+        int size = 2 * vi.channels * samples;
+        if (pendingLen + size > pending.length) {
+          byte[] tmp = new byte[Math.max(pending.length * 2, pendingLen + size)];
+          System.arraycopy(pending, 0, tmp, 0, pendingLen);
+          pending = tmp;
+        }
+        for (int i = 0; i < vi.channels; i++) {
+          int ptr = pendingLen + i * 2;
+          int mono = _index[i];
+          for (int j = 0; j < samples; j++) {
+            int val = (int)(pcm[i][mono + j] * 32767.0f);
+            // might as well guard against clipping
+            if (val > 32767) {
+              val = 32767;
+            }
+            if (val < -32768) {
+              val = -32768;
+            }
+            pending[ptr] = (byte)(val);
+            pending[ptr + 1] = (byte)(val >>> 8);
+            ptr += 2 * vi.channels;
           }
-          oy.wrote(bytes);
-          if (bytes == 0)
-            eos = 1;
         }
-      }
-
-      // clean up this logical bitstream; before exit we see if we're followed by another [chained]
-      os.clear();
+        pendingLen += size;
 
-      // ogg_page and ogg_packet structs always point to storage in libvorbis.
-      // They're never freed or manipulated directly
-      vb.clear();
-      vd.clear();
-      vi.clear();     // must be called last
+        // tell libvorbis how many samples we actually consumed
+        vd.synthesis_read(samples);
+      }
+      return pendingLen > 0;
     }
 
-    // OK, clean up the framer
-    oy.clear();
-
-    // create final output buffer
-    int samplesPerChannel = bos.size() / (vi.channels * 2);
-    byte[] header = createWAVHeader(samplesPerChannel, vi.channels, vi.rate, 16);
-    byte[] output = new byte[header.length + bos.size()];
-    System.arraycopy(header, 0, output, 0, header.length);
-    System.arraycopy(bos.toByteArray(), 0, output, header.length, bos.size());
-
-    return output;
+    // Submits a 4k block of source data to the Ogg layer. Returns number of bytes submitted.
+    private int fetchData()
+    {
+      int index = oy.buffer(4096);
+      int bytes = Math.max(0, bis.read(oy.data, index, 4096));
+      oy.wrote(bytes);
+      return bytes;
+    }
   }
 }
@@ -44,7 +44,7 @@ public class SoundResource implements Resource, ActionListener, ItemListener, Cl
   private final ButtonPanel buttonPanel = new ButtonPanel();
 
   private AudioPlayer player;
-  private AudioBuffer audioBuffer = null;
+  private byte[] audioData = null;     // source data, decoded on demand
   private JButton bPlay, bStop;
   private JMenuItem miExport, miConvert;
   private JPanel panel;
@@ -91,8 +91,7 @@ public void itemStateChanged(ItemEvent event)
         if (fileName.lastIndexOf('.') > 0) {
           fileName = fileName.substring(0, fileName.lastIndexOf('.')) + ".WAV";
         }
-        ByteBuffer buffer = StreamUtils.getByteBuffer(audioBuffer.getAudioData());
-        ResourceFactory.exportResource(entry, buffer, fileName, panel.getTopLevelAncestor());
+        exportAsWav(fileName);
       }
     }
   }
@@ -109,7 +108,7 @@ public void close() throws Exception
       player.stopPlay();
       player = null;
     }
-    audioBuffer = null;
+    audioData = null;
     panel = null;
   }
 
@@ -132,9 +131,9 @@ public void run()
   {
     bPlay.setEnabled(false);
     bStop.setEnabled(true);
-    if (audioBuffer != null) {
+    if (audioData != null) {
       try {
-        player.play(audioBuffer);
+        player.play(AudioFactory.getAudioStream(audioData, 0, getOverride()));
       } catch (Exception e) {
         JOptionPane.showMessageDialog(panel, "Error during playback", "Error", JOptionPane.ERROR_MESSAGE);
         e.printStackTrace();
@@ -216,6 +215,42 @@ public Boolean doInBackground()
     }).execute();
   }
 
+  // Decodes the whole sound in a background thread and exports it as WAV file
+  private void exportAsWav(final String fileName)
+  {
+    final byte[] data = audioData;
+    final AudioBuffer.AudioOverride override = getOverride();
+    miConvert.setEnabled(false);
+    (new SwingWorker<byte[], Void>() {
+      @Override
+      public byte[] doInBackground()
+      {
+        return AudioFactory.convertAudio(data, 0, override);
+      }
+
+      @Override
+      protected void done()
+      {
+        if (isClosed()) {
+          return;
+        }
+        miConvert.setEnabled(true);
+        byte[] wavData = null;
+        try {
+          wavData = get();
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+        if (wavData != null) {
+          ByteBuffer buffer = StreamUtils.getByteBuffer(wavData);
+          ResourceFactory.exportResource(entry, buffer, fileName, panel.getTopLevelAncestor());
+        } else {
+          JOptionPane.showMessageDialog(panel, "Error converting " + entry, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+      }
+    }).execute();
+  }
+
   private synchronized void setLoaded(boolean b)
   {
     if (bPlay != null) {
@@ -236,22 +271,29 @@ private synchronized boolean isClosed()
     return isClosed;
   }
 
+  // ignore # channels in ACM headers
+  private AudioBuffer.AudioOverride getOverride()
+  {
+    if (entry.getExtension().equalsIgnoreCase("ACM")) {
+      return AudioBuffer.AudioOverride.overrideChannels(2);
+    }
+    return null;
+  }
+
   private boolean loadAudio()
   {
     try {
-      AudioBuffer.AudioOverride override = null;
-      AudioBuffer buffer = null;
+      byte[] data = null;
       synchronized (entry) {
-        // ignore # channels in ACM headers
-        if (entry.getExtension().equalsIgnoreCase("ACM")) {
-          override = AudioBuffer.AudioOverride.overrideChannels(2);
-        }
-        buffer = AudioFactory.getAudioBuffer(entry, override);
+        data = StreamUtils.toArray(entry.getResourceBuffer());
       }
-      if (buffer != null && !isClosed()) {
+      // validating audio format without decoding the whole sound
+      AudioStream stream = AudioFactory.getAudioStream(data, 0, getOverride());
+      if (stream != null && !isClosed()) {
+        stream.close();
         synchronized (this) {
-          audioBuffer = buffer;
-          isWAV = (audioBuffer instanceof WavBuffer);
+          audioData = data;
+          isWAV = AudioFactory.isWav(data, 0);
           isReference = (entry.getExtension().compareToIgnoreCase("WAV") == 0);
         }
         setLoaded(true);
@@ -32,12 +32,33 @@ public WavcBuffer(byte[] buffer, int offset, AudioOverride override) throws Exce
     super(buffer, offset, override);
   }
 
+  /**
+   * Returns a stream which decodes the specified WAVC data on demand.
+   * @param buffer Buffer containing WAVC audio data.
+   * @param offset Start offset into buffer.
+   * @param override An optional override object to force certain properties of the audio format.
+   */
+  static AudioStream createStream(byte[] buffer, int offset, AudioOverride override) throws Exception
+  {
+    return AcmBuffer.createStream(buffer, offset + parseHeader(buffer, offset, override), override);
+  }
+
 //--------------------- Begin Class AudioBuffer ---------------------
 
   @Override
   protected void convert(byte[] buffer, int offset, AudioOverride override) throws Exception
   {
-    // parsing WAVC buffer
+    int acmOfs = parseHeader(buffer, offset, override);
+
+    // let AcmBuffer handle the remaining data
+    super.convert(buffer, offset + acmOfs, override);
+  }
+
+//--------------------- End Class AudioBuffer ---------------------
+
+  // Parses the WAVC header, updates the override object and returns the relative offset of the ACM data
+  private static int parseHeader(byte[] buffer, int offset, AudioOverride override) throws Exception
+  {
     if (!new String(buffer, 0, 4).equals("WAVC"))
       throw new Exception("Invalid WAVC header");
     if (!new String(buffer, 4, 4).equals("V1.0"))
@@ -65,10 +86,6 @@ protected void convert(byte[] buffer, int offset, AudioOverride override) throws
       if (override.bitsPerSample < 0)
         override.bitsPerSample = bitsPerSample;
     }
-
-    // let AcmBuffer handle the remaining data
-    super.convert(buffer, offset + acmOfs, override);
+    return acmOfs;
   }
-
-//--------------------- Begin Class AudioBuffer ---------------------
 }
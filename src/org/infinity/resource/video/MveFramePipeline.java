@@ -0,0 +1,346 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.video;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.infinity.util.TaskEngine;
+import org.monte.media.Buffer;
+import org.monte.media.BufferFlag;
+import org.monte.media.Codec;
+import org.monte.media.Format;
+import org.monte.media.FormatKeys;
+import org.monte.media.VideoFormatKeys;
+import org.monte.media.jpeg.JPEGCodec;
+
+/**
+ * Decodes the remaining frames of a MVE video ahead of the consumer and encodes video frames
+ * for MJPG video streams.
+ * <p>
+ * The decoder runs as a task of the shared {@link TaskEngine} and passes copies of the decoded
+ * frames through a bounded queue. Color conversion and encoding of the video frames are performed
+ * in parallel by the same pool. Frames are returned in decoding order.
+ * <p>
+ * When the pipeline is used by a worker of the shared pool, e.g. by a mass export operation which
+ * already converts several videos in parallel, all frames are decoded and encoded by the calling
+ * thread instead. Otherwise the caller might wait for tasks which are queued behind itself.
+ */
+final class MveFramePipeline implements AutoCloseable
+{
+  // Timeout for queue operations before checking for a stop request, in milliseconds
+  private static final long POLL_INTERVAL = 50L;
+
+  // marks the end of the video
+  private static final Frame END = new Frame(false, null, null);
+
+  private final MveDecoder decoder;
+  private final Format videoFormat;
+  private final BlockingQueue<Frame> queue;
+  private final TaskEngine.Batch batch;
+  private final Future<Void> decoderTask;
+
+  private boolean started;
+  private volatile boolean stopped;
+  private volatile Exception error;
+
+  /**
+   * Starts decoding the specified video. The first frame returned by the pipeline is the frame
+   * which has been processed most recently by the decoder. The decoder must not be used
+   * by the caller until the pipeline has been closed.
+   * @param decoder The MVE decoder. A video output must be connected to the decoder.
+   * @param videoFormat Format of the MJPG video track the encoded frames are written to.
+   */
+  public MveFramePipeline(MveDecoder decoder, Format videoFormat)
+  {
+    if (decoder == null || videoFormat == null) {
+      throw new NullPointerException();
+    }
+    this.decoder = decoder;
+    this.videoFormat = videoFormat;
+    if (ForkJoinTask.inForkJoinPool()) {
+      this.queue = null;
+      this.batch = null;
+      this.decoderTask = null;
+    } else {
+      this.queue = new ArrayBlockingQueue<>(2 * TaskEngine.getParallelism() + 2);
+      this.batch = TaskEngine.createBatch();
+      this.decoderTask = TaskEngine.submit(() -> { decode(); return null; });
+    }
+  }
+
+  /**
+   * Returns the next frame, waiting for its video data to be encoded.
+   * @return The next frame, or {@code null} if no more frames are available.
+   * @throws Exception If the video could not be decoded or encoded.
+   */
+  public Frame next() throws Exception
+  {
+    if (decoderTask == null) {
+      // decoding and encoding by the calling thread
+      Frame frame = stopped ? null : readFrame();
+      if (frame != null) {
+        frame.encode(videoFormat);
+        frame.await();
+      }
+      return frame;
+    }
+
+    final Frame[] taken = new Frame[1];
+    if (!block(timeout -> (taken[0] = queue.poll(timeout, TimeUnit.MILLISECONDS)) != null)) {
+      return null;
+    }
+    Frame frame = taken[0];
+    if (frame == END) {
+      if (error != null) {
+        throw error;
+      }
+      return null;
+    }
+    frame.await();
+    return frame;
+  }
+
+  /** Stops decoding and waits for pending tasks to finish. */
+  @Override
+  public void close()
+  {
+    stopped = true;
+    if (decoderTask != null) {
+      try {
+        decoderTask.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        e.printStackTrace();
+      }
+      batch.await();
+      queue.clear();
+    }
+  }
+
+  // Decoder task: processes frames until the end of the video
+  private void decode()
+  {
+    try {
+      Frame frame;
+      while (!stopped && (frame = readFrame()) != null) {
+        if (frame.hasVideo()) {
+          final Frame f = frame;
+          batch.submit(() -> f.encode(videoFormat));
+        }
+        if (!put(frame)) {
+          return;
+        }
+      }
+    } catch (Exception e) {
+      error = e;
+    }
+    put(END);
+  }
+
+  // Returns the next decoded frame with a copy of its video data, or null at the end of the video.
+  private Frame readFrame() throws Exception
+  {
+    if (started && !decoder.processNextFrame()) {
+      return null;
+    }
+    started = true;
+    BufferedImage image = null;
+    if (decoder.frameHasVideo()) {
+      // the video buffer is reused for the next frame
+      image = copyOf((BufferedImage)decoder.getVideoOutput().frontBuffer());
+    }
+    return new Frame(image != null, decoder.getAudioOutput(0).getNextData(), image);
+  }
+
+  // Adds the frame to the queue. Returns false if the pipeline has been stopped.
+  private boolean put(Frame frame)
+  {
+    try {
+      return block(timeout -> queue.offer(frame, timeout, TimeUnit.MILLISECONDS));
+    } catch (InterruptedException e) {
+      stopped = true;
+      return false;
+    }
+  }
+
+  // Repeats the specified queue operation until it succeeds or the pipeline has been stopped.
+  // Allows the shared pool to compensate for the blocked thread if called by one of its workers.
+  // Returns false if the pipeline has been stopped.
+  private boolean block(QueueOperation operation) throws InterruptedException
+  {
+    class Blocker implements ForkJoinPool.ManagedBlocker
+    {
+      private boolean done;
+
+      @Override
+      public boolean block() throws InterruptedException
+      {
+        if (!done && !stopped) {
+          done = operation.tryRun(POLL_INTERVAL);
+        }
+        return isReleasable();
+      }
+
+      @Override
+      public boolean isReleasable()
+      {
+        return done || stopped;
+      }
+    }
+
+    Blocker blocker = new Blocker();
+    ForkJoinPool.managedBlock(blocker);
+    return blocker.done;
+  }
+
+  private static BufferedImage copyOf(BufferedImage image)
+  {
+    BufferedImage copy = new BufferedImage(image.getColorModel(), image.getRaster().createCompatibleWritableRaster(),
+                                           image.isAlphaPremultiplied(), null);
+    DataBuffer src = image.getRaster().getDataBuffer();
+    DataBuffer dst = copy.getRaster().getDataBuffer();
+    if (src instanceof DataBufferInt && dst instanceof DataBufferInt) {
+      int[] srcData = ((DataBufferInt)src).getData();
+      System.arraycopy(srcData, 0, ((DataBufferInt)dst).getData(), 0, srcData.length);
+    } else {
+      image.copyData(copy.getRaster());
+    }
+    return copy;
+  }
+
+  // Creates a MJPG encoder configured in the same way as the encoder of the AVIWriter
+  private static Codec createEncoder(Format videoFormat)
+  {
+    Codec codec = new JPEGCodec();
+    codec.setInputFormat(videoFormat.prepend(VideoFormatKeys.EncodingKey, VideoFormatKeys.ENCODING_BUFFERED_IMAGE,
+                                             VideoFormatKeys.DataClassKey, BufferedImage.class));
+    if (codec.setOutputFormat(videoFormat.prepend(VideoFormatKeys.MimeTypeKey, FormatKeys.MIME_AVI,
+                                                  VideoFormatKeys.DataClassKey, byte[].class)) == null) {
+      throw new UnsupportedOperationException("Unsupported video format: " + videoFormat);
+    }
+    return codec;
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Data of a single decoded frame. */
+  public static final class Frame
+  {
+    private final boolean hasVideo;
+    private final byte[] audio;
+    private BufferedImage image;
+    private byte[] video;
+    private Exception error;
+    private boolean done;
+
+    private Frame(boolean hasVideo, byte[] audio, BufferedImage image)
+    {
+      this.hasVideo = hasVideo;
+      this.audio = audio;
+      this.image = image;
+      this.done = !hasVideo;
+    }
+
+    /** Returns whether the frame contains video data. */
+    public boolean hasVideo()
+    {
+      return hasVideo;
+    }
+
+    /** Returns the MJPG encoded video frame, or {@code null} if the frame contains no video data. */
+    public byte[] getVideo()
+    {
+      return video;
+    }
+
+    /** Returns the decoded audio block, or {@code null} if the frame contains no audio data. */
+    public byte[] getAudio()
+    {
+      return audio;
+    }
+
+    private void encode(Format videoFormat)
+    {
+      if (!hasVideo) {
+        return;
+      }
+      byte[] data = null;
+      Exception ex = null;
+      try {
+        MveResource.adjustColorSpace(image);
+        Buffer in = new Buffer();
+        Buffer out = new Buffer();
+        Codec codec = createEncoder(videoFormat);
+        in.format = codec.getInputFormat();
+        in.data = image;
+        if (codec.process(in, out) == Codec.CODEC_OK && !out.isFlag(BufferFlag.DISCARD)) {
+          data = (byte[])out.data;
+          if (out.offset != 0 || out.length != data.length) {
+            data = Arrays.copyOfRange(data, out.offset, out.offset + out.length);
+          }
+        }
+      } catch (Exception e) {
+        ex = e;
+      } finally {
+        synchronized (this) {
+          image = null;
+          video = data;
+          error = (data == null && ex == null) ? new Exception("Error encoding video frame") : ex;
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+
+    private void await() throws Exception
+    {
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException
+        {
+          synchronized (Frame.this) {
+            while (!done) {
+              Frame.this.wait();
+            }
+          }
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable()
+        {
+          synchronized (Frame.this) {
+            return done;
+          }
+        }
+      });
+      synchronized (this) {
+        if (error != null) {
+          throw error;
+        }
+      }
+    }
+  }
+
+  /** A queue operation which gives up after the specified timeout. */
+  @FunctionalInterface
+  private interface QueueOperation
+  {
+    /** Returns {@code true} if the operation succeeded within the specified number of milliseconds. */
+    boolean tryRun(long timeout) throws InterruptedException;
+  }
+}
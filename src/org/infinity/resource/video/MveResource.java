@@ -429,44 +429,45 @@ AudioFormatKeys.SampleRateKey, new Rational(sampleRate),
           writer.writeSample(trackAudio, buffer, 0, buffer.length, true);
         }
 
-        // writing regular frame data
-        do {
-          if (!silent && frameIdx % 10 == 0) {
-            pm.setNote(String.format("Processing frame %1$d", frameIdx));
-          }
+        // writing regular frame data, decoding and encoding of frames run ahead of the writer
+        try (MveFramePipeline pipeline = new MveFramePipeline(decoder, videoFormat)) {
+          MveFramePipeline.Frame frame;
+          while ((frame = pipeline.next()) != null) {
+            if (!silent && frameIdx % 10 == 0) {
+              pm.setNote(String.format("Processing frame %1$d", frameIdx));
+            }
 
-          if (decoder.frameHasVideo()) {
-            BufferedImage image = (BufferedImage)decoder.getVideoOutput().frontBuffer();
-            adjustColorSpace(image);
-            writer.write(trackVideo, image, 1);
-            image = null;
-          }
+            if (frame.hasVideo()) {
+              byte[] video = frame.getVideo();
+              writer.writeSample(trackVideo, video, 0, video.length, true);
+            }
 
-          byte[] buffer = decoder.getAudioOutput(0).getNextData();
-          if (buffer == null) {
-            buffer = defaultBuffer;
-          }
-          writer.writeSample(trackAudio, buffer, 0, buffer.length, true);
+            byte[] buffer = frame.getAudio();
+            if (buffer == null) {
+              buffer = defaultBuffer;
+            }
+            writer.writeSample(trackAudio, buffer, 0, buffer.length, true);
 
-          frameIdx++;
+            frameIdx++;
 
-          if (!silent && pm.isCanceled()) {
-            if (writer != null) {
-              writer.close();
-              writer = null;
-            }
-            if (Files.isRegularFile(outFile)) {
-              try {
-                Files.delete(outFile);
-              } catch (IOException e) {
-                e.printStackTrace();
+            if (!silent && pm.isCanceled()) {
+              if (writer != null) {
+                writer.close();
+                writer = null;
               }
+              if (Files.isRegularFile(outFile)) {
+                try {
+                  Files.delete(outFile);
+                } catch (IOException e) {
+                  e.printStackTrace();
+                }
+              }
+              JOptionPane.showMessageDialog(parent, "Conversion has been cancelled.",
+                                            "Information", JOptionPane.INFORMATION_MESSAGE);
+              return true;
             }
-            JOptionPane.showMessageDialog(parent, "Conversion has been cancelled.",
-                                          "Information", JOptionPane.INFORMATION_MESSAGE);
-            return true;
           }
-        } while (decoder.processNextFrame());
+        }
 
         if (!silent) {
           pm.setProgress(2);
@@ -501,7 +502,7 @@ AudioFormatKeys.SampleRateKey, new Rational(sampleRate),
   }
 
   // Reduces color range from [0, 255] to [16, 235] to conform to CCIR-601 standard.
-  private static void adjustColorSpace(BufferedImage image)
+  static void adjustColorSpace(BufferedImage image)
   {
     if (image != null) {
       if (image.getRaster().getDataBuffer().getDataType() == DataBuffer.TYPE_INT) {
@@ -16,7 +16,6 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -31,12 +30,13 @@
 import org.infinity.gui.ViewerUtil;
 import org.infinity.icon.Icons;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 abstract class AbstractReferenceSearcher implements Runnable, ActionListener
 {
@@ -238,7 +238,6 @@ public void run()
     try {
       // executing multithreaded search
       boolean isCancelled = false;
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       String type = "";
       progressIndex = 0;
       progress = new ProgressMonitor(parent, "Searching...",
@@ -246,6 +245,8 @@ public void run()
                                      0, files.size());
       progress.setMillisToDecideToPopup(100);
       Debugging.timerReset();
+      ReferenceIndex.Query query = getIndexQuery();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
         ResourceEntry entry = files.get(i);
         if (i % 10 == 0) {
@@ -255,28 +256,24 @@ public void run()
             progress.setNote(String.format(FMT_PROGRESS, type));
           }
         }
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(entry));
-        if (progress.isCanceled()) {
+        if (!ReferenceIndex.isCandidate(entry, query)) {
+          // resource is known to contain no references to the target
+          advanceProgress(false);
+          if (batch.isCancelled()) {
+            isCancelled = true;
+            break;
+          }
+          continue;
+        }
+        if (!batch.submit(new Worker(entry))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -287,6 +284,7 @@ public void run()
       }
     } finally {
       advanceProgress(true);
+      ReferenceIndex.save();
     }
     Debugging.timerShow("Search completed", Debugging.TimeFormat.MILLISECONDS);
   }
@@ -300,6 +298,15 @@ synchronized void addHit(ResourceEntry entry, String name, StructEntry ref)
 
   abstract void search(ResourceEntry entry, Resource resource);
 
+  /**
+   * Returns the references a resource has to contain to be searched. Resources which are known
+   * to contain none of them are skipped. Returns {@code null} to search all resources.
+   */
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return null;
+  }
+
   ResourceEntry getTargetEntry()
   {
     return targetEntry;
@@ -428,8 +435,9 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        Resource resource = ResourceFactory.getResource(entry);
+        Resource resource = ResourceCache.get(entry);
         if (resource != null) {
+          ReferenceIndex.update(entry, resource);
           search(entry, resource);
         }
       }
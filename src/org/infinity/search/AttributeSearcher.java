@@ -15,7 +15,6 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
@@ -35,12 +34,13 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.dlg.AbstractCode;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class AttributeSearcher implements Runnable, ActionListener
 {
@@ -225,36 +225,23 @@ public void run()
       boolean isCancelled = false;
       inputFrame.setVisible(false);
       resultFrame = new ReferenceHitFrame(title, parent);
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       progressIndex = 0;
       progress = new ProgressMonitor(parent, "Searching...",
                                      String.format(FMT_PROGRESS, files.size(), files.size()),
                                      0, files.size());
       progress.setMillisToDecideToPopup(100);
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(files.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(files.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -323,7 +310,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        AbstractStruct resource = (AbstractStruct)ResourceFactory.getResource(entry);
+        AbstractStruct resource = (AbstractStruct)ResourceCache.get(entry);
         if (resource != null) {
           List<StructEntry> flatList = resource.getFlatList();
           for (int j = 0; j < flatList.size(); j++) {
@@ -16,7 +16,6 @@
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -35,6 +34,7 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.bcs.Compiler;
@@ -43,7 +43,7 @@
 import org.infinity.resource.dlg.Action;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class DialogSearcher implements Runnable, ActionListener
 {
@@ -170,7 +170,6 @@ public void run()
       boolean isCancelled = false;
       inputFrame.setVisible(false);
       resultFrame = new ReferenceHitFrame(term, parent);
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       progressIndex = 0;
       progress = new ProgressMonitor(parent, "Searching...",
                                      String.format(FMT_PROGRESS, files.size(), files.size()),
@@ -178,30 +177,18 @@ public void run()
       progress.setNote(String.format(FMT_PROGRESS, progressIndex, files.size()));
       progress.setMillisToDecideToPopup(100);
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(files.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(files.get(i)))) {
           isCancelled = true;
   //        JOptionPane.showMessageDialog(parent, "Search canceled", "Info", JOptionPane.INFORMATION_MESSAGE);
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -279,7 +266,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        Resource resource = ResourceFactory.getResource(entry);
+        Resource resource = ResourceCache.get(entry);
         if (resource != null) {
           Map<StructEntry, StructEntry> searchMap = makeSearchMap((AbstractStruct)resource);
           for (final StructEntry searchEntry : searchMap.keySet()) {
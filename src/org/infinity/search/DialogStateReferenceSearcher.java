@@ -22,6 +22,12 @@ public DialogStateReferenceSearcher(ResourceEntry targetEntry, int stateNr, Comp
     targetStateNr = stateNr;
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return new ReferenceIndex.Query().addResource(targetEntry.getResourceName());
+  }
+
   @Override
   void search(ResourceEntry entry, Resource resource)
   {
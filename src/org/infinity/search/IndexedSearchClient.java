@@ -0,0 +1,20 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+/**
+ * A {@link SearchClient} which is able to narrow down the list of entries to check
+ * by a text search.
+ */
+public interface IndexedSearchClient extends SearchClient
+{
+  /**
+   * Returns the sorted indices of all entries that may contain the specified text.
+   * Entries not included in the returned array are guaranteed not to contain the text
+   * (case-insensitive). Returns {@code null} if no candidates could be determined, in which case
+   * all entries have to be checked.
+   */
+  int[] getCandidates(String text);
+}
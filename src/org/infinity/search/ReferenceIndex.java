@@ -0,0 +1,291 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.infinity.datatype.ProRef;
+import org.infinity.datatype.ResourceRef;
+import org.infinity.datatype.Song2daBitmap;
+import org.infinity.datatype.StringRef;
+import org.infinity.datatype.TextString;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Resource;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.bcs.BcsResource;
+import org.infinity.resource.bcs.Compiler;
+import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.dlg.AbstractCode;
+import org.infinity.resource.dlg.Action;
+import org.infinity.resource.key.ResourceDataIndex;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.text.PlainTextResource;
+
+/**
+ * Persistent cross-reference index of the current game.
+ * <p>
+ * For each indexed resource the index stores the set of referenced resource names, strrefs,
+ * song indices and words of embedded script code or text. Reference searchers use it to skip
+ * resources which cannot contain a match without parsing them. Entries are keyed by the last
+ * modification time and size of the resource location and are updated whenever a resource is
+ * parsed by a search or saved by {@code ResourceFactory.saveResource()}.
+ */
+public final class ReferenceIndex
+{
+  // Maps resource locations to reference keys
+  private static final ResourceDataIndex INDEX = new ResourceDataIndex("NIXR", 1, "references.idx");
+
+  // Prefixes of special reference keys (characters that are not valid in resource names)
+  private static final String PREFIX_STRREF = ":S";
+  private static final String PREFIX_SONG   = ":M";
+
+  // Resource types which are covered by the index
+  private static final Set<String> INDEXED_TYPES = new HashSet<>(Arrays.asList(
+      "2DA", "ARE", "BCS", "BS", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "INI", "ITM", "PRO",
+      "SPL", "STO", "VEF", "VVC", "WED", "WMP"));
+
+  /** Returns whether resources of the specified type are covered by the index. */
+  public static boolean isIndexed(ResourceEntry entry)
+  {
+    return (entry != null && INDEXED_TYPES.contains(entry.getExtension().toUpperCase(Locale.ENGLISH)));
+  }
+
+  /**
+   * Returns whether the specified resource has to be searched for the given query.
+   * Returns {@code true} if the resource is not covered by the index or if the index entry
+   * is missing or outdated.
+   */
+  public static boolean isCandidate(ResourceEntry entry, Query query)
+  {
+    if (query == null || !isIndexed(entry)) {
+      return true;
+    }
+    String[] keys = INDEX.get(entry);
+    return (keys == null || query.matches(keys));
+  }
+
+  /**
+   * Updates the index entry of the specified resource if it is missing or outdated.
+   * @param entry The resource entry.
+   * @param resource The parsed resource of {@code entry}.
+   */
+  public static void update(ResourceEntry entry, Resource resource)
+  {
+    if (!isIndexed(entry) || resource == null) {
+      return;
+    }
+    if (INDEX.get(entry) == null) {
+      try {
+        INDEX.put(entry, extractKeys(resource));
+      } catch (Exception e) {
+        INDEX.remove(entry);
+      }
+    }
+  }
+
+  /** Removes the index entry of the specified resource, e.g. after it has been modified. */
+  public static void invalidate(ResourceEntry entry)
+  {
+    if (isIndexed(entry)) {
+      INDEX.remove(entry);
+    }
+  }
+
+  /** Writes the index of the current game to disk if it has been modified. */
+  public static void save()
+  {
+    INDEX.writeIndex();
+  }
+
+  /** Removes all entries from memory. Called whenever a new game is opened. */
+  public static void clearCache()
+  {
+    INDEX.clearIndex();
+  }
+
+  // Collects all reference keys of the specified resource
+  private static String[] extractKeys(Resource resource)
+  {
+    Set<String> keys = new HashSet<>();
+    if (resource instanceof BcsResource) {
+      Decompiler decompiler = new Decompiler(((BcsResource)resource).getCode(), true);
+      String code = decompiler.decompile();
+      addResources(keys, decompiler.getResourcesUsed());
+      addWords(keys, code);
+    } else if (resource instanceof PlainTextResource) {
+      addWords(keys, ((PlainTextResource)resource).getText());
+    } else if (resource instanceof AbstractStruct) {
+      for (final StructEntry e: ((AbstractStruct)resource).getFlatList()) {
+        if (e instanceof ResourceRef) {
+          addResource(keys, ((ResourceRef)e).getResourceName());
+        } else if (e instanceof ProRef) {
+          addResource(keys, ((ProRef)e).getResourceName());
+        } else if (e instanceof Song2daBitmap) {
+          keys.add(PREFIX_SONG + ((Song2daBitmap)e).getValue());
+        } else if (e instanceof StringRef) {
+          keys.add(PREFIX_STRREF + ((StringRef)e).getValue());
+        } else if (e instanceof TextString) {
+          keys.add(e.toString().toUpperCase(Locale.ENGLISH));
+          addWords(keys, e.toString());
+        } else if (e instanceof AbstractCode) {
+          addCode(keys, (AbstractCode)e);
+        }
+      }
+    }
+
+    String[] retVal = new String[keys.size()];
+    int i = 0;
+    for (final String key: keys) {
+      retVal[i++] = key.intern();
+    }
+    return retVal;
+  }
+
+  // Adds resources referenced by a dialog trigger or action
+  private static void addCode(Set<String> keys, AbstractCode code)
+  {
+    String text = code.getText();
+    addWords(keys, text);
+    try {
+      Compiler compiler = new Compiler(text, (code instanceof Action) ? Compiler.ScriptType.ACTION :
+                                                                        Compiler.ScriptType.TRIGGER);
+      String compiled = compiler.getCode();
+      if (compiler.getErrors().size() == 0) {
+        Decompiler decompiler = new Decompiler(compiled, true);
+        decompiler.setScriptType((code instanceof Action) ? Decompiler.ScriptType.ACTION :
+                                                            Decompiler.ScriptType.TRIGGER);
+        decompiler.decompile();
+        addResources(keys, decompiler.getResourcesUsed());
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static void addResources(Set<String> keys, Collection<ResourceEntry> resources)
+  {
+    for (final ResourceEntry entry: resources) {
+      addResource(keys, entry.getResourceName());
+    }
+  }
+
+  private static void addResource(Set<String> keys, String resName)
+  {
+    if (resName != null && !resName.isEmpty()) {
+      keys.add(getResRef(resName));
+    }
+  }
+
+  private static void addWords(Set<String> keys, String text)
+  {
+    keys.addAll(getWords(text));
+  }
+
+  // Returns the upper case resource name without extension
+  private static String getResRef(String resName)
+  {
+    int idx = resName.lastIndexOf('.');
+    if (idx >= 0) {
+      resName = resName.substring(0, idx);
+    }
+    return resName.toUpperCase(Locale.ENGLISH);
+  }
+
+  // Splits text into upper case words, using the same word characters as regex word boundaries
+  private static List<String> getWords(String text)
+  {
+    List<String> list = new ArrayList<>();
+    if (text != null) {
+      int start = -1;
+      for (int i = 0, len = text.length(); i <= len; i++) {
+        char ch = (i < len) ? text.charAt(i) : ' ';
+        if (Character.isLetterOrDigit(ch) || ch == '_') {
+          if (start < 0) {
+            start = i;
+          }
+        } else if (start >= 0) {
+          list.add(text.substring(start, i).toUpperCase(Locale.ENGLISH));
+          start = -1;
+        }
+      }
+    }
+    return list;
+  }
+
+  private ReferenceIndex() {}
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /**
+   * Describes the references a resource has to contain to be considered by a search.
+   * A resource matches if it contains all keys of at least one added alternative.
+   */
+  public static final class Query
+  {
+    private final Set<String> singleKeys = new HashSet<>();
+    private final List<List<String>> multiKeys = new ArrayList<>();
+
+    /** Matches references to the specified resource name. The extension is ignored. */
+    public Query addResource(String resName)
+    {
+      if (resName != null && !resName.isEmpty()) {
+        singleKeys.add(getResRef(resName));
+      }
+      return this;
+    }
+
+    /** Matches the specified strref. */
+    public Query addStrref(int strref)
+    {
+      singleKeys.add(PREFIX_STRREF + strref);
+      return this;
+    }
+
+    /** Matches the specified song index. */
+    public Query addSong(long songId)
+    {
+      singleKeys.add(PREFIX_SONG + songId);
+      return this;
+    }
+
+    /** Matches scripts and text containing all words of the specified text (case-insensitive). */
+    public Query addWords(String text)
+    {
+      // text without any words matches all resources
+      List<String> words = getWords(text);
+      if (words.size() == 1) {
+        singleKeys.add(words.get(0));
+      } else {
+        multiKeys.add(words);
+      }
+      return this;
+    }
+
+    private boolean matches(String[] keys)
+    {
+      for (final String key: keys) {
+        if (singleKeys.contains(key)) {
+          return true;
+        }
+      }
+      if (!multiKeys.isEmpty()) {
+        Set<String> set = new HashSet<>(Arrays.asList(keys));
+        for (final List<String> words: multiKeys) {
+          if (set.containsAll(words)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -70,6 +70,22 @@ protected void search(ResourceEntry entry, Resource resource)
     }
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    String name = getTargetEntry().getResourceName();
+    int idx = name.lastIndexOf('.');
+    if (idx > 0) {
+      name = name.substring(0, idx);
+    }
+    ReferenceIndex.Query query = new ReferenceIndex.Query();
+    query.addResource(name).addWords(name).addWords("AP_" + name).addWords("GA_" + name);
+    if (targetEntryName != null) {
+      query.addWords(targetEntryName);
+    }
+    return query;
+  }
+
   private void searchDialog(ResourceEntry entry, AbstractStruct dialog)
   {
     boolean hit = false;
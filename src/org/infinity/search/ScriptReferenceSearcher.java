@@ -53,6 +53,12 @@ protected void search(ResourceEntry entry, Resource resource)
     }
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return new ReferenceIndex.Query().addResource(targetResRef).addWords(targetResRef);
+  }
+
   private void searchStruct(ResourceEntry entry, AbstractStruct struct)
   {
     for (int i = 0; i < struct.getFieldCount(); i++) {
@@ -206,7 +206,18 @@ public void run()
     cbwhole.setEnabled(false);
     cbcase.setEnabled(false);
     tfinput.setEnabled(false);
+    // indexed clients only need to check entries containing all words of the search text
+    int[] candidates = null;
+    int pos = 0;
+    if (!cbregex.isSelected() && slave instanceof IndexedSearchClient) {
+      candidates = ((IndexedSearchClient)slave).getCandidates(tfinput.getText());
+    }
     while (true) {
+      if (candidates != null) {
+        if (pos < 0 || pos >= candidates.length)
+          break;
+        index = candidates[pos];
+      }
       String s = slave.getText(index);
       if (s == null)
         break;
@@ -228,10 +239,13 @@ public void run()
           break;
         }
       }
-      if (rbdown.isSelected())
+      if (rbdown.isSelected()) {
         index++;
-      else
+        pos++;
+      } else {
         index--;
+        pos--;
+      }
     }
     blocker.setBlocked(false);
     bnext.setEnabled(true);
@@ -28,8 +28,6 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
 import javax.swing.ComboBoxEditor;
@@ -99,6 +97,7 @@
 import org.infinity.util.Misc;
 import org.infinity.util.Pair;
 import org.infinity.util.SimpleListModel;
+import org.infinity.util.TaskEngine;
 import org.infinity.util.io.StreamUtils;
 
 public class SearchResource extends ChildFrame
@@ -249,19 +248,13 @@ public void run()
           SearchOptions so = panel.getOptions();
 
           // using parallel jobs to speed up search
-          ThreadPoolExecutor executor = Misc.createThreadPool();
+          TaskEngine.Batch batch = TaskEngine.createBatch();
           for (int i = 0; i < resources.size(); i++) {
-            Misc.isQueueReady(executor, true, -1);
-            executor.execute(new SearchWorker(found, so, resources.get(i)));
+            batch.submit(new SearchWorker(found, so, resources.get(i)));
           }
 
-          // waiting for threads to finish
-          executor.shutdown();
-          try {
-            executor.awaitTermination(60, TimeUnit.SECONDS);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-          }
+          // waiting for tasks to finish
+          batch.await();
 
           // preparing results for output
           listResults.ensureIndexIsVisible(0);
@@ -34,6 +34,7 @@ public class SongReferenceSearcher extends AbstractReferenceSearcher
 
   private long songId;
   private ResourceEntry songEntry;
+  private String musicId;
 
   public SongReferenceSearcher(ResourceEntry targetEntry, Component parent)
   {
@@ -56,6 +57,19 @@ protected void search(ResourceEntry entry, Resource resource)
     }
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    ReferenceIndex.Query query = new ReferenceIndex.Query();
+    if (songId >= 0) {
+      query.addSong(songId).addWords(Long.toString(songId));
+      if (musicId != null && !musicId.isEmpty()) {
+        query.addWords(musicId);
+      }
+    }
+    return query;
+  }
+
   private void searchBcs(ResourceEntry entry, BcsResource bcs)
   {
     Decompiler decompiler = new Decompiler(bcs.getCode(), true);
@@ -130,7 +144,7 @@ private void init(ResourceEntry targetEntry)
           map = IdsMapCache.get("MUSIC.IDS");
         }
         if (map != null && map.getMap().containsKey(Long.valueOf(songId))) {
-          String musicId = map.getMap().get(Long.valueOf(songId)).getString();
+          musicId = map.getMap().get(Long.valueOf(songId)).getString();
           scriptActions.add(Pattern.compile("SetMusic\\(.+?," + Long.toString(songId) + "\\)"));
           if (musicId != null && !musicId.isEmpty()) {
             scriptActions.add(Pattern.compile("SetMusic\\(.+?," + musicId + "\\)"));
@@ -16,7 +16,6 @@
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -31,11 +30,11 @@
 import org.infinity.gui.Center;
 import org.infinity.gui.ChildFrame;
 import org.infinity.icon.Icons;
-import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.ResourceCache;
 import org.infinity.resource.TextResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.Debugging;
-import org.infinity.util.Misc;
+import org.infinity.util.TaskEngine;
 
 public final class TextResourceSearcher implements Runnable, ActionListener
 {
@@ -165,7 +164,6 @@ public void run()
       boolean isCancelled = false;
       inputFrame.setVisible(false);
       resultFrame = new TextHitFrame(term, parent);
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       progressIndex = 0;
       progress = new ProgressMonitor(parent, "Searching...",
                                      String.format(FMT_PROGRESS, files.size(), files.size()),
@@ -173,29 +171,17 @@ public void run()
       progress.setNote(String.format(FMT_PROGRESS, progressIndex, files.size()));
       progress.setMillisToDecideToPopup(100);
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0; i < files.size(); i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(files.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(files.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -258,7 +244,7 @@ public Worker(ResourceEntry entry)
     public void run()
     {
       if (entry != null) {
-        TextResource resource = (TextResource)ResourceFactory.getResource(entry);
+        TextResource resource = (TextResource)ResourceCache.get(entry);
         if (resource != null) {
           BufferedReader br = new BufferedReader(new StringReader(resource.getText()));
           try {
@@ -34,6 +34,25 @@ protected void search(ResourceEntry entry, Resource resource)
     }
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    String name = getTargetEntry().getResourceName();
+    int idx = name.lastIndexOf('.');
+    if (idx > 0) {
+      name = name.substring(0, idx);
+    }
+    ReferenceIndex.Query query = new ReferenceIndex.Query();
+    query.addResource(name).addWords(name);
+    // strings associated with the sound
+    for (int i = 0, count = StringResource.getMaxIndex(); i < count; i++) {
+      if (StringResource.hasWavResource(i) && name.equalsIgnoreCase(StringResource.getWavResource(i))) {
+        query.addStrref(i);
+      }
+    }
+    return query;
+  }
+
   private void searchStruct(ResourceEntry entry, AbstractStruct struct)
   {
     for (int i = 0; i < struct.getFieldCount(); i++) {
@@ -21,7 +21,8 @@
   private final List<IdsMapEntry> overflow = new ArrayList<IdsMapEntry>();
   private final LongIntegerHashMap<IdsMapEntry> idEntryMap = new LongIntegerHashMap<IdsMapEntry>();
   private final ResourceEntry entry;
-  private Map<String, IdsMapEntry> stringEntryMap;
+  // Maps upper case symbol names to entries, includes overflow entries
+  private final Map<String, IdsMapEntry> stringEntryMap = new HashMap<String, IdsMapEntry>();
 
   public IdsMap(ResourceEntry entry)
   {
@@ -44,20 +45,6 @@ public IdsMap(ResourceEntry entry)
           e.printStackTrace();
         }
       }
-      if (entry.toString().equalsIgnoreCase("TRIGGER.IDS")
-          || entry.toString().equalsIgnoreCase("ACTION.IDS")
-          || entry.toString().equalsIgnoreCase("OBJECT.IDS")) {
-        stringEntryMap = new HashMap<String, IdsMapEntry>();
-        for (final Object newVar : idEntryMap.values()) {
-          IdsMapEntry idsEntry = (IdsMapEntry)newVar;
-          stringEntryMap.put(idsEntry.getString().toUpperCase(Locale.ENGLISH), idsEntry);
-        }
-        for (int i = 0; i < overflow.size(); i++) {
-          IdsMapEntry idsEntry = overflow.get(i);
-          if (!stringEntryMap.containsKey(idsEntry.getString().toUpperCase(Locale.ENGLISH)))
-            stringEntryMap.put(idsEntry.getString().toUpperCase(Locale.ENGLISH), idsEntry);
-        }
-      }
     }
     else if (entry.getExtension().equalsIgnoreCase("2DA")) {
       // 3 uninteresting lines
@@ -78,6 +65,7 @@ else if (entry.getExtension().equalsIgnoreCase("2DA")) {
         }
       }
     }
+    buildIndex();
   }
 
   @Override
@@ -120,26 +108,11 @@ public IdsMapEntry getValue(long value)
 //    return new IdsMapEntry(value, String.valueOf(value), null);
   }
 
-  public IdsMapEntry lookup(String entry) // ToDo: Pretty much all compile time is spent here
+  public IdsMapEntry lookup(String entry)
   {
     if (entry.length() == 0 || entry.equals("0"))
       return null;
-    if (stringEntryMap != null) {
-      IdsMapEntry idsEntry = stringEntryMap.get(entry.toUpperCase(Locale.ENGLISH));
-      if (idsEntry != null)
-        return idsEntry;
-    }
-    for (final Object newVar : idEntryMap.values()) {
-      IdsMapEntry idsEntry = (IdsMapEntry)newVar;
-      if (idsEntry.getString().equalsIgnoreCase(entry))
-        return idsEntry;
-    }
-    for (int i = 0; i < overflow.size(); i++) {
-      IdsMapEntry idsEntry = overflow.get(i);
-      if (idsEntry.getString().equalsIgnoreCase(entry))
-        return idsEntry;
-    }
-    return null;
+    return stringEntryMap.get(entry.toUpperCase(Locale.ENGLISH));
   }
 
   public String lookupID(String entry)
@@ -153,6 +126,26 @@ public String lookupID(String entry)
     return String.valueOf(l_value);
   }
 
+  // Builds case-insensitive symbol indices over regular and overflow entries
+  private void buildIndex()
+  {
+    // regular entries of action, trigger and object definitions take precedence by highest value,
+    // all other entries by lowest value
+    boolean preferLast = entry.toString().equalsIgnoreCase("TRIGGER.IDS")
+                         || entry.toString().equalsIgnoreCase("ACTION.IDS")
+                         || entry.toString().equalsIgnoreCase("OBJECT.IDS");
+    for (final IdsMapEntry idsEntry : idEntryMap.values()) {
+      String name = idsEntry.getString().toUpperCase(Locale.ENGLISH);
+      if (preferLast || !stringEntryMap.containsKey(name))
+        stringEntryMap.put(name, idsEntry);
+    }
+    for (final IdsMapEntry idsEntry : overflow) {
+      String name = idsEntry.getString().toUpperCase(Locale.ENGLISH);
+      if (!stringEntryMap.containsKey(name))
+        stringEntryMap.put(name, idsEntry);
+    }
+  }
+
   private void extract2DA(String line)
   {
     StringTokenizer st = new StringTokenizer(line);
@@ -4,46 +4,56 @@
 
 package org.infinity.util;
 
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
 
 public final class IdsMapCache
 {
-  private static final Map<String, IdsMap> common = new HashMap<String, IdsMap>();
+  // Loaded maps are read-only and may be shared by concurrent compiler and decompiler instances
+  private static final Map<String, IdsMap> common = new ConcurrentHashMap<String, IdsMap>();
 
-  public static void cacheInvalid(ResourceEntry entry)
+  public static synchronized void cacheInvalid(ResourceEntry entry)
   {
     if (entry != null) {
       common.remove(entry.toString().toUpperCase(Locale.ENGLISH));
     }
   }
 
-  public static void clearCache()
+  public static synchronized void clearCache()
   {
     common.clear();
   }
 
-  public static synchronized IdsMap get(String name)
+  public static IdsMap get(String name)
   {
     IdsMap retVal = null;
     if (name != null) {
       name = name.trim().toUpperCase(Locale.ENGLISH);
       retVal = common.get(name);
       if (retVal == null) {
-        ResourceEntry resEntry = ResourceFactory.getResourceEntry(name);
-        if (resEntry == null && name.equals("ATTSTYLE.IDS")) {
-          resEntry = ResourceFactory.getResourceEntry("ATTSTYL.IDS");
-        }
-        if (resEntry == null) {
-          System.err.println("Could not find " + name);
-        } else {
-          retVal = new IdsMap(resEntry);
-          common.put(name, retVal);
-        }
+        retVal = load(name);
+      }
+    }
+    return retVal;
+  }
+
+  private static synchronized IdsMap load(String name)
+  {
+    IdsMap retVal = common.get(name);
+    if (retVal == null) {
+      ResourceEntry resEntry = ResourceFactory.getResourceEntry(name);
+      if (resEntry == null && name.equals("ATTSTYLE.IDS")) {
+        resEntry = ResourceFactory.getResourceEntry("ATTSTYL.IDS");
+      }
+      if (resEntry == null) {
+        System.err.println("Could not find " + name);
+      } else {
+        retVal = new IdsMap(resEntry);
+        common.put(name, retVal);
       }
     }
     return retVal;
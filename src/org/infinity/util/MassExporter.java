@@ -23,12 +23,14 @@
 import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.imageio.ImageIO;
 import javax.swing.JButton;
@@ -54,7 +56,7 @@
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.Writeable;
-import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptBatch;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.graphics.BamDecoder;
 import org.infinity.resource.graphics.BamResource;
@@ -66,7 +68,7 @@
 import org.infinity.resource.graphics.TisDecoder;
 import org.infinity.resource.graphics.TisResource;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.resource.sound.AudioFactory;
+import org.infinity.resource.sound.AudioBatch;
 import org.infinity.resource.video.MveResource;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
@@ -294,7 +296,6 @@ public void run()
 
       // executing multithreaded search
       boolean isCancelled = false;
-      ThreadPoolExecutor executor = Misc.createThreadPool();
       progress = new ProgressMonitor(NearInfinity.getInstance(), "Exporting...",
                                      String.format(FMT_PROGRESS, getResourceCount(), getResourceCount()),
                                      0, selectedFiles.size());
@@ -303,29 +304,17 @@ public void run()
       progress.setProgress(0);
       progress.setNote(String.format(FMT_PROGRESS, 0, getResourceCount()));
       Debugging.timerReset();
+      TaskEngine.Batch batch = TaskEngine.createBatch(progress::isCanceled);
       for (int i = 0, count = getResourceCount(); i < count; i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(selectedFiles.get(i)));
-        if (progress.isCanceled()) {
+        if (!batch.submit(new Worker(selectedFiles.get(i)))) {
           isCancelled = true;
           break;
         }
       }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
-
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
-        }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      // waiting for pending tasks to finish
+      if (!batch.await()) {
+        isCancelled = true;
       }
 
       if (isCancelled) {
@@ -389,13 +378,12 @@ private void exportDecompiledScript(ResourceEntry entry, Path output) throws Exc
     if (Files.exists(output) && !cbOverwrite.isSelected()) {
       return;
     }
-    ByteBuffer bb = entry.getResourceBuffer();
-    if (bb.limit() > 0) {
-      if (bb.limit() > 1 && bb.getShort(0) == -1) {
-        bb = StaticSimpleXorDecryptor.decrypt(bb, 2);
-      }
-      Decompiler decompiler = new Decompiler(StreamUtils.readString(bb, bb.limit()), false);
-      String script = decompiler.getSource();
+    ScriptBatch.Result result = ScriptBatch.decompile(entry);
+    String script = result.getOutput();
+    if (script == null) {
+      throw new Exception(String.format("Error decompiling resource: %1$s", entry.getResourceName()));
+    }
+    if (!script.isEmpty()) {
       // Keep trying. File may be in use by another thread.
       try (BufferedWriter bw = new BufferedWriter(tryOpenOutputWriter(output, 10, 100))) {
         bw.write(script.replaceAll("\r?\n", Misc.LINE_SEPARATOR));
@@ -421,11 +409,18 @@ private void decompressBamMos(ResourceEntry entry, Path output) throws Exception
 
   private void decompressWav(ResourceEntry entry, Path output) throws Exception
   {
-    ByteBuffer buffer = StreamUtils.getByteBuffer(AudioFactory.convertAudio(entry));
-    if (buffer != null && buffer.limit() > 0) {
-      // Keep trying. File may be in use by another thread.
-      try (OutputStream os = tryOpenOutputStream(output, 10, 100)) {
-        StreamUtils.writeBytes(os, buffer);
+    // Keep trying. File may be in use by another thread.
+    FileChannel ch = tryOpenOutputChannel(output, 10, 100);
+    boolean success = false;
+    try {
+      // decoded in chunks directly into the output file
+      AudioBatch.convert(entry, ch);
+      success = true;
+    } finally {
+      ch.close();
+      if (!success) {
+        // removing incomplete file
+        Files.deleteIfExists(output);
       }
     }
   }
@@ -700,6 +695,27 @@ private OutputStream tryOpenOutputStream(Path output, int numAttempts, int delay
     return null;
   }
 
+  // Attempts to open "output" as channel to the specified file "numAttempts' time with "delayAttempts" ms delay inbetween.
+  private FileChannel tryOpenOutputChannel(Path output, int numAttempts, int delayAttempts) throws Exception
+  {
+    numAttempts = Math.max(1, numAttempts);
+    delayAttempts = Math.max(0, delayAttempts);
+    FileChannel ch = null;
+    while (ch == null) {
+      try {
+        ch = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING);
+      } catch (FileSystemException fse) {
+        ch = null;
+        if (--numAttempts == 0) {
+          throw fse;
+        }
+        try { Thread.sleep(delayAttempts); } catch (InterruptedException ie) {}
+      }
+    }
+    return ch;
+  }
+
   // Attempts to open "output" as writer to the specified file "numAttempts' time with "delayAttempts" ms delay inbetween.
   private Writer tryOpenOutputWriter(Path output, int numAttempts, int delayAttempts) throws Exception
   {
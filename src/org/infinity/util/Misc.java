@@ -7,9 +7,6 @@
 import java.awt.Dimension;
 import java.nio.charset.Charset;
 import java.util.Comparator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import javax.swing.JComponent;
 
@@ -235,57 +232,6 @@ public static final long signExtend(long value, int bits)
   }
 
 
-  /**
-   * Creates a thread pool with a pool size depending on the number of available CPU cores.<br>
-   * <br>
-   * <b>numThreads:</b>   Number of available CPU cores.<br>
-   * <b>maxQueueSize:</b> 2 x {@code numThreads}.<br>
-   * @return A ThreadPoolExecutor instance.
-   */
-  public static ThreadPoolExecutor createThreadPool()
-  {
-    int numThreads = Runtime.getRuntime().availableProcessors();
-    return createThreadPool(numThreads, numThreads*2);
-  }
-
-  /**
-   * Creates a thread pool with the specified parameters.
-   * @param numThreads Max. number of parallel threads to execute. Must be >= 1.
-   * @param maxQueueSize Max. size of the working queue. Must be >= {@code numThreads}.
-   * @return A ThreadPoolExecutor instance.
-   */
-  public static ThreadPoolExecutor createThreadPool(int numThreads, int maxQueueSize)
-  {
-    numThreads = Math.max(1, numThreads);
-    maxQueueSize = Math.max(numThreads, maxQueueSize);
-    return new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
-                                  new ArrayBlockingQueue<Runnable>(maxQueueSize));
-  }
-
-  /**
-   * Helper routine which can be used to check or block execution of new threads while the
-   * blocking queue is full.
-   * @param executor The executor to query.
-   * @param block Specify {@code true} to block execution as long as the queue is full.
-   * @param maxWaitMs Specify max. time to block queue, in milliseconds. Specify -1 to block indefinitely.
-   * @return {@code true} if queue is ready for new elements, {@code false} otherwise.
-   */
-  public static boolean isQueueReady(ThreadPoolExecutor executor, boolean block, int maxWaitMs)
-  {
-    if (executor != null) {
-      if (block) {
-        if (maxWaitMs < 0) { maxWaitMs = Integer.MAX_VALUE; }
-        int curWaitMs = 0;
-        while (curWaitMs < maxWaitMs && executor.getQueue().size() > executor.getCorePoolSize()) {
-          try { Thread.sleep(1); } catch (InterruptedException e) {}
-          curWaitMs++;
-        }
-      }
-      return executor.getQueue().size() <= executor.getCorePoolSize();
-    }
-    return false;
-  }
-
   /**
    * Returns a prototype dimension object based on the height of {@code c} and the width of (@code prototype}.
    * @param c The component to derive height and properties for calculating width.
@@ -0,0 +1,314 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index over the strings of a TLK file, mapping lower case words to the strrefs
+ * of all strings containing them.
+ * <p>
+ * Indices are built in a background thread on first request and are associated with the
+ * path of the TLK file, which allows to keep indices of several languages or DLC variants at
+ * the same time. Changes made by the string editor are tracked incrementally via
+ * {@link #update(Path, String[], BitSet)}.
+ */
+public final class StringIndex
+{
+  // Maps TLK file paths to available or pending indices
+  private static final Map<Path, StringIndex> indexMap = new HashMap<>();
+
+  private final Path file;
+  private final Charset charset;
+  private String[] words;       // sorted list of all distinct words
+  private int[][] postings;     // sorted strrefs for each entry in "words"
+  private int indexedCount;     // number of strings covered by "postings"
+  private long lastModified;    // timestamp of the indexed TLK file
+  private int count;            // current number of strings
+  private boolean ready;
+  // Strings which have been modified or added after the index has been built
+  private final HashMap<Integer, String> modified = new HashMap<>();
+
+  /**
+   * Returns the index of the specified TLK file. Returns {@code null} if the index is not yet
+   * available, in which case it is built in the background.
+   */
+  public static StringIndex get(Path tlkFile)
+  {
+    return (tlkFile != null) ? get(tlkFile, StringResource.getTlkCharset()) : null;
+  }
+
+  // Returns the index of the specified TLK file, which is decoded with the given charset if needed
+  static synchronized StringIndex get(Path tlkFile, Charset charset)
+  {
+    StringIndex index = indexMap.get(tlkFile);
+    if (index != null && index.ready && index.lastModified != getLastModified(tlkFile)) {
+      // file has been modified externally
+      index = null;
+    }
+    if (index == null) {
+      final StringIndex newIndex = new StringIndex(tlkFile, charset);
+      indexMap.put(tlkFile, newIndex);
+      Thread t = new Thread(() -> newIndex.build(), "StringIndex");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      t.start();
+      return null;
+    }
+    return index.ready ? index : null;
+  }
+
+  /**
+   * Updates the index of the specified TLK file with the given strings. Only the specified
+   * strrefs and strings beyond the originally indexed range are processed.
+   * Does nothing if no index exists for the file.
+   * @param tlkFile The TLK file.
+   * @param strings The new content of the TLK file, indexed by strref.
+   * @param changed Strrefs of all strings which have been modified since the last update.
+   */
+  public static synchronized void update(Path tlkFile, String[] strings, BitSet changed)
+  {
+    StringIndex index = indexMap.get(tlkFile);
+    if (index == null || strings == null) {
+      return;
+    }
+
+    synchronized (index) {
+      if (!index.ready) {
+        // index is being built from outdated data
+        indexMap.remove(tlkFile);
+        return;
+      }
+
+      for (int i = index.indexedCount; i < strings.length; i++) {
+        index.modified.put(Integer.valueOf(i), (strings[i] != null) ? strings[i] : "");
+      }
+      if (changed != null) {
+        for (int i = changed.nextSetBit(0); i >= 0 && i < strings.length; i = changed.nextSetBit(i + 1)) {
+          index.modified.put(Integer.valueOf(i), (strings[i] != null) ? strings[i] : "");
+        }
+      }
+      index.count = strings.length;
+      index.lastModified = getLastModified(tlkFile);
+    }
+  }
+
+  /** Removes all indices. */
+  public static synchronized void clearCache()
+  {
+    indexMap.clear();
+  }
+
+  /**
+   * Splits the specified text into lower case words consisting of letters and digits only.
+   * Duplicate words are removed.
+   */
+  public static List<String> getWords(String text)
+  {
+    List<String> list = new ArrayList<>();
+    if (text != null) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0, len = text.length(); i <= len; i++) {
+        char ch = (i < len) ? text.charAt(i) : ' ';
+        if (Character.isLetterOrDigit(ch)) {
+          // converting single characters to preserve string length
+          sb.append(Character.toLowerCase(ch));
+        } else if (sb.length() > 0) {
+          String word = sb.toString();
+          if (!list.contains(word)) {
+            list.add(word);
+          }
+          sb.setLength(0);
+        }
+      }
+    }
+    return list;
+  }
+
+  /** Returns the TLK file associated with the index. */
+  public Path getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Returns the strrefs of all strings containing every word of the specified text.
+   * The result is a superset of the strings containing the text itself and can be used to
+   * limit the number of strings which have to be checked by a regular search.
+   * @param text The search text.
+   * @param wholeWords Whether words of the search text have to match whole words of the strings.
+   *                   Otherwise search words may be located anywhere within words of the strings.
+   * @return A sorted array of strrefs. Returns {@code null} if the text does not contain any words.
+   */
+  public synchronized int[] findCandidates(String text, boolean wholeWords)
+  {
+    List<String> searchWords = getWords(text);
+    if (searchWords.isEmpty()) {
+      return null;
+    }
+
+    BitSet result = null;
+    for (final String searchWord: searchWords) {
+      BitSet bits = new BitSet(count);
+      if (wholeWords) {
+        int idx = Arrays.binarySearch(words, searchWord);
+        if (idx >= 0) {
+          addPostings(bits, idx);
+        }
+      } else {
+        for (int idx = 0; idx < words.length; idx++) {
+          if (words[idx].contains(searchWord)) {
+            addPostings(bits, idx);
+          }
+        }
+      }
+      if (result == null) {
+        result = bits;
+      } else {
+        result.and(bits);
+      }
+    }
+
+    applyModifications(result, (stringWords) -> {
+      for (final String searchWord: searchWords) {
+        boolean found = false;
+        for (final String word: stringWords) {
+          if (wholeWords ? word.equals(searchWord) : word.contains(searchWord)) {
+            found = true;
+            break;
+          }
+        }
+        if (!found) {
+          return false;
+        }
+      }
+      return true;
+    });
+    return result.stream().toArray();
+  }
+
+  private StringIndex(Path file, Charset charset)
+  {
+    this.file = file;
+    this.charset = charset;
+  }
+
+  // Reads all strings from the TLK file and builds the index
+  private void build()
+  {
+    final HashMap<String, Postings> map = new HashMap<>();
+    final long timestamp = getLastModified(file);
+    final int[] numStrings = { 0 };
+    try {
+      StringResource.forEachString(file, charset, (text, strref) -> {
+        numStrings[0] = strref + 1;
+        for (final String word: getWords(text)) {
+          Postings p = map.get(word);
+          if (p == null) {
+            p = new Postings();
+            map.put(word, p);
+          }
+          p.add(strref);
+        }
+      });
+    } catch (IOException e) {
+      e.printStackTrace();
+      synchronized (StringIndex.class) {
+        if (indexMap.get(file) == this) {
+          indexMap.remove(file);
+        }
+      }
+      return;
+    }
+
+    String[] wordList = map.keySet().toArray(new String[map.size()]);
+    Arrays.sort(wordList);
+    int[][] postingList = new int[wordList.length][];
+    for (int i = 0; i < wordList.length; i++) {
+      postingList[i] = map.get(wordList[i]).toArray();
+    }
+
+    synchronized (this) {
+      this.words = wordList;
+      this.postings = postingList;
+      this.indexedCount = numStrings[0];
+      this.count = numStrings[0];
+      this.lastModified = timestamp;
+      this.ready = true;
+    }
+  }
+
+  // Adds all strrefs of the specified word to the bit set
+  private void addPostings(BitSet bits, int wordIndex)
+  {
+    for (final int strref: postings[wordIndex]) {
+      bits.set(strref);
+    }
+  }
+
+  // Replaces results of modified strings and removes results of deleted strings
+  private void applyModifications(BitSet bits, WordMatcher matcher)
+  {
+    if (bits.length() > count) {
+      bits.clear(count, bits.length());
+    }
+    for (final Map.Entry<Integer, String> entry: modified.entrySet()) {
+      int strref = entry.getKey().intValue();
+      if (strref < count) {
+        bits.set(strref, matcher.matches(getWords(entry.getValue())));
+      }
+    }
+  }
+
+  private static long getLastModified(Path file)
+  {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0L;
+    }
+  }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Determines whether the words of a string satisfy the search criteria
+  private interface WordMatcher
+  {
+    boolean matches(List<String> stringWords);
+  }
+
+  // Growable list of strrefs, added in ascending order
+  private static class Postings
+  {
+    private int[] data = new int[4];
+    private int size;
+
+    public void add(int strref)
+    {
+      if (size > 0 && data[size - 1] == strref) {
+        return;
+      }
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = strref;
+    }
+
+    public int[] toArray()
+    {
+      return Arrays.copyOf(data, size);
+    }
+  }
+}
@@ -6,13 +6,12 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
 
 import javax.swing.JOptionPane;
 
@@ -21,14 +20,19 @@
 
 public final class StringResource
 {
-  private static final HashMap<Integer, StringEntry> cachedEntry = new HashMap<Integer, StringResource.StringEntry>(1000);
+  // Number of slots in the string entry cache (must be a power of two)
+  private static final int CACHE_SIZE = 0x4000;
 
-  private static Path dlgPath;
-  private static ByteBuffer buffer;
-  private static String version;
-  private static int maxnr, startindex;
-  private static Charset charset = Misc.CHARSET_DEFAULT;
-  private static Charset usedCharset = charset;
+  // Direct-mapped cache of decoded string entries, indexed by the lower bits of the strref
+  private static final AtomicReferenceArray<StringEntry> cachedEntry = new AtomicReferenceArray<>(CACHE_SIZE);
+
+  // Incremented whenever the dialog.tlk or charset changes; cache entries of older generations are discarded
+  private static volatile int generation;
+
+  private static volatile Path dlgPath;
+  private static volatile TlkFile tlk;
+  private static volatile Charset charset = Misc.CHARSET_DEFAULT;
+  private static volatile Charset usedCharset = charset;
 
   /** Returns the charset used to decode strings of the string resource. */
   public static Charset getCharset() {
@@ -39,15 +43,16 @@ public static Charset getCharset() {
   public static synchronized void setCharset(String cs) {
     charset = Charset.forName(cs);
     usedCharset = charset;
+    generation++;
+    clearCache();
   }
 
-  /** Explicitly closes the dialog.tlk file handle. */
+  /** Explicitly releases the loaded dialog.tlk data. */
   public static synchronized void close()
   {
-    if (buffer != null) {
-      buffer = null;
-    }
-    cachedEntry.clear();
+    tlk = null;
+    generation++;
+    clearCache();
   }
 
   /** Returns the {@link Path} instance of the dialog.tlk */
@@ -59,7 +64,12 @@ public static Path getPath()
   /** Returns the available number of strref entries in the dialog.tlk */
   public static int getMaxIndex()
   {
-    return maxnr;
+    try {
+      return open().maxnr;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return 0;
   }
 
   /** Returns whether the specified strref entry contains a sound resource. */
@@ -182,83 +192,139 @@ public static void init(Path dlgPath)
     StringResource.dlgPath = dlgPath;
   }
 
-  private static synchronized void open() throws IOException
+  /** Returns the charset used to decode TLK files of the current game. */
+  static Charset getTlkCharset()
   {
-    if (buffer == null) {
-      try (SeekableByteChannel ch = Files.newByteChannel(dlgPath, StandardOpenOption.READ)) {
-        buffer = StreamUtils.getByteBuffer((int)ch.size());
-        if (ch.read(buffer) < ch.size()) {
-          throw new IOException();
-        }
-        buffer.position(0);
-        String sig = StreamUtils.readString(buffer, 4);
-        if (!sig.equals("TLK ")) {
-          buffer = null;
-          throw new IOException("Not valid TLK file");
-        }
-        version = StreamUtils.readString(buffer, 4);
-        if (version.equals("V1  ")) {
-          buffer.position(0x0a);
-        } else {
-          buffer = null;
-          throw new IOException("Invalid TLK version");
-        }
-        maxnr = buffer.getInt();
-        startindex = buffer.getInt();
-        if (Profile.isEnhancedEdition()) {
-          usedCharset = Misc.CHARSET_UTF8;
+    return Profile.isEnhancedEdition() ? Misc.CHARSET_UTF8 : charset;
+  }
+
+  /**
+   * Decodes all strings of the specified TLK file in ascending strref order and passes them
+   * to the given consumer. Does not affect the currently opened dialog.tlk.
+   */
+  static void forEachString(Path file, Charset cs, ObjIntConsumer<String> consumer) throws IOException
+  {
+    TlkFile tlkFile = new TlkFile(file);
+    for (int i = 0; i < tlkFile.maxnr; i++) {
+      consumer.accept(new StringEntry(tlkFile, i, cs, 0).text, i);
+    }
+  }
+
+  // Returns the loaded dialog.tlk. Opens the file if needed.
+  private static TlkFile open() throws IOException
+  {
+    TlkFile retVal = tlk;
+    if (retVal == null) {
+      synchronized (StringResource.class) {
+        retVal = tlk;
+        if (retVal == null) {
+          retVal = new TlkFile(dlgPath);
+          if (Profile.isEnhancedEdition()) {
+            usedCharset = Misc.CHARSET_UTF8;
+          }
+          tlk = retVal;
         }
       }
     }
+    return retVal;
   }
 
-  private static synchronized StringEntry fetchStringEntry(int index) throws IOException
+  private static StringEntry fetchStringEntry(int index) throws IOException
   {
-    StringEntry entry = cachedEntry.get(Integer.valueOf(index));
-    if (entry == null) {
-      entry = new StringEntry(index);
-      cachedEntry.put(Integer.valueOf(index), entry);
+    int slot = index & (CACHE_SIZE - 1);
+    // generation must be determined before accessing dialog.tlk: entries built from a file
+    // that is closed concurrently are tagged with an outdated generation
+    int gen = generation;
+    StringEntry entry = cachedEntry.get(slot);
+    if (entry == null || entry.index != index || entry.generation != gen) {
+      TlkFile file = open();
+      entry = new StringEntry(file, index, usedCharset, gen);
+      cachedEntry.set(slot, entry);
     }
     return entry;
   }
 
+  private static void clearCache()
+  {
+    for (int i = 0; i < CACHE_SIZE; i++) {
+      cachedEntry.set(i, null);
+    }
+  }
+
   private StringResource(){}
 
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Provides access to the content of a TLK file.
+  // The file is not memory-mapped since the string editor may overwrite it while
+  // the buffer is still referenced by other threads.
+  private static class TlkFile
+  {
+    public final ByteBuffer buffer;
+    public final int maxnr, startindex;
+
+    private TlkFile(Path file) throws IOException
+    {
+      try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+        buffer = StreamUtils.getByteBuffer((int)ch.size());
+        while (buffer.hasRemaining()) {
+          if (ch.read(buffer) < 0) {
+            throw new IOException("Unexpected end of file");
+          }
+        }
+        buffer.flip();
+      }
+      if (buffer.limit() < 0x12) {
+        throw new IOException("Not valid TLK file");
+      }
+      String sig = StreamUtils.readString(buffer, 0, 4);
+      if (!sig.equals("TLK ")) {
+        throw new IOException("Not valid TLK file");
+      }
+      String version = StreamUtils.readString(buffer, 4, 4);
+      if (!version.equals("V1  ")) {
+        throw new IOException("Invalid TLK version");
+      }
+      maxnr = buffer.getInt(0x0a);
+      startindex = buffer.getInt(0x0e);
+    }
+  }
+
   private static class StringEntry
   {
+    public final int index;
+    public final int generation;
     public final int strref;
     public final short type;
     public final String soundRes;
     public final int volume, pitch;
     public final String text;
 
-    private StringEntry(int index) throws IOException
+    private StringEntry(TlkFile tlk, int index, Charset cs, int generation) throws IOException
     {
-      open();
-      if (index >= 0 && index < maxnr ) {
+      this.index = index;
+      this.generation = generation;
+      if (index >= 0 && index < tlk.maxnr ) {
+        // absolute access only: buffer is shared by all threads
+        ByteBuffer buffer = tlk.buffer;
         strref = index;
-        index *= 0x1a;
-        buffer.position(0x12 + index);
-        type = buffer.getShort();
-        byte[] buf = new byte[8];
-        buffer.get(buf);
-        int len = buf.length;
-        for (int i = 0; i < buf.length; i++) {
-          if (buf[i] == 0) {
-            len = i;
-            break;
-          }
+        int ofs = 0x12 + index * 0x1a;
+        type = buffer.getShort(ofs);
+        int len = 0;
+        while (len < 8 && buffer.get(ofs + 2 + len) != 0) {
+          len++;
         }
-        soundRes = new String(Arrays.copyOf(buf, len));
-        volume = buffer.getInt();
-        pitch = buffer.getInt();
-        long offset = startindex + buffer.getInt();
-        int length = buffer.getInt();
-        buffer.position((int)offset);
-        text = StreamUtils.readString(buffer, length, usedCharset);
+        byte[] buf = new byte[len];
+        for (int i = 0; i < len; i++) {
+          buf[i] = buffer.get(ofs + 2 + i);
+        }
+        soundRes = new String(buf);
+        volume = buffer.getInt(ofs + 10);
+        pitch = buffer.getInt(ofs + 14);
+        long offset = tlk.startindex + (buffer.getInt(ofs + 18) & 0xffffffffL);
+        int length = buffer.getInt(ofs + 22);
+        text = readText(buffer, offset, length, cs);
       } else {
         strref = -1;
         type = 0;
@@ -267,6 +333,24 @@ private StringEntry(int index) throws IOException
         text = "No such index";
       }
     }
+
+    private static String readText(ByteBuffer buffer, long offset, int length, Charset cs)
+    {
+      if (length > 0 && offset >= 0 && offset < buffer.limit()) {
+        length = (int)Math.min(length, buffer.limit() - offset);
+        byte[] buf = new byte[length];
+        ByteBuffer bb = buffer.duplicate();
+        bb.position((int)offset);
+        bb.get(buf);
+        for (int i = 0; i < buf.length; i++) {
+          if (buf[i] == 0) {
+            length = i;
+            break;
+          }
+        }
+        return new String(buf, 0, length, cs);
+      }
+      return "";
+    }
   }
 }
-
@@ -0,0 +1,192 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Shared work-stealing thread pool for batch operations such as searches, checks and
+ * mass conversions.
+ * <p>
+ * Operations create a {@link Batch}, submit their tasks to it and wait for completion.
+ * The number of pending tasks per batch is limited to keep memory usage bounded
+ * when tasks hold large resources.
+ */
+public final class TaskEngine
+{
+  // Interval for checking cancellation requests while waiting, in milliseconds
+  private static final long POLL_INTERVAL = 50L;
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(
+      Math.max(1, Runtime.getRuntime().availableProcessors()),
+      (pool) -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("TaskEngine-" + thread.getPoolIndex());
+        return thread;
+      },
+      null, true);
+
+  /** Returns the number of tasks that are executed in parallel. */
+  public static int getParallelism()
+  {
+    return POOL.getParallelism();
+  }
+
+  /** Creates a new batch without external cancellation source. */
+  public static Batch createBatch()
+  {
+    return new Batch(null);
+  }
+
+  /**
+   * Creates a new batch.
+   * @param cancelRequest Polled regularly while submitting or waiting for tasks. The batch is
+   *                      cancelled as soon as it returns {@code true}, e.g. {@code progress::isCanceled}.
+   */
+  public static Batch createBatch(BooleanSupplier cancelRequest)
+  {
+    return new Batch(cancelRequest);
+  }
+
+  /**
+   * Executes the specified task by the shared pool and waits for its completion. Subtasks forked
+   * by the task are executed by the same pool.
+   * @return The result of the task.
+   */
+  public static <T> T invoke(ForkJoinTask<T> task)
+  {
+    return POOL.invoke(task);
+  }
+
+  /**
+   * Schedules a single background task for execution by the shared pool without waiting
+   * for its completion.
+   * @return A future which provides the result of the task.
+   */
+  public static <T> Future<T> submit(Callable<T> task)
+  {
+    return POOL.submit(Objects.requireNonNull(task));
+  }
+
+  private TaskEngine() {}
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /**
+   * A set of tasks executed by the shared pool. Tasks that have not started yet
+   * are skipped when the batch is cancelled.
+   */
+  public static final class Batch
+  {
+    private final BooleanSupplier cancelRequest;
+    private final int maxPending;
+    private final Object lock = new Object();
+
+    private int pending;
+    private volatile boolean cancelled;
+
+    private Batch(BooleanSupplier cancelRequest)
+    {
+      this.cancelRequest = cancelRequest;
+      this.maxPending = 3 * POOL.getParallelism();
+    }
+
+    /**
+     * Schedules the specified task for execution. Blocks while the maximum number of pending
+     * tasks is reached.
+     * @return {@code false} if the batch has been cancelled and the task was not scheduled.
+     */
+    public boolean submit(Runnable task)
+    {
+      Objects.requireNonNull(task);
+      if (!waitFor(maxPending - 1)) {
+        return false;
+      }
+      synchronized (lock) {
+        pending++;
+      }
+      POOL.execute(() -> {
+        try {
+          if (!cancelled) {
+            task.run();
+          }
+        } catch (Throwable t) {
+          t.printStackTrace();
+        } finally {
+          synchronized (lock) {
+            pending--;
+            lock.notifyAll();
+          }
+        }
+      });
+      return true;
+    }
+
+    /**
+     * Waits until all submitted tasks have been completed or skipped.
+     * @return {@code false} if the batch has been cancelled.
+     */
+    public boolean await()
+    {
+      waitFor(0);
+      return !isCancelled();
+    }
+
+    /** Cancels the batch. Tasks that are already running are not interrupted. */
+    public void cancel()
+    {
+      cancelled = true;
+    }
+
+    /** Returns whether the batch has been cancelled. */
+    public boolean isCancelled()
+    {
+      if (!cancelled && cancelRequest != null && cancelRequest.getAsBoolean()) {
+        cancelled = true;
+      }
+      return cancelled;
+    }
+
+    // Waits until the number of pending tasks drops to the specified value.
+    // Returns false if the batch has been cancelled.
+    private boolean waitFor(int maxCount)
+    {
+      try {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+          @Override
+          public boolean block() throws InterruptedException
+          {
+            synchronized (lock) {
+              if (pending > maxCount) {
+                lock.wait(POLL_INTERVAL);
+              }
+            }
+            return isReleasable();
+          }
+
+          @Override
+          public boolean isReleasable()
+          {
+            // pending tasks are skipped quickly after cancellation, so keep waiting when called by await()
+            synchronized (lock) {
+              return (pending <= maxCount) || (maxCount > 0 && isCancelled());
+            }
+          }
+        });
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+      }
+      return !isCancelled();
+    }
+  }
+}
@@ -4,11 +4,13 @@
 
 package org.infinity.util.io;
 
+import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -218,6 +220,33 @@ public static boolean isDefaultFileSystem(Path path)
     return false;
   }
 
+  /**
+   * Returns the folder for persistent cache data of the specified game.
+   * The folder is created if it does not exist yet.
+   * @param gameRoot The root folder of the game.
+   * @return The cache folder as {@link Path} object. Returns {@code null} if {@code gameRoot}
+   *         is {@code null} or the folder could not be created.
+   */
+  public static Path getCacheFolder(Path gameRoot)
+  {
+    if (gameRoot == null || !isDefaultFileSystem(gameRoot)) {
+      return null;
+    }
+
+    gameRoot = gameRoot.toAbsolutePath().normalize();
+    String name = (gameRoot.getFileName() != null) ? gameRoot.getFileName().toString() : "game";
+    name = name.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" +
+           String.format("%08x", gameRoot.toString().hashCode());
+    try {
+      Path folder = Paths.get(System.getProperty("user.home"), ".nearinfinity", "cache", name);
+      Files.createDirectories(folder);
+      return folder;
+    } catch (IOException | SecurityException | UnsupportedOperationException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
   private FileManager() {}
 
   private Path _query(Path rootPath, String path, String... more)
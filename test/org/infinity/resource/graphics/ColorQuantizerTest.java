@@ -0,0 +1,192 @@
+package org.infinity.resource.graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColorQuantizerTest {
+  private static BufferedImage createImage(Random rnd, int width, int height, int numColors) {
+    int[] colors = new int[numColors];
+    for (int i = 0; i < colors.length; i++) {
+      colors[i] = rnd.nextInt();
+    }
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = colors[rnd.nextInt(colors.length)];
+    }
+    return image;
+  }
+
+  // Returns the sorted color/count pairs of the histogram
+  private static long[] getEntries(ColorQuantizer.Histogram histogram) {
+    int[] colors = new int[histogram.size()];
+    int[] counts = new int[histogram.size()];
+    histogram.getEntries(colors, counts);
+    long[] retVal = new long[colors.length];
+    for (int i = 0; i < colors.length; i++) {
+      retVal[i] = ((long)colors[i] << 32) | counts[i];
+    }
+    Arrays.sort(retVal);
+    return retVal;
+  }
+
+  //public void add(int rgbColor, int count)
+  @Test
+  public void testHistogramAdd() {
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(0xff123456);
+    histogram.add(0x00123456, 2);
+    histogram.add(0x654321, 0);
+    histogram.add(0);
+    Assert.assertEquals(2, histogram.size());
+    Assert.assertEquals(3, histogram.getCount(0x123456));
+    Assert.assertEquals(1, histogram.getCount(0));
+    Assert.assertEquals(0, histogram.getCount(0x654321));
+  }
+
+  @Test
+  public void testHistogramGrow() {
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    for (int i = 0; i < 100000; i++) {
+      histogram.add(i * 97, i % 3 + 1);
+    }
+    Assert.assertEquals(100000, histogram.size());
+    for (int i = 0; i < 100000; i++) {
+      Assert.assertEquals(i % 3 + 1, histogram.getCount(i * 97));
+    }
+  }
+
+  //public void remove(int rgbColor)
+  @Test
+  public void testHistogramRemove() {
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    for (int i = 0; i < 5000; i++) {
+      histogram.add(i * 31);
+    }
+    for (int i = 0; i < 5000; i += 2) {
+      histogram.remove(i * 31);
+    }
+    histogram.remove(0xabcdef);
+    Assert.assertEquals(2500, histogram.size());
+    for (int i = 0; i < 5000; i++) {
+      Assert.assertEquals((i & 1), histogram.getCount(i * 31));
+    }
+  }
+
+  //public void add(int[] pixels, boolean ignoreAlpha)
+  @Test
+  public void testHistogramAddPixels() {
+    int[] pixels = {0xff000000, 0xff000000, 0x00ffffff, 0x80ff0000, 0xff000000, 0x00000000};
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(pixels, false);
+    Assert.assertEquals(2, histogram.size());
+    Assert.assertEquals(3, histogram.getCount(0));
+    Assert.assertEquals(1, histogram.getCount(0xff0000));
+
+    histogram.clear();
+    histogram.add(pixels, true);
+    Assert.assertEquals(3, histogram.size());
+    Assert.assertEquals(4, histogram.getCount(0));
+    Assert.assertEquals(1, histogram.getCount(0xffffff));
+  }
+
+  //public void add(BufferedImage image, boolean ignoreAlpha)
+  @Test
+  public void testHistogramAddIndexedImage() {
+    int[] palette = {0x0000ff00, 0xffff0000, 0x800000ff, 0xffffffff};
+    IndexColorModel cm = new IndexColorModel(8, palette.length, palette, 0, true, -1, DataBuffer.TYPE_BYTE);
+    BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_BYTE_INDEXED, cm);
+    byte[] buffer = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+    byte[] indices = {0, 0, 1, 1, 1, 2, 2, 0};
+    System.arraycopy(indices, 0, buffer, 0, indices.length);
+
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(image, false);
+    // fully transparent entries are skipped, unused entries do not count
+    Assert.assertEquals(2, histogram.size());
+    Assert.assertEquals(3, histogram.getCount(0xff0000));
+    Assert.assertEquals(2, histogram.getCount(0x0000ff));
+    Assert.assertEquals(0, histogram.getCount(0x00ff00));
+    Assert.assertEquals(0, histogram.getCount(0xffffff));
+
+    histogram.clear();
+    histogram.add(image, true);
+    Assert.assertEquals(3, histogram.size());
+    Assert.assertEquals(3, histogram.getCount(0x00ff00));
+  }
+
+  //public static Histogram createHistogram(List<? extends BufferedImage> images, boolean ignoreAlpha)
+  @Test
+  public void testCreateHistogram() {
+    Random rnd = new Random(4711);
+    List<BufferedImage> images = new ArrayList<BufferedImage>();
+    ColorQuantizer.Histogram expected = new ColorQuantizer.Histogram();
+    for (int i = 0; i < 16; i++) {
+      BufferedImage image = createImage(rnd, 37 + i, 23, 50 + i * 10);
+      images.add(image);
+      expected.add(image, false);
+    }
+    images.add(null);
+    ColorQuantizer.Histogram histogram = ColorQuantizer.createHistogram(images, false);
+    Assert.assertArrayEquals(getEntries(expected), getEntries(histogram));
+  }
+
+  //public static int[] medianCut(Histogram histogram, int desiredColors)
+  @Test
+  public void testMedianCutFewColors() {
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(0x102030, 5);
+    histogram.add(0xffeedd, 1);
+    int[] palette = new int[4];
+    Arrays.fill(palette, -1);
+    Assert.assertTrue(ColorQuantizer.medianCut(histogram, 4, palette));
+    Arrays.sort(palette, 0, 2);
+    Assert.assertArrayEquals(new int[]{0x102030, 0xffeedd, 0, 0}, palette);
+  }
+
+  @Test
+  public void testMedianCutReduction() {
+    // two well separated clusters are reduced to their weighted averages
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(0x000000, 1);
+    histogram.add(0x020202, 3);
+    histogram.add(0xf0f0f0, 2);
+    histogram.add(0xfefefe, 2);
+    int[] palette = ColorQuantizer.medianCut(histogram, 2);
+    Assert.assertNotNull(palette);
+    Arrays.sort(palette);
+    Assert.assertArrayEquals(new int[]{0x010101, 0xf7f7f7}, palette);
+  }
+
+  @Test
+  public void testMedianCutManyColors() {
+    Random rnd = new Random(815);
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(createImage(rnd, 256, 256, 5000), false);
+    int[] palette = ColorQuantizer.medianCut(histogram, 255);
+    Assert.assertNotNull(palette);
+    Assert.assertEquals(255, palette.length);
+    for (final int color : palette) {
+      Assert.assertEquals(0, color & 0xff000000);
+    }
+  }
+
+  @Test
+  public void testMedianCutInvalidColorCount() {
+    ColorQuantizer.Histogram histogram = new ColorQuantizer.Histogram();
+    histogram.add(0x123456);
+    Assert.assertNull(ColorQuantizer.medianCut(histogram, 0));
+    Assert.assertNull(ColorQuantizer.medianCut(histogram, 257));
+    Assert.assertFalse(ColorQuantizer.medianCut(histogram, 4, new int[3]));
+  }
+}
@@ -0,0 +1,86 @@
+package org.infinity.resource.graphics;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PaletteLookupTest {
+  private static int[] createPalette(Random rnd, int size) {
+    int[] palette = new int[size];
+    for (int i = 0; i < size; i++) {
+      palette[i] = 0xff000000 | rnd.nextInt(0x1000000);
+    }
+    return palette;
+  }
+
+  private static void assertSameAsNearestColor(int[] palette, int[] colors) {
+    int[] hclPalette = new int[palette.length];
+    ColorConvert.toHclPalette(palette, hclPalette);
+    PaletteLookup lookup = new PaletteLookup(palette);
+    for (final int color : colors) {
+      Assert.assertEquals(String.format("color %06x", color & 0xffffff),
+                          ColorConvert.nearestColor(color, hclPalette), lookup.nearestColor(color));
+    }
+  }
+
+  //public int nearestColor(int rgbColor)
+  @Test
+  public void testNearestColorRandomPalette() {
+    Random rnd = new Random(12345);
+    int[] palette = createPalette(rnd, 256);
+    int[] colors = new int[20000];
+    for (int i = 0; i < colors.length; i++) {
+      colors[i] = rnd.nextInt();
+    }
+    assertSameAsNearestColor(palette, colors);
+    // repeated lookups are answered from the cache
+    assertSameAsNearestColor(palette, colors);
+  }
+
+  @Test
+  public void testNearestColorPaletteEntries() {
+    Random rnd = new Random(54321);
+    int[] palette = createPalette(rnd, 64);
+    assertSameAsNearestColor(palette, palette);
+  }
+
+  @Test
+  public void testNearestColorDuplicateEntries() {
+    int[] palette = {0xff00ff00, 0xff808080, 0xff000000, 0xff808080, 0xffffffff, 0xff000000};
+    assertSameAsNearestColor(palette, new int[]{0x808080, 0x7f7f7f, 0x000000, 0x010101, 0xfefefe, 0x00ff00});
+  }
+
+  @Test
+  public void testNearestColorIgnoresAlpha() {
+    PaletteLookup lookup = new PaletteLookup(new int[]{0xff000000, 0xffff0000, 0xff0000ff});
+    Assert.assertEquals(1, lookup.nearestColor(0x00ff0000));
+    Assert.assertEquals(1, lookup.nearestColor(0x80ff0000));
+    Assert.assertEquals(2, lookup.nearestColor(0xff0000fe));
+  }
+
+  @Test
+  public void testNearestColorEmptyPalette() {
+    Assert.assertEquals(-1, new PaletteLookup(new int[0]).nearestColor(0x123456));
+  }
+
+  //public void setColor(int rgbColor, int index)
+  @Test
+  public void testSetColor() {
+    PaletteLookup lookup = new PaletteLookup(new int[]{0xff000000, 0xffffffff});
+    Assert.assertEquals(1, lookup.nearestColor(0xf0f0f0));
+    lookup.setColor(0xf0f0f0, 0);
+    Assert.assertEquals(0, lookup.nearestColor(0xf0f0f0));
+    Assert.assertEquals(1, lookup.nearestColor(0xf1f1f1));
+  }
+
+  @Test(expected=IndexOutOfBoundsException.class)
+  public void testSetColorInvalidIndex() {
+    new PaletteLookup(new int[]{0xff000000}).setColor(0, 1);
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testPaletteTooLarge() {
+    new PaletteLookup(new int[257]);
+  }
+}
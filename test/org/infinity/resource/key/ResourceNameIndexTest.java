@@ -0,0 +1,88 @@
+package org.infinity.resource.key;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourceNameIndexTest {
+  private static ResourceNameIndex createIndex(String... names) {
+    List<ResourceEntry> entries = new ArrayList<ResourceEntry>();
+    for (final String name : names) {
+      entries.add(new FileResourceEntry(Paths.get(name)));
+    }
+    return new ResourceNameIndex(entries);
+  }
+
+  private static List<String> find(ResourceNameIndex index, String text, int maxResults) {
+    List<String> retVal = new ArrayList<String>();
+    for (final ResourceEntry entry : index.find(text, maxResults)) {
+      retVal.add(entry.getResourceName().toUpperCase(Locale.ENGLISH));
+    }
+    return retVal;
+  }
+
+  //public int size()
+  @Test
+  public void testSize() {
+    Assert.assertEquals(0, createIndex().size());
+    Assert.assertEquals(3, createIndex("A.ITM", "B.ITM", "a.itm").size());
+  }
+
+  //public List<ResourceEntry> find(String text, int maxResults)
+  @Test
+  public void testFindPrefixMatches() {
+    ResourceNameIndex index = createIndex("SW1H02.ITM", "AR0100.ARE", "SW1H01.ITM", "BOW01.ITM", "sw1h03.itm");
+    Assert.assertEquals(Arrays.asList("SW1H01.ITM", "SW1H02.ITM", "SW1H03.ITM"), find(index, "sw1h", 10));
+    Assert.assertEquals(Arrays.asList("SW1H01.ITM", "SW1H02.ITM"), find(index, "SW1H", 2));
+    Assert.assertEquals(Arrays.asList("AR0100.ARE"), find(index, "AR0100.ARE", 10));
+  }
+
+  @Test
+  public void testFindSubstringMatches() {
+    ResourceNameIndex index = createIndex("XSWORD.ITM", "SWORD01.ITM", "LONGSWORD.ITM", "ABSWORD.ITM", "HELM01.ITM");
+    // prefix matches first, followed by substring matches ordered by position and name
+    Assert.assertEquals(Arrays.asList("SWORD01.ITM", "XSWORD.ITM", "ABSWORD.ITM", "LONGSWORD.ITM"),
+                        find(index, "SWORD", 10));
+    // search strings shorter than a trigram
+    Assert.assertEquals(Arrays.asList("HELM01.ITM", "SWORD01.ITM"), find(index, "01", 10));
+    Assert.assertEquals(Arrays.asList("HELM01.ITM"), find(index, "M0", 10));
+  }
+
+  @Test
+  public void testFindFuzzyMatches() {
+    ResourceNameIndex index = createIndex("SPWI112.SPL", "SPPR101.SPL", "SPWISH01.SPL", "SW1H01.ITM");
+    // substring matches are followed by names containing the characters in order, closest first
+    Assert.assertEquals(Arrays.asList("SPPR101.SPL", "SPWI112.SPL", "SPWISH01.SPL"), find(index, "SP1", 10));
+    Assert.assertEquals(Arrays.asList("SW1H01.ITM", "SPWISH01.SPL"), find(index, "SWH", 10));
+    Assert.assertTrue(find(index, "ZZZ", 10).isEmpty());
+  }
+
+  @Test
+  public void testFindFuzzyMatchWithoutTrigram() {
+    // fuzzy matches are found even if their names contain no trigram of the search string
+    ResourceNameIndex index = createIndex("SPWI1S.SPL", "WISP.CRE");
+    Assert.assertEquals(Arrays.asList("WISP.CRE", "SPWI1S.SPL"), find(index, "WIS", 10));
+    Assert.assertEquals(Arrays.asList("SPWI1S.SPL"), find(index, "WI1", 10));
+  }
+
+  @Test
+  public void testFindDuplicateNames() {
+    ResourceNameIndex index = createIndex("RING01.ITM", "ring01.itm", "RING02.ITM");
+    Assert.assertEquals(3, index.find("RING", 10).size());
+    Assert.assertEquals(2, index.find("RING01", 10).size());
+  }
+
+  @Test
+  public void testFindInvalidArguments() {
+    ResourceNameIndex index = createIndex("RING01.ITM");
+    Assert.assertTrue(index.find(null, 10).isEmpty());
+    Assert.assertTrue(index.find("", 10).isEmpty());
+    Assert.assertTrue(index.find("RING", 0).isEmpty());
+    Assert.assertTrue(createIndex().find("RING", 10).isEmpty());
+  }
+}
@@ -0,0 +1,142 @@
+package org.infinity.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StringIndexTest {
+  private static final String[] STRINGS = {
+    "No such index",
+    "The quick brown fox",
+    "jumps over the lazy dog.",
+    "Quick, QUICK! The dragon is coming",
+    "",
+    "Foxes and dogs",
+  };
+
+  private static Path tlkFile;
+  private static StringIndex index;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    tlkFile = Files.createTempFile("StringIndexTest", ".tlk");
+    Files.write(tlkFile, createTlk(STRINGS));
+    for (int i = 0; i < 500 && index == null; i++) {
+      index = StringIndex.get(tlkFile, StandardCharsets.US_ASCII);
+      if (index == null) {
+        Thread.sleep(10);
+      }
+    }
+    Assert.assertNotNull(index);
+  }
+
+  @AfterClass
+  public static void tearDown() throws IOException {
+    StringIndex.clearCache();
+    Files.deleteIfExists(tlkFile);
+  }
+
+  //public static List<String> getWords(String text)
+  @Test
+  public void testGetWords() {
+    Assert.assertEquals(Arrays.asList("the", "quick", "fox"), StringIndex.getWords("The QUICK, the fox!"));
+    Assert.assertTrue(StringIndex.getWords("...").isEmpty());
+    Assert.assertTrue(StringIndex.getWords(null).isEmpty());
+  }
+
+  //public int[] findCandidates(String text, boolean wholeWords)
+  @Test
+  public void testFindCandidatesWholeWords() {
+    Assert.assertArrayEquals(new int[]{1, 3}, index.findCandidates("quick", true));
+    Assert.assertArrayEquals(new int[]{1}, index.findCandidates("the Fox", true));
+    Assert.assertArrayEquals(new int[0], index.findCandidates("fo", true));
+  }
+
+  @Test
+  public void testFindCandidatesPartialWords() {
+    Assert.assertArrayEquals(new int[]{1, 5}, index.findCandidates("fox", false));
+    Assert.assertArrayEquals(new int[]{2, 5}, index.findCandidates("og", false));
+    Assert.assertArrayEquals(new int[]{1, 2, 3}, index.findCandidates("th", false));
+  }
+
+  @Test
+  public void testFindCandidatesWithoutWords() {
+    Assert.assertNull(index.findCandidates(" - ", false));
+  }
+
+  //public static void update(Path tlkFile, String[] strings, BitSet changed)
+  @Test
+  public void testUpdate() throws IOException {
+    Path file = Files.createTempFile("StringIndexTest", ".tlk");
+    try {
+      Files.write(file, createTlk(STRINGS));
+      StringIndex idx = null;
+      for (int i = 0; i < 500 && idx == null; i++) {
+        idx = StringIndex.get(file, StandardCharsets.US_ASCII);
+        if (idx == null) {
+          Thread.sleep(10);
+        }
+      }
+      Assert.assertNotNull(idx);
+
+      String[] strings = Arrays.copyOf(STRINGS, STRINGS.length + 1);
+      strings[1] = "The slow brown fox";
+      strings[STRINGS.length] = "A quick addition";
+      BitSet changed = new BitSet();
+      changed.set(1);
+      StringIndex.update(file, strings, changed);
+      Assert.assertArrayEquals(new int[]{3, 6}, idx.findCandidates("quick", true));
+      Assert.assertArrayEquals(new int[]{1}, idx.findCandidates("slow", true));
+
+      // strings not marked as changed keep their indexed content
+      strings = Arrays.copyOf(strings, STRINGS.length);
+      StringIndex.update(file, strings, new BitSet());
+      Assert.assertArrayEquals(new int[]{3}, idx.findCandidates("quick", true));
+      Assert.assertArrayEquals(new int[]{1}, idx.findCandidates("slow", true));
+    } catch (InterruptedException e) {
+      Assert.fail(e.toString());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // Creates a minimal TLK V1 file with the specified strings
+  private static byte[] createTlk(String[] strings) {
+    byte[][] data = new byte[strings.length][];
+    int dataSize = 0;
+    for (int i = 0; i < strings.length; i++) {
+      data[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+      dataSize += data[i].length;
+    }
+    int startIndex = 0x12 + strings.length * 0x1a;
+    ByteBuffer bb = ByteBuffer.allocate(startIndex + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+    bb.put("TLK V1  ".getBytes(StandardCharsets.US_ASCII));
+    bb.putShort((short)0);
+    bb.putInt(strings.length);
+    bb.putInt(startIndex);
+    int offset = 0;
+    for (int i = 0; i < strings.length; i++) {
+      bb.putShort((short)1);
+      bb.put(new byte[8]);
+      bb.putInt(0);
+      bb.putInt(0);
+      bb.putInt(offset);
+      bb.putInt(data[i].length);
+      offset += data[i].length;
+    }
+    for (final byte[] d : data) {
+      bb.put(d);
+    }
+    return bb.array();
+  }
+}